@@ -0,0 +1,55 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.benchmark;
+
+/**
+ * One timed operation for BenchmarkRunner.
+ *
+ * setUp is called once, outside the timing; run is then called
+ * repeatedly, and each call is one operation. run returns something
+ * that depends on the work it did -- an atom count, a checksum -- so
+ * that the runner can fold it into its result and the work cannot be
+ * optimized away.
+ *
+ */
+abstract class Benchmark {
+
+  final String name;
+
+  Benchmark(String name) {
+    this.name = name;
+  }
+
+  /**
+   * @param runner  for the shared viewer and the sample files
+   * @throws Exception
+   */
+  void setUp(BenchmarkRunner runner) throws Exception {
+  }
+
+  abstract long run() throws Exception;
+
+  void tearDown() {
+  }
+}
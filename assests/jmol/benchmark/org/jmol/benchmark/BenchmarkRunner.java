@@ -0,0 +1,298 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.benchmark;
+
+import java.awt.Canvas;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Vector;
+
+import org.jmol.adapter.smarter.SmarterJmolAdapter;
+import org.jmol.util.Logger;
+import org.jmol.viewer.JmolConstants;
+import org.jmol.viewer.Viewer;
+
+public class BenchmarkRunner {
+
+  /*
+   * Times the engines that most of Jmol's time goes to: rendering,
+   * neighbor searches, bonding, file reading, isosurfaces, orbitals,
+   * minimization, and SMILES matching.
+   *
+   *   java -cp build/classes:build/benchmark-classes:jars/...
+   *       org.jmol.benchmark.BenchmarkRunner [-wi n] [-i n] [-t ms]
+   *       [-d pdbDirectory] [-o results.json] [name ...]
+   *
+   * or simply "ant benchmark", which writes build/benchmark-results.json.
+   *
+   * Each benchmark is run for -wi warmup iterations and then -i
+   * measured iterations of at least -t milliseconds each; an iteration
+   * repeats the operation until its time is up. The score is the mean
+   * time per operation in microseconds, with a 99.9% confidence interval
+   * over the measured iterations. Names given on the command line select
+   * the benchmarks whose names contain any of them.
+   *
+   * The results file is a JSON array with one entry per benchmark,
+   * laid out as JMH's "-rf json" output is, so that the same tools can
+   * compare the results from one version of Jmol to the next.
+   *
+   */
+
+  private int warmupIterations = 3;
+  private int measurementIterations = 5;
+  private long iterationTime = 1000;
+  private String dataDirectory = "pdb";
+  private Viewer viewer;
+
+  /**
+   * allocated on first use and shared by all the benchmarks,
+   * one at a time
+   *
+   * @return the viewer
+   */
+  Viewer getViewer() {
+    if (viewer == null)
+      viewer = (Viewer) Viewer.allocateViewer(new Canvas(),
+          new SmarterJmolAdapter(), null, null, null, "-i", null);
+    return viewer;
+  }
+
+  /**
+   * @param fileName
+   * @return the path of one of the sample files
+   */
+  String getDataFile(String fileName) {
+    return new File(dataDirectory, fileName).getPath();
+  }
+
+  /**
+   * loads a sample file into the shared viewer
+   *
+   * @param fileName
+   * @throws Exception
+   */
+  void load(String fileName) throws Exception {
+    String s = getViewer().scriptWait(
+        "load \"" + getDataFile(fileName).replace('\\', '/') + "\"");
+    if (getViewer().getAtomCount() == 0)
+      throw new Exception("could not load " + fileName + ": " + s);
+  }
+
+  static Vector getBenchmarks() {
+    Vector v = new Vector();
+    v.addElement(new Graphics3DBenchmark("sphere"));
+    v.addElement(new Graphics3DBenchmark("cylinder"));
+    v.addElement(new Graphics3DBenchmark("triangle"));
+    v.addElement(new NeighborBenchmark("bspt"));
+    v.addElement(new NeighborBenchmark("grid"));
+    v.addElement(new NeighborBenchmark("iterator.bspt"));
+    v.addElement(new NeighborBenchmark("iterator.grid"));
+    v.addElement(new BondingBenchmark("bspt", "6adh.pdb"));
+    v.addElement(new BondingBenchmark("grid", "6adh.pdb"));
+    v.addElement(new BondingBenchmark("bspt", "2M5L.pdb"));
+    v.addElement(new BondingBenchmark("grid", "2M5L.pdb"));
+    v.addElement(new ReaderBenchmark("6adh.pdb"));
+    v.addElement(new ReaderBenchmark("2M5L.pdb"));
+    v.addElement(new ReaderBenchmark(null));
+    v.addElement(new MarchingCubesBenchmark(40));
+    v.addElement(new MarchingCubesBenchmark(80));
+    v.addElement(new MOCalculationBenchmark(40));
+    v.addElement(new MOCalculationBenchmark(80));
+    v.addElement(new MinimizationBenchmark("LSD.pdb", 10));
+    v.addElement(new SmilesBenchmark("peptide", "NCC(~O)N"));
+    v.addElement(new SmilesBenchmark("ring", "c1ccccc1"));
+    return v;
+  }
+
+  public static void main(String[] args) {
+    BenchmarkRunner runner = new BenchmarkRunner();
+    // the engines log their progress at the info level
+    Logger.setLogLevel(Logger.LEVEL_WARN);
+    String outputFile = null;
+    Vector filters = new Vector();
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (i + 1 < args.length && arg.startsWith("-")) {
+        String value = args[++i];
+        if (arg.equals("-wi"))
+          runner.warmupIterations = Integer.parseInt(value);
+        else if (arg.equals("-i"))
+          runner.measurementIterations = Math.max(1, Integer.parseInt(value));
+        else if (arg.equals("-t"))
+          runner.iterationTime = Long.parseLong(value);
+        else if (arg.equals("-d"))
+          runner.dataDirectory = value;
+        else if (arg.equals("-o"))
+          outputFile = value;
+        else
+          i--;
+        continue;
+      }
+      filters.addElement(arg);
+    }
+    Vector benchmarks = getBenchmarks();
+    StringBuffer json = new StringBuffer("[");
+    int nRun = 0;
+    for (int i = 0; i < benchmarks.size(); i++) {
+      Benchmark b = (Benchmark) benchmarks.elementAt(i);
+      if (!isSelected(b.name, filters))
+        continue;
+      try {
+        double[] scores = runner.run(b);
+        if (nRun++ > 0)
+          json.append(",");
+        json.append(runner.getJSON(b.name, scores));
+      } catch (Exception e) {
+        System.out.println(b.name + " failed: " + e);
+      }
+    }
+    json.append("\n]\n");
+    if (outputFile != null) {
+      try {
+        FileWriter fw = new FileWriter(outputFile);
+        fw.write(json.toString());
+        fw.close();
+        System.out.println("results written to " + outputFile);
+      } catch (IOException e) {
+        System.out.println("could not write " + outputFile + ": " + e);
+      }
+    }
+    System.exit(0);
+  }
+
+  private static boolean isSelected(String name, Vector filters) {
+    if (filters.size() == 0)
+      return true;
+    for (int i = filters.size(); --i >= 0;)
+      if (name.indexOf((String) filters.elementAt(i)) >= 0)
+        return true;
+    return false;
+  }
+
+  // keeps the results of the operations live
+  private long sink;
+
+  /**
+   * @param b
+   * @return microseconds per operation for each measured iteration
+   * @throws Exception
+   */
+  private double[] run(Benchmark b) throws Exception {
+    b.setUp(this);
+    try {
+      for (int i = 0; i < warmupIterations; i++)
+        System.out.println(b.name + " warmup " + (i + 1) + ": "
+            + format(runIteration(b)) + " us/op");
+      double[] scores = new double[measurementIterations];
+      for (int i = 0; i < measurementIterations; i++)
+        System.out.println(b.name + " iteration " + (i + 1) + ": "
+            + format(scores[i] = runIteration(b)) + " us/op");
+      System.out.println(b.name + " " + format(getMean(scores)) + " +/- "
+          + format(getError(scores)) + " us/op");
+      return scores;
+    } finally {
+      b.tearDown();
+    }
+  }
+
+  private double runIteration(Benchmark b) throws Exception {
+    long nOps = 0;
+    long t0 = System.nanoTime();
+    long tEnd = t0 + iterationTime * 1000000L;
+    long t;
+    do {
+      sink += b.run();
+      nOps++;
+    } while ((t = System.nanoTime()) < tEnd);
+    return (t - t0) / 1000.0 / nOps;
+  }
+
+  private static double getMean(double[] scores) {
+    double sum = 0;
+    for (int i = scores.length; --i >= 0;)
+      sum += scores[i];
+    return sum / scores.length;
+  }
+
+  // two-sided Student t at 99.9%, by degrees of freedom
+  private final static double[] t999 = { Double.NaN, 636.62, 31.599, 12.924,
+      8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587, 4.437, 4.318, 4.221,
+      4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850 };
+
+  /**
+   * @param scores
+   * @return the half-width of the 99.9% confidence interval of the mean
+   */
+  private static double getError(double[] scores) {
+    int n = scores.length;
+    if (n < 2)
+      return Double.NaN;
+    double mean = getMean(scores);
+    double ss = 0;
+    for (int i = n; --i >= 0;)
+      ss += (scores[i] - mean) * (scores[i] - mean);
+    double t = (n - 1 < t999.length ? t999[n - 1] : 3.291);
+    return t * Math.sqrt(ss / (n - 1) / n);
+  }
+
+  private static String format(double d) {
+    return (Double.isNaN(d) ? "NaN" : "" + Math.round(d * 1000) / 1000.0);
+  }
+
+  private static String toJSON(double d) {
+    return (Double.isNaN(d) ? "\"NaN\"" : format(d));
+  }
+
+  private String getJSON(String name, double[] scores) {
+    double mean = getMean(scores);
+    double error = getError(scores);
+    StringBuffer sb = new StringBuffer();
+    sb.append("\n  {\n")
+      .append("    \"benchmark\" : \"org.jmol.benchmark.").append(name).append("\",\n")
+      .append("    \"mode\" : \"avgt\",\n")
+      .append("    \"threads\" : 1,\n")
+      .append("    \"forks\" : 0,\n")
+      .append("    \"jvm\" : \"").append(System.getProperty("java.home").replace('\\', '/')).append("\",\n")
+      .append("    \"jdkVersion\" : \"").append(System.getProperty("java.version")).append("\",\n")
+      .append("    \"jmolVersion\" : \"").append(JmolConstants.version).append("\",\n")
+      .append("    \"warmupIterations\" : ").append(warmupIterations).append(",\n")
+      .append("    \"warmupTime\" : \"").append(iterationTime).append(" ms\",\n")
+      .append("    \"measurementIterations\" : ").append(measurementIterations).append(",\n")
+      .append("    \"measurementTime\" : \"").append(iterationTime).append(" ms\",\n")
+      .append("    \"primaryMetric\" : {\n")
+      .append("      \"score\" : ").append(toJSON(mean)).append(",\n")
+      .append("      \"scoreError\" : ").append(toJSON(error)).append(",\n")
+      .append("      \"scoreConfidence\" : [ ").append(toJSON(mean - error))
+      .append(", ").append(toJSON(mean + error)).append(" ],\n")
+      .append("      \"scoreUnit\" : \"us/op\",\n")
+      .append("      \"rawData\" : [ [ ");
+    for (int i = 0; i < scores.length; i++)
+      sb.append(i == 0 ? "" : ", ").append(toJSON(scores[i]));
+    sb.append(" ] ]\n")
+      .append("    }\n")
+      .append("  }");
+    return sb.toString();
+  }
+}
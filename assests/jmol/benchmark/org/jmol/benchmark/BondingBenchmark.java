@@ -0,0 +1,74 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.benchmark;
+
+import org.jmol.modelset.ModelSet;
+import org.jmol.viewer.Viewer;
+
+/**
+ * Deletes all the bonds of a sample file and bonds its atoms again by
+ * distance, as the "connect" command does; one operation is one pass.
+ * The first pass builds the spatial index, and the rest reuse it.
+ *
+ *  bspt  -- the Bspf
+ *  grid  -- the SpatialGrid cell list (set useSpatialGrid)
+ *
+ * The bond count returned should be the same for both.
+ *
+ */
+class BondingBenchmark extends Benchmark {
+
+  private String type;
+  private String fileName;
+  private Viewer viewer;
+  private ModelSet modelSet;
+  private short mad;
+
+  /**
+   * @param type      "bspt" or "grid"
+   * @param fileName
+   */
+  BondingBenchmark(String type, String fileName) {
+    super("Bonding.autoBond." + type + "." + fileName);
+    this.type = type;
+    this.fileName = fileName;
+  }
+
+  void setUp(BenchmarkRunner runner) throws Exception {
+    viewer = runner.getViewer();
+    viewer.scriptWait("set useSpatialGrid " + type.equals("grid"));
+    runner.load(fileName);
+    modelSet = viewer.getModelSet();
+    mad = viewer.getMadBond();
+  }
+
+  long run() {
+    modelSet.deleteAllBonds();
+    return modelSet.autoBond(null, null, null, null, mad);
+  }
+
+  void tearDown() {
+    viewer.scriptWait("set useSpatialGrid false");
+  }
+}
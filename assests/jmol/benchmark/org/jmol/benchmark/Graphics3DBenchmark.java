@@ -0,0 +1,114 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.benchmark;
+
+import java.awt.Canvas;
+import java.util.Random;
+
+import javax.vecmath.Matrix3f;
+import javax.vecmath.Point3f;
+
+import org.jmol.g3d.Graphics3D;
+
+/**
+ * Rasterizes a fixed, random set of spheres, cylinders, or triangles
+ * into a 500 x 500 frame; one operation is one frame.
+ *
+ */
+class Graphics3DBenchmark extends Benchmark {
+
+  private final static int WIDTH = 500;
+  private final static int HEIGHT = 500;
+  private final static int COUNT = 1000;
+
+  private String type;
+  private Graphics3D g3d;
+  private Matrix3f matrix = new Matrix3f();
+  private short[] colixes = new short[COUNT];
+  private int[] diameters = new int[COUNT];
+  private Point3f[] a = new Point3f[COUNT];
+  private Point3f[] b = new Point3f[COUNT];
+  private Point3f[] c = new Point3f[COUNT];
+
+  /**
+   * @param type  "sphere", "cylinder", or "triangle"
+   */
+  Graphics3DBenchmark(String type) {
+    super("Graphics3D." + type);
+    this.type = type;
+  }
+
+  void setUp(BenchmarkRunner runner) {
+    g3d = new Graphics3D(new Canvas());
+    g3d.setWindowParameters(WIDTH, HEIGHT, false);
+    g3d.setBackgroundArgb(0xFF000000);
+    g3d.setSlabAndDepthValues(0, 10000, false, 0, 0);
+    matrix.setIdentity();
+    // the same scene each time
+    Random random = new Random(1);
+    for (int i = 0; i < COUNT; i++) {
+      colixes[i] = Graphics3D.getColix(0xFF000000 | random.nextInt(0xFFFFFF));
+      diameters[i] = 4 + random.nextInt(40);
+      a[i] = getPoint(random);
+      b[i] = new Point3f(a[i]);
+      b[i].add(new Point3f(random.nextInt(80) - 40, random.nextInt(80) - 40,
+          random.nextInt(80) - 40));
+      c[i] = new Point3f(a[i]);
+      c[i].add(new Point3f(random.nextInt(80) - 40, random.nextInt(80) - 40,
+          random.nextInt(80) - 40));
+    }
+  }
+
+  private static Point3f getPoint(Random random) {
+    return new Point3f(random.nextInt(WIDTH), random.nextInt(HEIGHT),
+        100 + random.nextInt(5000));
+  }
+
+  long run() {
+    g3d.beginRendering(matrix);
+    if (type.equals("sphere")) {
+      for (int i = 0; i < COUNT; i++) {
+        g3d.setColix(colixes[i]);
+        g3d.fillSphere(diameters[i], (int) a[i].x, (int) a[i].y, (int) a[i].z);
+      }
+    } else if (type.equals("cylinder")) {
+      for (int i = 0; i < COUNT; i++)
+        g3d.fillCylinder(colixes[i], colixes[COUNT - 1 - i],
+            Graphics3D.ENDCAPS_SPHERICAL, diameters[i] / 4, (int) a[i].x,
+            (int) a[i].y, (int) a[i].z, (int) b[i].x, (int) b[i].y,
+            (int) b[i].z);
+    } else {
+      for (int i = 0; i < COUNT; i++) {
+        g3d.setColix(colixes[i]);
+        g3d.fillTriangle(a[i], b[i], c[i]);
+      }
+    }
+    g3d.endRendering();
+    return COUNT;
+  }
+
+  void tearDown() {
+    g3d.destroy();
+  }
+}
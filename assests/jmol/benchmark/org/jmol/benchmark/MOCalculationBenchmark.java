@@ -0,0 +1,98 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.benchmark;
+
+import java.util.BitSet;
+import java.util.Vector;
+
+import javax.vecmath.Point3f;
+
+import org.jmol.jvxl.data.VolumeData;
+import org.jmol.quantum.MOCalculation;
+import org.jmol.viewer.JmolConstants;
+
+/**
+ * Calculates one molecular orbital of water in an STO-3G basis over an
+ * n x n x n grid; one operation is one grid.
+ *
+ */
+class MOCalculationBenchmark extends Benchmark {
+
+  // O 1s, O 2sp, H 1s: { exponent, s coefficient [, p coefficient] }
+  private final static float[][] gaussians = {
+      { 130.70932f, 0.15432897f },
+      { 23.808861f, 0.53532814f },
+      { 6.4436083f, 0.44463454f },
+      { 5.0331513f, -0.09996723f, 0.15591627f },
+      { 1.1695961f, 0.39951283f, 0.60768372f },
+      { 0.380389f, 0.70011547f, 0.39195739f },
+      { 3.42525091f, 0.15432897f },
+      { 0.62391373f, 0.53532814f },
+      { 0.1688554f, 0.44463454f } };
+
+  private final static Point3f[] coordinates = { new Point3f(0, 0, 0),
+      new Point3f(0.757f, 0.586f, 0), new Point3f(-0.757f, 0.586f, 0) };
+
+  // O 1s, O 2s, O 2px, O 2py, O 2pz, H1 1s, H2 1s
+  private final static float[] moCoefficients = { -0.1f, 0.4f, 0.3f, 0.5f,
+      0.2f, 0.4f, -0.4f };
+
+  private int n;
+  private Vector shells = new Vector();
+  private BitSet bsSelected = new BitSet();
+  private VolumeData volumeData;
+
+  /**
+   * @param n  the number of grid points along each edge
+   */
+  MOCalculationBenchmark(int n) {
+    super("MOCalculation.water.sto3g." + n);
+    this.n = n;
+  }
+
+  void setUp(BenchmarkRunner runner) {
+    shells.addElement(new int[] { 0, JmolConstants.SHELL_S, 0, 3 });
+    shells.addElement(new int[] { 0, JmolConstants.SHELL_SP, 3, 3 });
+    shells.addElement(new int[] { 1, JmolConstants.SHELL_S, 6, 3 });
+    shells.addElement(new int[] { 2, JmolConstants.SHELL_S, 6, 3 });
+    bsSelected.set(0, coordinates.length);
+    volumeData = new VolumeData();
+    volumeData.setVoxelCounts(n, n, n);
+    volumeData.setVolumetricOrigin(-4, -4, -4);
+    float d = 8f / (n - 1);
+    volumeData.setVolumetricVector(0, d, 0, 0);
+    volumeData.setVolumetricVector(1, 0, d, 0);
+    volumeData.setVolumetricVector(2, 0, 0, d);
+  }
+
+  long run() {
+    // the calculation adds to the grid
+    volumeData.setVoxelData(new float[n][n][n]);
+    new MOCalculation().calculate(volumeData, bsSelected, "STO-3G",
+        coordinates, 0, shells, gaussians, null, null, moCoefficients, null,
+        true);
+    float[][][] voxelData = volumeData.getVoxelData();
+    return (long) (voxelData[n / 2][n / 2][n / 3] * 1e6);
+  }
+}
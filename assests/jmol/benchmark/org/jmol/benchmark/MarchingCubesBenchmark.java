@@ -0,0 +1,132 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.benchmark;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import javax.vecmath.Point3f;
+import javax.vecmath.Point3i;
+import javax.vecmath.Vector3f;
+
+import org.jmol.jvxl.api.VertexDataServer;
+import org.jmol.jvxl.calc.MarchingCubes;
+import org.jmol.jvxl.data.VolumeData;
+import org.jmol.jvxl.readers.Parameters;
+
+/**
+ * Runs Marching Cubes over an n x n x n cube of made-up data -- the sum
+ * of twenty Gaussian blobs -- at a cutoff of 0.5; one operation is one
+ * surface. The vertices and triangles are only counted, so the time is
+ * that of MarchingCubes itself.
+ *
+ */
+class MarchingCubesBenchmark extends Benchmark implements VertexDataServer {
+
+  private final static int BLOB_COUNT = 20;
+  private final static float CUTOFF = 0.5f;
+
+  private int n;
+  private VolumeData volumeData;
+  private Parameters params;
+  private int vertexCount;
+  private int triangleCount;
+
+  /**
+   * @param n  the number of grid points along each edge
+   */
+  MarchingCubesBenchmark(int n) {
+    super("MarchingCubes." + n);
+    this.n = n;
+  }
+
+  void setUp(BenchmarkRunner runner) {
+    float[][][] voxelData = new float[n][n][n];
+    Random random = new Random(1);
+    for (int b = 0; b < BLOB_COUNT; b++) {
+      float cx = n * (0.2f + 0.6f * random.nextFloat());
+      float cy = n * (0.2f + 0.6f * random.nextFloat());
+      float cz = n * (0.2f + 0.6f * random.nextFloat());
+      float w = n * (0.05f + 0.05f * random.nextFloat());
+      float f = -1 / (w * w);
+      for (int x = 0; x < n; x++)
+        for (int y = 0; y < n; y++)
+          for (int z = 0; z < n; z++) {
+            float dx = x - cx;
+            float dy = y - cy;
+            float dz = z - cz;
+            voxelData[x][y][z] += Math.exp(f * (dx * dx + dy * dy + dz * dz));
+          }
+    }
+    volumeData = new VolumeData();
+    volumeData.setVoxelCounts(n, n, n);
+    volumeData.setVolumetricOrigin(0, 0, 0);
+    float d = 10f / n;
+    volumeData.setVolumetricVector(0, d, 0, 0);
+    volumeData.setVolumetricVector(1, 0, d, 0);
+    volumeData.setVolumetricVector(2, 0, 0, d);
+    volumeData.setVoxelData(voxelData);
+    params = new Parameters();
+    params.cutoff = CUTOFF;
+  }
+
+  long run() {
+    vertexCount = triangleCount = 0;
+    params.bsExcluded = new BitSet[4];
+    new MarchingCubes(this, volumeData, params, null).getEdgeData();
+    return vertexCount + triangleCount;
+  }
+
+  ////////////// VertexDataServer //////////////
+
+  public int getSurfacePointIndexAndFraction(float cutoff,
+                                            boolean isCutoffAbsolute, int x,
+                                            int y, int z, Point3i offset,
+                                            int vertexA, int vertexB,
+                                            float valueA, float valueB,
+                                            Point3f pointA,
+                                            Vector3f edgeVector,
+                                            boolean isContourType,
+                                            float[] fReturn) {
+    float fraction = (cutoff - valueA) / (valueB - valueA);
+    fReturn[0] = fraction;
+    return vertexCount++;
+  }
+
+  public int addVertexCopy(Point3f vertexXYZ, float value, int assocVertex) {
+    return vertexCount++;
+  }
+
+  public int addTriangleCheck(int iA, int iB, int iC, int check, int check2,
+                              boolean isAbsolute, int color) {
+    return triangleCount++;
+  }
+
+  public float getValue(int x, int y, int z, int ptyz) {
+    return 0;
+  }
+
+  public void getPlane(int x) {
+  }
+}
@@ -0,0 +1,64 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.benchmark;
+
+import org.jmol.viewer.Viewer;
+
+/**
+ * Restores the loaded coordinates of a sample file and takes a fixed
+ * number of UFF minimization steps, on the calling thread; one operation
+ * is one "minimize" command, including setting up the force field.
+ *
+ */
+class MinimizationBenchmark extends Benchmark {
+
+  private String fileName;
+  private int steps;
+  private Viewer viewer;
+
+  MinimizationBenchmark(String fileName, int steps) {
+    super("Minimization.uff." + fileName + "." + steps);
+    this.fileName = fileName;
+    this.steps = steps;
+  }
+
+  void setUp(BenchmarkRunner runner) throws Exception {
+    viewer = runner.getViewer();
+    viewer.scriptWait("set useMinimizationThread false");
+    runner.load(fileName);
+    viewer.scriptWait("save coordinates benchmark");
+  }
+
+  long run() throws Exception {
+    String s = viewer.scriptWait("restore coordinates benchmark; minimize steps "
+        + steps + " silent");
+    if (s.indexOf("ERROR") >= 0)
+      throw new Exception(s);
+    return viewer.getAtomCount();
+  }
+
+  void tearDown() {
+    viewer.scriptWait("set useMinimizationThread true");
+  }
+}
@@ -0,0 +1,121 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.benchmark;
+
+import java.util.BitSet;
+
+import javax.vecmath.Point3f;
+
+import org.jmol.api.AtomIndexIterator;
+import org.jmol.bspt.Bspf;
+import org.jmol.bspt.CubeIterator;
+import org.jmol.bspt.GridIterator;
+import org.jmol.bspt.SpatialGrid;
+import org.jmol.modelset.Atom;
+import org.jmol.viewer.Viewer;
+
+/**
+ * Finds the neighbors within 4 Angstroms of every atom of 6adh.pdb;
+ * one operation is one pass over all the atoms.
+ *
+ *  bspt           -- a Bspf built once, as ModelCollection keeps it
+ *  grid           -- a SpatialGrid built once
+ *  iterator.bspt  -- the viewer's atom iterator over its Bspf
+ *  iterator.grid  -- the viewer's atom iterator over its SpatialGrid
+ *
+ */
+class NeighborBenchmark extends Benchmark {
+
+  private final static float RADIUS = 4.0f;
+
+  private String type;
+  private Atom[] atoms;
+  private int atomCount;
+  private CubeIterator cubeIterator;
+  private GridIterator gridIterator;
+  private AtomIndexIterator atomIterator;
+  private Viewer viewer;
+
+  /**
+   * @param type  "bspt", "grid", "iterator.bspt", or "iterator.grid"
+   */
+  NeighborBenchmark(String type) {
+    super("Neighbor." + type);
+    this.type = type;
+  }
+
+  void setUp(BenchmarkRunner runner) throws Exception {
+    viewer = runner.getViewer();
+    viewer.scriptWait("set useSpatialGrid " + type.endsWith("grid"));
+    runner.load("6adh.pdb");
+    atoms = viewer.getModelSet().atoms;
+    atomCount = viewer.getAtomCount();
+    BitSet bs = new BitSet();
+    bs.set(0, atomCount);
+    if (type.equals("bspt")) {
+      Bspf bspf = new Bspf(3);
+      for (int i = 0; i < atomCount; i++)
+        bspf.addTuple(0, atoms[i]);
+      cubeIterator = bspf.getCubeIterator(0);
+    } else if (type.equals("grid")) {
+      gridIterator = new SpatialGrid(atoms, bs, SpatialGrid.DEFAULT_CELL_SIZE)
+          .allocateIterator();
+    } else {
+      atomIterator = viewer.getSelectedAtomIterator(bs, false, false);
+    }
+  }
+
+  long run() {
+    long n = 0;
+    for (int i = 0; i < atomCount; i++) {
+      Point3f center = atoms[i];
+      if (cubeIterator != null) {
+        cubeIterator.initialize(center, RADIUS, false);
+        while (cubeIterator.hasMoreElements()) {
+          cubeIterator.nextElement();
+          n++;
+        }
+      } else if (gridIterator != null) {
+        gridIterator.initialize(center, RADIUS, false);
+        while (gridIterator.hasMoreElements()) {
+          gridIterator.nextElement();
+          n++;
+        }
+      } else {
+        viewer.setIteratorForAtom(atomIterator, i, RADIUS);
+        while (atomIterator.hasNext()) {
+          atomIterator.next();
+          n++;
+        }
+      }
+    }
+    return n;
+  }
+
+  void tearDown() {
+    if (atomIterator != null)
+      atomIterator.release();
+    viewer.scriptWait("set useSpatialGrid false");
+  }
+}
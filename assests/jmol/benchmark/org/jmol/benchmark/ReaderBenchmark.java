@@ -0,0 +1,123 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.StringReader;
+import java.util.Hashtable;
+import java.util.Random;
+
+import org.jmol.adapter.smarter.SmarterJmolAdapter;
+
+/**
+ * Parses a sample PDB file, or a generated CIF file, from memory into an
+ * AtomSetCollection; one operation is one file. Reading the file from
+ * disk and building the model set are not included.
+ *
+ * No CIF files come with Jmol, so the CIF is made up: 2000 atoms in the
+ * asymmetric unit of a P 1 21/c 1 cell.
+ *
+ */
+class ReaderBenchmark extends Benchmark {
+
+  private final static int CIF_ATOM_COUNT = 2000;
+
+  private String fileName;
+  private String data;
+  private SmarterJmolAdapter adapter = new SmarterJmolAdapter();
+
+  /**
+   * @param fileName  a PDB file, or null for the generated CIF file
+   */
+  ReaderBenchmark(String fileName) {
+    super(fileName == null ? "Reader.cif.generated" : "Reader.pdb." + fileName);
+    this.fileName = fileName;
+  }
+
+  void setUp(BenchmarkRunner runner) throws Exception {
+    data = (fileName == null ? getCif() : getFileAsString(runner
+        .getDataFile(fileName)));
+  }
+
+  private static String getFileAsString(String path) throws Exception {
+    StringBuffer sb = new StringBuffer();
+    BufferedReader br = new BufferedReader(new FileReader(path));
+    String line;
+    while ((line = br.readLine()) != null)
+      sb.append(line).append('\n');
+    br.close();
+    return sb.toString();
+  }
+
+  private static String getCif() {
+    StringBuffer sb = new StringBuffer();
+    sb.append("data_generated\n")
+      .append("_cell_length_a 20.000\n")
+      .append("_cell_length_b 25.000\n")
+      .append("_cell_length_c 30.000\n")
+      .append("_cell_angle_alpha 90.0\n")
+      .append("_cell_angle_beta 105.0\n")
+      .append("_cell_angle_gamma 90.0\n")
+      .append("_symmetry_space_group_name_H-M 'P 1 21/c 1'\n")
+      .append("loop_\n")
+      .append("_symmetry_equiv_pos_as_xyz\n")
+      .append("'x, y, z'\n")
+      .append("'-x, y+1/2, -z+1/2'\n")
+      .append("'-x, -y, -z'\n")
+      .append("'x, -y-1/2, z-1/2'\n")
+      .append("loop_\n")
+      .append("_atom_site_label\n")
+      .append("_atom_site_type_symbol\n")
+      .append("_atom_site_fract_x\n")
+      .append("_atom_site_fract_y\n")
+      .append("_atom_site_fract_z\n")
+      .append("_atom_site_U_iso_or_equiv\n");
+    String[] elements = { "C", "C", "C", "N", "O", "H", "H", "S" };
+    Random random = new Random(1);
+    for (int i = 0; i < CIF_ATOM_COUNT; i++) {
+      String e = elements[random.nextInt(elements.length)];
+      sb.append(e).append(i + 1).append(' ').append(e).append(' ')
+        .append(getFraction(random)).append(' ')
+        .append(getFraction(random)).append(' ')
+        .append(getFraction(random)).append(" 0.0250\n");
+    }
+    return sb.toString();
+  }
+
+  private static String getFraction(Random random) {
+    return "0." + (10000 + random.nextInt(90000));
+  }
+
+  long run() throws Exception {
+    Object reader = adapter.getAtomSetCollectionReader("benchmark", null,
+        new BufferedReader(new StringReader(data)), new Hashtable());
+    if (reader instanceof String)
+      throw new Exception((String) reader);
+    Object atomSetCollection = adapter.getAtomSetCollection(reader);
+    if (atomSetCollection instanceof String)
+      throw new Exception((String) atomSetCollection);
+    return adapter.getAtomCount(atomSetCollection);
+  }
+}
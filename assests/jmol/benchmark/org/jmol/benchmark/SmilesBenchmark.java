@@ -0,0 +1,66 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.benchmark;
+
+import java.util.BitSet;
+
+import org.jmol.api.SmilesMatcherInterface;
+import org.jmol.modelset.Atom;
+import org.jmol.viewer.Viewer;
+
+/**
+ * Finds all matches of a SMARTS pattern among the atoms of 6adh.pdb;
+ * one operation is one search.
+ *
+ */
+class SmilesBenchmark extends Benchmark {
+
+  private String pattern;
+  private SmilesMatcherInterface matcher;
+  private Atom[] atoms;
+  private int atomCount;
+  private BitSet bsSelected = new BitSet();
+
+  SmilesBenchmark(String name, String pattern) {
+    super("Smiles." + name);
+    this.pattern = pattern;
+  }
+
+  void setUp(BenchmarkRunner runner) throws Exception {
+    runner.load("6adh.pdb");
+    Viewer viewer = runner.getViewer();
+    matcher = viewer.getSmilesMatcher();
+    atoms = viewer.getModelSet().atoms;
+    atomCount = viewer.getAtomCount();
+    bsSelected.set(0, atomCount);
+  }
+
+  long run() throws Exception {
+    BitSet bs = matcher.getSubstructureSet(pattern, atoms, atomCount,
+        bsSelected, true, false);
+    if (bs == null)
+      throw new Exception(matcher.getLastException());
+    return bs.cardinality();
+  }
+}
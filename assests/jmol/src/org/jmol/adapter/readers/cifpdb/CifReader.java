@@ -81,6 +81,7 @@ public class CifReader extends AtomSetCollectionReader implements JmolLineReader
      * than that, we are checking here for proper CIF syntax, and Jmol will
      * report if it finds data where a key is supposed to be.
      */
+    setReadAhead();
     line = "";
     boolean skipping = false;
     while ((key = tokenizer.peekToken()) != null) {
@@ -29,6 +29,7 @@ import org.jmol.adapter.smarter.*;
 
 import org.jmol.api.JmolAdapter;
 import org.jmol.util.Logger;
+import org.jmol.util.Parser;
 import org.jmol.util.TextFormat;
 
 import java.util.Hashtable;
@@ -102,15 +103,65 @@ public class PdbReader extends AtomSetCollectionReader {
  protected void initializeReader() throws Exception {
    atomSetCollection.setAtomSetCollectionAuxiliaryInfo("isPDB", Boolean.TRUE);
    pdbHeader = (getHeader ? new StringBuffer() : null);
+   setReadAhead();
  }
 
+  /**
+   * The fields of an ATOM or HETATM record that depend only on the line,
+   * parsed ahead of time on another thread.
+   */
+  private static class AtomRecord {
+    int serial;
+    int sequenceNumber;
+    float x, y, z;
+    float bfactor;
+    int occupancy;
+  }
+
+  protected Object[] preparseLines(String[] lines, int n) {
+    // PqrReader gets its occupancy and B factor in its own way
+    boolean isPDB = (getClass() == PdbReader.class);
+    Object[] records = null;
+    int[] next = new int[1];
+    for (int i = 0; i < n; i++) {
+      String line = lines[i];
+      if (line.length() < 6
+          || !line.startsWith("ATOM  ") && !line.startsWith("HETATM"))
+        continue;
+      if (records == null)
+        records = new Object[n];
+      AtomRecord r = new AtomRecord();
+      next[0] = 6;
+      r.serial = Parser.parseInt(line, 11, next);
+      next[0] = 22;
+      r.sequenceNumber = Parser.parseInt(line, 26, next);
+      next[0] = 30;
+      r.x = Parser.parseFloat(line, 38, next);
+      next[0] = 38;
+      r.y = Parser.parseFloat(line, 46, next);
+      next[0] = 46;
+      r.z = Parser.parseFloat(line, 54, next);
+      if (isPDB) {
+        next[0] = 60;
+        r.bfactor = Parser.parseFloat(line, 66, next);
+        next[0] = 54;
+        r.occupancy = getOccupancy(Parser.parseFloat(line, 60, next));
+      }
+      records[i] = r;
+    }
+    return records;
+  }
+
  protected boolean checkLine() throws Exception {
     int ptOption = ((lineLength = line.length()) < 6 ? -1 : lineOptions
         .indexOf(line.substring(0, 6))) >> 3;
     boolean isAtom = (ptOption == 0 || ptOption == 1);
     boolean isModel = (ptOption == 2);
-    if (isAtom)
-      serial = parseInt(line, 6, 11);
+    AtomRecord record = null;
+    if (isAtom) {
+      record = (AtomRecord) getPreparsedLine();
+      serial = (record == null ? parseInt(line, 6, 11) : record.serial);
+    }
     boolean isNewModel = ((isTrajectory || isSequential) && !isMultiModel && isAtom && serial == 1);
     if (getHeader) {
       if (isAtom || isModel)
@@ -146,7 +197,7 @@ public class PdbReader extends AtomSetCollectionReader {
       return true;
     if (isAtom) {
       getHeader = false;
-      atom(serial);
+      atom(serial, record);
       return true;
     }
     switch (ptOption) {
@@ -518,7 +569,7 @@ REMARK 290 REMARK: NULL
   private String lastAtomData;
   private int lastAtomIndex;
   
-  private void atom(int serial) {
+  private void atom(int serial, AtomRecord record) {
     // get the group so that we can check the formul
     if (serial > maxSerial)
       maxSerial = serial;
@@ -527,7 +578,8 @@ REMARK 290 REMARK: NULL
     char chainID = line.charAt(21);
     if (chainAtomCounts != null)
       chainAtomCounts[chainID]++;
-    int sequenceNumber = parseInt(line, 22, 26);
+    int sequenceNumber = (record == null ? parseInt(line, 22, 26)
+        : record.sequenceNumber);
     char insertionCode = line.charAt(26);
     String group3 = parseToken(line, 17, 20);
     if (group3 == null) {
@@ -574,17 +626,25 @@ REMARK 290 REMARK: NULL
       }
     }
 
-    float bfactor = readBFactor();
-    int occupancy = readOccupancy();
+    boolean isPDB = (record != null && getClass() == PdbReader.class);
+    float bfactor = (isPDB ? record.bfactor : readBFactor());
+    int occupancy = (isPDB ? record.occupancy : readOccupancy());
     float partialCharge = readPartialCharge();
     float radius = readRadius();
     
     /****************************************************************
      * coordinates
      ****************************************************************/
-    float x = parseFloat(line, 30, 38);
-    float y = parseFloat(line, 38, 46);
-    float z = parseFloat(line, 46, 54);
+    float x, y, z;
+    if (record == null) {
+      x = parseFloat(line, 30, 38);
+      y = parseFloat(line, 38, 46);
+      z = parseFloat(line, 46, 54);
+    } else {
+      x = record.x;
+      y = record.y;
+      z = record.z;
+    }
     /****************************************************************/
     Atom atom = new Atom();
     atom.atomName = atomName;
@@ -630,11 +690,11 @@ REMARK 290 REMARK: NULL
      * read the occupancy from cols 55-60 (1-based)
      * should be in the range 0.00 - 1.00
      ****************************************************************/
-    int occupancy = 100;
-    float floatOccupancy = parseFloat(line, 54, 60);
-    if (!Float.isNaN(floatOccupancy))
-      occupancy = (int) (floatOccupancy * 100);
-    return occupancy;
+    return getOccupancy(parseFloat(line, 54, 60));
+  }
+
+  private static int getOccupancy(float floatOccupancy) {
+    return (Float.isNaN(floatOccupancy) ? 100 : (int) (floatOccupancy * 100));
   }
   
   protected float readBFactor() {
@@ -26,10 +26,7 @@ package org.jmol.adapter.readers.more;
 
 import org.jmol.adapter.smarter.*;
 import org.jmol.util.Logger;
-
-import java.util.Vector;
-
-import javax.vecmath.Point3f;
+import org.jmol.util.TrajectorySteps;
 
 /**
  * Amber Coordinate File Reader
@@ -40,14 +37,16 @@ import javax.vecmath.Point3f;
 
 public class MdCrdReader extends AtomSetCollectionReader {
 
-  private Vector trajectorySteps;
+  private TrajectorySteps trajectorySteps;
 
   protected void initializeReader() {
     // add a dummy atom, just so not "no atoms found"
     atomSetCollection.addAtom(new Atom());
-    trajectorySteps = (Vector) htParams.get("trajectorySteps");
+    trajectorySteps = (TrajectorySteps) htParams.get("trajectorySteps");
     if (trajectorySteps == null)
-      htParams.put("trajectorySteps", trajectorySteps = new Vector());
+      htParams.put("trajectorySteps", trajectorySteps = new TrajectorySteps(
+          htParams.containsKey("trajectoryCompressed"), htParams
+              .containsKey("trajectoryPaged")));
   }
 
   protected boolean checkLine() throws Exception {
@@ -65,10 +64,10 @@ public class MdCrdReader extends AtomSetCollectionReader {
     int floatCount = templateAtomCount * 3 + (isPeriodic ? 3 : 0);
     while (true)
       if (doGetModel(++modelNumber)) {
-        Point3f[] trajectoryStep = new Point3f[atomCount];
+        float[] trajectoryStep = new float[atomCount * 3];
         if (!getTrajectoryStep(trajectoryStep, isPeriodic))
           return;
-        trajectorySteps.add(trajectoryStep);
+        trajectorySteps.addStep(trajectoryStep, atomCount);
         if (isLastModel(modelNumber))
           return;
       } else {
@@ -91,29 +90,29 @@ public class MdCrdReader extends AtomSetCollectionReader {
     return parseFloat(line.substring(ptFloat - 8, ptFloat));
   }
 
-  private Point3f getPoint() throws Exception {
-    float x = getFloat();
-    float y = getFloat();
-    float z = getFloat();
-    return (Float.isNaN(z) ? null : new Point3f(x, y, z));
-  }
-
-  private boolean getTrajectoryStep(Point3f[] trajectoryStep, boolean isPeriodic)
+  private boolean getTrajectoryStep(float[] trajectoryStep, boolean isPeriodic)
       throws Exception {
-    int atomCount = trajectoryStep.length;
-    int n = -1;
+    int n = trajectoryStep.length;
+    int pt = 0;
     for (int i = 0; i < templateAtomCount; i++) {
-      Point3f pt = getPoint();
-      if (pt == null)
+      float x = getFloat();
+      float y = getFloat();
+      float z = getFloat();
+      if (Float.isNaN(z))
         return false;
       if (bsFilter == null || bsFilter.get(i)) {
-        if (++n == atomCount)
+        if (pt == n)
           return false;
-        trajectoryStep[n] = pt;
+        trajectoryStep[pt++] = x;
+        trajectoryStep[pt++] = y;
+        trajectoryStep[pt++] = z;
       }
     }
-    if (isPeriodic)
-      getPoint(); // why? not in specs?
+    if (isPeriodic) {
+      getFloat(); // why? not in specs?
+      getFloat();
+      getFloat();
+    }
     return (line != null);
   }
 
@@ -23,11 +23,13 @@
  */
 
 package org.jmol.adapter.smarter;
+import java.io.IOException;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
 import java.util.Properties;
 import java.util.BitSet;
+import java.util.concurrent.Executor;
 
 import javax.vecmath.Matrix3f;
 import javax.vecmath.Matrix4f;
@@ -37,6 +39,7 @@ import javax.vecmath.Vector3f;
 
 import org.jmol.api.Interface;
 import org.jmol.api.JmolAdapter;
+import org.jmol.api.JmolLoadMonitor;
 import org.jmol.api.SymmetryInterface;
 import org.jmol.api.VolumeDataInterface;
 import org.jmol.util.ArrayUtil;
@@ -44,6 +47,7 @@ import org.jmol.util.BitSetUtil;
 import org.jmol.util.Logger;
 import org.jmol.util.Parser;
 import org.jmol.util.TextFormat;
+import org.jmol.util.TrajectorySteps;
 import org.jmol.viewer.JmolConstants;
 
 public class AtomSetCollection {
@@ -144,8 +148,10 @@ public class AtomSetCollection {
   boolean coordinatesAreFractional;
   private boolean isTrajectory;    
   private int trajectoryStepCount = 0;
-  private Point3f[] trajectoryStep;
-  private Vector trajectorySteps;
+  private float[] trajectoryStep;
+  private TrajectorySteps trajectorySteps;
+  private boolean trajectoryCompressed;
+  private boolean trajectoryPaged;
   boolean doFixPeriodic;
   public void setDoFixPeriodic() {
     doFixPeriodic = true;
@@ -155,11 +161,23 @@ public class AtomSetCollection {
   // expands to 22 for cartesianToFractional matrix as array (PDB)
 
   private boolean allowMultiple;
+  private Object executor;
+  private JmolLoadMonitor loadMonitor;
+  private String loadFileName;
   
   public AtomSetCollection(String fileTypeName,
       AtomSetCollectionReader atomSetCollectionReader) {
     this.fileTypeName = fileTypeName;
+    if (atomSetCollectionReader != null) {
+      executor = atomSetCollectionReader.executor;
+      loadMonitor = atomSetCollectionReader.loadMonitor;
+      loadFileName = atomSetCollectionReader.fileName;
+    }
     allowMultiple = (atomSetCollectionReader == null || atomSetCollectionReader.desiredVibrationNumber < 0);
+    if (atomSetCollectionReader != null && atomSetCollectionReader.htParams != null) {
+      trajectoryCompressed = atomSetCollectionReader.htParams.containsKey("trajectoryCompressed");
+      trajectoryPaged = atomSetCollectionReader.htParams.containsKey("trajectoryPaged");
+    }
     // set the default PATH properties as defined in the SmarterJmolAdapter
     Properties p = new Properties();
     p.put("PATH_KEY", SmarterJmolAdapter.PATH_KEY);
@@ -212,7 +230,7 @@ public class AtomSetCollection {
   
   public void setTrajectory() {
     if (!isTrajectory)
-      trajectorySteps = new Vector();
+      trajectorySteps = new TrajectorySteps(trajectoryCompressed, trajectoryPaged);
     isTrajectory = true;
     addTrajectoryStep();
   }
@@ -748,6 +766,7 @@ public class AtomSetCollection {
         : 1 // not checking
     );
     cartesians = new Point3f[cartesianCount];
+    cartesianHash = (checkSpecial ? new SymmetryPointHash(cartesians) : null);
     for (int i = 0; i < noSymmetryCount; i++)
       atoms[i + iAtomFirst].bsSymmetry = new BitSet(operationCount
           * (nCells + 1));
@@ -791,8 +810,11 @@ public class AtomSetCollection {
             atom.bsSymmetry.set(0);
             if (checkSymmetryRange)
               setSymmetryMinMax(c);
-            if (pt < cartesianCount)
+            if (pt < cartesianCount) {
               cartesians[pt] = c;
+              if (cartesianHash != null)
+                cartesianHash.add(pt);
+            }
           }
           if (checkRangeNoSymmetry) {
             rminx -= absRange;
@@ -803,7 +825,7 @@ public class AtomSetCollection {
             rmaxz += absRange;
           }
           cell555Count = pt = symmetryAddAtoms(iAtomFirst, noSymmetryCount, 0,
-              0, 0, 0, pt, iCell * operationCount);
+              0, 0, 0, pt, iCell * operationCount, null);
         }
     if (checkRange111) {
       rminx -= absRange;
@@ -813,14 +835,41 @@ public class AtomSetCollection {
       rmaxy += absRange;
       rmaxz += absRange;
     }
+    // with an executor, the points for the next few translations are
+    // calculated in parallel with adding the atoms of this one; the atoms
+    // are still added translation by translation, in the same order
+    SymmetryCell[] cells = null;
+    int nAhead = 0;
+    if (executor != null && nCells > 2) {
+      cells = new SymmetryCell[nCells];
+      Atom[] baseAtoms = new Atom[noSymmetryCount];
+      System.arraycopy(atoms, iAtomFirst, baseAtoms, 0, noSymmetryCount);
+      iCell = 0;
+      for (int tx = minXYZ.x; tx < maxXYZ.x; tx++)
+        for (int ty = minXYZ.y; ty < maxXYZ.y; ty++)
+          for (int tz = minXYZ.z; tz < maxXYZ.z; tz++, iCell++)
+            if (tx != 0 || ty != 0 || tz != 0)
+              cells[iCell] = new SymmetryCell(baseAtoms, tx, ty, tz);
+      nAhead = Runtime.getRuntime().availableProcessors();
+    }
     iCell = 0;
+    int iCellNext = 0;
     for (int tx = minXYZ.x; tx < maxXYZ.x; tx++)
       for (int ty = minXYZ.y; ty < maxXYZ.y; ty++)
         for (int tz = minXYZ.z; tz < maxXYZ.z; tz++) {
+          float[] cellPoints = null;
+          if (cells != null) {
+            for (; iCellNext < nCells && iCellNext <= iCell + nAhead; iCellNext++)
+              if (cells[iCellNext] != null)
+                ((Executor) executor).execute(cells[iCellNext]);
+            if (cells[iCell] != null)
+              cellPoints = cells[iCell].getPoints();
+            cells[iCell] = null;
+          }
           iCell++;
           if (tx != 0 || ty != 0 || tz != 0)
             pt = symmetryAddAtoms(iAtomFirst, noSymmetryCount, tx, ty, tz,
-                cell555Count, pt, iCell * operationCount);
+                cell555Count, pt, iCell * operationCount, cellPoints);
         }
     if (iCell * noSymmetryCount == atomCount - iAtomFirst)
       appendAtomProperties(iCell);
@@ -837,6 +886,7 @@ public class AtomSetCollection {
     // turn off global fractional conversion -- this will be model by model
     setAtomSetAuxiliaryInfo("hasSymmetry", Boolean.TRUE);
     setGlobalBoolean(GLOBAL_SYMMETRY);
+    cartesianHash = null;
   }
 
   
@@ -852,6 +902,7 @@ public class AtomSetCollection {
   }
 
   Point3f[] cartesians;
+  private SymmetryPointHash cartesianHash;
   int bondCount0;
   int bondIndex0;
   boolean applySymmetryToBonds = false;
@@ -865,9 +916,127 @@ public class AtomSetCollection {
   private final Point3f ptTemp1 = new Point3f();
   private final Point3f ptTemp2 = new Point3f();
   
+  /**
+   * the part of symmetryAddAtoms that depends only on the operation, the
+   * atom, and the lattice translation
+   * 
+   * @param iSym
+   * @param atom
+   * @param transX
+   * @param transY
+   * @param transZ
+   * @param offset     the translation, for packing
+   * @param ptAtom     set to the fractional coordinates
+   * @param cartesian  set to the cartesian coordinates
+   * @return false if this point is outside the cells being packed
+   */
+  private boolean getSymmetryPoint(int iSym, Point3f atom, int transX,
+                                   int transY, int transZ, Point3f offset,
+                                   Point3f ptAtom, Point3f cartesian) {
+    symmetry.newSpaceGroupPoint(iSym, atom, ptAtom, transX, transY, transZ);
+    cartesian.set(ptAtom);
+    symmetry.toCartesian(cartesian, false);
+    if (doPackUnitCell) {
+      symmetry.toUnitCell(cartesian, offset);
+      ptAtom.set(cartesian);
+      symmetry.toFractional(ptAtom, false);
+      if (!isWithinCell(ptAtom, minXYZ.x + 1, maxXYZ.x - 1, minXYZ.y + 1,
+          maxXYZ.y - 1, minXYZ.z + 1, maxXYZ.z - 1))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * The points of getSymmetryPoint() for all operations and atoms of one
+   * lattice translation, calculated on the executor while symmetryAddAtoms
+   * works through the translations before it. For each operation and atom,
+   * in order: fractional x, y, z and cartesian x, y, z, or NaN if the point
+   * is not in the cells being packed. If no worker has started on a
+   * translation by the time it is needed, the loading thread calculates it.
+   */
+  private class SymmetryCell implements Runnable {
+    private Atom[] baseAtoms;
+    private int transX, transY, transZ;
+    private float[] points;
+    private boolean isStarted, isDone;
+
+    SymmetryCell(Atom[] baseAtoms, int transX, int transY, int transZ) {
+      this.baseAtoms = baseAtoms;
+      this.transX = transX;
+      this.transY = transY;
+      this.transZ = transZ;
+    }
+
+    private synchronized boolean claim() {
+      if (isStarted)
+        return false;
+      return isStarted = true;
+    }
+
+    public void run() {
+      if (claim())
+        calculate();
+    }
+
+    private void calculate() {
+      float[] points = null;
+      try {
+        int nOperations = symmetry.getSpaceGroupOperationCount();
+        int n = baseAtoms.length;
+        points = new float[nOperations * n * 6];
+        Point3f offset = new Point3f(transX, transY, transZ);
+        Point3f ptAtom = new Point3f();
+        Point3f cartesian = new Point3f();
+        for (int iSym = 0, p = 0; iSym < nOperations; iSym++)
+          for (int i = 0; i < n; i++, p += 6) {
+            if (!getSymmetryPoint(iSym, baseAtoms[i], transX, transY, transZ,
+                offset, ptAtom, cartesian)) {
+              points[p] = Float.NaN;
+              continue;
+            }
+            points[p] = ptAtom.x;
+            points[p + 1] = ptAtom.y;
+            points[p + 2] = ptAtom.z;
+            points[p + 3] = cartesian.x;
+            points[p + 4] = cartesian.y;
+            points[p + 5] = cartesian.z;
+          }
+      } catch (RuntimeException e) {
+        // symmetryAddAtoms will do it
+        Logger.error("AtomSetCollection.SymmetryCell: " + e);
+        points = null;
+      } finally {
+        synchronized (this) {
+          this.points = points;
+          isDone = true;
+          notifyAll();
+        }
+      }
+    }
+
+    /**
+     * @return the points, or null to calculate them in symmetryAddAtoms
+     */
+    float[] getPoints() {
+      if (claim())
+        calculate();
+      synchronized (this) {
+        while (!isDone)
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            return null;
+          }
+        return points;
+      }
+    }
+  }
+
   private int symmetryAddAtoms(int iAtomFirst, int noSymmetryCount, int transX,
                                int transY, int transZ, int baseCount, int pt,
-                               int iCellOpPt) throws Exception {
+                               int iCellOpPt, float[] cellPoints)
+      throws Exception {
     boolean isBaseCell = (baseCount == 0);
     boolean addBonds = (bondCount0 > bondIndex0 && applySymmetryToBonds);
     int[] atomMap = (addBonds ? new int[noSymmetryCount] : null);
@@ -911,16 +1080,18 @@ public class AtomSetCollection {
 
       int pt0 = (checkSpecial ? pt : checkRange111 ? baseCount : 0);
       for (int i = iAtomFirst; i < atomMax; i++) {
-        symmetry.newSpaceGroupPoint(iSym, atoms[i], ptAtom, transX, transY, transZ);
         Atom special = null;
-        Point3f cartesian = new Point3f(ptAtom);
-        symmetry.toCartesian(cartesian, false);
-        if (doPackUnitCell) {
-          symmetry.toUnitCell(cartesian, ptOffset);
-          ptAtom.set(cartesian);
-          symmetry.toFractional(ptAtom, false);
-          if (!isWithinCell(ptAtom, minXYZ.x + 1, maxXYZ.x - 1, minXYZ.y + 1, maxXYZ.y - 1, minXYZ.z + 1, maxXYZ.z - 1))
+        Point3f cartesian = new Point3f();
+        if (cellPoints == null) {
+          if (!getSymmetryPoint(iSym, atoms[i], transX, transY, transZ,
+              ptOffset, ptAtom, cartesian))
             continue;
+        } else {
+          int p = (iSym * noSymmetryCount + i - iAtomFirst) * 6;
+          if (Float.isNaN(cellPoints[p]))
+            continue;
+          ptAtom.set(cellPoints[p], cellPoints[p + 1], cellPoints[p + 2]);
+          cartesian.set(cellPoints[p + 3], cellPoints[p + 4], cellPoints[p + 5]);
         }
         if (checkSymmetryMinMax)
           setSymmetryMinMax(cartesian);
@@ -932,14 +1103,21 @@ public class AtomSetCollection {
           float minDist2 = Float.MAX_VALUE;
           if (checkSymmetryRange && !isInSymmetryRange(cartesian))
             continue;
-          for (int j = pt0; --j >= 0;) {
-            float d2 = cartesian.distanceSquared(cartesians[j]);
-            if (checkSpecial && d2 < 0.0001) {
+          if (checkSpecial && !checkRange111) {
+            // the same atom as for the loop below, but from a hash
+            int j = cartesianHash.findLast(cartesian, pt0);
+            if (j >= 0)
               special = atoms[iAtomFirst + j];
-              break;
+          } else {
+            for (int j = pt0; --j >= 0;) {
+              float d2 = cartesian.distanceSquared(cartesians[j]);
+              if (checkSpecial && d2 < 0.0001) {
+                special = atoms[iAtomFirst + j];
+                break;
+              }
+              if (checkRange111 && j < baseCount && d2 < minDist2)
+                minDist2 = d2;
             }
-            if (checkRange111 && j < baseCount && d2 < minDist2)
-              minDist2 = d2;
           }
           if (checkRange111 && minDist2 > range2)
             continue;
@@ -958,8 +1136,12 @@ public class AtomSetCollection {
           atom1.atomSite = atomSite;
           atom1.bsSymmetry = BitSetUtil.setBit(iCellOpPt + iSym);
           atom1.bsSymmetry.set(iSym);
-          if (addCartesian)
-            cartesians[pt++] = cartesian;
+          if (addCartesian) {
+            cartesians[pt] = cartesian;
+            if (cartesianHash != null)
+              cartesianHash.add(pt);
+            pt++;
+          }
           if (atoms[i].ellipsoid != null) {
             Object axes = atoms[i].ellipsoid[0];
             Object lengths = atoms[i].ellipsoid[1];
@@ -1168,25 +1350,24 @@ public class AtomSetCollection {
   ////////////////////////////////////////////////////////////////
   
   private void addTrajectoryStep() {
-    trajectoryStep = new Point3f[atomCount];
-    Point3f[] prevSteps = (trajectoryStepCount == 0 ? null 
-        : (Point3f[]) trajectorySteps.get(trajectoryStepCount - 1));
-    for (int i = 0; i < atomCount; i++) {
-      Point3f pt = new Point3f(atoms[i]);
-      if (doFixPeriodic && prevSteps != null)
-        pt = fixPeriodic(pt, prevSteps[i]);
-      trajectoryStep[i] = pt;
+    // the previous step is kept as read, even if it is stored compressed
+    float[] prevStep = (trajectoryStepCount == 0 ? null : trajectoryStep);
+    trajectoryStep = new float[atomCount * 3];
+    for (int i = 0, pt = 0; i < atomCount; i++) {
+      Atom atom = atoms[i];
+      if (doFixPeriodic && prevStep != null && pt < prevStep.length) {
+        trajectoryStep[pt] = fixPoint(atom.x, prevStep[pt++]);
+        trajectoryStep[pt] = fixPoint(atom.y, prevStep[pt++]);
+        trajectoryStep[pt] = fixPoint(atom.z, prevStep[pt++]);
+      } else {
+        trajectoryStep[pt++] = atom.x;
+        trajectoryStep[pt++] = atom.y;
+        trajectoryStep[pt++] = atom.z;
+      }
     }
-    trajectorySteps.addElement(trajectoryStep);
+    trajectorySteps.addStep(trajectoryStep, atomCount);
     trajectoryStepCount++;
   }
-  
-  private Point3f fixPeriodic(Point3f pt, Point3f pt0) {
-    pt.x = fixPoint(pt.x, pt0.x);   
-    pt.y = fixPoint(pt.y, pt0.y);   
-    pt.z = fixPoint(pt.z, pt0.z);   
-    return pt;
-  }
 
   private float fixPoint(float x, float x0) {
     while (x - x0 > 0.9)
@@ -1196,7 +1377,7 @@ public class AtomSetCollection {
     return x;
   }
 
-  void finalizeTrajectory(Vector trajectorySteps) {
+  void finalizeTrajectory(TrajectorySteps trajectorySteps) {
     this.trajectorySteps = trajectorySteps;
     trajectoryStepCount = trajectorySteps.size();
     finalizeTrajectory(false);
@@ -1206,13 +1387,21 @@ public class AtomSetCollection {
     if (trajectoryStepCount == 0)
       return;
     //reset atom positions to original trajectory
-    Point3f[] trajectory = (Point3f[])trajectorySteps.get(0);
-    for (int i = 0; i < atomCount; i++)
-      atoms[i].set(trajectory[i]);
+    float[] trajectory = trajectorySteps.getStep(0, null);
+    int n = Math.min(atomCount, trajectorySteps.getAtomCount(0));
+    for (int i = 0, pt = 0; i < n; i++)
+      atoms[i].set(trajectory[pt++], trajectory[pt++], trajectory[pt++]);
     setAtomSetCollectionAuxiliaryInfo("trajectorySteps", trajectorySteps);
   }
  
   public void newAtomSet() {
+    if (loadMonitor != null && atomSetCount > 0 && allowMultiple
+        && !isTrajectory && loadMonitor.modelRead(atomSetCount))
+      try {
+        loadMonitor.setModelsRead(getAtomSetsRead());
+      } catch (Exception e) {
+        // no preview this time
+      }
     if (!allowMultiple && currentAtomSetIndex >= 0)
       discardPreviousAtoms();
     bondIndex0 = bondCount;
@@ -1238,6 +1427,51 @@ public class AtomSetCollection {
     setAtomSetAuxiliaryInfo("title", collectionName);    
   }
 
+  /**
+   * A copy of the atom sets read so far, for a preview while the file is
+   * still being read. Called just before a new atom set is started, so all
+   * of them are complete. Auxiliary information is copied by table, not by
+   * value, and structures are shared rather than added, since addStructure
+   * would reassign their model index.
+   * 
+   * @return a separate collection, ready for the ModelLoader
+   * @throws Exception 
+   */
+  private AtomSetCollection getAtomSetsRead() throws Exception {
+    AtomSetCollection c = new AtomSetCollection(fileTypeName, null);
+    c.collectionName = collectionName;
+    c.atomSetCollectionAuxiliaryInfo = (Hashtable) atomSetCollectionAuxiliaryInfo
+        .clone();
+    String fileType = fileTypeName;
+    if (fileType.indexOf("(") >= 0)
+      fileType = fileType.substring(0, fileType.indexOf("("));
+    for (int i = 0, iAtom = 0; i < atomSetCount; i++) {
+      c.newAtomSet();
+      c.atomSetAuxiliaryInfo[i] = (Hashtable) atomSetAuxiliaryInfo[i].clone();
+      c.setAtomSetAuxiliaryInfo("fileName", loadFileName, i);
+      c.setAtomSetAuxiliaryInfo("fileType", fileType, i);
+      c.atomSetNumbers[i] = atomSetNumbers[i];
+      for (int j = atomSetAtomCounts[i]; --j >= 0;)
+        c.addAtom(atoms[iAtom++].cloneAtom());
+    }
+    for (int i = 0; i < bondCount; i++)
+      if (bonds[i].atomIndex1 < c.atomCount
+          && bonds[i].atomIndex2 < c.atomCount) {
+        c.currentAtomSetIndex = atoms[bonds[i].atomIndex1].atomSetIndex;
+        c.addNewBond(bonds[i].atomIndex1, bonds[i].atomIndex2, bonds[i].order);
+      }
+    c.currentAtomSetIndex = atomSetCount - 1;
+    for (int i = 0; i < structureCount; i++)
+      if (structures[i].modelIndex < atomSetCount) {
+        if (c.structureCount == c.structures.length)
+          c.structures = (Structure[]) ArrayUtil.setLength(c.structures,
+              c.structureCount + 32);
+        c.structures[c.structureCount++] = structures[i];
+      }
+    c.freeze();
+    return c;
+  }
+
   /**
   * Sets the name for the current AtomSet
   *
@@ -1429,6 +1663,67 @@ public class AtomSetCollection {
     return atomSetAuxiliaryInfo[atomSetIndex];
   }
 
+  ////////////////////////////////////////////////////////////////
+  // binary model cache -- see AtomSetCollectionCache
+  ////////////////////////////////////////////////////////////////
+
+  /**
+   * Saves what is needed of a finished collection; the order here must
+   * match that of AtomSetCollection(AtomSetCollectionCache).
+   * 
+   * @param cache
+   * @throws IOException
+   */
+  void writeCache(AtomSetCollectionCache cache) throws IOException {
+    cache.writeString(fileTypeName);
+    cache.writeString(collectionName);
+    cache.writeValue(atomSetCollectionAuxiliaryInfo);
+    cache.writeInt(atomSetCount);
+    cache.writeInt(currentAtomSetIndex);
+    cache.writeValue(atomSetNumbers);
+    cache.writeValue(atomSetAtomCounts);
+    cache.writeValue(atomSetBondCounts);
+    for (int i = 0; i < atomSetCount; i++)
+      cache.writeValue(atomSetAuxiliaryInfo[i]);
+    cache.writeBoolean(coordinatesAreFractional);
+    cache.writeBoolean(isTrajectory);
+    cache.writeInt(trajectoryStepCount);
+    cache.writeValue(notionalUnitCell);
+    cache.writeInt(atomCount);
+    cache.writeAtoms(atoms, atomCount);
+    cache.writeInt(bondCount);
+    cache.writeBonds(bonds, bondCount);
+    cache.writeInt(structureCount);
+    cache.writeStructures(structures, structureCount);
+  }
+
+  AtomSetCollection(AtomSetCollectionCache cache) {
+    fileTypeName = cache.readString();
+    collectionName = cache.readString();
+    atomSetCollectionAuxiliaryInfo = (Hashtable) cache.readValue();
+    atomSetCount = cache.readInt();
+    currentAtomSetIndex = cache.readInt();
+    atomSetNumbers = (int[]) cache.readValue();
+    atomSetAtomCounts = (int[]) cache.readValue();
+    atomSetBondCounts = (int[]) cache.readValue();
+    atomSetAuxiliaryInfo = new Hashtable[atomSetAtomCounts.length];
+    for (int i = 0; i < atomSetCount; i++)
+      atomSetAuxiliaryInfo[i] = (Hashtable) cache.readValue();
+    coordinatesAreFractional = cache.readBoolean();
+    isTrajectory = cache.readBoolean();
+    trajectoryStepCount = cache.readInt();
+    if (isTrajectory)
+      trajectorySteps = (TrajectorySteps) atomSetCollectionAuxiliaryInfo
+          .get("trajectorySteps");
+    notionalUnitCell = (float[]) cache.readValue();
+    atomCount = cache.readInt();
+    atoms = cache.readAtoms(atomCount);
+    bondCount = cache.readInt();
+    bonds = cache.readBonds(bondCount);
+    structureCount = cache.readInt();
+    structures = cache.readStructures(structureCount);
+  }
+
   ////////////////////////////////////////////////////////////////
   // special support for alternate locations and insertion codes
   ////////////////////////////////////////////////////////////////
@@ -0,0 +1,785 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-09-16 06:40:57 -0500 (Thu, 16 Sep 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.adapter.smarter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Properties;
+import java.util.Vector;
+
+import javax.vecmath.Matrix3f;
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Point3f;
+import javax.vecmath.Tuple3f;
+import javax.vecmath.Vector3f;
+
+import org.jmol.util.Logger;
+import org.jmol.util.TrajectorySteps;
+
+/**
+ * A binary image of a finished AtomSetCollection, so that a file that has
+ * been loaded before need not be parsed again.
+ *
+ * The file is:
+ *
+ *   int    MAGIC
+ *   int    VERSION
+ *   String key       -- path, size, date, and load parameters; see FileManager
+ *   int    n         -- the string table
+ *   String[n]
+ *   Object           -- htParams entries the reader set, to be set again
+ *   body             -- see AtomSetCollection.writeCache()
+ *
+ * Atoms, bonds, and structures are written by column (all x, then all y, ...),
+ * and strings are written once, in the table, and referred to by index.
+ * Auxiliary information can be written only if it is made of the usual
+ * types (String, Integer, float[], Point3f, Vector, Hashtable, ...); for
+ * anything else write() gives up, and the file is simply not cached.
+ *
+ * The file is read by memory mapping.
+ *
+ * A reader that goes to another file for some of its data will not notice
+ * if only that other file changes.
+ *
+ */
+class AtomSetCollectionCache {
+
+  private final static int MAGIC = 0x4A415343; // "JASC"
+  private final static int VERSION = 1;
+
+  private final static byte T_NULL = 0;
+  private final static byte T_STRING = 1;
+  private final static byte T_INTEGER = 2;
+  private final static byte T_FLOAT = 3;
+  private final static byte T_DOUBLE = 4;
+  private final static byte T_BOOLEAN = 5;
+  private final static byte T_SHORT = 6;
+  private final static byte T_CHAR = 7;
+  private final static byte T_INT_ARRAY = 10;
+  private final static byte T_FLOAT_ARRAY = 11;
+  private final static byte T_DOUBLE_ARRAY = 12;
+  private final static byte T_STRING_ARRAY = 13;
+  private final static byte T_INT_ARRAY2 = 14;
+  private final static byte T_FLOAT_ARRAY2 = 15;
+  private final static byte T_POINT3F = 20;
+  private final static byte T_VECTOR3F = 21;
+  private final static byte T_POINT3F_ARRAY = 22;
+  private final static byte T_VECTOR3F_ARRAY = 23;
+  private final static byte T_MATRIX3F = 24;
+  private final static byte T_MATRIX4F = 25;
+  private final static byte T_BITSET = 26;
+  private final static byte T_VECTOR = 30;
+  private final static byte T_HASHTABLE = 31;
+  private final static byte T_PROPERTIES = 32;
+  private final static byte T_OBJECT_ARRAY = 33;
+  private final static byte T_TRAJECTORY = 34;
+
+  // writing
+
+  private DataOutputStream out;
+  private Hashtable htStrings;
+  private Vector vStrings;
+
+  // reading
+
+  private ByteBuffer buf;
+  private String[] strings;
+
+  private AtomSetCollectionCache() {
+  }
+
+  /**
+   * @param cacheFileName
+   * @param key
+   * @param htParams  loaded with the entries the reader had set
+   * @return the AtomSetCollection, or null if the cache is missing, stale,
+   *         or cannot be read
+   */
+  static AtomSetCollection read(String cacheFileName, String key,
+                                Hashtable htParams) {
+    File file = new File(cacheFileName);
+    if (!file.isFile())
+      return null;
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file, "r");
+      FileChannel channel = raf.getChannel();
+      AtomSetCollectionCache cache = new AtomSetCollectionCache();
+      ByteBuffer buf = cache.buf = channel.map(FileChannel.MapMode.READ_ONLY,
+          0, channel.size());
+      if (buf.getInt() != MAGIC || buf.getInt() != VERSION
+          || !key.equals(cache.readUTF()))
+        return null;
+      cache.strings = new String[buf.getInt()];
+      for (int i = 0; i < cache.strings.length; i++)
+        cache.strings[i] = cache.readUTF();
+      Hashtable htSet = (Hashtable) cache.readValue();
+      AtomSetCollection atomSetCollection = new AtomSetCollection(cache);
+      Enumeration e = htSet.keys();
+      while (e.hasMoreElements()) {
+        Object k = e.nextElement();
+        htParams.put(k, htSet.get(k));
+      }
+      return atomSetCollection;
+    } catch (Exception e) {
+      Logger.error("could not read model cache " + cacheFileName + ": " + e);
+      return null;
+    } finally {
+      try {
+        if (raf != null)
+          raf.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * @param atomSetCollection
+   * @param cacheFileName
+   * @param key
+   * @param htSet   htParams entries set by the reader
+   * @return true if written
+   */
+  static boolean write(AtomSetCollection atomSetCollection,
+                       String cacheFileName, String key, Hashtable htSet) {
+    AtomSetCollectionCache cache = new AtomSetCollectionCache();
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    cache.out = new DataOutputStream(bos);
+    cache.htStrings = new Hashtable();
+    cache.vStrings = new Vector();
+    File file = new File(cacheFileName);
+    File fileTemp = new File(cacheFileName + ".tmp");
+    try {
+      cache.writeValue(htSet);
+      atomSetCollection.writeCache(cache);
+      cache.out.flush();
+      DataOutputStream out = new DataOutputStream(new FileOutputStream(
+          fileTemp));
+      try {
+        cache.out = out;
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        cache.writeUTF(key);
+        int n = cache.vStrings.size();
+        out.writeInt(n);
+        for (int i = 0; i < n; i++)
+          cache.writeUTF((String) cache.vStrings.get(i));
+        bos.writeTo(out);
+      } finally {
+        out.close();
+      }
+      file.delete();
+      if (!fileTemp.renameTo(file))
+        throw new IOException("cannot rename " + fileTemp);
+      return true;
+    } catch (Exception e) {
+      Logger.info("model not cached: " + e);
+      fileTemp.delete();
+      return false;
+    }
+  }
+
+  //////////////// primitives ///////////////
+
+  void writeInt(int i) throws IOException {
+    out.writeInt(i);
+  }
+
+  int readInt() {
+    return buf.getInt();
+  }
+
+  void writeFloat(float f) throws IOException {
+    out.writeFloat(f);
+  }
+
+  float readFloat() {
+    return buf.getFloat();
+  }
+
+  void writeBoolean(boolean b) throws IOException {
+    out.writeByte(b ? 1 : 0);
+  }
+
+  boolean readBoolean() {
+    return (buf.get() != 0);
+  }
+
+  private void writeUTF(String s) throws IOException {
+    int n = s.length();
+    out.writeInt(n);
+    for (int i = 0; i < n; i++)
+      out.writeChar(s.charAt(i));
+  }
+
+  private String readUTF() {
+    char[] chars = new char[buf.getInt()];
+    for (int i = 0; i < chars.length; i++)
+      chars[i] = buf.getChar();
+    return new String(chars);
+  }
+
+  /**
+   * strings are written as an index into the string table
+   *
+   * @param s
+   * @throws IOException
+   */
+  void writeString(String s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+      return;
+    }
+    Integer i = (Integer) htStrings.get(s);
+    if (i == null) {
+      htStrings.put(s, i = new Integer(vStrings.size()));
+      vStrings.addElement(s);
+    }
+    out.writeInt(i.intValue());
+  }
+
+  String readString() {
+    int i = buf.getInt();
+    return (i < 0 ? null : strings[i]);
+  }
+
+  //////////////// columns ///////////////
+
+  void writeAtoms(Atom[] atoms, int atomCount) throws IOException {
+    for (int i = 0; i < atomCount; i++)
+      out.writeFloat(atoms[i].x);
+    for (int i = 0; i < atomCount; i++)
+      out.writeFloat(atoms[i].y);
+    for (int i = 0; i < atomCount; i++)
+      out.writeFloat(atoms[i].z);
+    for (int i = 0; i < atomCount; i++)
+      out.writeInt(atoms[i].atomSetIndex);
+    for (int i = 0; i < atomCount; i++)
+      out.writeInt(atoms[i].atomIndex);
+    for (int i = 0; i < atomCount; i++)
+      out.writeInt(atoms[i].atomSite);
+    for (int i = 0; i < atomCount; i++)
+      writeString(atoms[i].elementSymbol);
+    for (int i = 0; i < atomCount; i++)
+      out.writeShort(atoms[i].elementNumber);
+    for (int i = 0; i < atomCount; i++)
+      writeString(atoms[i].atomName);
+    for (int i = 0; i < atomCount; i++)
+      out.writeInt(atoms[i].formalCharge);
+    for (int i = 0; i < atomCount; i++)
+      out.writeFloat(atoms[i].partialCharge);
+    for (int i = 0; i < atomCount; i++)
+      out.writeFloat(atoms[i].vectorX);
+    for (int i = 0; i < atomCount; i++)
+      out.writeFloat(atoms[i].vectorY);
+    for (int i = 0; i < atomCount; i++)
+      out.writeFloat(atoms[i].vectorZ);
+    for (int i = 0; i < atomCount; i++)
+      out.writeFloat(atoms[i].bfactor);
+    for (int i = 0; i < atomCount; i++)
+      out.writeInt(atoms[i].occupancy);
+    for (int i = 0; i < atomCount; i++)
+      out.writeFloat(atoms[i].radius);
+    for (int i = 0; i < atomCount; i++)
+      writeBoolean(atoms[i].isHetero);
+    for (int i = 0; i < atomCount; i++)
+      out.writeInt(atoms[i].atomSerial);
+    for (int i = 0; i < atomCount; i++)
+      out.writeChar(atoms[i].chainID);
+    for (int i = 0; i < atomCount; i++)
+      out.writeChar(atoms[i].alternateLocationID);
+    for (int i = 0; i < atomCount; i++)
+      writeString(atoms[i].group3);
+    for (int i = 0; i < atomCount; i++)
+      out.writeInt(atoms[i].sequenceNumber);
+    for (int i = 0; i < atomCount; i++)
+      out.writeChar(atoms[i].insertionCode);
+    // the rest are usually absent, so just the atoms that have them
+    for (int j = 0; j < 3; j++) {
+      int n = 0;
+      for (int i = 0; i < atomCount; i++)
+        if (getAtomObject(atoms[i], j) != null)
+          n++;
+      out.writeInt(n);
+      for (int i = 0; i < atomCount; i++) {
+        Object value = getAtomObject(atoms[i], j);
+        if (value == null)
+          continue;
+        out.writeInt(i);
+        writeValue(value);
+      }
+    }
+  }
+
+  private static Object getAtomObject(Atom atom, int j) {
+    switch (j) {
+    case 0:
+      return atom.bsSymmetry;
+    case 1:
+      return atom.anisoBorU;
+    default:
+      return atom.ellipsoid;
+    }
+  }
+
+  Atom[] readAtoms(int atomCount) {
+    Atom[] atoms = new Atom[Math.max(256, atomCount)];
+    for (int i = 0; i < atomCount; i++)
+      atoms[i] = new Atom();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].x = buf.getFloat();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].y = buf.getFloat();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].z = buf.getFloat();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].atomSetIndex = buf.getInt();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].atomIndex = buf.getInt();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].atomSite = buf.getInt();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].elementSymbol = readString();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].elementNumber = buf.getShort();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].atomName = readString();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].formalCharge = buf.getInt();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].partialCharge = buf.getFloat();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].vectorX = buf.getFloat();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].vectorY = buf.getFloat();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].vectorZ = buf.getFloat();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].bfactor = buf.getFloat();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].occupancy = buf.getInt();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].radius = buf.getFloat();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].isHetero = readBoolean();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].atomSerial = buf.getInt();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].chainID = buf.getChar();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].alternateLocationID = buf.getChar();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].group3 = readString();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].sequenceNumber = buf.getInt();
+    for (int i = 0; i < atomCount; i++)
+      atoms[i].insertionCode = buf.getChar();
+    for (int n = buf.getInt(); --n >= 0;) {
+      Atom atom = atoms[buf.getInt()];
+      atom.bsSymmetry = (BitSet) readValue();
+    }
+    for (int n = buf.getInt(); --n >= 0;) {
+      Atom atom = atoms[buf.getInt()];
+      atom.anisoBorU = (float[]) readValue();
+    }
+    for (int n = buf.getInt(); --n >= 0;) {
+      Atom atom = atoms[buf.getInt()];
+      atom.ellipsoid = (Object[]) readValue();
+    }
+    return atoms;
+  }
+
+  void writeBonds(Bond[] bonds, int bondCount) throws IOException {
+    for (int i = 0; i < bondCount; i++)
+      out.writeInt(bonds[i].atomIndex1);
+    for (int i = 0; i < bondCount; i++)
+      out.writeInt(bonds[i].atomIndex2);
+    for (int i = 0; i < bondCount; i++)
+      out.writeInt(bonds[i].order);
+  }
+
+  Bond[] readBonds(int bondCount) {
+    Bond[] bonds = new Bond[Math.max(256, bondCount)];
+    for (int i = 0; i < bondCount; i++)
+      bonds[i] = new Bond();
+    for (int i = 0; i < bondCount; i++)
+      bonds[i].atomIndex1 = buf.getInt();
+    for (int i = 0; i < bondCount; i++)
+      bonds[i].atomIndex2 = buf.getInt();
+    for (int i = 0; i < bondCount; i++)
+      bonds[i].order = buf.getInt();
+    return bonds;
+  }
+
+  void writeStructures(Structure[] structures, int structureCount)
+      throws IOException {
+    for (int i = 0; i < structureCount; i++) {
+      Structure s = structures[i];
+      writeString(s.structureType);
+      writeString(s.structureID);
+      out.writeInt(s.serialID);
+      out.writeInt(s.strandCount);
+      out.writeChar(s.startChainID);
+      out.writeInt(s.startSequenceNumber);
+      out.writeChar(s.startInsertionCode);
+      out.writeChar(s.endChainID);
+      out.writeInt(s.endSequenceNumber);
+      out.writeChar(s.endInsertionCode);
+      out.writeInt(s.modelIndex);
+    }
+  }
+
+  Structure[] readStructures(int structureCount) {
+    Structure[] structures = new Structure[Math.max(16, structureCount)];
+    for (int i = 0; i < structureCount; i++) {
+      Structure s = structures[i] = new Structure();
+      s.structureType = readString();
+      s.structureID = readString();
+      s.serialID = buf.getInt();
+      s.strandCount = buf.getInt();
+      s.startChainID = buf.getChar();
+      s.startSequenceNumber = buf.getInt();
+      s.startInsertionCode = buf.getChar();
+      s.endChainID = buf.getChar();
+      s.endSequenceNumber = buf.getInt();
+      s.endInsertionCode = buf.getChar();
+      s.modelIndex = buf.getInt();
+    }
+    return structures;
+  }
+
+  //////////////// auxiliary information ///////////////
+
+  /**
+   * @param x
+   * @throws IOException
+   * @throws IllegalArgumentException  for a type that is not handled
+   */
+  void writeValue(Object x) throws IOException {
+    if (x == null) {
+      out.writeByte(T_NULL);
+      return;
+    }
+    Class c = x.getClass();
+    if (c == String.class) {
+      out.writeByte(T_STRING);
+      writeString((String) x);
+    } else if (c == Integer.class) {
+      out.writeByte(T_INTEGER);
+      out.writeInt(((Integer) x).intValue());
+    } else if (c == Float.class) {
+      out.writeByte(T_FLOAT);
+      out.writeFloat(((Float) x).floatValue());
+    } else if (c == Double.class) {
+      out.writeByte(T_DOUBLE);
+      out.writeDouble(((Double) x).doubleValue());
+    } else if (c == Boolean.class) {
+      out.writeByte(T_BOOLEAN);
+      writeBoolean(((Boolean) x).booleanValue());
+    } else if (c == Short.class) {
+      out.writeByte(T_SHORT);
+      out.writeShort(((Short) x).shortValue());
+    } else if (c == Character.class) {
+      out.writeByte(T_CHAR);
+      out.writeChar(((Character) x).charValue());
+    } else if (x instanceof int[]) {
+      out.writeByte(T_INT_ARRAY);
+      writeInts((int[]) x);
+    } else if (x instanceof float[]) {
+      out.writeByte(T_FLOAT_ARRAY);
+      writeFloats((float[]) x);
+    } else if (x instanceof double[]) {
+      double[] d = (double[]) x;
+      out.writeByte(T_DOUBLE_ARRAY);
+      out.writeInt(d.length);
+      for (int i = 0; i < d.length; i++)
+        out.writeDouble(d[i]);
+    } else if (c == String[].class) {
+      String[] s = (String[]) x;
+      out.writeByte(T_STRING_ARRAY);
+      out.writeInt(s.length);
+      for (int i = 0; i < s.length; i++)
+        writeString(s[i]);
+    } else if (x instanceof int[][]) {
+      int[][] a = (int[][]) x;
+      out.writeByte(T_INT_ARRAY2);
+      out.writeInt(a.length);
+      for (int i = 0; i < a.length; i++)
+        writeInts(a[i]);
+    } else if (x instanceof float[][]) {
+      float[][] a = (float[][]) x;
+      out.writeByte(T_FLOAT_ARRAY2);
+      out.writeInt(a.length);
+      for (int i = 0; i < a.length; i++)
+        writeFloats(a[i]);
+    } else if (c == Point3f.class) {
+      out.writeByte(T_POINT3F);
+      writeXYZ((Point3f) x);
+    } else if (c == Vector3f.class) {
+      out.writeByte(T_VECTOR3F);
+      writeXYZ((Vector3f) x);
+    } else if (c == Point3f[].class) {
+      Point3f[] pts = (Point3f[]) x;
+      out.writeByte(T_POINT3F_ARRAY);
+      out.writeInt(pts.length);
+      for (int i = 0; i < pts.length; i++)
+        writeXYZ(pts[i]);
+    } else if (c == Vector3f[].class) {
+      Vector3f[] v = (Vector3f[]) x;
+      out.writeByte(T_VECTOR3F_ARRAY);
+      out.writeInt(v.length);
+      for (int i = 0; i < v.length; i++)
+        writeXYZ(v[i]);
+    } else if (c == Matrix3f.class) {
+      Matrix3f m = (Matrix3f) x;
+      out.writeByte(T_MATRIX3F);
+      for (int i = 0; i < 3; i++)
+        for (int j = 0; j < 3; j++)
+          out.writeFloat(m.getElement(i, j));
+    } else if (c == Matrix4f.class) {
+      Matrix4f m = (Matrix4f) x;
+      out.writeByte(T_MATRIX4F);
+      for (int i = 0; i < 4; i++)
+        for (int j = 0; j < 4; j++)
+          out.writeFloat(m.getElement(i, j));
+    } else if (c == BitSet.class) {
+      BitSet bs = (BitSet) x;
+      out.writeByte(T_BITSET);
+      out.writeInt(bs.cardinality());
+      for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1))
+        out.writeInt(i);
+    } else if (c == Vector.class) {
+      Vector v = (Vector) x;
+      int n = v.size();
+      out.writeByte(T_VECTOR);
+      out.writeInt(n);
+      for (int i = 0; i < n; i++)
+        writeValue(v.get(i));
+    } else if (c == Hashtable.class || c == Properties.class) {
+      Hashtable ht = (Hashtable) x;
+      out.writeByte(c == Hashtable.class ? T_HASHTABLE : T_PROPERTIES);
+      out.writeInt(ht.size());
+      Enumeration e = ht.keys();
+      while (e.hasMoreElements()) {
+        Object key = e.nextElement();
+        writeValue(key);
+        writeValue(ht.get(key));
+      }
+    } else if (c == Object[].class) {
+      Object[] o = (Object[]) x;
+      out.writeByte(T_OBJECT_ARRAY);
+      out.writeInt(o.length);
+      for (int i = 0; i < o.length; i++)
+        writeValue(o[i]);
+    } else if (c == TrajectorySteps.class) {
+      TrajectorySteps steps = (TrajectorySteps) x;
+      int n = steps.size();
+      out.writeByte(T_TRAJECTORY);
+      writeBoolean(steps.isCompressed());
+      writeBoolean(steps.isPaged());
+      out.writeInt(n);
+      for (int i = 0; i < n; i++) {
+        out.writeInt(steps.getAtomCount(i));
+        writeFloats(steps.getStep(i, null));
+      }
+    } else {
+      throw new IllegalArgumentException(c.getName());
+    }
+  }
+
+  private void writeInts(int[] a) throws IOException {
+    if (a == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(a.length);
+    for (int i = 0; i < a.length; i++)
+      out.writeInt(a[i]);
+  }
+
+  private void writeFloats(float[] a) throws IOException {
+    if (a == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(a.length);
+    for (int i = 0; i < a.length; i++)
+      out.writeFloat(a[i]);
+  }
+
+  private void writeXYZ(Tuple3f t) throws IOException {
+    writeBoolean(t != null);
+    if (t == null)
+      return;
+    out.writeFloat(t.x);
+    out.writeFloat(t.y);
+    out.writeFloat(t.z);
+  }
+
+  Object readValue() {
+    int n;
+    byte tag = buf.get();
+    switch (tag) {
+    case T_NULL:
+      return null;
+    case T_STRING:
+      return readString();
+    case T_INTEGER:
+      return new Integer(buf.getInt());
+    case T_FLOAT:
+      return new Float(buf.getFloat());
+    case T_DOUBLE:
+      return new Double(buf.getDouble());
+    case T_BOOLEAN:
+      return Boolean.valueOf(readBoolean());
+    case T_SHORT:
+      return new Short(buf.getShort());
+    case T_CHAR:
+      return new Character(buf.getChar());
+    case T_INT_ARRAY:
+      return readInts();
+    case T_FLOAT_ARRAY:
+      return readFloats();
+    case T_DOUBLE_ARRAY:
+      double[] d = new double[buf.getInt()];
+      for (int i = 0; i < d.length; i++)
+        d[i] = buf.getDouble();
+      return d;
+    case T_STRING_ARRAY:
+      String[] s = new String[buf.getInt()];
+      for (int i = 0; i < s.length; i++)
+        s[i] = readString();
+      return s;
+    case T_INT_ARRAY2:
+      int[][] ia = new int[buf.getInt()][];
+      for (int i = 0; i < ia.length; i++)
+        ia[i] = readInts();
+      return ia;
+    case T_FLOAT_ARRAY2:
+      float[][] fa = new float[buf.getInt()][];
+      for (int i = 0; i < fa.length; i++)
+        fa[i] = readFloats();
+      return fa;
+    case T_POINT3F:
+      return readXYZ(new Point3f());
+    case T_VECTOR3F:
+      return readXYZ(new Vector3f());
+    case T_POINT3F_ARRAY:
+      Point3f[] pts = new Point3f[buf.getInt()];
+      for (int i = 0; i < pts.length; i++)
+        pts[i] = (Point3f) readXYZ(new Point3f());
+      return pts;
+    case T_VECTOR3F_ARRAY:
+      Vector3f[] v = new Vector3f[buf.getInt()];
+      for (int i = 0; i < v.length; i++)
+        v[i] = (Vector3f) readXYZ(new Vector3f());
+      return v;
+    case T_MATRIX3F:
+      Matrix3f m3 = new Matrix3f();
+      for (int i = 0; i < 3; i++)
+        for (int j = 0; j < 3; j++)
+          m3.setElement(i, j, buf.getFloat());
+      return m3;
+    case T_MATRIX4F:
+      Matrix4f m4 = new Matrix4f();
+      for (int i = 0; i < 4; i++)
+        for (int j = 0; j < 4; j++)
+          m4.setElement(i, j, buf.getFloat());
+      return m4;
+    case T_BITSET:
+      BitSet bs = new BitSet();
+      for (n = buf.getInt(); --n >= 0;)
+        bs.set(buf.getInt());
+      return bs;
+    case T_VECTOR:
+      n = buf.getInt();
+      Vector vector = new Vector(n);
+      for (int i = 0; i < n; i++)
+        vector.addElement(readValue());
+      return vector;
+    case T_HASHTABLE:
+    case T_PROPERTIES:
+      Hashtable ht = (tag == T_HASHTABLE ? new Hashtable() : new Properties());
+      for (n = buf.getInt(); --n >= 0;) {
+        Object key = readValue();
+        ht.put(key, readValue());
+      }
+      return ht;
+    case T_OBJECT_ARRAY:
+      Object[] o = new Object[buf.getInt()];
+      for (int i = 0; i < o.length; i++)
+        o[i] = readValue();
+      return o;
+    case T_TRAJECTORY:
+      boolean isCompressed = readBoolean();
+      TrajectorySteps steps = new TrajectorySteps(isCompressed, readBoolean());
+      for (n = buf.getInt(); --n >= 0;) {
+        int atomCount = buf.getInt();
+        steps.addStep(readFloats(), atomCount);
+      }
+      return steps;
+    }
+    throw new IllegalArgumentException("bad model cache entry");
+  }
+
+  private int[] readInts() {
+    int n = buf.getInt();
+    if (n < 0)
+      return null;
+    int[] a = new int[n];
+    for (int i = 0; i < n; i++)
+      a[i] = buf.getInt();
+    return a;
+  }
+
+  private float[] readFloats() {
+    int n = buf.getInt();
+    if (n < 0)
+      return null;
+    float[] a = new float[n];
+    for (int i = 0; i < n; i++)
+      a[i] = buf.getFloat();
+    return a;
+  }
+
+  private Tuple3f readXYZ(Tuple3f t) {
+    if (!readBoolean())
+      return null;
+    t.x = buf.getFloat();
+    t.y = buf.getFloat();
+    t.z = buf.getFloat();
+    return t;
+  }
+
+}
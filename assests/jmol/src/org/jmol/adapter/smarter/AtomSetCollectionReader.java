@@ -26,6 +26,7 @@ package org.jmol.adapter.smarter;
 
 import org.jmol.api.Interface;
 import org.jmol.api.JmolAdapter;
+import org.jmol.api.JmolLoadMonitor;
 import org.jmol.api.JmolViewer;
 import org.jmol.api.SymmetryInterface;
 import org.jmol.util.BitSetUtil;
@@ -178,6 +179,9 @@ public abstract class AtomSetCollectionReader {
   private int desiredSpaceGroupIndex = -1;
   protected SymmetryInterface symmetry;
   protected OutputStream os;
+  protected Object executor;
+  JmolLoadMonitor loadMonitor;
+  private ReadAheadLineReader readAhead;
   private Point3f fileScaling;
   private Point3f fileOffset;
   
@@ -193,6 +197,7 @@ public abstract class AtomSetCollectionReader {
     this.htParams = htParams; 
     this.fileName = fileName;
     this.reader = reader;    
+    loadMonitor = (JmolLoadMonitor) htParams.get("loadMonitor");
   }
 
   Object readData() throws Exception {
@@ -209,6 +214,8 @@ public abstract class AtomSetCollectionReader {
     } catch (Throwable e) {
       setError(e);
     }
+    if (readAhead != null)
+      readAhead.close();
     reader.close();
     return finish();
   }  
@@ -231,6 +238,37 @@ public abstract class AtomSetCollectionReader {
     // reader-dependent
   }
 
+  /**
+   * Lines will be read ahead in blocks on another thread, and each block
+   * passed to preparseLines() on the viewer's executor, while this thread
+   * carries on with checkLine(). Only if "set multiProcessor" is on,
+   * and only from initializeReader(), before any line has been read.
+   * 
+   */
+  protected void setReadAhead() {
+    if (executor != null && os == null && line == null)
+      readAhead = new ReadAheadLineReader(reader, this, executor);
+  }
+
+  /**
+   * Called on a worker thread for each block of lines read ahead. This
+   * must depend only on the lines themselves, not on the reader's state.
+   * 
+   * @param lines
+   * @param n      number of lines
+   * @return  one entry per line, or null
+   */
+  protected Object[] preparseLines(String[] lines, int n) {
+    return null;
+  }
+
+  /**
+   * @return what preparseLines() gave for the current line, or null
+   */
+  protected Object getPreparsedLine() {
+    return (readAhead == null ? null : readAhead.getData());
+  }
+
   /**
    * @return true if need to read new line
    * @throws Exception 
@@ -325,6 +363,8 @@ public abstract class AtomSetCollectionReader {
     initializeSymmetry();
     this.viewer = (JmolViewer) htParams.get("viewer");
     htParams.remove("viewer"); // don't pass this on to user
+    executor = htParams.get("executor");
+    htParams.remove("executor");
     getHeader = htParams.containsKey("getHeader");
     isSequential = htParams.containsKey("isSequential");
     readerName = (String) htParams.get("readerName");
@@ -1060,7 +1100,10 @@ public abstract class AtomSetCollectionReader {
 
   public String readLine() throws Exception {
     prevline = line;
-    line = reader.readLine();
+    if (loadMonitor != null && loadMonitor.isCanceled())
+      line = null;
+    else
+      line = (readAhead == null ? reader.readLine() : readAhead.readLine());
     if (os !=null && line != null) {
       os.write(line.getBytes());
       os.write('\n');
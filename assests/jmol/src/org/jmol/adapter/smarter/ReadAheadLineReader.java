@@ -0,0 +1,174 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-09-16 06:40:57 -0500 (Thu, 16 Sep 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.adapter.smarter;
+
+import java.io.BufferedReader;
+import java.util.Vector;
+import java.util.concurrent.Executor;
+
+/**
+ * A three-stage pipeline for AtomSetCollectionReader.readLine():
+ *
+ *  1. a thread of its own reads the file in blocks of lines;
+ *  2. each block is handed to the reader's preparseLines() on the executor;
+ *  3. the reader's own thread takes the blocks back, in order, and
+ *     builds the AtomSetCollection as usual, one line at a time.
+ *
+ * preparseLines() may only look at the lines it is given; it is there for
+ * the part of the parsing that does not depend on what came before
+ * (field extraction, number parsing). Whatever it returns for a line is
+ * available from getData() while that line is current.
+ *
+ * Only a few blocks are read ahead, so memory use stays bounded.
+ *
+ */
+class ReadAheadLineReader implements Runnable {
+
+  private final static int BLOCK_SIZE = 2048;
+  private final static int MAX_BLOCKS = 8;
+
+  private BufferedReader reader;
+  private AtomSetCollectionReader asr;
+  private Executor executor;
+
+  private Vector blocks = new Vector();
+  private boolean isClosed;
+
+  private Block block;
+  private int pt;
+
+  private class Block implements Runnable {
+    String[] lines = new String[BLOCK_SIZE];
+    int n;
+    Object[] data;
+    boolean isParsed;
+    Throwable error;
+
+    public void run() {
+      try {
+        data = asr.preparseLines(lines, n);
+      } catch (Throwable e) {
+        error = e;
+      } finally {
+        synchronized (this) {
+          isParsed = true;
+          notifyAll();
+        }
+      }
+    }
+  }
+
+  ReadAheadLineReader(BufferedReader reader, AtomSetCollectionReader asr,
+      Object executor) {
+    this.reader = reader;
+    this.asr = asr;
+    this.executor = (Executor) executor;
+    Thread t = new Thread(this, "ReadAheadLineReader");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  /**
+   * the reading thread
+   */
+  public void run() {
+    boolean isEOF = false;
+    while (!isEOF) {
+      Block b = new Block();
+      try {
+        String line;
+        while (b.n < BLOCK_SIZE && (line = reader.readLine()) != null)
+          b.lines[b.n++] = line;
+      } catch (Throwable e) {
+        b.error = e;
+      }
+      isEOF = (b.n < BLOCK_SIZE);
+      boolean doParse = (b.error == null && b.n > 0);
+      if (!doParse)
+        b.isParsed = true;
+      synchronized (this) {
+        while (blocks.size() >= MAX_BLOCKS && !isClosed)
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            // ignore
+          }
+        if (isClosed)
+          return;
+        blocks.addElement(b);
+        notifyAll();
+      }
+      if (doParse)
+        executor.execute(b);
+    }
+  }
+
+  /**
+   * @return the next line, or null at the end of the file
+   * @throws Exception
+   */
+  String readLine() throws Exception {
+    if (block == null || pt == block.n) {
+      if (block != null && block.n < BLOCK_SIZE)
+        return null;
+      synchronized (this) {
+        while (blocks.size() == 0)
+          wait();
+        block = (Block) blocks.remove(0);
+        notifyAll();
+      }
+      synchronized (block) {
+        while (!block.isParsed)
+          block.wait();
+      }
+      if (block.error != null) {
+        if (block.error instanceof Exception)
+          throw (Exception) block.error;
+        throw (Error) block.error;
+      }
+      pt = 0;
+      if (block.n == 0)
+        return null;
+    }
+    return block.lines[pt++];
+  }
+
+  /**
+   * @return what preparseLines() gave for the current line, or null
+   */
+  Object getData() {
+    return (block == null || block.data == null || pt == 0 ? null
+        : block.data[pt - 1]);
+  }
+
+  /**
+   * stops the reading thread; the caller closes the BufferedReader
+   *
+   */
+  synchronized void close() {
+    isClosed = true;
+    blocks.clear();
+    notifyAll();
+  }
+}
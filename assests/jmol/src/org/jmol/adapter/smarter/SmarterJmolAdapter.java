@@ -29,6 +29,7 @@ import org.jmol.api.JmolFileReaderInterface;
 import org.jmol.util.CompoundDocument;
 import org.jmol.util.Logger;
 import org.jmol.util.TextFormat;
+import org.jmol.util.TrajectorySteps;
 import org.jmol.util.ZipUtil;
 
 import java.io.BufferedInputStream;
@@ -227,7 +228,7 @@ public class SmarterJmolAdapter extends JmolAdapter {
       // this is one model with a set of coordinates from a 
       // molecular dynamics calculation
       // all the htParams[] entries point to the same Hashtable
-      asc[0].finalizeTrajectory((Vector) htParams.get("trajectorySteps"));
+      asc[0].finalizeTrajectory((TrajectorySteps) htParams.get("trajectorySteps"));
       return asc[0];
     }
     AtomSetCollection result = new AtomSetCollection(asc);
@@ -491,6 +492,30 @@ public class SmarterJmolAdapter extends JmolAdapter {
   public String[] specialLoad(String name, String type) {
     return Resolver.specialLoad(name, type);  
   }
+
+  public Object getAtomSetCollectionFromCache(String cacheFileName,
+                                              String key, Hashtable htParams) {
+    AtomSetCollection atomSetCollection = AtomSetCollectionCache.read(
+        cacheFileName, key, htParams);
+    if (atomSetCollection == null)
+      return null;
+    // as AtomSetCollectionReader would
+    htParams.remove("viewer");
+    String s = (String) htParams.get("loadState");
+    atomSetCollection.setAtomSetCollectionAuxiliaryInfo("loadState",
+        s == null ? "" : s);
+    Logger.info("model read from cache " + cacheFileName);
+    return atomSetCollection;
+  }
+
+  public void cacheAtomSetCollection(Object atomSetCollection,
+                                     String cacheFileName, String key,
+                                     Hashtable htParamsSet) {
+    if (atomSetCollection instanceof AtomSetCollection
+        && AtomSetCollectionCache.write((AtomSetCollection) atomSetCollection,
+            cacheFileName, key, htParamsSet))
+      Logger.info("model cached as " + cacheFileName);
+  }
   
   public void finish(Object atomSetCollection) {
     ((AtomSetCollection)atomSetCollection).finish();
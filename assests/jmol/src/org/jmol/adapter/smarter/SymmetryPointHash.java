@@ -0,0 +1,152 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.adapter.smarter;
+
+import javax.vecmath.Point3f;
+
+/**
+ * The cartesians of AtomSetCollection.applyAllSymmetry, hashed by cubic
+ * cell, so that symmetryAddAtoms can find an atom already at a special
+ * position without checking every atom added before it.
+ *
+ * The cells are 0.025 Angstroms on edge, and points match when they are
+ * within 0.01 Angstroms (d2 < 0.0001), so only the cell of the point and
+ * its nearer neighbor along each axis -- eight cells in all -- need be
+ * checked.
+ *
+ * Each cell is a chain through next[] from the point added last, so the
+ * first match in a chain is the one with the highest index, which is the
+ * one the original backward loop over the cartesians found.
+ *
+ */
+final class SymmetryPointHash {
+
+  private final static float CELL_SIZE = 0.025f;
+  private final static float MAX_D2 = 0.0001f;
+
+  private Point3f[] points;
+  private int[] next;
+  private long[] keys;
+  private int[] heads;
+  private int mask;
+  private int count;
+
+  /**
+   * @param points  the cartesians array, filled as points are added
+   */
+  SymmetryPointHash(Point3f[] points) {
+    this.points = points;
+    next = new int[points.length];
+    setTableSize(64);
+  }
+
+  private void setTableSize(int n) {
+    keys = new long[n];
+    heads = new int[n];
+    for (int i = n; --i >= 0;)
+      heads[i] = -1;
+    mask = n - 1;
+  }
+
+  private static long getKey(int ix, int iy, int iz) {
+    return ((long) (ix & 0x1FFFFF) << 42) | ((long) (iy & 0x1FFFFF) << 21)
+        | (iz & 0x1FFFFF);
+  }
+
+  private static int getSlot(long key, int mask) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h >>> 40) & mask;
+  }
+
+  /**
+   * @param key
+   * @return the slot holding this key, or the empty slot where it belongs
+   */
+  private int findSlot(long key) {
+    int slot = getSlot(key, mask);
+    while (heads[slot] >= 0 && keys[slot] != key)
+      slot = (slot + 1) & mask;
+    return slot;
+  }
+
+  /**
+   * adds points[j], which must be set
+   *
+   * @param j
+   */
+  void add(int j) {
+    if (count * 2 >= keys.length)
+      rehash();
+    Point3f p = points[j];
+    long key = getKey(getCell(p.x), getCell(p.y), getCell(p.z));
+    int slot = findSlot(key);
+    if (heads[slot] < 0) {
+      keys[slot] = key;
+      count++;
+    }
+    next[j] = heads[slot];
+    heads[slot] = j;
+  }
+
+  private void rehash() {
+    long[] oldKeys = keys;
+    int[] oldHeads = heads;
+    setTableSize(oldKeys.length * 2);
+    for (int i = oldKeys.length; --i >= 0;)
+      if (oldHeads[i] >= 0) {
+        int slot = findSlot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        heads[slot] = oldHeads[i];
+      }
+  }
+
+  private static int getCell(float x) {
+    return (int) Math.floor(x / CELL_SIZE);
+  }
+
+  /**
+   * @param p
+   * @param pt0  only points with index less than this are checked
+   * @return the highest index of a point within 0.01 Angstroms, or -1
+   */
+  int findLast(Point3f p, int pt0) {
+    int ix = getCell(p.x);
+    int iy = getCell(p.y);
+    int iz = getCell(p.z);
+    int dx = (p.x - ix * CELL_SIZE < CELL_SIZE / 2 ? -1 : 1);
+    int dy = (p.y - iy * CELL_SIZE < CELL_SIZE / 2 ? -1 : 1);
+    int dz = (p.z - iz * CELL_SIZE < CELL_SIZE / 2 ? -1 : 1);
+    int jMax = -1;
+    for (int i = 0; i < 8; i++) {
+      int slot = findSlot(getKey(ix + ((i & 4) == 0 ? 0 : dx), iy
+          + ((i & 2) == 0 ? 0 : dy), iz + ((i & 1) == 0 ? 0 : dz)));
+      for (int j = heads[slot]; j > jMax; j = next[j])
+        if (j < pt0 && p.distanceSquared(points[j]) < MAX_D2) {
+          jMax = j;
+          break;
+        }
+    }
+    return jMax;
+  }
+}
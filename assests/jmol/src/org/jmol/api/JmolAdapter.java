@@ -217,6 +217,32 @@ abstract public Object getAtomSetCollection(Object atomSetCollectionReader);
 
   abstract public Object getAtomSetCollectionFromDOM(Object DOMNode, Hashtable htParams);
 
+  /**
+   * Get a previously cached atomSetCollection, if its key matches.
+   * 
+   * @param cacheFileName
+   * @param key  identifies the file and the load parameters
+   * @param htParams  receives any parameters the reader set when it was read
+   * @return the atomSetCollection, or null if there is none
+   */
+  public Object getAtomSetCollectionFromCache(String cacheFileName,
+                                              String key, Hashtable htParams) {
+    return null;
+  }
+
+  /**
+   * Save a finished atomSetCollection for getAtomSetCollectionFromCache.
+   * 
+   * @param atomSetCollection
+   * @param cacheFileName
+   * @param key
+   * @param htParamsSet  parameters the reader set
+   */
+  public void cacheAtomSetCollection(Object atomSetCollection,
+                                     String cacheFileName, String key,
+                                     Hashtable htParamsSet) {
+  }
+
   public void finish(Object atomSetCollection) {}
 
   /**
@@ -0,0 +1,27 @@
+package org.jmol.api;
+
+/**
+ * passed to the adapter as htParams "loadMonitor" when a file is being
+ * read on a thread other than the one that will create the model set
+ *
+ */
+public interface JmolLoadMonitor {
+
+  /**
+   * called on the reading thread each time another model has been read
+   *
+   * @param modelCount  models read so far; the one being read is not counted
+   * @return true if a copy of these models should be passed to setModelsRead
+   */
+  public boolean modelRead(int modelCount);
+
+  /**
+   * @param atomSetCollection  the models read so far, for a preview
+   */
+  public void setModelsRead(Object atomSetCollection);
+
+  /**
+   * @return true if the reader should stop as though at the end of the file
+   */
+  public boolean isCanceled();
+}
@@ -250,6 +250,11 @@ abstract public class JmolViewer extends JmolSimpleViewer {
   abstract public Object scriptCheck(String script);
   abstract public String scriptWait(String script);
   abstract public Object scriptWaitStatus(String script, String statusList);
+  /**
+   * clears models, settings, and variables, as between jobs of a server,
+   * without dropping caches
+   */
+  abstract public void reinitialize();
   abstract public String loadInline(String strModel);
   abstract public String loadInline(String strModel, boolean isAppend);
   abstract public String loadInline(String strModel, char newLine);
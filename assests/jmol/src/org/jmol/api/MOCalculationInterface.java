@@ -17,4 +17,11 @@ public interface MOCalculationInterface {
                                  float[] moCoefficients, float[] nuclearCharges, boolean doNormalize);
   
   public abstract void calculateElectronDensity(float[] nuclearCharges);
+
+  /**
+   * @param executor  a java.util.concurrent.Executor, or null to calculate
+   *                  on the calling thread only
+   * @param nThreads  the most slabs to calculate at once
+   */
+  public abstract void setExecutor(Object executor, int nThreads);
 }
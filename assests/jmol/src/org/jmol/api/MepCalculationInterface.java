@@ -16,4 +16,11 @@ public interface MepCalculationInterface {
 
   public abstract float valueFor(float x, float d2, int distanceMode);
 
+  /**
+   * @param executor  a java.util.concurrent.Executor, or null to calculate
+   *                  on the calling thread only
+   * @param nThreads  the most slabs to calculate at once
+   */
+  public abstract void setExecutor(Object executor, int nThreads);
+
 }
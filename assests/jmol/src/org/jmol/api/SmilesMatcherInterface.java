@@ -6,6 +6,8 @@ public interface SmilesMatcherInterface {
 
   public abstract String getLastException();
 
+  public abstract void setExecutor(Object executor);
+
   public int areEqual(String smiles1, String smiles2);
 
   public abstract BitSet[] find(String pattern,/* ...in... */String smiles,
@@ -1,6 +1,7 @@
 package org.jmol.atomdata;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.util.BitSet;
 
 import javax.vecmath.Point3f;
@@ -14,6 +15,19 @@ public interface AtomDataServer {
                                                     boolean isGreaterOnly,
                                                     boolean modelZeroBased);
 
+  /**
+   * @param bsSelected
+   * @param isGreaterOnly
+   * @param modelZeroBased
+   * @param threadSafe  true for an iterator sharing no state with others,
+   *                    so that it can be used on a thread of its own
+   * @return the iterator
+   */
+  public AtomIndexIterator getSelectedAtomIterator(BitSet bsSelected,
+                                                    boolean isGreaterOnly,
+                                                    boolean modelZeroBased,
+                                                    boolean threadSafe);
+
   public void setIteratorForAtom(AtomIndexIterator iterator, int atomIndex, float distance);
 
   public void setIteratorForPoint(AtomIndexIterator iter, int modelIndex, Point3f pt,
@@ -23,4 +37,16 @@ public interface AtomDataServer {
   
   public BufferedInputStream getBufferedInputStream(String fullPathName);
 
+  /**
+   * @param fullPathName
+   * @return the local file, if it can be read directly, or null
+   */
+  public File getLocalFile(String fullPathName);
+
+  /**
+   * @return a java.util.concurrent.Executor for parallel calculations,
+   *         or null if "set multiProcessor" is off or not available
+   */
+  public Object getExecutor();
+
 }
@@ -0,0 +1,143 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-04-17 18:24:30 -0500 (Sat, 17 Apr 2010) $
+ *
+ * Copyright (C) 2010  Jmol Development, www.jmol.org
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.bspt;
+
+import javax.vecmath.Point3f;
+
+/**
+ * Iterator used for finding all points of a SpatialGrid within a box
+ * or a hemi-box; the counterpart of CubeIterator.
+ *<p>
+ * Obtain a GridIterator by calling SpatialGrid.allocateIterator().
+ *<p>
+ * call initialize(...); re-initialize in order to reuse the same
+ * GridIterator
+ *
+ */
+public class GridIterator {
+  private final SpatialGrid grid;
+
+  private float cx, cy, cz;
+  private float radius;
+  private float dx, dy, dz;
+  private boolean tHemisphere;
+
+  private int ix, ix1, iy, iy0, iy1, iz0, iz1;
+  private int slot, slotEnd;
+
+  GridIterator(SpatialGrid grid) {
+    this.grid = grid;
+  }
+
+  /**
+   * initialize to return all points within the box defined
+   * by center and radius
+   *
+   * @param center
+   * @param radius
+   * @param hemisphereOnly  only return points with x greater than or equal
+   *                        to center.x
+   */
+  public void initialize(Point3f center, float radius, boolean hemisphereOnly) {
+    SpatialGrid g = grid;
+    this.radius = radius;
+    tHemisphere = hemisphereOnly;
+    cx = center.x;
+    cy = center.y;
+    cz = center.z;
+    ix = cellIndex(hemisphereOnly ? cx : cx - radius, g.x0, g.nx);
+    ix1 = cellIndex(cx + radius, g.x0, g.nx);
+    iy0 = cellIndex(cy - radius, g.y0, g.ny);
+    iy1 = cellIndex(cy + radius, g.y0, g.ny);
+    iz0 = cellIndex(cz - radius, g.z0, g.nz);
+    iz1 = cellIndex(cz + radius, g.z0, g.nz);
+    iy = iy0;
+    slot = slotEnd = 0;
+    if (radius < 0 || g.getCount() == 0)
+      ix = ix1 + 1;
+  }
+
+  private int cellIndex(float v, float v0, int n) {
+    float f = (v - v0) / grid.cellSize;
+    return (f < 0 ? 0 : f >= n ? n - 1 : (int) f);
+  }
+
+  /**
+   * ends the current search; the iterator may be reinitialized
+   * and used again
+   */
+  public void release() {
+    slot = slotEnd = 0;
+    ix = ix1 + 1;
+  }
+
+  /**
+   * normal iterator predicate
+   *
+   * @return boolean
+   */
+  public boolean hasMoreElements() {
+    SpatialGrid g = grid;
+    float[] xs = g.xs, ys = g.ys, zs = g.zs;
+    while (true) {
+      for (; slot < slotEnd; slot++) {
+        dx = xs[slot] - cx;
+        if ((!tHemisphere || dx >= 0) && (dx = Math.abs(dx)) <= radius
+            && (dy = Math.abs(ys[slot] - cy)) <= radius
+            && (dz = Math.abs(zs[slot] - cz)) <= radius)
+          return true;
+      }
+      // next column of cells along z
+      if (ix > ix1)
+        return false;
+      int c = (ix * g.ny + iy) * g.nz;
+      slot = g.cellStart[c + iz0];
+      slotEnd = g.cellStart[c + iz1 + 1];
+      if (++iy > iy1) {
+        iy = iy0;
+        ix++;
+      }
+    }
+  }
+
+  /**
+   * normal iterator method
+   *
+   * @return the index of the point
+   */
+  public int nextElement() {
+    return grid.indexes[slot++];
+  }
+
+  /**
+   * After calling nextElement(), allows one to find out
+   * the value of the distance squared. To get the distance
+   * just take the sqrt.
+   *
+   * @return float
+   */
+  public float foundDistance2() {
+    return dx * dx + dy * dy + dz * dz;
+  }
+
+}
@@ -0,0 +1,311 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-04-17 18:24:30 -0500 (Sat, 17 Apr 2010) $
+ *
+ * Copyright (C) 2010  Jmol Development, www.jmol.org
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.bspt;
+
+import java.util.BitSet;
+
+import javax.vecmath.Point3f;
+
+import org.jmol.util.Logger;
+
+/**
+ *<p>
+ *  A cell list: an alternative to Bspt for neighbor searches.
+ *</p>
+ *<p>
+ *  Space is divided into cubic cells of a fixed edge length, and the points
+ *  are sorted by cell into flat arrays. cellStart[c] is the first slot of
+ *  cell c, and cellStart[c + 1] is one past its last slot. For each slot we
+ *  keep the point index and its coordinates (in separate x, y, and z
+ *  arrays), so a search only touches primitive arrays. Within a cell the
+ *  slots are kept in order of point index.
+ *</p>
+ *<p>
+ *  Cells are numbered (ix * ny + iy) * nz + iz, so that a run of cells
+ *  along z is also a run of slots.
+ *</p>
+ *<p>
+ *  When only some of the points have moved, update() relocates just those
+ *  points in a copy of the list rather than rebuilding it. A grid is never
+ *  changed once built, so iterators already reading it are not disturbed.
+ *</p>
+ */
+
+public final class SpatialGrid {
+
+  public final static float DEFAULT_CELL_SIZE = 4.0f;
+
+  // no more than this many cells per point
+  private final static int MAX_CELLS_PER_POINT = 8;
+
+  float cellSize;
+  float x0, y0, z0;
+  int nx, ny, nz;
+  int[] cellStart;
+  int[] indexes;
+  float[] xs, ys, zs;
+  private int count;
+
+  // slot of each point index, or -1
+  private int[] slots;
+
+  /**
+   * @param points
+   * @param bs     the points to include; their indexes are what the
+   *               iterator returns
+   * @param cellSize
+   */
+  public SpatialGrid(Point3f[] points, BitSet bs, float cellSize) {
+    this.cellSize = (cellSize > 0 ? cellSize : DEFAULT_CELL_SIZE);
+    build(points, bs);
+  }
+
+  private SpatialGrid(SpatialGrid g) {
+    cellSize = g.cellSize;
+    x0 = g.x0;
+    y0 = g.y0;
+    z0 = g.z0;
+    nx = g.nx;
+    ny = g.ny;
+    nz = g.nz;
+    count = g.count;
+    cellStart = (int[]) g.cellStart.clone();
+    indexes = (int[]) g.indexes.clone();
+    xs = (float[]) g.xs.clone();
+    ys = (float[]) g.ys.clone();
+    zs = (float[]) g.zs.clone();
+    slots = (int[]) g.slots.clone();
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  private void build(Point3f[] points, BitSet bs) {
+    count = bs.cardinality();
+    float xMin = Float.MAX_VALUE, yMin = Float.MAX_VALUE, zMin = Float.MAX_VALUE;
+    float xMax = -Float.MAX_VALUE, yMax = -Float.MAX_VALUE, zMax = -Float.MAX_VALUE;
+    int iMax = 0;
+    for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+      Point3f pt = points[i];
+      if (pt.x < xMin)
+        xMin = pt.x;
+      if (pt.x > xMax)
+        xMax = pt.x;
+      if (pt.y < yMin)
+        yMin = pt.y;
+      if (pt.y > yMax)
+        yMax = pt.y;
+      if (pt.z < zMin)
+        zMin = pt.z;
+      if (pt.z > zMax)
+        zMax = pt.z;
+      iMax = i;
+    }
+    if (count == 0)
+      xMin = yMin = zMin = xMax = yMax = zMax = 0;
+    // one empty cell of margin on each side, so that small
+    // displacements can be handled by update()
+    while (true) {
+      x0 = xMin - cellSize;
+      y0 = yMin - cellSize;
+      z0 = zMin - cellSize;
+      nx = (int) ((xMax - x0) / cellSize) + 2;
+      ny = (int) ((yMax - y0) / cellSize) + 2;
+      nz = (int) ((zMax - z0) / cellSize) + 2;
+      if ((long) nx * ny * nz <= (long) MAX_CELLS_PER_POINT * count + 64)
+        break;
+      cellSize *= 1.5f;
+    }
+    int nCells = nx * ny * nz;
+    cellStart = new int[nCells + 1];
+    indexes = new int[count];
+    xs = new float[count];
+    ys = new float[count];
+    zs = new float[count];
+    slots = new int[iMax + 1];
+    for (int i = iMax + 1; --i >= 0;)
+      slots[i] = -1;
+
+    // counting sort by cell; going through the points in order
+    // leaves each cell sorted by point index
+
+    int[] cells = new int[count];
+    int n = 0;
+    for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+      Point3f pt = points[i];
+      int c = cells[n++] = getCell(pt.x, pt.y, pt.z);
+      cellStart[c + 1]++;
+    }
+    for (int c = 0; c < nCells; c++)
+      cellStart[c + 1] += cellStart[c];
+    int[] next = new int[nCells];
+    System.arraycopy(cellStart, 0, next, 0, nCells);
+    n = 0;
+    for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+      int s = next[cells[n++]]++;
+      Point3f pt = points[i];
+      indexes[s] = i;
+      xs[s] = pt.x;
+      ys[s] = pt.y;
+      zs[s] = pt.z;
+      slots[i] = s;
+    }
+  }
+
+  private int getCell(float x, float y, float z) {
+    int ix = (int) ((x - x0) / cellSize);
+    int iy = (int) ((y - y0) / cellSize);
+    int iz = (int) ((z - z0) / cellSize);
+    if (ix < 0 || ix >= nx || iy < 0 || iy >= ny || iz < 0 || iz >= nz
+        || x < x0 || y < y0 || z < z0)
+      return -1;
+    return (ix * ny + iy) * nz + iz;
+  }
+
+  /**
+   * Makes an up-to-date copy of the grid after some points have moved.
+   * Points that have stayed in their cell are just given their new
+   * coordinates; the others are moved to their new cell. This grid is
+   * left as it was.
+   *
+   * @param points
+   * @param bsMoved   points that may have moved; may include points not in
+   *                  this grid
+   * @return the new grid, or null if too many points changed cells or a
+   *         point left the grid, in which case a new one must be built
+   */
+  public SpatialGrid update(Point3f[] points, BitSet bsMoved) {
+    return new SpatialGrid(this).updateCopy(points, bsMoved);
+  }
+
+  private SpatialGrid updateCopy(Point3f[] points, BitSet bsMoved) {
+    int nMax = count / 8 + 16;
+    BitSet bsCells = null;
+    for (int i = bsMoved.nextSetBit(0); i >= 0 && i < slots.length; i = bsMoved
+        .nextSetBit(i + 1)) {
+      int s = slots[i];
+      if (s < 0)
+        continue;
+      Point3f pt = points[i];
+      int cOld = getCell(xs[s], ys[s], zs[s]);
+      int cNew = getCell(pt.x, pt.y, pt.z);
+      if (cNew < 0)
+        return null;
+      if (cNew != cOld) {
+        if (--nMax < 0)
+          return null;
+        if (bsCells == null)
+          bsCells = new BitSet();
+        s = move(s, cOld, cNew, bsCells);
+      }
+      xs[s] = pt.x;
+      ys[s] = pt.y;
+      zs[s] = pt.z;
+    }
+    if (bsCells != null)
+      for (int c = bsCells.nextSetBit(0); c >= 0; c = bsCells.nextSetBit(c + 1))
+        sortCell(c);
+    return this;
+  }
+
+  /**
+   * Walks a slot from one cell to another by shifting the boundary of
+   * each cell in between by one slot.
+   *
+   * @param s
+   * @param cOld
+   * @param cNew
+   * @param bsCells  collects the cells that need to be resorted
+   * @return the new slot
+   */
+  private int move(int s, int cOld, int cNew, BitSet bsCells) {
+    if (cNew > cOld) {
+      for (int c = cOld; c < cNew; c++) {
+        int last = cellStart[c + 1] - 1;
+        swap(s, last);
+        s = last;
+        cellStart[c + 1]--;
+        bsCells.set(c);
+      }
+    } else {
+      for (int c = cOld; c > cNew; c--) {
+        int first = cellStart[c];
+        swap(s, first);
+        s = first;
+        cellStart[c]++;
+        bsCells.set(c);
+      }
+    }
+    bsCells.set(cNew);
+    return s;
+  }
+
+  private void swap(int s1, int s2) {
+    if (s1 == s2)
+      return;
+    int i = indexes[s1];
+    indexes[s1] = indexes[s2];
+    indexes[s2] = i;
+    slots[indexes[s1]] = s1;
+    slots[i] = s2;
+    float f = xs[s1];
+    xs[s1] = xs[s2];
+    xs[s2] = f;
+    f = ys[s1];
+    ys[s1] = ys[s2];
+    ys[s2] = f;
+    f = zs[s1];
+    zs[s1] = zs[s2];
+    zs[s2] = f;
+  }
+
+  private void sortCell(int c) {
+    // insertion sort -- cells are small
+    int sMin = cellStart[c];
+    int sMax = cellStart[c + 1];
+    for (int s = sMin + 1; s < sMax; s++)
+      for (int t = s; t > sMin && indexes[t - 1] > indexes[t]; t--)
+        swap(t - 1, t);
+  }
+
+  public GridIterator allocateIterator() {
+    return new GridIterator(this);
+  }
+
+  public void stats() {
+    int nCells = nx * ny * nz;
+    int nMax = 0;
+    int nOccupied = 0;
+    for (int c = 0; c < nCells; c++) {
+      int n = cellStart[c + 1] - cellStart[c];
+      if (n > 0)
+        nOccupied++;
+      if (n > nMax)
+        nMax = n;
+    }
+    Logger.info("SpatialGrid " + count + " points " + nx + "x" + ny + "x" + nz
+        + " cells of " + cellSize + " occupied=" + nOccupied + " max=" + nMax);
+  }
+
+}
@@ -0,0 +1,239 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.export.image;
+
+/**
+ * The colors of an image for GifEncoder, counted in a primitive hash
+ * table, and reduced to a palette by median cut when there are too many.
+ *
+ * The box split next is the one with the greatest product of its pixel
+ * count and the length of its longest side, and it is split along that
+ * side at the median pixel, until there are as many boxes as palette
+ * entries or no box holds more than one color. Each palette entry is the mean of the colors in its box,
+ * weighted by their pixel counts. An image with few enough colors keeps
+ * them exactly.
+ *
+ */
+final class ColorQuantizer {
+
+  private int[] keys;   // the rgb of each slot, or -1 if empty
+  private int[] values; // pixel counts, then palette indexes
+  private int mask;
+  private int colorCount;
+
+  /**
+   * @param pixels  0xRRGGBB, or -1 for a pixel that is not to be counted
+   */
+  ColorQuantizer(int[] pixels) {
+    setTableSize(4096);
+    for (int i = pixels.length; --i >= 0;) {
+      int rgb = pixels[i];
+      if (rgb < 0)
+        continue;
+      int slot = findSlot(rgb);
+      if (keys[slot] < 0) {
+        keys[slot] = rgb;
+        values[slot] = 1;
+        if (++colorCount * 2 > keys.length)
+          rehash();
+      } else {
+        values[slot]++;
+      }
+    }
+  }
+
+  private void setTableSize(int n) {
+    keys = new int[n];
+    values = new int[n];
+    for (int i = n; --i >= 0;)
+      keys[i] = -1;
+    mask = n - 1;
+  }
+
+  private int findSlot(int rgb) {
+    int slot = ((rgb * 0x9E3779B1) >>> 8) & mask;
+    while (keys[slot] >= 0 && keys[slot] != rgb)
+      slot = (slot + 1) & mask;
+    return slot;
+  }
+
+  private void rehash() {
+    int[] oldKeys = keys;
+    int[] oldValues = values;
+    setTableSize(oldKeys.length * 2);
+    for (int i = oldKeys.length; --i >= 0;)
+      if (oldKeys[i] >= 0) {
+        int slot = findSlot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+  }
+
+  int getColorCount() {
+    return colorCount;
+  }
+
+  /**
+   * Builds the palette; after this, getIndex gives the entry for each color.
+   * 
+   * @param maxColors
+   * @return the rgb of each palette entry
+   */
+  int[] getPalette(int maxColors) {
+    int n = colorCount;
+    int[] colors = new int[n];
+    int[] weights = new int[n];
+    for (int i = keys.length, j = 0; --i >= 0;)
+      if (keys[i] >= 0) {
+        colors[j] = keys[i];
+        weights[j++] = values[i];
+      }
+    if (n <= maxColors) {
+      for (int i = 0; i < n; i++)
+        values[findSlot(colors[i])] = i;
+      return colors;
+    }
+
+    // boxes are ranges [lo, hi) of colors
+
+    int[] lo = new int[maxColors];
+    int[] hi = new int[maxColors];
+    int[] shift = new int[maxColors];
+    long[] score = new long[maxColors];
+    int[] tmpColors = new int[n];
+    int[] tmpWeights = new int[n];
+    int[] bucket = new int[257];
+    hi[0] = n;
+    setLongestSide(colors, weights, 0, n, 0, shift, score);
+    int nBoxes = 1;
+    while (nBoxes < maxColors) {
+      int b = -1;
+      for (int i = 0; i < nBoxes; i++)
+        if (score[i] > 0 && (b < 0 || score[i] > score[b]))
+          b = i;
+      if (b < 0)
+        break;
+
+      // counting sort of the box along its longest side
+
+      int s = shift[b];
+      for (int i = 0; i < 257; i++)
+        bucket[i] = 0;
+      long total = 0;
+      for (int i = lo[b]; i < hi[b]; i++) {
+        bucket[((colors[i] >> s) & 0xFF) + 1]++;
+        total += weights[i];
+      }
+      for (int i = 0; i < 256; i++)
+        bucket[i + 1] += bucket[i];
+      for (int i = lo[b]; i < hi[b]; i++) {
+        int k = lo[b] + bucket[(colors[i] >> s) & 0xFF]++;
+        tmpColors[k] = colors[i];
+        tmpWeights[k] = weights[i];
+      }
+      System.arraycopy(tmpColors, lo[b], colors, lo[b], hi[b] - lo[b]);
+      System.arraycopy(tmpWeights, lo[b], weights, lo[b], hi[b] - lo[b]);
+
+      // split at the median pixel, leaving at least one color in each half
+
+      int mid = lo[b];
+      for (long sum = 0; mid < hi[b] - 1 && (sum += weights[mid]) * 2 < total;)
+        mid++;
+      if (++mid == hi[b])
+        mid--;
+      lo[nBoxes] = mid;
+      hi[nBoxes] = hi[b];
+      hi[b] = mid;
+      setLongestSide(colors, weights, lo[b], hi[b], b, shift, score);
+      setLongestSide(colors, weights, lo[nBoxes], hi[nBoxes], nBoxes, shift,
+          score);
+      nBoxes++;
+    }
+
+    int[] palette = new int[nBoxes];
+    for (int b = 0; b < nBoxes; b++) {
+      long r = 0, g = 0, bl = 0, w = 0;
+      for (int i = lo[b]; i < hi[b]; i++) {
+        int rgb = colors[i];
+        long c = weights[i];
+        r += ((rgb >> 16) & 0xFF) * c;
+        g += ((rgb >> 8) & 0xFF) * c;
+        bl += (rgb & 0xFF) * c;
+        w += c;
+      }
+      palette[b] = (int) ((r + w / 2) / w) << 16 | (int) ((g + w / 2) / w) << 8
+          | (int) ((bl + w / 2) / w);
+      for (int i = lo[b]; i < hi[b]; i++)
+        values[findSlot(colors[i])] = b;
+    }
+    return palette;
+  }
+
+  private static void setLongestSide(int[] colors, int[] weights, int i0,
+                                     int i1, int b, int[] shift, long[] score) {
+    long w = 0;
+    int rMin = 255, gMin = 255, bMin = 255, rMax = 0, gMax = 0, bMax = 0;
+    for (int i = i0; i < i1; i++) {
+      int rgb = colors[i];
+      w += weights[i];
+      int r = (rgb >> 16) & 0xFF;
+      int g = (rgb >> 8) & 0xFF;
+      int bl = rgb & 0xFF;
+      if (r < rMin)
+        rMin = r;
+      if (r > rMax)
+        rMax = r;
+      if (g < gMin)
+        gMin = g;
+      if (g > gMax)
+        gMax = g;
+      if (bl < bMin)
+        bMin = bl;
+      if (bl > bMax)
+        bMax = bl;
+    }
+    int dr = rMax - rMin;
+    int dg = gMax - gMin;
+    int db = bMax - bMin;
+    // with a single color, all three are zero, and the box is not split
+    if (dg >= dr && dg >= db) {
+      shift[b] = 8;
+      score[b] = w * dg;
+    } else if (dr >= db) {
+      shift[b] = 16;
+      score[b] = w * dr;
+    } else {
+      shift[b] = 0;
+      score[b] = w * db;
+    }
+  }
+
+  /**
+   * @param rgb  a color counted by the constructor
+   * @return its palette index
+   */
+  int getIndex(int rgb) {
+    return values[findSlot(rgb)];
+  }
+}
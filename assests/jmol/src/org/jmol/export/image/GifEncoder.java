@@ -40,15 +40,14 @@
  * color for the set that is a weighted average of all the colors for that
  * set. 
  * 
+ * Now the colors are counted in ColorQuantizer's primitive hash table and
+ * reduced by median cut, and each pixel's palette index is found once,
+ * before the LZW compression, which remains sequential.
+ * 
  */
 package org.jmol.export.image;
 
 import java.io.*;
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.Enumeration;
-import java.util.Hashtable;
-import java.util.Vector;
 import java.awt.Image;
 import java.awt.image.*;
 
@@ -112,71 +111,15 @@ public class GifEncoder extends ImageEncoder {
     this.interlace = interlace;
   }
 
-  
-  static class ColorItem {
-
-    AdaptiveColorCollection acc;
-    int rgb;
-    int rgb2;
-    int count;
-    int index;
-    boolean isTransparent;
-
-    ColorItem(int rgb, int count, int index, boolean isTransparent) {
-      this.rgb = this.rgb2 = rgb;
-      this.count = count;
-      this.index = index;
-      this.isTransparent = isTransparent;
-    }
-  }
-
-  static class ColorVector extends Vector {
-    void sort() {
-      CountComparator comparator = new CountComparator();
-      Arrays.sort(elementData, comparator);
-    }
-    
-    static class CountComparator implements Comparator {
-      public int compare(Object arg0, Object arg1) {
-        ColorItem a = (ColorItem)arg0;
-        ColorItem b = (ColorItem)arg1;
-        return (a == null ? 1 : b == null ? -1 : a.count < b.count ? -1 : a.count > b.count ? 1 : 0);
-      }    
-    }
-  }
-  
-  static class AdaptiveColorCollection {
-    int rgb;
-    int index;
-    long red;
-    long green;
-    long blue;
-    int count;
-    AdaptiveColorCollection(int rgb) {
-      this.rgb = rgb;
-    }
-    
-    void addRgb(int rgb, int count) {
-      this.count += count;
-      blue += (rgb & 0xFF) * count;
-      green += ((rgb >> 8) & 0xFF) * count;
-      red += ((rgb >> 16) & 0xFF) * count;
-    }  
-    void setRgb(byte[] reds, byte[] grns, byte[] blus) {
-      //System.out.println("setting " + index + " " + red + " " + green + " " + blue + " " + count);
-      reds[index] = (byte) ((red / count) & 0xff);
-      grns[index] = (byte) ((green / count) & 0xff);
-      blus[index] = (byte) ((blue / count) & 0xff);
-    }
-  }
 
   int width, height;
-  int[][] rgbPixels;
+  int[] rgbPixels;
+  byte[] indexes;
 
   void encodeStart(int width, int height) throws IOException {
     this.width = width;
     this.height = height;
-    rgbPixels = new int[height][width];
+    rgbPixels = new int[width * height];
   }
 
   void encodePixels(int x, int y, int w, int h, int[] rgbPixels, int off,
@@ -184,86 +127,35 @@ public class GifEncoder extends ImageEncoder {
     // Save the pixels.
     for (int row = 0; row < h; ++row)
       System.arraycopy(rgbPixels, row * scansize + off,
-          this.rgbPixels[y + row], x, w);
+          this.rgbPixels, (y + row) * width + x, w);
   }
 
-  Hashtable colorHash;
-  ColorVector colorVector;
-
   void encodeDone() throws IOException {
-    int transparentIndex = -1;
-    int transparentRgb = -1;
-    // Put all the pixels into a hash table.
-    colorHash = new Hashtable();
-    colorVector = new ColorVector();
-    int index = 0;
-    String srgb;
-    for (int row = 0; row < height; ++row) {
-      //int rowOffset = row * width;
-      for (int col = 0; col < width; ++col) {
-        int rgb = rgbPixels[row][col];
-        boolean isTransparent = ((rgb >>> 24) < 0x80);
-        if (isTransparent) {
-          if (transparentIndex < 0) {
-            // First transparent color; remember it.
-            transparentIndex = index;
-            transparentRgb = rgb;
-          } else if (rgb != transparentRgb) {
-            // A second transparent color; replace it with
-            // the first one.
-            rgbPixels[row][col] = rgb = transparentRgb;
-          }
-        }
-        ColorItem item = (ColorItem) colorHash
-            .get(srgb = getKey(rgb));
-        if (item == null) {
-          if (index < 0)
-            throw new IOException("too many colors for a GIF");
-          //if (index >= 256)
-          //index = 255;
-          item = new ColorItem(rgb, 1, index, isTransparent);
-          ++index;
-          colorHash.put(srgb, item);
-          colorVector.add(item);
-        } else
-          ++item.count;
+    // All transparent pixels share one palette entry, the last.
+    boolean haveTransparent = false;
+    int n = width * height;
+    for (int i = 0; i < n; i++) {
+      int rgb = rgbPixels[i];
+      if ((rgb >>> 24) < 0x80) {
+        rgbPixels[i] = -1;
+        haveTransparent = true;
+      } else {
+        rgbPixels[i] = rgb & 0xFFFFFF;
       }
     }
-    
-    colorVector.sort();
-    
-    int mask = 0x010101;
-    colorHash = null;
-    int nTotal = index;
-  
-    int nMax = Math.max(index - 1, 0); // leave top 1 untouched
-
-//    for (int i = 0; i < index; i++) {
-//      ColorItem item = (ColorItem) colorVector.get(i);
-//      System.out.println(i + "\t" + item.count + "\t" + getKey(item.rgb));
-//    }
-    
-    Logger.debug("# colors = " + nTotal);
-    while (true) {
-      nTotal = index;
-      colorHash = new Hashtable();
-      AdaptiveColorCollection acc;
-      for (int i = 0; i < nMax; i++) {
-        ColorItem item = (ColorItem) colorVector.get(i);
-        int rgb = (nTotal <= 256 ? item.rgb : item.rgb & ~mask);
-        item.rgb2 = rgb;
-        srgb = getKey(rgb);
-        if ((acc = (AdaptiveColorCollection) colorHash.get(srgb)) == null) {
-          colorHash.put(srgb, acc = new AdaptiveColorCollection(rgb));
-        } else {
-          nTotal--;
-        }
-        item.acc = acc;
-      }
-      mask |= (mask <<= 1);
-      if (nTotal <= 256)
-        break;
+    ColorQuantizer quantizer = new ColorQuantizer(rgbPixels);
+    int[] palette = quantizer.getPalette(haveTransparent ? 255 : 256);
+    int transparentIndex = (haveTransparent ? palette.length : -1);
+    int nTotal = palette.length + (haveTransparent ? 1 : 0);
+    Logger.debug("# colors = " + quantizer.getColorCount() + " reduced to "
+        + nTotal);
+    indexes = new byte[n];
+    for (int i = 0; i < n; i++) {
+      int rgb = rgbPixels[i];
+      indexes[i] = (byte) (rgb < 0 ? transparentIndex : quantizer.getIndex(rgb));
     }
+    rgbPixels = null;
+
     // Figure out how many bits to use.
     int logColors;
     if (nTotal <= 2)
@@ -280,43 +172,17 @@ public class GifEncoder extends ImageEncoder {
     byte[] reds = new byte[mapSize];
     byte[] grns = new byte[mapSize];
     byte[] blus = new byte[mapSize];
-    Hashtable ht = new Hashtable();
-    for (int i = 0; i < index; i++) {
-      ColorItem item = (ColorItem) colorVector.get(i);
-      int rgb = item.rgb;
-      int count = item.count;
-      srgb = getKey(rgb);
-      if (item.acc == null)
-        colorHash.put(srgb, item.acc = new AdaptiveColorCollection(rgb));
-      item.acc.addRgb(rgb, count);
-      ht.put(srgb, item.acc);
-    }
-    int iindex = 0;
-    for (Enumeration e = colorHash.elements(); e.hasMoreElements();) {
-      AdaptiveColorCollection acc = (AdaptiveColorCollection) e.nextElement();
-      acc.index = iindex++;
-      acc.setRgb(reds, grns, blus);
+    for (int i = 0; i < palette.length; i++) {
+      reds[i] = (byte) ((palette[i] >> 16) & 0xff);
+      grns[i] = (byte) ((palette[i] >> 8) & 0xff);
+      blus[i] = (byte) (palette[i] & 0xff);
     }
-    Logger.debug("# colors = " + iindex);
-    colorHash = ht;
     GIFEncode(out, width, height, interlace, (byte) 0, transparentIndex,
         logColors, reds, grns, blus);
   }
 
-  private static String getKey(int rgb) {
-    return Integer.toHexString(rgb).substring(2);
-  }
-
   byte GetPixel(int x, int y) {
-    // now must shift rgb until it corresponds to a node
-    int rgb = rgbPixels[y][x];
-    int iindex;
-    try{
-      iindex = ((AdaptiveColorCollection) colorHash.get(getKey(rgb))).index;
-    } catch (Exception e) {
-      iindex = 0;
-    }
-    return (byte) iindex;
+    return indexes[y * width + x];
   }
 
   static void writeString(OutputStream out, String str) throws IOException {
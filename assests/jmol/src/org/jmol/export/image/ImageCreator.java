@@ -196,9 +196,9 @@ public class ImageCreator implements JmolImageCreatorInterface {
           else if (quality > 9)
             quality = 9;
           if (asBytes) {
-            bytes = PngEncoder.getBytes(image, quality);
+            bytes = PngEncoder.getBytes(image, quality, viewer.getExecutor());
           } else {
-            PngEncoder.write(image, quality, os);
+            PngEncoder.write(image, quality, os, viewer.getExecutor());
             if (appendText == null)
               os.write(viewer.getWrappedState(true).getBytes());
             bytes = null;
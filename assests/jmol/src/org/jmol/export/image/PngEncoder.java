@@ -26,6 +26,9 @@ package org.jmol.export.image;
 import java.awt.Image;
 import java.awt.image.PixelGrabber;
 import java.awt.image.ImageObserver;
+import java.lang.reflect.Method;
+import java.util.Vector;
+import java.util.zip.Adler32;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
@@ -33,6 +36,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.jmol.util.ParallelTasks;
+
 /**
  * PngEncoder takes a Java Image object and creates a byte string which can be saved as a PNG file.
  * The Image is presumed to use the DirectColorModel.
@@ -78,14 +83,32 @@ public class PngEncoder extends Object {
   protected int filter;
   protected int bytesPerPixel;
   protected int compressionLevel;
+  protected Object executor;
 
   public static void write(Image image, int quality, OutputStream os) throws IOException {
     os.write(getBytes(image, quality));
   }
 
+  public static void write(Image image, int quality, OutputStream os,
+                           Object executor) throws IOException {
+    os.write(getBytes(image, quality, executor));
+  }
+
   public static byte[] getBytes(Image image, int quality) {
-    return (new PngEncoder(image, false, PngEncoder.FILTER_NONE,
-        quality)).pngEncode();
+    return getBytes(image, quality, null);
+  }
+
+  /**
+   * @param image
+   * @param quality   the compression level
+   * @param executor  a java.util.concurrent.Executor, or null
+   * @return the PNG file
+   */
+  public static byte[] getBytes(Image image, int quality, Object executor) {
+    PngEncoder encoder = new PngEncoder(image, false, PngEncoder.FILTER_NONE,
+        quality);
+    encoder.setExecutor(executor);
+    return encoder.pngEncode();
   }
 
   /**
@@ -274,6 +297,16 @@ public class PngEncoder extends Object {
     return compressionLevel;
   }
 
+  /**
+   * Set an executor for compressing blocks of rows in parallel.
+   *
+   * @param executor  a java.util.concurrent.Executor, or null to compress
+   *                  on the calling thread only
+   */
+  public void setExecutor(Object executor) {
+    this.executor = executor;
+  }
+
   /**
    * Increase or decrease the length of a byte array.
    *
@@ -477,6 +510,8 @@ public class PngEncoder extends Object {
    * to conserve memory, this method grabs as many rows as will
    * fit into 32K bytes, or the whole image; whichever is less.
    *
+   * With an executor, blocks of 128K are grabbed instead, and they
+   * are compressed in parallel by deflateBlocks.
    *
    * @return true if no errors; false if error grabbing pixels
    */
@@ -501,6 +536,9 @@ public class PngEncoder extends Object {
                     ? 4
                     : 3;
 
+    Vector blocks = (executor == null ? null : new Vector());
+    int blockSize = (blocks == null ? 32767 : PARALLEL_BLOCK_SIZE);
+
     Deflater scrunch = new Deflater(compressionLevel);
     ByteArrayOutputStream outBytes = new ByteArrayOutputStream(1024);
 
@@ -508,7 +546,8 @@ public class PngEncoder extends Object {
                                        scrunch);
     try {
       while (rowsLeft > 0) {
-        nRows = Math.min(32767 / (width * (bytesPerPixel + 1)), rowsLeft);
+        nRows = Math.min(Math.max(1, blockSize
+            / (width * (bytesPerPixel + 1))), rowsLeft);
 
         // nRows = rowsLeft;
 
@@ -566,18 +605,30 @@ public class PngEncoder extends Object {
         /*
          * Write these lines to the output area
          */
-        compBytes.write(scanLines, 0, scanPos);
+        if (blocks == null)
+          compBytes.write(scanLines, 0, scanPos);
+        else
+          blocks.add(scanLines);
 
 
         startRow += nRows;
         rowsLeft -= nRows;
       }
-      compBytes.close();
+      compressedLines = (blocks == null || blocks.size() < 2 ? null
+          : deflateBlocks(blocks));
+      if (compressedLines == null) {
+        if (blocks != null)
+          for (int i = 0; i < blocks.size(); i++) {
+            scanLines = (byte[]) blocks.get(i);
+            compBytes.write(scanLines, 0, scanLines.length);
+          }
+        compBytes.close();
 
-      /*
-       * Write the compressed bytes
-       */
-      compressedLines = outBytes.toByteArray();
+        /*
+         * Write the compressed bytes
+         */
+        compressedLines = outBytes.toByteArray();
+      }
       nCompressed = compressedLines.length;
 
       crc.reset();
@@ -589,7 +640,7 @@ public class PngEncoder extends Object {
 
       crcValue = crc.getValue();
       bytePos = writeInt4((int) crcValue, bytePos);
-      scrunch.finish();
+      scrunch.end();
       return true;
     } catch (IOException e) {
       System.err.println(e.toString());
@@ -597,6 +648,139 @@ public class PngEncoder extends Object {
     }
   }
 
+  // the scan lines compressed on each thread
+  private final static int PARALLEL_BLOCK_SIZE = 131072;
+
+  private final static int MAX_DICTIONARY_SIZE = 32768;
+  private final static Integer SYNC_FLUSH = new Integer(2); // Deflater.SYNC_FLUSH
+
+  private static Method syncDeflate;
+  private static boolean haveSyncDeflate;
+
+  /**
+   * Deflater.deflate(byte[], int, int, int), which is a Java 1.7 method
+   *
+   * @return the method, or null if it is not available
+   */
+  private static Method getSyncDeflate() {
+    if (!haveSyncDeflate) {
+      try {
+        syncDeflate = Deflater.class.getMethod("deflate", new Class[] {
+            byte[].class, Integer.TYPE, Integer.TYPE, Integer.TYPE });
+      } catch (Exception e) {
+        syncDeflate = null;
+      }
+      haveSyncDeflate = true;
+    }
+    return syncDeflate;
+  }
+
+  /**
+   * Compresses blocks of scan lines in parallel into one zlib stream,
+   * as pigz does: each block is raw deflate data ending with a sync flush
+   * -- the last block with the final deflate block -- with the 32K
+   * preceding it as a preset dictionary, so the blocks can simply be
+   * concatenated between a zlib header and the Adler-32 of all the lines.
+   *
+   * @param blocks
+   * @return the zlib stream, or null if sync flush is not available
+   * @throws IOException
+   */
+  private byte[] deflateBlocks(final Vector blocks) throws IOException {
+    Method deflate = getSyncDeflate();
+    if (deflate == null)
+      return null;
+    int n = blocks.size();
+    BlockTask[] tasks = new BlockTask[n];
+    // the checksum of all of the lines is one more task
+    Runnable[] all = new Runnable[n + 1];
+    final Adler32 adler = new Adler32();
+    all[0] = new Runnable() {
+      public void run() {
+        for (int i = 0; i < blocks.size(); i++)
+          adler.update((byte[]) blocks.get(i));
+      }
+    };
+    for (int i = 0; i < n; i++)
+      all[i + 1] = tasks[i] = new BlockTask(deflate, (byte[]) blocks.get(i),
+          (i == 0 ? null : (byte[]) blocks.get(i - 1)), i == n - 1);
+    ParallelTasks.run(executor, all, "PngEncoder");
+    for (int i = 0; i < n; i++)
+      if (tasks[i].error != null)
+        throw new IOException("PngEncoder error: " + tasks[i].error);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    // CMF: deflate with a 32K window; FLG: the level, then check bits
+    int cmf = 0x78;
+    int flg = (compressionLevel < 2 ? 0 : compressionLevel < 6 ? 1
+        : compressionLevel == 6 ? 2 : 3) << 6;
+    flg += 31 - (cmf * 256 + flg) % 31;
+    out.write(cmf);
+    out.write(flg);
+    for (int i = 0; i < n; i++)
+      out.write(tasks[i].bytes, 0, tasks[i].length);
+    long a = adler.getValue();
+    out.write((int) (a >> 24) & 0xff);
+    out.write((int) (a >> 16) & 0xff);
+    out.write((int) (a >> 8) & 0xff);
+    out.write((int) a & 0xff);
+    return out.toByteArray();
+  }
+
+  private class BlockTask implements Runnable {
+    private final Method deflate;
+    private final byte[] data;
+    private final byte[] dictionary;
+    private final boolean isLast;
+    byte[] bytes;
+    int length;
+    Exception error;
+
+    BlockTask(Method deflate, byte[] data, byte[] dictionary, boolean isLast) {
+      this.deflate = deflate;
+      this.data = data;
+      this.dictionary = dictionary;
+      this.isLast = isLast;
+    }
+
+    public void run() {
+      Deflater deflater = new Deflater(compressionLevel, true);
+      try {
+        if (dictionary != null) {
+          int len = Math.min(MAX_DICTIONARY_SIZE, dictionary.length);
+          deflater.setDictionary(dictionary, dictionary.length - len, len);
+        }
+        deflater.setInput(data);
+        bytes = new byte[data.length / 2 + 64];
+        Object[] args = new Object[4];
+        args[3] = SYNC_FLUSH;
+        if (isLast)
+          deflater.finish();
+        while (true) {
+          if (length == bytes.length)
+            bytes = resizeByteArray(bytes, bytes.length * 2);
+          int room = bytes.length - length;
+          int nOut;
+          if (isLast) {
+            nOut = deflater.deflate(bytes, length, room);
+          } else {
+            args[0] = bytes;
+            args[1] = new Integer(length);
+            args[2] = new Integer(room);
+            nOut = ((Integer) deflate.invoke(deflater, args)).intValue();
+          }
+          length += nOut;
+          // a sync flush is complete when it leaves room to spare
+          if (isLast ? deflater.finished() : nOut < room)
+            break;
+        }
+      } catch (Exception e) {
+        error = e;
+      } finally {
+        deflater.end();
+      }
+    }
+  }
+
   /**
    * Write a PNG "IEND" chunk into the pngBytes array.
    */
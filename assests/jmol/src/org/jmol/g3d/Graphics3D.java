@@ -27,6 +27,7 @@ import java.awt.Component;
 import java.awt.Image;
 import java.util.BitSet;
 import java.util.Hashtable;
+import java.util.concurrent.Executor;
 
 import javax.vecmath.Matrix4f;
 import javax.vecmath.Point3i;
@@ -180,6 +181,10 @@ final public class Graphics3D implements JmolRendererInterface {
     return antialiasThisFrame;
   }
 
+  public boolean isPass2() {
+    return isPass2;
+  }
+
   boolean inGreyscaleMode;
   byte[] anaglyphChannelBytes;
   
@@ -266,6 +271,98 @@ final public class Graphics3D implements JmolRendererInterface {
     this.normix3d = new Normix3D();
   }
   
+  /**
+   * Allocates a worker for one band of a tiled rendering. It shares the
+   * buffers and normix rotation of the master, but has its own rasterizers.
+   *  
+   * @param g3d the master
+   */
+  Graphics3D(Graphics3D g3d) {
+    this.line3d = new Line3D(this);
+    this.circle3d = new Circle3D(this);
+    this.sphere3d = new Sphere3D(this);
+    this.triangle3d = new Triangle3D(this);
+    this.cylinder3d = new Cylinder3D(this);
+    this.hermite3d = new Hermite3D(this);
+    this.normix3d = g3d.normix3d;
+  }
+
+  /**
+   * Called by TiledRasterizer prior to rasterizing a set of recorded
+   * primitives. Restricts this worker to pixel rows [yMin, yMax).
+   * 
+   * @param g3d the master
+   * @param yMin
+   * @param yMax
+   */
+  void setTile(Graphics3D g3d, int yMin, int yMax) {
+    width = g3d.width;
+    height = g3d.height;
+    xLast = g3d.xLast;
+    yLast = g3d.yLast;
+    displayMinX = g3d.displayMinX;
+    displayMaxX = g3d.displayMaxX;
+    displayMinY = g3d.displayMinY;
+    displayMaxY = g3d.displayMaxY;
+    bufferSize = g3d.bufferSize;
+    zSlab = g3d.zSlab;
+    zDepth = g3d.zDepth;
+    zShade = g3d.zShade;
+    zShadeR = g3d.zShadeR;
+    zShadeG = g3d.zShadeG;
+    zShadeB = g3d.zShadeB;
+    bgcolor = g3d.bgcolor;
+    inGreyscaleMode = g3d.inGreyscaleMode;
+    antialiasThisFrame = g3d.antialiasThisFrame;
+    twoPass = g3d.twoPass;
+    isPass2 = g3d.isPass2;
+    pbuf = g3d.pbuf;
+    zbuf = g3d.zbuf;
+    pbufT = g3d.pbufT;
+    zbufT = g3d.zbufT;
+    changeableColixMap = g3d.changeableColixMap;
+    currentlyRendering = true;
+    bandMin = yMin;
+    bandMax = yMax;
+    if (g3d.counts == null)
+      counts = null;
+    else if (counts == null)
+      counts = new int[COUNT_MAX];
+    newPixel();
+    pixel = new BandPixel(pixel, yMin * width, yMax * width);
+  }
+
+  private TiledRasterizer tiledRasterizer;
+  private TiledRasterizer tiler; // non-null while recording a frame
+  int bandMin = 0;
+  int bandMax = Integer.MAX_VALUE;
+
+  /**
+   * Turns tiled rendering on or off. With tiling on, the screen is split
+   * into horizontal bands that are rasterized concurrently. 
+   * 
+   * @param executor a java.util.concurrent.Executor, or null to turn tiling off
+   * @param tileCount the number of bands; less than 2 turns tiling off
+   */
+  public void setTiledRendering(Object executor, int tileCount) {
+    tiledRasterizer = (executor instanceof Executor && tileCount > 1
+        ? new TiledRasterizer(this, (Executor) executor, tileCount) : null);
+  }
+
+  public int getTileCount() {
+    return (tiledRasterizer == null ? 0 : tiledRasterizer.getTileCount());
+  }
+
+  /**
+   * Rasterizes any primitives that have been recorded but not drawn.
+   * Must be called before anything reads or writes the buffers directly.
+   */
+  private void flushTiles() {
+    if (tiler != null)
+      tiler.flush();
+  }
+
+  
   int newWindowWidth, newWindowHeight;
   boolean newAntialiasing;
 
@@ -338,6 +435,7 @@ final public class Graphics3D implements JmolRendererInterface {
     if (backgroundImage != null)
       plotImage(Integer.MIN_VALUE, 0, Integer.MIN_VALUE, backgroundImage, null, (short) 0, 0, 0);
     random = Math.random();
+    tiler = tiledRasterizer;
   }
   public double random;
 
@@ -352,6 +450,7 @@ final public class Graphics3D implements JmolRendererInterface {
   public boolean setPass2(boolean antialiasTranslucent) {
     if (!haveTranslucentObjects || !currentlyRendering)
       return false;
+    flushTiles();
     isPass2 = true;
     colixCurrent = 0;
     addAllPixels = true;
@@ -371,6 +470,8 @@ final public class Graphics3D implements JmolRendererInterface {
   public void endRendering() {
     if (!currentlyRendering)
       return;
+    flushTiles();
+    tiler = null;
     if (pbuf != null) {
       if (isPass2)
         mergeOpaqueAndTranslucentBuffers();
@@ -491,6 +592,7 @@ final public class Graphics3D implements JmolRendererInterface {
    * @param argb an argb value with alpha channel
    */
   public void setBackgroundArgb(int argb) {
+    flushTiles();
     bgcolor = argb;
     // background of Jmol transparent in front of certain applications (VLC Player)
     // when background [0,0,1]. 
@@ -506,6 +608,7 @@ final public class Graphics3D implements JmolRendererInterface {
    * @param greyscaleMode Flag for greyscale rendering
    */
   public void setGreyscaleMode(boolean greyscaleMode) {
+    flushTiles();
     this.inGreyscaleMode = greyscaleMode;
   }
 
@@ -539,6 +642,7 @@ final public class Graphics3D implements JmolRendererInterface {
    */
   public void setSlabAndDepthValues(int slabValue, int depthValue,
                                     boolean zShade, int zSlab, int zDepth) {
+    flushTiles();
     slab = slabValue < 0 ? 0 : slabValue;
     depth = depthValue < 0 ? 0 : depthValue;
     this.zShade = zShade;
@@ -548,10 +652,14 @@ final public class Graphics3D implements JmolRendererInterface {
       zShadeR = bgcolor & 0xFF;
       zShadeG = (bgcolor & 0xFF00) >> 8;
       zShadeB = (bgcolor & 0xFF0000) >> 16;
-      pixel = new ShadePixel();
-    } else {
-      pixel = new Pixel();
     }
+    newPixel();
+  }
+
+  private void newPixel() {
+    pixel = (zShade ? new ShadePixel() : new Pixel());
+    if (counts != null)
+      pixel = new CountPixel(pixel, counts);
   }
 
   Pixel pixel;
@@ -705,7 +813,7 @@ final public class Graphics3D implements JmolRendererInterface {
     return platform.hasContent();
   }
 
-  private int currentShadeIndex;
+  int currentShadeIndex;
   
   /**
    * sets current color from colix color index
@@ -793,6 +901,99 @@ final public class Graphics3D implements JmolRendererInterface {
     }
   }
 
+  /**
+   * Used by the workers of a tiled rendering to discard pixels
+   * outside of their band of rows.
+   */
+  class BandPixel extends Pixel {
+    private final Pixel pixel;
+    private final int offsetMin, offsetMax;
+
+    BandPixel(Pixel pixel, int offsetMin, int offsetMax) {
+      this.pixel = pixel;
+      this.offsetMin = offsetMin;
+      this.offsetMax = offsetMax;
+    }
+
+    void addPixel(int offset, int z, int p) {
+      if (offset >= offsetMin && offset < offsetMax)
+        pixel.addPixel(offset, z, p);
+    }
+  }
+
+  /*
+   * Primitive and pixel counts, for the render profiler. Counting costs one
+   * test per primitive when it is off; pixels are counted only by a
+   * CountPixel, which is there only while counting is on.
+   * 
+   */
+
+  public final static int COUNT_SPHERES = 0;
+  public final static int COUNT_CYLINDERS = 1;
+  public final static int COUNT_TRIANGLES = 2;
+  public final static int COUNT_TEXT = 3;
+  public final static int COUNT_PIXELS = 4;
+  public final static int COUNT_MAX = 5;
+
+  private int[] counts;
+
+  /**
+   * turns the counting of primitives and pixels on or off; to be called only
+   * from the rendering thread, between frames
+   * 
+   * @param TF
+   */
+  public void setCounting(boolean TF) {
+    if (TF == (counts != null))
+      return;
+    flushTiles();
+    counts = (TF ? new int[COUNT_MAX] : null);
+    newPixel();
+  }
+
+  /**
+   * Rasterizes anything recorded but not drawn, so that the counts and the
+   * time taken are complete.
+   * 
+   * @return the running counts (COUNT_xxx), or null if counting is off
+   */
+  public int[] getCounts() {
+    flushTiles();
+    return counts;
+  }
+
+  void addTileCounts(Graphics3D tile) {
+    if (counts == null || tile.counts == null)
+      return;
+    counts[COUNT_PIXELS] += tile.counts[COUNT_PIXELS];
+    tile.counts[COUNT_PIXELS] = 0;
+  }
+
+  private void count(int type) {
+    if (counts != null)
+      counts[type]++;
+  }
+
+  private void count(int type, int n) {
+    if (counts != null)
+      counts[type] += n;
+  }
+
+  class CountPixel extends Pixel {
+    private final Pixel pixel;
+    private final int[] counts;
+
+    CountPixel(Pixel pixel, int[] counts) {
+      this.pixel = pixel;
+      this.counts = counts;
+    }
+
+    void addPixel(int offset, int z, int p) {
+      counts[COUNT_PIXELS]++;
+      pixel.addPixel(offset, z, p);
+    }
+  }
+
   public void drawFilledCircle(short colixRing, short colixFill, int diameter,
                                int x, int y, int z) {
     if (isClippedZ(z))
@@ -802,19 +1003,38 @@ final public class Graphics3D implements JmolRendererInterface {
     if (isClipped && isClippedXY(diameter, x, y))
       return;
     if (colixRing != 0 && setColix(colixRing)) {
-      if (isClipped)
+      if (tiler != null)
+        addCircle(false, isClipped, x, y, z, diameter);
+      else if (isClipped)
         circle3d.plotCircleCenteredClipped(x, y, z, diameter);
       else
         circle3d.plotCircleCenteredUnclipped(x, y, z, diameter);
     }
     if (colixFill != 0 && setColix(colixFill)) {
-      if (isClipped)
+      if (tiler != null)
+        addCircle(true, isClipped, x, y, z, diameter);
+      else if (isClipped)
         circle3d.plotFilledCircleCenteredClipped(x, y, z, diameter);
       else
         circle3d.plotFilledCircleCenteredUnclipped(x, y, z, diameter);
     }
   }
 
+  private void addCircle(boolean isFilled, boolean isClipped, int x, int y,
+                         int z, int diameter) {
+    int r = (diameter + 1) / 2;
+    TiledRasterizer.Primitive p = tiler.add(TiledRasterizer.CIRCLE, y - r, y
+        + r);
+    if (p == null)
+      return;
+    p.i[0] = x;
+    p.i[1] = y;
+    p.i[2] = z;
+    p.i[3] = diameter;
+    p.i[4] = (isFilled ? 1 : 0);
+    p.i[5] = (isClipped ? 1 : 0);
+  }
+
   /**
    * fills a solid sphere
    *
@@ -824,17 +1044,45 @@ final public class Graphics3D implements JmolRendererInterface {
    * @param z center z
    */
   public void fillSphere(int diameter, int x, int y, int z) {
+    count(COUNT_SPHERES);
     switch (diameter) {
     case 1:
-      plotPixelClipped(argbCurrent, x, y, z);
+      if (tiler != null)
+        addPixel(argbCurrent, x, y, z);
+      else
+        plotPixelClipped(argbCurrent, x, y, z);
       return;
     case 0:
       return;
     }
     if (diameter <= (antialiasThisFrame ? Sphere3D.maxSphereDiameter2
-        : Sphere3D.maxSphereDiameter))
+        : Sphere3D.maxSphereDiameter)) {
+      if (tiler != null) {
+        int r = (diameter + 1) >> 1;
+        TiledRasterizer.Primitive p = tiler.add(TiledRasterizer.SPHERE, y - r,
+            y + r);
+        if (p == null)
+          return;
+        Sphere3D.prepareShading(diameter);
+        p.i[0] = diameter;
+        p.i[1] = x;
+        p.i[2] = y;
+        p.i[3] = z;
+        return;
+      }
       sphere3d.render(shadesCurrent, !addAllPixels, diameter, x, y, z, null,
           null, null, -1, null);
+    }
+  }
+
+  private void addPixel(int argb, int x, int y, int z) {
+    TiledRasterizer.Primitive p = tiler.add(TiledRasterizer.PIXEL, y, y);
+    if (p == null)
+      return;
+    p.i[0] = argb;
+    p.i[1] = x;
+    p.i[2] = y;
+    p.i[3] = z;
   }
 
   /**
@@ -862,6 +1110,8 @@ final public class Graphics3D implements JmolRendererInterface {
                               int z, int diameter, Matrix3f mToEllipsoidal,
                               double[] coef, Matrix4f mDeriv,
                               int selectedOctant, Point3i[] octantPoints) {
+    count(COUNT_SPHERES);
+    flushTiles();
     switch (diameter) {
     case 1:
       plotPixelClipped(argbCurrent, x, y, z);
@@ -889,6 +1139,7 @@ final public class Graphics3D implements JmolRendererInterface {
     // labels (and rubberband, not implemented) and navigation cursor
     if (zSlab != 0 && isClippedZ(zSlab))
       return;
+    flushTiles();
     int w = rWidth - 1;
     int h = rHeight - 1;
     int xRight = x + w;
@@ -975,6 +1226,7 @@ final public class Graphics3D implements JmolRendererInterface {
    * @param heightFill pixel count
    */
   public void fillRect(int x, int y, int z, int zSlab, int widthFill, int heightFill) {
+    flushTiles();
     // hover and labels only -- slab at atom or front -- simple Z/window clip
     if (isClippedZ(zSlab))
       return;
@@ -1047,6 +1299,8 @@ final public class Graphics3D implements JmolRendererInterface {
   
   public void plotText(int x, int y, int z, int argb,
                 String text, Font3D font3d, JmolRendererInterface jmolRenderer) {
+    count(COUNT_TEXT);
+    flushTiles();
     Text3D.plot(x, y, z, argb, text, font3d, this, jmolRenderer, 
         antialiasThisFrame);    
   }
@@ -1062,6 +1316,7 @@ final public class Graphics3D implements JmolRendererInterface {
 
   public void plotImage(int x, int y, int z, Image image, JmolRendererInterface jmolRenderer,
                         short bgcolix, int width, int height) {
+    flushTiles();
     setColix(bgcolix);
     if (bgcolix == 0)
       argbCurrent = 0;
@@ -1116,11 +1371,15 @@ final public class Graphics3D implements JmolRendererInterface {
   
   public void drawPixel(int x, int y, int z) {
     // measures - render angle
-    plotPixelClipped(x, y, z);
+    if (tiler != null)
+      addPixel(argbCurrent, x, y, z);
+    else
+      plotPixelClipped(x, y, z);
   }
 
   public void drawPoints(int count, int[] coordinates, int scale) {
     // for dots only
+    flushTiles();
     if (scale > 1) {
       float s2 = scale * scale * 0.8f;
       for (int i = -scale; i < scale; i++) {
@@ -1142,6 +1401,10 @@ final public class Graphics3D implements JmolRendererInterface {
 
   public void drawDashedLine(int run, int rise, Point3i pointA, Point3i pointB) {
     // measures only
+    if (tiler != null) {
+      addDashedLine(run, rise, pointA, pointB);
+      return;
+    }
     line3d.plotDashedLine(argbCurrent, !addAllPixels, run, rise, 
         pointA.x, pointA.y, pointA.z,
         pointB.x, pointB.y, pointB.z, true);
@@ -1149,13 +1412,58 @@ final public class Graphics3D implements JmolRendererInterface {
 
   public void drawDottedLine(Point3i pointA, Point3i pointB) {
      //axes, bbcage only
+    if (tiler != null) {
+      addDashedLine(2, 1, pointA, pointB);
+      return;
+    }
     line3d.plotDashedLine(argbCurrent, !addAllPixels, 2, 1,
                           pointA.x, pointA.y, pointA.z,
                           pointB.x, pointB.y, pointB.z, true);
   }
 
+  private void addDashedLine(int run, int rise, Point3i pointA, Point3i pointB) {
+    TiledRasterizer.Primitive p = tiler.add(TiledRasterizer.DASHED_LINE, Math
+        .min(pointA.y, pointB.y), Math.max(pointA.y, pointB.y));
+    if (p == null)
+      return;
+    p.i[0] = argbCurrent;
+    p.i[1] = (addAllPixels ? 0 : 1);
+    p.i[2] = run;
+    p.i[3] = rise;
+    p.i[4] = pointA.x;
+    p.i[5] = pointA.y;
+    p.i[6] = pointA.z;
+    p.i[7] = pointB.x;
+    p.i[8] = pointB.y;
+    p.i[9] = pointB.z;
+  }
+
+  private void addLine(int argbA, boolean isScreenedA, int argbB,
+                       boolean isScreenedB, int x1, int y1, int z1, int x2,
+                       int y2, int z2) {
+    TiledRasterizer.Primitive p = tiler.add(TiledRasterizer.LINE, Math.min(
+        y1, y2), Math.max(y1, y2));
+    if (p == null)
+      return;
+    p.i[0] = argbA;
+    p.i[1] = (isScreenedA ? 1 : 0);
+    p.i[2] = argbB;
+    p.i[3] = (isScreenedB ? 1 : 0);
+    p.i[4] = x1;
+    p.i[5] = y1;
+    p.i[6] = z1;
+    p.i[7] = x2;
+    p.i[8] = y2;
+    p.i[9] = z2;
+  }
+
   public void drawLine(int x1, int y1, int z1, int x2, int y2, int z2) {
     // stars
+    if (tiler != null) {
+      addLine(argbCurrent, !addAllPixels, argbCurrent, !addAllPixels, x1, y1,
+          z1, x2, y2, z2);
+      return;
+    }
     line3d.plotLine(argbCurrent, !addAllPixels, argbCurrent, !addAllPixels,
                     x1, y1, z1, x2, y2, z2, true);
   }
@@ -1171,12 +1479,22 @@ final public class Graphics3D implements JmolRendererInterface {
       colixB = 0;
     if (colixA == 0 && colixB == 0)
       return;
+    if (tiler != null) {
+      addLine(argbA, isScreenedA, argbCurrent, !addAllPixels, x1, y1, z1, x2,
+          y2, z2);
+      return;
+    }
     line3d.plotLine(argbA, isScreenedA, argbCurrent, !addAllPixels,
                     x1, y1, z1, x2, y2, z2, true);
   }
   
   public void drawLine(Point3i pointA, Point3i pointB) {
     // draw quadrilateral and hermite
+    if (tiler != null) {
+      addLine(argbCurrent, !addAllPixels, argbCurrent, !addAllPixels,
+          pointA.x, pointA.y, pointA.z, pointB.x, pointB.y, pointB.z);
+      return;
+    }
     line3d.plotLine(argbCurrent, !addAllPixels, argbCurrent, !addAllPixels,
                     pointA.x, pointA.y, pointA.z,
                     pointB.x, pointB.y, pointB.z, true);
@@ -1193,21 +1511,64 @@ final public class Graphics3D implements JmolRendererInterface {
       colixB = 0;
     if (colixA == 0 && colixB == 0)
       return;
+    count(COUNT_CYLINDERS);
+    if (tiler != null) {
+      addCylinder(colixA, colixB, isScreenedA, !addAllPixels, endcaps,
+          diameter, xA, yA, zA, xB, yB, zB);
+      return;
+    }
     cylinder3d.render(colixA, colixB, isScreenedA, !addAllPixels, endcaps, diameter,
                       xA, yA, zA, xB, yB, zB);
   }
 
+  private void addCylinder(short colixA, short colixB, boolean isScreenedA,
+                           boolean isScreenedB, byte endcaps, int diameter,
+                           int xA, int yA, int zA, int xB, int yB, int zB) {
+    int r = diameter / 2 + 1;
+    TiledRasterizer.Primitive p = tiler.add(TiledRasterizer.CYLINDER, Math
+        .min(yA, yB)
+        - r, Math.max(yA, yB) + r);
+    if (p == null)
+      return;
+    int[] i = p.i;
+    i[0] = colixA;
+    i[1] = colixB;
+    i[2] = (isScreenedA ? 1 : 0);
+    i[3] = (isScreenedB ? 1 : 0);
+    i[4] = endcaps;
+    i[5] = diameter;
+    i[6] = xA;
+    i[7] = yA;
+    i[8] = zA;
+    i[9] = xB;
+    i[10] = yB;
+    i[11] = zB;
+  }
+
   public void fillCylinderScreen(byte endcaps,
                            int diameter,
                            int xA, int yA, int zA, int xB, int yB, int zB) {
+    count(COUNT_CYLINDERS);
     //measures, vectors, polyhedra
+    if (tiler != null) {
+      addCylinder(colixCurrent, colixCurrent, !addAllPixels, !addAllPixels,
+          endcaps, diameter, xA, yA, zA, xB, yB, zB);
+      return;
+    }
     cylinder3d.render(colixCurrent, colixCurrent, !addAllPixels, !addAllPixels, endcaps, diameter,
                       xA, yA, zA, xB, yB, zB);
   }
 
   public void fillCylinderScreen(byte endcaps, int diameter,
                            Point3i screenA, Point3i screenB) {
+    count(COUNT_CYLINDERS);
     //draw
+    if (tiler != null) {
+      addCylinder(colixCurrent, colixCurrent, !addAllPixels, !addAllPixels,
+          endcaps, diameter, screenA.x, screenA.y, screenA.z, screenB.x,
+          screenB.y, screenB.z);
+      return;
+    }
     cylinder3d.render(colixCurrent, colixCurrent, !addAllPixels, !addAllPixels, endcaps, diameter,
                       screenA.x, screenA.y, screenA.z,
                       screenB.x, screenB.y, screenB.z);
@@ -1215,7 +1576,14 @@ final public class Graphics3D implements JmolRendererInterface {
 
   public void fillCylinder(byte endcaps, int diameter,
                            Point3i screenA, Point3i screenB) {
+    count(COUNT_CYLINDERS);
     //axes, bbcage, uccage, cartoon, dipoles, mesh
+    if (tiler != null) {
+      addCylinder(colixCurrent, colixCurrent, !addAllPixels, !addAllPixels,
+          endcaps, diameter, screenA.x, screenA.y, screenA.z, screenB.x,
+          screenB.y, screenB.z);
+      return;
+    }
     cylinder3d.render(colixCurrent, colixCurrent, !addAllPixels, !addAllPixels, endcaps, diameter,
                       screenA.x, screenA.y, screenA.z,
                       screenB.x, screenB.y, screenB.z);
@@ -1223,7 +1591,24 @@ final public class Graphics3D implements JmolRendererInterface {
 
   public void fillCylinderBits(byte endcaps, int diameter,
                                Point3f screenA, Point3f screenB) {
+    count(COUNT_CYLINDERS);
    // dipole cross, cartoonRockets, draw line
+   if (tiler != null) {
+     int r = diameter / 2 + 1;
+     TiledRasterizer.Primitive p = tiler.add(TiledRasterizer.CYLINDER_BITS,
+         (int) Math.floor(Math.min(screenA.y, screenB.y)) - r, (int) Math
+             .ceil(Math.max(screenA.y, screenB.y))
+             + r);
+     if (p == null)
+       return;
+     int[] i = p.i;
+     i[0] = i[1] = colixCurrent;
+     i[2] = i[3] = (addAllPixels ? 0 : 1);
+     i[4] = endcaps;
+     i[5] = diameter;
+     setFloats(p.f, screenA, screenB);
+     return;
+   }
    cylinder3d.renderBits(colixCurrent, colixCurrent, !addAllPixels, !addAllPixels, endcaps, diameter,
        screenA.x, screenA.y, screenA.z,
        screenB.x, screenB.y, screenB.z);
@@ -1231,7 +1616,13 @@ final public class Graphics3D implements JmolRendererInterface {
 
   public void fillConeScreen(byte endcap, int screenDiameter,
                        Point3i screenBase, Point3i screenTip) {
+    count(COUNT_CYLINDERS);
     // dipoles, mesh, vectors
+    if (tiler != null) {
+      addCone(endcap, screenDiameter, screenBase.x, screenBase.y,
+          screenBase.z, screenTip.x, screenTip.y, screenTip.z, false);
+      return;
+    }
     cylinder3d.renderCone(colixCurrent, !addAllPixels, endcap, screenDiameter,
                           screenBase.x, screenBase.y, screenBase.z,
                           screenTip.x, screenTip.y, screenTip.z, false);
@@ -1239,12 +1630,51 @@ final public class Graphics3D implements JmolRendererInterface {
 
   public void fillConeSceen(byte endcap, int screenDiameter,
                        Point3f screenBase, Point3f screenTip) {
+    count(COUNT_CYLINDERS);
     // cartoons, rockets
+    if (tiler != null) {
+      addCone(endcap, screenDiameter, screenBase.x, screenBase.y,
+          screenBase.z, screenTip.x, screenTip.y, screenTip.z, true);
+      return;
+    }
     cylinder3d.renderCone(colixCurrent, !addAllPixels, endcap, screenDiameter,
                           screenBase.x, screenBase.y, screenBase.z,
                           screenTip.x, screenTip.y, screenTip.z, true);
   }
 
+  private void addCone(byte endcap, int diameter, float xA, float yA,
+                       float zA, float xTip, float yTip, float zTip,
+                       boolean isFloat) {
+    int r = diameter / 2 + 1;
+    TiledRasterizer.Primitive p = tiler.add(TiledRasterizer.CONE, (int) Math
+        .floor(Math.min(yA, yTip))
+        - r, (int) Math.ceil(Math.max(yA, yTip)) + r);
+    if (p == null)
+      return;
+    int[] i = p.i;
+    i[0] = colixCurrent;
+    i[1] = (addAllPixels ? 0 : 1);
+    i[2] = endcap;
+    i[3] = diameter;
+    i[4] = (isFloat ? 1 : 0);
+    float[] f = p.f;
+    f[0] = xA;
+    f[1] = yA;
+    f[2] = zA;
+    f[3] = xTip;
+    f[4] = yTip;
+    f[5] = zTip;
+  }
+
+  private static void setFloats(float[] f, Point3f a, Point3f b) {
+    f[0] = a.x;
+    f[1] = a.y;
+    f[2] = a.z;
+    f[3] = b.x;
+    f[4] = b.y;
+    f[5] = b.z;
+  }
+
   public void drawHermite(int tension,
                           Point3i s0, Point3i s1, Point3i s2, Point3i s3) {
     hermite3d.renderHermiteRope(false, tension, 0, 0, 0, s0, s1, s2, s3);
@@ -1293,6 +1723,15 @@ final public class Graphics3D implements JmolRendererInterface {
   public void drawTriangle(Point3i screenA, Point3i screenB, Point3i screenC,
                            int check) {
     // primary method for unmapped monochromatic Mesh
+    if (tiler != null) {
+      if ((check & 1) == 1)
+        drawLine(screenA, screenB);
+      if ((check & 2) == 2)
+        drawLine(screenB, screenC);
+      if ((check & 4) == 4)
+        drawLine(screenA, screenC);
+      return;
+    }
     if ((check & 1) == 1)
       line3d.plotLine(argbCurrent, !addAllPixels, argbCurrent, !addAllPixels,
           screenA.x, screenA.y, screenA.z, screenB.x, screenB.y, screenB.z,
@@ -1324,21 +1763,66 @@ final public class Graphics3D implements JmolRendererInterface {
                            int xScreenA, int yScreenA, int zScreenA,
                            int xScreenB, int yScreenB, int zScreenB,
                            int xScreenC, int yScreenC, int zScreenC) {
+    count(COUNT_TRIANGLES);
     // polyhedra
     setColorNoisy(normix3d.getShadeIndex(normix));
+    if (tiler != null) {
+      addTriangle(xScreenA, yScreenA, zScreenA, xScreenB, yScreenB, zScreenB,
+          xScreenC, yScreenC, zScreenC, false);
+      return;
+    }
     triangle3d.fillTriangle( xScreenA, yScreenA, zScreenA,
         xScreenB, yScreenB, zScreenB,
         xScreenC, yScreenC, zScreenC, false);
   }
 
   public void fillTriangle(Point3f screenA, Point3f screenB, Point3f screenC) {
+    count(COUNT_TRIANGLES);
     // rockets
     setColorNoisy(getShadeIndex(screenA, screenB, screenC));
+    if (tiler != null) {
+      addTriangle(screenA, screenB, screenC);
+      return;
+    }
     triangle3d.fillTriangle(screenA, screenB, screenC, false);
   }
 
+  private void addTriangle(Point3f screenA, Point3f screenB, Point3f screenC) {
+    addTriangle((int) screenA.x, (int) screenA.y, (int) screenA.z,
+        (int) screenB.x, (int) screenB.y, (int) screenB.z, (int) screenC.x,
+        (int) screenC.y, (int) screenC.z, false);
+  }
+
+  private TiledRasterizer.Primitive addTriangle(int xA, int yA, int zA,
+                                                int xB, int yB, int zB,
+                                                int xC, int yC, int zC,
+                                                boolean useGouraud) {
+    TiledRasterizer.Primitive p = tiler.add(TiledRasterizer.TRIANGLE,
+        TiledRasterizer.min(yA, yB, yC), TiledRasterizer.max(yA, yB, yC));
+    if (p == null)
+      return null;
+    int[] i = p.i;
+    i[0] = xA;
+    i[1] = yA;
+    i[2] = zA;
+    i[3] = xB;
+    i[4] = yB;
+    i[5] = zB;
+    i[6] = xC;
+    i[7] = yC;
+    i[8] = zC;
+    i[9] = (useGouraud ? 1 : 0);
+    return p;
+  }
+
   public void fillTriangle(Point3i screenA, Point3i screenB, Point3i screenC) {
+    count(COUNT_TRIANGLES);
     // cartoon DNA plates
+    if (tiler != null) {
+      addTriangle(screenA.x, screenA.y, screenA.z, screenB.x, screenB.y,
+          screenB.z, screenC.x, screenC.y, screenC.z, false);
+      return;
+    }
     triangle3d.fillTriangle(screenA, screenB, screenC, false);
   }
 
@@ -1346,7 +1830,9 @@ final public class Graphics3D implements JmolRendererInterface {
                            Point3i screenB, short colixB, short normixB,
                            Point3i screenC, short colixC, short normixC,
                            float factor) {
+    count(COUNT_TRIANGLES);
     // isosurface test showing triangles
+    flushTiles();
     boolean useGouraud;
     if (!isPass2 && normixA == normixB && normixA == normixC
         && colixA == colixB && colixA == colixC) {
@@ -1366,6 +1852,7 @@ final public class Graphics3D implements JmolRendererInterface {
   public void fillTriangle(Point3i screenA, short colixA, short normixA,
                            Point3i screenB, short colixB, short normixB,
                            Point3i screenC, short colixC, short normixC) {
+    count(COUNT_TRIANGLES);
     // mesh, isosurface
     boolean useGouraud;
     if (!isPass2 && normixA == normixB && normixA == normixC
@@ -1375,11 +1862,27 @@ final public class Graphics3D implements JmolRendererInterface {
     } else {
       if (!setTriangleTranslucency(colixA, colixB, colixC))
         return;
+      if (tiler != null) {
+        TiledRasterizer.Primitive p = addTriangle(screenA.x, screenA.y,
+            screenA.z, screenB.x, screenB.y, screenB.z, screenC.x, screenC.y,
+            screenC.z, true);
+        if (p != null) {
+          p.i[10] = getShades(colixA)[normix3d.getShadeIndex(normixA)];
+          p.i[11] = getShades(colixB)[normix3d.getShadeIndex(normixB)];
+          p.i[12] = getShades(colixC)[normix3d.getShadeIndex(normixC)];
+        }
+        return;
+      }
       triangle3d.setGouraud(getShades(colixA)[normix3d.getShadeIndex(normixA)],
           getShades(colixB)[normix3d.getShadeIndex(normixB)],
           getShades(colixC)[normix3d.getShadeIndex(normixC)]);
       useGouraud = true;
     }
+    if (tiler != null) {
+      addTriangle(screenA.x, screenA.y, screenA.z, screenB.x, screenB.y,
+          screenB.z, screenC.x, screenC.y, screenC.z, false);
+      return;
+    }
     triangle3d.fillTriangle(screenA, screenB, screenC, useGouraud);
   }
 
@@ -1425,8 +1928,14 @@ final public class Graphics3D implements JmolRendererInterface {
 
   public void fillQuadrilateral(Point3f screenA, Point3f screenB,
                                 Point3f screenC, Point3f screenD) {
+    count(COUNT_TRIANGLES, 2);
     // hermite, rockets, cartoons
     setColorNoisy(getShadeIndex(screenA, screenB, screenC));
+    if (tiler != null) {
+      addTriangle(screenA, screenB, screenC);
+      addTriangle(screenA, screenC, screenD);
+      return;
+    }
     triangle3d.fillTriangle(screenA, screenB, screenC, false);
     triangle3d.fillTriangle(screenA, screenC, screenD, false);
   }
@@ -1519,6 +2028,10 @@ final public class Graphics3D implements JmolRendererInterface {
 
   public void plotPixelClipped(Point3i screen) {
     // hermite only
+    if (tiler != null) {
+      addPixel(argbCurrent, screen.x, screen.y, screen.z);
+      return;
+    }
     plotPixelClipped(screen.x, screen.y, screen.z);
   }
 
@@ -1533,6 +2046,7 @@ final public class Graphics3D implements JmolRendererInterface {
 
   public void plotPixelClippedNoSlab(int argb, int x, int y, int z) {
     // drawString via text3d.plotClipped
+    flushTiles();
     if (isClipped(x, y))
       return;
     int offset = y * width + x;
@@ -1567,7 +2081,7 @@ final public class Graphics3D implements JmolRendererInterface {
   void plotPixelsClipped(int count, int x, int y, int z) {
     // for circle only; i.e. halo 
     // simple Z/window clip
-    if (y < 0 || y >= height || x >= width)
+    if (y < 0 || y >= height || x >= width || y < bandMin || y >= bandMax)
       return;
     if (x < 0) {
       count += x; // x is negative, so this is subtracting -x
@@ -1596,6 +2110,7 @@ final public class Graphics3D implements JmolRendererInterface {
                          Rgb16 rgb16Left, Rgb16 rgb16Right) {
     // cylinder3d.renderFlatEndcap, triangle3d.fillRaster
     if (count <= 0 || y < 0 || y >= height || x >= width
+        || y < bandMin || y >= bandMax
         || (zAtLeft < slab && zPastRight < slab)
         || (zAtLeft > depth && zPastRight > depth))
       return;
@@ -1771,7 +2286,7 @@ final public class Graphics3D implements JmolRendererInterface {
   void plotPixelsUnclipped(int count, int x, int y, int zAtLeft,
                            int zPastRight, Rgb16 rgb16Left, Rgb16 rgb16Right) {
     // for isosurface Triangle3D.fillRaster
-    if (count <= 0)
+    if (count <= 0 || y < bandMin || y >= bandMax)
       return;
     int seed = (x << 16) + (y << 1) ^ 0x33333333;
     boolean flipflop = ((x ^ y) & 1) != 0;
@@ -1824,6 +2339,8 @@ final public class Graphics3D implements JmolRendererInterface {
     
     // for Cirle3D.plot8Filled and fillRect
     
+    if (y < bandMin || y >= bandMax)
+      return;
     int offsetPbuf = y * width + x;
     if (addAllPixels) {
       while (--count >= 0) {
@@ -528,7 +528,7 @@ final class Line3D {
             && runIndex < rise && (!tScreened || (flipflop = !flipflop))) {
           int zCurrent = zCurrentScaled >> 10;
           if (zCurrent < zbuf[offset]) {
-            int rand8 = Shade3D.nextRandom8Bit();
+            int rand8 = Shade3D.random8Bit(offset);
             g3d.addPixel(offset, zCurrent, rand8 < 85 ? argbDn : (rand8 > 170 ? argbUp : argb));
           }
         }
@@ -571,7 +571,7 @@ final class Line3D {
             && runIndex < rise && (!tScreened || (flipflop = !flipflop))) {
           int zCurrent = zCurrentScaled >> 10;
           if (zCurrent < zbuf[offset]) {
-            int rand8 = Shade3D.nextRandom8Bit();
+            int rand8 = Shade3D.random8Bit(offset);
             g3d.addPixel(offset, zCurrent, rand8 < 85 ? argbDn : (rand8 > 170 ? argbUp : argb));
           }
         }
@@ -666,7 +666,7 @@ final class Line3D {
       if (argb != 0 && isInWindow && offset >= 0 && offset < offsetMax 
           && runIndex < rise && (!tScreened || (flipflop = !flipflop))) {
         if (zFloat < zbuf[offset]) {
-          int rand8 = Shade3D.nextRandom8Bit();
+          int rand8 = Shade3D.random8Bit(offset);
           g3d.addPixel(offset, (int) zFloat, rand8 < 85 ? argbDn : (rand8 > 170 ? argbUp : argb));
         }
       }
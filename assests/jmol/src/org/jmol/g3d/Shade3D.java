@@ -274,18 +274,29 @@ final class Shade3D {
    }
    */
 
-  static byte getDitheredNoisyShadeIndex(float x, float y, float z, float r) {
+  /**
+   * @param x
+   * @param y
+   * @param z
+   * @param r
+   * @param seed  the caller's own RANDU seed, advanced here, so that the
+   *              noise depends only on where the caller started it
+   * @return shade index
+   */
+  static byte getDitheredNoisyShadeIndex(float x, float y, float z, float r,
+                                         int[] seed) {
     // from Sphere3D only
     // add some randomness to prevent banding
     int fp8ShadeIndex = (int) (getFloatShadeIndexNormalized(x / r, y / r, z / r)
         * shadeIndexLast * (1 << 8));
     int shadeIndex = fp8ShadeIndex >> 8;
+    int t = seed[0] = nextRandom(seed[0]);
     // this cannot overflow because the if the float shadeIndex is 1.0
     // then shadeIndex will be == shadeLast
     // but there will be no fractional component, so the next test will fail
-    if ((fp8ShadeIndex & 0xFF) > nextRandom8Bit())
+    if ((fp8ShadeIndex & 0xFF) > (t >> 23))
       ++shadeIndex;
-    int random16bit = seed & 0xFFFF;
+    int random16bit = t & 0xFFFF;
     if (random16bit < 65536 / 3 && shadeIndex > 0)
       --shadeIndex;
     else if (random16bit > 65536 * 2 / 3 && shadeIndex < shadeIndexLast)
@@ -317,6 +328,7 @@ final class Shade3D {
 
   synchronized static void calcSphereShading() {
     //if (!sphereShadingCalculated) { //unnecessary -- but be careful!
+    int[] seed = new int[] { RANDOM_SEED };
     float xF = -127.5f;
     for (int i = 0; i < 256; ++xF, ++i) {
       float yF = -127.5f;
@@ -325,7 +337,7 @@ final class Shade3D {
         float z2 = 130 * 130 - xF * xF - yF * yF;
         if (z2 > 0) {
           float z = (float) Math.sqrt(z2);
-          shadeIndex = getDitheredNoisyShadeIndex(xF, yF, z, 130);
+          shadeIndex = getDitheredNoisyShadeIndex(xF, yF, z, 130, seed);
         }
         sphereShadeIndexes[(j << 8) + i] = shadeIndex;
       }
@@ -352,9 +364,8 @@ final class Shade3D {
   }
   */
     
-  // this doesn't really need to be synchronized
-  // no serious harm done if two threads write seed at the same time
-  private static int seed = 0x12345679; // turn lo bit on
+  final static int RANDOM_SEED = 0x12345679; // turn lo bit on
+
   /**
    *<p>
    * Implements RANDU algorithm for random noise in lighting/shading.
@@ -364,12 +375,23 @@ final class Shade3D {
    * But it is very cheap to calculate and is good enough for our purposes.
    *</p>
    *
-   * @return Next random
+   * @param seed  the last value, odd
+   * @return Next random; the high 8 bits of its 31 are the 8-bit value
    */
-  static int nextRandom8Bit() {
-    int t = seed;
-    seed = t = ((t << 16) + (t << 1) + t) & 0x7FFFFFFF;
-    return t >> 23;
+  static int nextRandom(int seed) {
+    return ((seed << 16) + (seed << 1) + seed) & 0x7FFFFFFF;
+  }
+
+  /**
+   * Same generator, but seeded from the pixel position rather than from
+   * the running seed, so that noisy lines come out identically no matter
+   * in which order (or on which thread) they are drawn.
+   * 
+   * @param offset  pixel buffer offset
+   * @return random 8-bit value for this pixel
+   */
+  static int random8Bit(int offset) {
+    return nextRandom(offset ^ 0x33333333) >> 23;
   }
 
 }
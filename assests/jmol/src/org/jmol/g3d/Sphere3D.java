@@ -95,7 +95,28 @@ public class Sphere3D {
     return ((ss = sphereShapeCache[diameter - 1]) == null ? createSphereShape(diameter): ss);
   }
 
+  /**
+   * Makes sure that the shading render() will use for a sphere of this
+   * diameter exists. Graphics3D calls this as it records spheres for tiled
+   * rendering, so that the tiles only read the caches.
+   * 
+   * @param diameter
+   */
+  static void prepareShading(int diameter) {
+    if (diameter > maxOddSizeSphere)
+      diameter &= ~1;
+    if (diameter <= maxSphereCache)
+      getSphereShape(diameter);
+    else if (!Shade3D.sphereShadingCalculated)
+      Shade3D.calcSphereShading();
+  }
+
   private synchronized static int[] createSphereShape(int diameter) {
+    int[] ss = sphereShapeCache[diameter - 1];
+    if (ss != null)
+      return ss; // made by another thread while this one waited
+    // the same noise for a given diameter, whenever and wherever it is made
+    int[] seed = new int[] { Shade3D.RANDOM_SEED ^ (diameter << 16) };
     int countSE = 0;
     boolean oddDiameter = (diameter & 1) != 0;
     float radiusF = diameter / 2.0f;
@@ -127,10 +148,10 @@ public class Sphere3D {
         if (z2 >= 0) {
           float z = (float)Math.sqrt(z2);
           int height = (int)z;
-          int shadeIndexSE = Shade3D.getDitheredNoisyShadeIndex( x,  y, z, radiusF);
-          int shadeIndexSW = Shade3D.getDitheredNoisyShadeIndex(-x,  y, z, radiusF);
-          int shadeIndexNE = Shade3D.getDitheredNoisyShadeIndex( x, -y, z, radiusF);
-          int shadeIndexNW = Shade3D.getDitheredNoisyShadeIndex(-x, -y, z, radiusF);
+          int shadeIndexSE = Shade3D.getDitheredNoisyShadeIndex( x,  y, z, radiusF, seed);
+          int shadeIndexSW = Shade3D.getDitheredNoisyShadeIndex(-x,  y, z, radiusF, seed);
+          int shadeIndexNE = Shade3D.getDitheredNoisyShadeIndex( x, -y, z, radiusF, seed);
+          int shadeIndexNW = Shade3D.getDitheredNoisyShadeIndex(-x, -y, z, radiusF, seed);
           int packed = (height |
                         (shadeIndexSE << 7) |
                         (shadeIndexSW << 13) |
@@ -0,0 +1,358 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-08-16 12:01:26 -0500 (Mon, 16 Aug 2010) $
+ * $Revision: 14005 $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.g3d;
+
+import java.util.concurrent.Executor;
+
+import org.jmol.util.ParallelTasks;
+
+/**
+ * Tiled rendering for Graphics3D.
+ *
+ * While tiling is on, the primitives that account for nearly all of the
+ * rasterization time -- spheres, cylinders, cones, lines, circles, and
+ * triangles -- are not drawn when the renderers ask for them. Instead, each
+ * call is recorded along with a snapshot of the color state in effect at the
+ * time and binned into the horizontal bands of the screen that it touches.
+ *
+ * When the buffers are next needed -- for an unbinned primitive such as
+ * text, the start of the translucent pass, or the end of the frame -- the
+ * bands are rasterized concurrently, each by its own worker Graphics3D. The
+ * workers share the pBuffer and zBuffer of the master but only write pixels
+ * in their own rows, so no stitching is needed afterward.
+ *
+ * Each band replays the calls that touch it in the original order and with
+ * the original state, and a pixel's final value only depends on the
+ * sequence of writes to that pixel, so the image is the same as the one
+ * produced by the single-threaded path.
+ *
+ * The bands only read shared state. In particular, the shape of each
+ * recorded sphere is made on the master as the sphere is recorded, and its
+ * dithering noise depends only on its diameter, not on which thread made
+ * it or when.
+ *
+ */
+final class TiledRasterizer {
+
+  final static int PIXEL = 1;
+  final static int SPHERE = 2;
+  final static int CIRCLE = 3;
+  final static int LINE = 4;
+  final static int DASHED_LINE = 5;
+  final static int CYLINDER = 6;
+  final static int CYLINDER_BITS = 7;
+  final static int CONE = 8;
+  final static int TRIANGLE = 9;
+
+  // allow for the rounding and endcaps of the rasterizers
+  private final static int MARGIN = 2;
+
+  private final Graphics3D g3d;
+  private final Executor executor;
+  private final int tileCount;
+  private final Graphics3D[] tiles;
+
+  private Primitive[] primitives = new Primitive[1024];
+  private int primitiveCount;
+  private State[] states = new State[64];
+  private int stateCount;
+  private int[][] bins;
+  private int[] binCounts;
+  private int bandHeight;
+  private int batchHeight;
+
+  TiledRasterizer(Graphics3D g3d, Executor executor, int tileCount) {
+    this.g3d = g3d;
+    this.executor = executor;
+    this.tileCount = tileCount;
+    tiles = new Graphics3D[tileCount];
+    bins = new int[tileCount][256];
+    binCounts = new int[tileCount];
+  }
+
+  int getTileCount() {
+    return tileCount;
+  }
+
+  /**
+   * The color state of the master at the time a primitive was recorded.
+   * Consecutive primitives that share the same state share one snapshot.
+   */
+  static class State {
+    short colixCurrent;
+    int[] shadesCurrent;
+    int argbCurrent;
+    int argbNoisyUp, argbNoisyDn;
+    boolean isScreened;
+    int translucencyMask;
+    boolean addAllPixels;
+    int currentShadeIndex;
+    boolean translucentCoverOnly;
+    int slab, depth;
+
+    void get(Graphics3D g) {
+      colixCurrent = g.colixCurrent;
+      shadesCurrent = g.shadesCurrent;
+      argbCurrent = g.argbCurrent;
+      argbNoisyUp = g.argbNoisyUp;
+      argbNoisyDn = g.argbNoisyDn;
+      isScreened = g.isScreened;
+      translucencyMask = g.translucencyMask;
+      addAllPixels = g.addAllPixels;
+      currentShadeIndex = g.currentShadeIndex;
+      translucentCoverOnly = g.translucentCoverOnly;
+      slab = g.slab;
+      depth = g.depth;
+    }
+
+    boolean isSame(Graphics3D g) {
+      return (colixCurrent == g.colixCurrent
+          && shadesCurrent == g.shadesCurrent
+          && argbCurrent == g.argbCurrent && argbNoisyUp == g.argbNoisyUp
+          && argbNoisyDn == g.argbNoisyDn && isScreened == g.isScreened
+          && translucencyMask == g.translucencyMask
+          && addAllPixels == g.addAllPixels
+          && currentShadeIndex == g.currentShadeIndex
+          && translucentCoverOnly == g.translucentCoverOnly
+          && slab == g.slab && depth == g.depth);
+    }
+
+    void set(Graphics3D g) {
+      g.colixCurrent = colixCurrent;
+      g.shadesCurrent = shadesCurrent;
+      g.argbCurrent = argbCurrent;
+      g.argbNoisyUp = argbNoisyUp;
+      g.argbNoisyDn = argbNoisyDn;
+      g.isScreened = isScreened;
+      g.translucencyMask = translucencyMask;
+      g.addAllPixels = addAllPixels;
+      g.currentShadeIndex = currentShadeIndex;
+      g.translucentCoverOnly = translucentCoverOnly;
+      g.slab = slab;
+      g.depth = depth;
+    }
+  }
+
+  /**
+   * One recorded rasterizer call. These are reused from frame to frame.
+   */
+  static class Primitive {
+    int type;
+    final int[] i = new int[13];
+    final float[] f = new float[6];
+    State state;
+  }
+
+  /**
+   * Records a primitive that covers screen rows yMin through yMax.
+   *
+   * @param type
+   * @param yMin
+   * @param yMax
+   * @return the primitive to be filled in by the caller, or null if it is
+   *         entirely off screen
+   */
+  Primitive add(int type, int yMin, int yMax) {
+    if (primitiveCount == 0) {
+      batchHeight = g3d.height;
+      bandHeight = (batchHeight + tileCount - 1) / tileCount;
+    }
+    yMin -= MARGIN;
+    yMax += MARGIN;
+    if (yMax < 0 || yMin >= batchHeight)
+      return null;
+    int tile0 = (yMin < 0 ? 0 : yMin / bandHeight);
+    int tile1 = (yMax >= batchHeight ? tileCount - 1 : yMax / bandHeight);
+    int index = primitiveCount;
+    if (index == primitives.length) {
+      Primitive[] p = new Primitive[index * 2];
+      System.arraycopy(primitives, 0, p, 0, index);
+      primitives = p;
+    }
+    Primitive p = primitives[index];
+    if (p == null)
+      p = primitives[index] = new Primitive();
+    p.type = type;
+    p.state = getState();
+    for (int t = tile0; t <= tile1; t++) {
+      int[] bin = bins[t];
+      int n = binCounts[t];
+      if (n == bin.length) {
+        int[] b = new int[n * 2];
+        System.arraycopy(bin, 0, b, 0, n);
+        bin = bins[t] = b;
+      }
+      bin[n] = index;
+      binCounts[t] = n + 1;
+    }
+    primitiveCount++;
+    return p;
+  }
+
+  private State getState() {
+    if (stateCount > 0 && states[stateCount - 1].isSame(g3d))
+      return states[stateCount - 1];
+    if (stateCount == states.length) {
+      State[] s = new State[stateCount * 2];
+      System.arraycopy(states, 0, s, 0, stateCount);
+      states = s;
+    }
+    State s = states[stateCount];
+    if (s == null)
+      s = states[stateCount] = new State();
+    s.get(g3d);
+    stateCount++;
+    return s;
+  }
+
+  boolean isEmpty() {
+    return (primitiveCount == 0);
+  }
+
+  /**
+   * Rasterizes everything recorded so far, one band per thread, and
+   * waits for all of the bands to be completed.
+   *
+   */
+  void flush() {
+    if (primitiveCount == 0)
+      return;
+    int nActive = 0;
+    for (int t = 0; t < tileCount; t++) {
+      if (binCounts[t] == 0)
+        continue;
+      if (tiles[t] == null)
+        tiles[t] = new Graphics3D(g3d);
+      int y0 = t * bandHeight;
+      tiles[t].setTile(g3d, y0, Math.min(y0 + bandHeight, batchHeight));
+      nActive++;
+    }
+    try {
+      runTiles(nActive);
+      for (int t = 0; t < tileCount; t++)
+        if (binCounts[t] > 0)
+          g3d.addTileCounts(tiles[t]);
+    } finally {
+      for (int t = 0; t < tileCount; t++)
+        binCounts[t] = 0;
+      for (int i = primitiveCount; --i >= 0;)
+        primitives[i].state = null;
+      for (int i = stateCount; --i >= 0;)
+        states[i].shadesCurrent = null;
+      primitiveCount = 0;
+      stateCount = 0;
+    }
+  }
+
+  private void runTiles(int nActive) {
+    Runnable[] tasks = new Runnable[nActive];
+    for (int t = 0; t < tileCount; t++)
+      if (binCounts[t] > 0)
+        tasks[--nActive] = new TileTask(t);
+    ParallelTasks.run(executor, tasks, "tiled rendering");
+  }
+
+  private class TileTask implements Runnable {
+    private final int tile;
+
+    TileTask(int tile) {
+      this.tile = tile;
+    }
+
+    public void run() {
+      rasterizeTile(tiles[tile], bins[tile], binCounts[tile]);
+    }
+  }
+
+  private void rasterizeTile(Graphics3D g, int[] bin, int n) {
+    State state = null;
+    for (int j = 0; j < n; j++) {
+      Primitive p = primitives[bin[j]];
+      if (p.state != state)
+        (state = p.state).set(g);
+      rasterize(g, p);
+    }
+  }
+
+  private static void rasterize(Graphics3D g, Primitive p) {
+    int[] i = p.i;
+    float[] f = p.f;
+    switch (p.type) {
+    case PIXEL:
+      g.plotPixelClipped(i[0], i[1], i[2], i[3]);
+      break;
+    case SPHERE:
+      g.sphere3d.render(g.shadesCurrent, !g.addAllPixels, i[0], i[1], i[2],
+          i[3], null, null, null, -1, null);
+      break;
+    case CIRCLE:
+      if (i[4] == 0) {
+        if (i[5] == 0)
+          g.circle3d.plotCircleCenteredUnclipped(i[0], i[1], i[2], i[3]);
+        else
+          g.circle3d.plotCircleCenteredClipped(i[0], i[1], i[2], i[3]);
+      } else {
+        if (i[5] == 0)
+          g.circle3d.plotFilledCircleCenteredUnclipped(i[0], i[1], i[2], i[3]);
+        else
+          g.circle3d.plotFilledCircleCenteredClipped(i[0], i[1], i[2], i[3]);
+      }
+      break;
+    case LINE:
+      g.line3d.plotLine(i[0], i[1] != 0, i[2], i[3] != 0, i[4], i[5], i[6],
+          i[7], i[8], i[9], true);
+      break;
+    case DASHED_LINE:
+      g.line3d.plotDashedLine(i[0], i[1] != 0, i[2], i[3], i[4], i[5], i[6],
+          i[7], i[8], i[9], true);
+      break;
+    case CYLINDER:
+      g.cylinder3d.render((short) i[0], (short) i[1], i[2] != 0, i[3] != 0,
+          (byte) i[4], i[5], i[6], i[7], i[8], i[9], i[10], i[11]);
+      break;
+    case CYLINDER_BITS:
+      g.cylinder3d.renderBits((short) i[0], (short) i[1], i[2] != 0,
+          i[3] != 0, (byte) i[4], i[5], f[0], f[1], f[2], f[3], f[4], f[5]);
+      break;
+    case CONE:
+      g.cylinder3d.renderCone((short) i[0], i[1] != 0, (byte) i[2], i[3],
+          f[0], f[1], f[2], f[3], f[4], f[5], i[4] != 0);
+      break;
+    case TRIANGLE:
+      if (i[9] != 0)
+        g.triangle3d.setGouraud(i[10], i[11], i[12]);
+      g.triangle3d.fillTriangle(i[0], i[1], i[2], i[3], i[4], i[5], i[6],
+          i[7], i[8], i[9] != 0);
+      break;
+    }
+  }
+
+  static int min(int a, int b, int c) {
+    return (a < b ? (a < c ? a : c) : (b < c ? b : c));
+  }
+
+  static int max(int a, int b, int c) {
+    return (a > b ? (a > c ? a : c) : (b > c ? b : c));
+  }
+}
@@ -27,14 +27,17 @@ package org.jmol.geodesic;
 import org.jmol.util.ArrayUtil;
 import org.jmol.util.BitSetUtil;
 import org.jmol.util.FastBitSet;
+import org.jmol.util.ParallelTasks;
 //import org.jmol.util.SlowBitSet;
 
 import org.jmol.api.AtomIndexIterator;
 import org.jmol.atomdata.AtomData;
 import org.jmol.atomdata.AtomDataServer;
 import org.jmol.atomdata.RadiusData;
+import org.jmol.viewer.Viewer;
 
 import java.util.BitSet;
+
 import javax.vecmath.Point3f;
 
 /* ***************************************************************
@@ -134,7 +137,6 @@ public final class EnvelopeCalculation {
 
   
   private FastBitSet geodesicMap;
-  private FastBitSet mapT;
 
   //Viewer viewer;
   private short[] mads;
@@ -155,7 +157,6 @@ public final class EnvelopeCalculation {
     //  emptySet = new SlowBitSet();
     //} else {
       geodesicMap = FastBitSet.allocateBitmap(geodesicCount);
-      mapT = FastBitSet.allocateBitmap(geodesicCount);
       emptySet = FastBitSet.getEmptySet();
     //}
 
@@ -214,6 +215,7 @@ public final class EnvelopeCalculation {
       map = new FastBitSet(geodesicMap);
     dotsConvexMaps[index] = map;
     dotsConvexMax = Math.max(dotsConvexMax, index);
+    coordinates = null;
   }
   
   private float radiusP, diameterP;
@@ -223,10 +225,20 @@ public final class EnvelopeCalculation {
     dotsConvexMaps = null;
     radiusP = diameterP = 0;
     mads = null;
+    coordinates = null;
+    neighborLists = null;
   }
 
+  /**
+   * Recalculates the maps of the atoms in bs after coordinates change.
+   * If only some atoms have moved, only they and the atoms near them,
+   * before or after the move, are recalculated.
+   * 
+   * @param bs
+   */
   public void reCalculate(BitSet bs) {
-    calculate(null, maxRadius, bs, bsIgnore, disregardNeighbors, onlySelectedDots, isSurface, multiModel); 
+    calculate(null, maxRadius, bs, bsIgnore, disregardNeighbors,
+        onlySelectedDots, isSurface, multiModel, true);
   }  
 
   
@@ -250,6 +262,14 @@ public final class EnvelopeCalculation {
                         BitSet bsIgnore, boolean disregardNeighbors,
                         boolean onlySelectedDots, boolean isSurface,
                         boolean multiModel) {
+    calculate(rd, maxRadius, bsSelected, bsIgnore, disregardNeighbors,
+        onlySelectedDots, isSurface, multiModel, false);
+  }
+
+  private void calculate(RadiusData rd, float maxRadius, BitSet bsSelected,
+                         BitSet bsIgnore, boolean disregardNeighbors,
+                         boolean onlySelectedDots, boolean isSurface,
+                         boolean multiModel, boolean isRecalculation) {
     // was: this.setRadius = (setRadius == Float.MAX_VALUE &&
     // !useVanderwaalsRadius ? SURFACE_DISTANCE_FOR_CALCULATION : setRadius);
 
@@ -275,28 +295,127 @@ public final class EnvelopeCalculation {
       for (int i = 0; i < atomCount; i++)
         atomData.atomRadius[i] = mads[i] / 1000f;
 
+    BitSet bsMySelectedLast = bsMySelected;
     bsMySelected = (onlySelectedDots && bsSelected != null ? BitSetUtil
         .copy(bsSelected) : bsIgnore != null ? BitSetUtil.setAll(atomCount)
         : null);
     BitSetUtil.andNot(bsMySelected, bsIgnore);
     this.disregardNeighbors = disregardNeighbors;
     this.maxRadius = maxRadius;
-    bsSurface = new BitSet();
+    BitSet bsChanged = (isRecalculation ? getChangedAtoms(bsMySelectedLast)
+        : null);
+    if (bsChanged == null || bsSurface == null)
+      bsSurface = new BitSet();
+    if (neighborLists == null || neighborLists.length != atomCount)
+      neighborLists = new int[atomCount][];
     // now, calculate surface for selected atoms
     boolean isAll = (bsSelected == null);
-    AtomIndexIterator iter = viewer.getSelectedAtomIterator(bsMySelected, false, modelZeroBased);
-    //true ==> only atom index > this atom accepted
+    int[] atomList = new int[isAll ? atomCount : bsSelected.cardinality()];
+    int n = 0;
     int i0 = (isAll ? atomCount - 1 : bsSelected.nextSetBit(0));
     for (int i = i0; i >= 0; i = (isAll ? i - 1 : bsSelected.nextSetBit(i + 1)))
-      if (bsIgnore == null || !bsIgnore.get(i)) {
-        setAtomI(i);
-        getNeighbors(iter);
-        calcConvexMap(isSurface);
-      }
-    iter.release();
+      if ((bsIgnore == null || !bsIgnore.get(i))
+          && (bsChanged == null || bsChanged.get(i) || dotsConvexMaps[i] == null))
+        atomList[n++] = i;
+    if (n > 0) {
+      if (dotsConvexMaps == null)
+        dotsConvexMaps = new FastBitSet[atomCount];
+      calcConvexMaps(atomList, n);
+      for (int k = 0; k < n; k++)
+        bsSurface.set(atomList[k], !dotsConvexMaps[atomList[k]].isEmpty());
+    }
+    setCoordinates();
     currentPoints = null;
     setDotsConvexMax();
   }
+
+  /**
+   * the coordinates and radius of each atom at the last calculation
+   */
+  private float[] coordinates;
+
+  /**
+   * the neighbors of each atom at the last calculation
+   */
+  private int[][] neighborLists;
+
+  private void setCoordinates() {
+    if (coordinates == null || coordinates.length != atomCount * 4)
+      coordinates = new float[atomCount * 4];
+    for (int i = 0, pt = 0; i < atomCount; i++) {
+      Point3f xyz = atomData.atomXyz[i];
+      coordinates[pt++] = xyz.x;
+      coordinates[pt++] = xyz.y;
+      coordinates[pt++] = xyz.z;
+      coordinates[pt++] = atomData.atomRadius[i];
+    }
+  }
+
+  /**
+   * @param bsMySelectedLast
+   * @return the atoms that have moved or changed radius since the last
+   *         calculation, along with their neighbors then and now; or null
+   *         if all atoms are to be recalculated
+   */
+  private BitSet getChangedAtoms(BitSet bsMySelectedLast) {
+    if (coordinates == null || coordinates.length != atomCount * 4
+        || dotsConvexMaps == null || neighborLists == null
+        || neighborLists.length != atomCount
+        || (bsMySelected == null ? bsMySelectedLast != null
+            : !bsMySelected.equals(bsMySelectedLast)))
+      return null;
+    BitSet bsMoved = new BitSet();
+    for (int i = 0, pt = 0; i < atomCount; i++, pt += 4) {
+      Point3f xyz = atomData.atomXyz[i];
+      if (xyz.x != coordinates[pt] || xyz.y != coordinates[pt + 1]
+          || xyz.z != coordinates[pt + 2]
+          || atomData.atomRadius[i] != coordinates[pt + 3])
+        bsMoved.set(i);
+    }
+    if (bsMoved.isEmpty() || disregardNeighbors)
+      return bsMoved;
+    // if most have moved, finding their neighbors is not worth the time
+    if (bsMoved.cardinality() * 2 > atomCount)
+      return null;
+    BitSet bsChanged = BitSetUtil.copy(bsMoved);
+    for (int i = atomCount; --i >= 0;) {
+      int[] list = neighborLists[i];
+      if (list != null)
+        for (int j = list.length; --j >= 0;)
+          if (bsMoved.get(list[j])) {
+            bsChanged.set(i);
+            break;
+          }
+    }
+    // a neighbor's neighbor is a neighbor, since the cutoff is
+    // the sum of the two radii and the probe diameter
+    ConvexMapper mapper = new ConvexMapper(null, 0, 0, false);
+    for (int i = bsMoved.nextSetBit(0); i >= 0; i = bsMoved.nextSetBit(i + 1)) {
+      mapper.setAtomI(i);
+      mapper.getNeighbors();
+      for (int j = mapper.neighborCount; --j >= 0;)
+        bsChanged.set(mapper.neighborIndices[j]);
+    }
+    mapper.release();
+    return bsChanged;
+  }
+
+  // each thread maps at least this many atoms
+  private final static int MIN_ATOMS_PER_THREAD = 50;
+
+  // for getNeighbors on more than one thread
+  private final Object lock = new Object();
+
+  private void calcConvexMaps(int[] atomList, int n) {
+    Object executor = viewer.getExecutor();
+    int nThreads = ParallelTasks.getTaskCount(executor, Viewer.nProcessors, n,
+        MIN_ATOMS_PER_THREAD);
+    Runnable[] tasks = new Runnable[nThreads];
+    for (int i = 0; i < nThreads; i++)
+      tasks[i] = new ConvexMapper(atomList, n * i / nThreads, n * (i + 1)
+          / nThreads, nThreads > 1);
+    ParallelTasks.run(executor, tasks, "EnvelopeCalculation");
+  }
   
   public float getRadius(int atomIndex) {
     return atomData.atomRadius[atomIndex];
@@ -357,190 +476,238 @@ public final class EnvelopeCalculation {
     return (mads != null ? mads[atomIndex]/1000f : atomData.atomRadius[atomIndex]);
   }
 
-  private int indexI;
-  private Point3f centerI;
-  private float radiusI;
-  private float radiiIP2;
-  private final Point3f pointT = new Point3f();
-
-  private void setAtomI(int indexI) {
-    this.indexI = indexI;
-    centerI = atomData.atomXyz[indexI];
-    radiusI = atomData.atomRadius[indexI];
-    radiiIP2 = radiusI + radiusP;
-    radiiIP2 *= radiiIP2;
-  }
+  private static int[] power4 = {1, 4, 16, 64, 256};
   
-  private void calcConvexMap(boolean isSurface) {
-    if (dotsConvexMaps == null)
-      dotsConvexMaps = new FastBitSet[atomCount];
-    calcConvexBits();
-    FastBitSet map;
-    if (geodesicMap.isEmpty())
-      map = emptySet;
-    else {
-      bsSurface.set(indexI);
-      if (isSurface) {
-        addIncompleteFaces(geodesicMap);
-        addIncompleteFaces(geodesicMap);
+  /**
+   * the maps for a range of atoms, with an iterator and scratch maps
+   * of its own, so that ranges can be calculated in parallel
+   */
+  private class ConvexMapper implements Runnable {
+
+    private final int[] atomList;
+    private final int i0, i1;
+    private AtomIndexIterator iter;
+    private final FastBitSet geodesicMap = FastBitSet.allocateBitmap(geodesicCount);
+    private final FastBitSet mapT = FastBitSet.allocateBitmap(geodesicCount);
+
+    /**
+     * @param atomList
+     * @param i0
+     * @param i1
+     * @param threadSafe  for an iterator of its own on another thread
+     */
+    ConvexMapper(int[] atomList, int i0, int i1, boolean threadSafe) {
+      this.atomList = atomList;
+      this.i0 = i0;
+      this.i1 = i1;
+      iter = (threadSafe ? viewer.getSelectedAtomIterator(bsMySelected, false,
+          modelZeroBased, true) : viewer.getSelectedAtomIterator(bsMySelected,
+          false, modelZeroBased));
+    }
+
+    public void run() {
+      calcConvexMaps();
+    }
+
+    void calcConvexMaps() {
+      for (int i = i0; i < i1; i++) {
+        setAtomI(atomList[i]);
+        getNeighbors();
+        calcConvexMap();
       }
-      map = new FastBitSet(geodesicMap);
+      release();
+    }
+
+    void release() {
+      iter.release();
+    }
+
+    private int indexI;
+    private Point3f centerI;
+    private float radiusI;
+    private float radiiIP2;
+    private final Point3f pointT = new Point3f();
+
+    void setAtomI(int indexI) {
+      this.indexI = indexI;
+      centerI = atomData.atomXyz[indexI];
+      radiusI = atomData.atomRadius[indexI];
+      radiiIP2 = radiusI + radiusP;
+      radiiIP2 *= radiiIP2;
     }
-    dotsConvexMaps[indexI] = map;
-  }
   
-  private void addIncompleteFaces(FastBitSet points) {
-    mapT.clear();
-    short[] faces = Geodesic.getFaceVertexes(MAX_LEVEL);
-    int len = faces.length;
-    int maxPt = -1;
-    for (int f = 0; f < len;) {
-      short p1 = faces[f++];
-      short p2 = faces[f++];
-      short p3 = faces[f++];
-      boolean ok1 = points.get(p1); 
-      boolean ok2 = points.get(p2); 
-      boolean ok3 = points.get(p3);
-      if (! (ok1 || ok2 || ok3) || ok1 && ok2 && ok3)
-        continue;
-      
-      // trick: DO show faces if ANY ONE vertex is missing
-      if (!ok1) {
-        mapT.set(p1);
-        if (maxPt < p1)
-          maxPt = p1;
+    private void calcConvexMap() {
+      calcConvexBits();
+      FastBitSet map;
+      if (geodesicMap.isEmpty())
+        map = emptySet;
+      else {
+        if (isSurface) {
+          addIncompleteFaces(geodesicMap);
+          addIncompleteFaces(geodesicMap);
+        }
+        map = new FastBitSet(geodesicMap);
       }
-      if (!ok2) {
-        mapT.set(p2);
-        if (maxPt < p2)
-          maxPt = p2;
+      dotsConvexMaps[indexI] = map;
+      neighborLists[indexI] = (disregardNeighbors ? null : ArrayUtil.setLength(
+          neighborIndices, neighborCount));
+    }
+  
+    private void addIncompleteFaces(FastBitSet points) {
+      mapT.clear();
+      short[] faces = Geodesic.getFaceVertexes(MAX_LEVEL);
+      int len = faces.length;
+      int maxPt = -1;
+      for (int f = 0; f < len;) {
+        short p1 = faces[f++];
+        short p2 = faces[f++];
+        short p3 = faces[f++];
+        boolean ok1 = points.get(p1); 
+        boolean ok2 = points.get(p2); 
+        boolean ok3 = points.get(p3);
+        if (! (ok1 || ok2 || ok3) || ok1 && ok2 && ok3)
+          continue;
+      
+        // trick: DO show faces if ANY ONE vertex is missing
+        if (!ok1) {
+          mapT.set(p1);
+          if (maxPt < p1)
+            maxPt = p1;
+        }
+        if (!ok2) {
+          mapT.set(p2);
+          if (maxPt < p2)
+            maxPt = p2;
+        }
+        if (!ok3) {
+          mapT.set(p3);
+          if (maxPt < p3)
+            maxPt = p3;
+        }
       }
-      if (!ok3) {
-        mapT.set(p3);
-        if (maxPt < p3)
-          maxPt = p3;
+      for (int i=0; i <= maxPt; i++) {
+        if (mapT.get(i))
+          points.set(i);
       }
     }
-    for (int i=0; i <= maxPt; i++) {
-      if (mapT.get(i))
-        points.set(i);
-    }
-  }
 
-  private Point3f centerT;
+    private Point3f centerT;
   
-  //level = 3 for both
-  private final Point3f[] vertexTest = new Point3f[12];
-  {
-    for(int i = 0; i < 12; i++)
-      vertexTest[i] = new Point3f();
-  }
+    //level = 3 for both
+    private final Point3f[] vertexTest = new Point3f[12];
+    {
+      for(int i = 0; i < 12; i++)
+        vertexTest[i] = new Point3f();
+    }
 
-  private static int[] power4 = {1, 4, 16, 64, 256};
-  
-  private void calcConvexBits() {
-    geodesicMap.set(0, geodesicCount);
-    float combinedRadii = radiusI + radiusP;
-    if (neighborCount == 0)
-      return;
-    int faceTest;
-    int p1, p2, p3;
-    short[] faces = Geodesic.getFaceVertexes(MAX_LEVEL);
+    private void calcConvexBits() {
+      geodesicMap.set(0, geodesicCount);
+      float combinedRadii = radiusI + radiusP;
+      if (neighborCount == 0)
+        return;
+      int faceTest;
+      int p1, p2, p3;
+      short[] faces = Geodesic.getFaceVertexes(MAX_LEVEL);
     
-    int p4 = power4[MAX_LEVEL - 1];
-    boolean ok1, ok2, ok3;
-    mapT.clear();
-    for (int i = 0; i < 12; i++) {
-      vertexTest[i].set(Geodesic.getVertexVector(i));
-      vertexTest[i].scaleAdd(combinedRadii, centerI);      
-    }    
-    for (int f = 0; f < 20; f++) {
-      faceTest = 0;
-      p1 = faces[3 * p4 * (4 * f + 0)];
-      p2 = faces[3 * p4 * (4 * f + 1)];
-      p3 = faces[3 * p4 * (4 * f + 2)];
-      for (int j = 0; j < neighborCount; j++) {
-        float maxDist = neighborPlusProbeRadii2[j];
-        centerT = neighborCenters[j];
-        ok1 = vertexTest[p1].distanceSquared(centerT) >= maxDist;
-        ok2 = vertexTest[p2].distanceSquared(centerT) >= maxDist;
-        ok3 = vertexTest[p3].distanceSquared(centerT) >= maxDist;
-        if (!ok1)
-          geodesicMap.clear(p1);
-        if (!ok2)
-          geodesicMap.clear(p2);
-        if (!ok3)
-          geodesicMap.clear(p3);
-        if (!ok1 && !ok2 && !ok3) {
-          faceTest = -1;
-          break;
+      int p4 = power4[MAX_LEVEL - 1];
+      boolean ok1, ok2, ok3;
+      mapT.clear();
+      for (int i = 0; i < 12; i++) {
+        vertexTest[i].set(Geodesic.getVertexVector(i));
+        vertexTest[i].scaleAdd(combinedRadii, centerI);      
+      }    
+      for (int f = 0; f < 20; f++) {
+        faceTest = 0;
+        p1 = faces[3 * p4 * (4 * f + 0)];
+        p2 = faces[3 * p4 * (4 * f + 1)];
+        p3 = faces[3 * p4 * (4 * f + 2)];
+        for (int j = 0; j < neighborCount; j++) {
+          float maxDist = neighborPlusProbeRadii2[j];
+          centerT = neighborCenters[j];
+          ok1 = vertexTest[p1].distanceSquared(centerT) >= maxDist;
+          ok2 = vertexTest[p2].distanceSquared(centerT) >= maxDist;
+          ok3 = vertexTest[p3].distanceSquared(centerT) >= maxDist;
+          if (!ok1)
+            geodesicMap.clear(p1);
+          if (!ok2)
+            geodesicMap.clear(p2);
+          if (!ok3)
+            geodesicMap.clear(p3);
+          if (!ok1 && !ok2 && !ok3) {
+            faceTest = -1;
+            break;
+          }
         }
-      }
-      int kFirst = f * 12 * p4;
-      int kLast = kFirst + 12 * p4;
-      for (int k = kFirst; k < kLast; k++) {
-        int vect = faces[k];
-        if (mapT.get(vect) || !geodesicMap.get(vect))
-            continue;
-        switch (faceTest) {
-        case -1:
-          //face full occluded
-          geodesicMap.clear(vect);
-          break;
-        case 0:
-          //face partially occluded
-          for (int j = 0; j < neighborCount; j++) {
-            float maxDist = neighborPlusProbeRadii2[j];
-            centerT = neighborCenters[j];
-            pointT.set(Geodesic.getVertexVector(vect));
-            pointT.scaleAdd(combinedRadii, centerI);
-            if (pointT.distanceSquared(centerT) < maxDist)
-              geodesicMap.clear(vect);
+        int kFirst = f * 12 * p4;
+        int kLast = kFirst + 12 * p4;
+        for (int k = kFirst; k < kLast; k++) {
+          int vect = faces[k];
+          if (mapT.get(vect) || !geodesicMap.get(vect))
+              continue;
+          switch (faceTest) {
+          case -1:
+            //face full occluded
+            geodesicMap.clear(vect);
+            break;
+          case 0:
+            //face partially occluded
+            for (int j = 0; j < neighborCount; j++) {
+              float maxDist = neighborPlusProbeRadii2[j];
+              centerT = neighborCenters[j];
+              pointT.set(Geodesic.getVertexVector(vect));
+              pointT.scaleAdd(combinedRadii, centerI);
+              if (pointT.distanceSquared(centerT) < maxDist)
+                geodesicMap.clear(vect);
+            }
+            break;
+          case 1:
+            //face is fully surface
           }
-          break;
-        case 1:
-          //face is fully surface
+          mapT.set(vect);
         }
-        mapT.set(vect);
       }
     }
-  }
 
-  private int neighborCount;
-  private int[] neighborIndices = new int[16];
-  private Point3f[] neighborCenters = new Point3f[16];
-  private float[] neighborPlusProbeRadii2 = new float[16];
-  private float[] neighborRadii2 = new float[16];
+    int neighborCount;
+    int[] neighborIndices = new int[16];
+    private Point3f[] neighborCenters = new Point3f[16];
+    private float[] neighborPlusProbeRadii2 = new float[16];
+    private float[] neighborRadii2 = new float[16];
   
-  private AtomIndexIterator getNeighbors(AtomIndexIterator iter) {
-    neighborCount = 0;
-    if (disregardNeighbors)
-      return null;
-    viewer.setIteratorForAtom(iter, indexI, radiusI + diameterP + maxRadius);    
-    while (iter.hasNext()) {
-      int indexN = iter.next();
-      float neighborRadius = atomData.atomRadius[indexN];
-      if (centerI.distance(atomData.atomXyz[indexN]) > radiusI + radiusP + radiusP
-          + neighborRadius)
-        continue;
-      if (neighborCount == neighborIndices.length) {
-        neighborIndices = ArrayUtil.doubleLength(neighborIndices);
-        neighborCenters = (Point3f[]) ArrayUtil.doubleLength(neighborCenters);
-        neighborPlusProbeRadii2 = ArrayUtil
-            .doubleLength(neighborPlusProbeRadii2);
-        neighborRadii2 = ArrayUtil.doubleLength(neighborRadii2);
+    void getNeighbors() {
+      neighborCount = 0;
+      if (disregardNeighbors)
+        return;
+      // the spatial index of a model is built by the first search of it
+      synchronized (lock) {
+        viewer.setIteratorForAtom(iter, indexI, radiusI + diameterP + maxRadius);
+      }
+      while (iter.hasNext()) {
+        int indexN = iter.next();
+        float neighborRadius = atomData.atomRadius[indexN];
+        if (centerI.distance(atomData.atomXyz[indexN]) > radiusI + radiusP + radiusP
+            + neighborRadius)
+          continue;
+        if (neighborCount == neighborIndices.length) {
+          neighborIndices = ArrayUtil.doubleLength(neighborIndices);
+          neighborCenters = (Point3f[]) ArrayUtil.doubleLength(neighborCenters);
+          neighborPlusProbeRadii2 = ArrayUtil
+              .doubleLength(neighborPlusProbeRadii2);
+          neighborRadii2 = ArrayUtil.doubleLength(neighborRadii2);
+        }
+        neighborCenters[neighborCount] = atomData.atomXyz[indexN];
+        neighborIndices[neighborCount] = indexN;
+        float r = neighborRadius + radiusP;
+        neighborPlusProbeRadii2[neighborCount] = r * r;
+        neighborRadii2[neighborCount] = neighborRadius * neighborRadius;
+        ++neighborCount;
       }
-      neighborCenters[neighborCount] = atomData.atomXyz[indexN];
-      neighborIndices[neighborCount] = indexN;
-      float r = neighborRadius + radiusP;
-      neighborPlusProbeRadii2[neighborCount] = r * r;
-      neighborRadii2[neighborCount] = neighborRadius * neighborRadius;
-      ++neighborCount;
     }
-    return iter;
   }
   
   public void deleteAtoms(int firstAtomDeleted, int nAtomsDeleted, BitSet bsAtoms) {
+    coordinates = null;
+    neighborLists = null;
     dotsConvexMaps = (FastBitSet[]) ArrayUtil.deleteElements(dotsConvexMaps, firstAtomDeleted, nAtomsDeleted);
     dotsConvexMax = dotsConvexMaps.length;
     if (mads != null)
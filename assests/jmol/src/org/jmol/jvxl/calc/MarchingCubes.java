@@ -380,9 +380,7 @@ public class MarchingCubes extends TriangleData {
 
   protected float getValue(int x, int y, int z, int pt, float[] tempValues) {
     int ptyz = pt % yzCount;
-    //if (bsValues.get(pt))
-      //return tempValues[ptyz];
-    bsValues.set(pt);
+    // no bsValues here -- one bit per grid point that was never checked
     float value = surfaceReader.getValue(x, y, z, ptyz);
     if (isSquared)
       value *= value;
@@ -24,13 +24,20 @@
 package org.jmol.jvxl.data;
 
 import javax.vecmath.Point3f;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.BitSet;
 import java.util.Vector;
+import java.util.zip.DeflaterOutputStream;
 
 import org.jmol.util.BitSetUtil;
 import org.jmol.util.Escape;
 import org.jmol.util.Logger;
 import org.jmol.util.Parser;
+import org.jmol.util.SurfaceFileTyper;
 import org.jmol.util.TextFormat;
 import org.jmol.util.XmlUtil;
 
@@ -40,6 +47,7 @@ public class JvxlCoder {
   
   final public static String JVXL_VERSION1 = "2.0";
   final public static String JVXL_VERSION_XML = "2.2";
+  final public static int JVXL_VERSION_BINARY = 2;
   
   // 1.4 adds -nContours to indicate contourFromZero for MEP data mapped onto planes
   // 2.0 adds vertex/triangle compression when no grid is present 
@@ -223,7 +231,433 @@ public class JvxlCoder {
         "data", jvxlCompressString(data, true) }, null);
   }
 
-  
+  /*
+   * Binary JVXL
+   * 
+   * The same surface as the XML form, for surfaces that are saved in order to
+   * be reloaded quickly. The descriptive parts are kept as the XML they would
+   * be in the XML file, so they are read the same way. The bulk data is
+   * stored as numbers rather than characters: each edge or color fraction
+   * is one byte, its level 0 to range - 1 of the base/range encoding (range
+   * being NaN); each vertex coordinate or precision color value is a
+   * 16-bit fixed-point fraction, the two levels of the XML form combined as
+   * high * range + low (0xFFFF being NaN); and triangles are vertex number
+   * differences. The reader turns these into fractions directly, with the
+   * same arithmetic as it applies to the characters of the XML form, so that
+   * either file gives the same surface. All of the data after the flags is
+   * deflated, as much of it repeats.
+   * 
+   * Big-endian throughout. A "block" is a 4-byte length and then that many
+   * bytes; length -1 means null. Text blocks are UTF-8. A "varint" is seven
+   * bits to a byte, low bits first, with the high bit set on every byte but
+   * the last. A "bitset" is a block of varint lengths of alternating unset
+   * and set runs, starting with unset.
+   * 
+   *  4 bytes: J X \1 \0 
+   *  4 bytes: (int) 2 -- binary version
+   *  block  : jvxlFileTitle
+   *  block  : Jmol version
+   *  block  : molecule XML
+   *  block  : <jvxlVolumeData> element
+   *  block  : surface type ("isosurface", "mapped plane", ...)
+   *  block  : <jvxlSurfaceInfo> element
+   *  block  : isosurface command
+   *  block  : isosurface state
+   *  block  : surface title
+   *  4 bytes: (int) flags: 1 precision color; 2 vertex/triangle data
+   *  4 bytes: (int) length of the data that follows, once inflated
+   *  block  : the data that follows, deflated
+   *  --vertex/triangle data--
+   *     4 bytes: (int) triangle count
+   *     block  : vertex numbers, as varint differences from the previous
+   *              one, zigzag-encoded (0, -1, 1, -2, ... as 0, 1, 2, 3, ...)
+   *     4 bytes: (int) vertex count
+   *    24 bytes: (float) min x, y, z, max x, y, z
+   *     block  : (short) x, y, z fractions of max - min for each vertex
+   *     4 bytes: (int) polygon color run count, or -1
+   *     --each run--
+   *        4 bytes: (int) number of triangles
+   *        4 bytes: (int) color ARGB, or 0
+   *  --or voxel data--
+   *     bitset : voxels inside the surface
+   *     block  : (byte) edge fractions
+   *  ------------------
+   *  block  : (byte) color fractions, or (flag 1) (short) color values
+   *  bitset : excluded vertices
+   *  bitset : excluded plane vertices
+   *  bitset : excluded triangles
+   *  4 bytes: (int) contour count
+   *  --each contour--
+   *     4 bytes: (float) value
+   *     4 bytes: (int) color ARGB
+   *     bitset : triangles crossed
+   *     block  : three bytes for each triangle crossed: type (3, 5, or 6),
+   *              and two edge fractions
+   * 
+   */
+
+  /**
+   * Write a surface in binary JVXL form.
+   * 
+   * @param jvxlData
+   * @param meshData   non-null for vertex/triangle data
+   * @param title
+   * @param state
+   * @param comment    the isosurface command
+   * @param os         not closed here
+   * @return number of bytes written
+   * @throws IOException
+   */
+  public static int jvxlWriteFileBinary(JvxlData jvxlData, MeshData meshData,
+                                        String[] title, String state,
+                                        String comment, OutputStream os)
+      throws IOException {
+    boolean verticesOnly = (meshData != null);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream data = new DataOutputStream(bytes);
+    int edgeBase = jvxlData.edgeFractionBase;
+    int edgeRange = jvxlData.edgeFractionRange;
+    int colorBase = jvxlData.colorFractionBase;
+    int colorRange = jvxlData.colorFractionRange;
+    String colorData = jvxlData.jvxlColorData;
+    boolean isPrecisionColor = (!verticesOnly
+        && jvxlData.isJvxlPrecisionColor);
+    int flags = 0;
+    if (verticesOnly) {
+      flags = 2;
+      int vertexCount = meshData.vertexCount;
+      int[] vertexIdNew = new int[vertexCount];
+      ByteArrayOutputStream triangles = new ByteArrayOutputStream();
+      int nTri = writeTriangles(triangles, meshData.polygonIndexes,
+          meshData.polygonCount, vertexIdNew);
+      int[] vertexIdOld = getVertexIdOld(vertexIdNew, vertexCount);
+      data.writeInt(nTri);
+      data.writeInt(triangles.size());
+      triangles.writeTo(data);
+      data.writeInt(vertexCount);
+      Point3f min = jvxlData.boundingBox[0];
+      Point3f max = jvxlData.boundingBox[1];
+      data.writeFloat(min.x);
+      data.writeFloat(min.y);
+      data.writeFloat(min.z);
+      data.writeFloat(max.x);
+      data.writeFloat(max.y);
+      data.writeFloat(max.z);
+      data.writeInt(vertexCount * 6);
+      for (int i = 0; i < vertexCount; i++) {
+        Point3f p = meshData.vertices[vertexIdOld[i]];
+        data.writeShort(jvxlFractionAsShort(p.x, min.x, max.x, colorBase,
+            colorRange));
+        data.writeShort(jvxlFractionAsShort(p.y, min.y, max.y, colorBase,
+            colorRange));
+        data.writeShort(jvxlFractionAsShort(p.z, min.z, max.z, colorBase,
+            colorRange));
+      }
+      writePolygonColors(data, meshData.polygonColorData);
+      if (colorData.length() > 0) {
+        isPrecisionColor = true;
+        colorData = jvxlEncodeVertexValues(jvxlData, vertexIdOld,
+            meshData.vertexValues, vertexCount);
+      }
+    } else {
+      writeBitSet(data, jvxlData.jvxlSurfaceData == null ? new BitSet()
+          : jvxlDecodeBitSet(jvxlData.jvxlSurfaceData));
+      writeLevels(data, jvxlData.jvxlPlane == null ? jvxlData.jvxlEdgeData
+          : null, edgeBase, edgeRange, false);
+    }
+    if (isPrecisionColor)
+      flags |= 1;
+    writeLevels(data, colorData, colorBase, colorRange, isPrecisionColor);
+    for (int i = 0; i < 4; i++) {
+      BitSet bs = jvxlData.jvxlExcluded[i];
+      if (i != 1)
+        writeBitSet(data, bs == null || bs.isEmpty() ? null : bs);
+    }
+    Vector[] contours = jvxlData.vContours;
+    int nContours = 0;
+    if (contours == null)
+      contours = new Vector[0];
+    for (int i = 0; i < contours.length; i++)
+      if (contours[i].size() >= CONTOUR_POINTS)
+        nContours++;
+    data.writeInt(nContours);
+    for (int i = 0; i < contours.length; i++) {
+      if (contours[i].size() < CONTOUR_POINTS)
+        continue;
+      data.writeFloat(((Float) contours[i].get(CONTOUR_VALUE)).floatValue());
+      data.writeInt(((int[]) contours[i].get(CONTOUR_COLOR))[0]);
+      writeBitSet(data, (BitSet) contours[i].get(CONTOUR_BITSET));
+      writeContourCrossings(data, contours[i].get(CONTOUR_FDATA).toString());
+    }
+    data.flush();
+
+    String type = (verticesOnly ? "pmesh"
+        : jvxlData.jvxlPlane == null ? "isosurface" : "plane");
+    if (jvxlData.jvxlColorData != null && jvxlData.jvxlColorData.length() > 0)
+      type = "mapped " + type;
+    StringBuffer info = new StringBuffer(jvxlGetInfo(jvxlData, verticesOnly,
+        true));
+    String surfaceTitle = null;
+    if (title != null) {
+      StringBuffer sb = new StringBuffer();
+      for (int i = 0; i < title.length; i++)
+        sb.append(title[i]).append('\n');
+      surfaceTitle = sb.toString();
+    }
+    DataOutputStream dos = new DataOutputStream(os);
+    dos.writeBytes(SurfaceFileTyper.JVXL_BINARY_MAGIC_NUMBER);
+    dos.writeInt(JVXL_VERSION_BINARY);
+    writeText(dos, jvxlData.jvxlFileTitle);
+    writeText(dos, jvxlData.version);
+    writeText(dos, jvxlData.moleculeXml);
+    writeText(dos, verticesOnly || jvxlData.jvxlVolumeDataXml == null ? 
+        (new VolumeData()).setVolumetricXml() : jvxlData.jvxlVolumeDataXml);
+    writeText(dos, type);
+    writeText(dos, jvxlSetCompressionRatio(info, jvxlData, bytes.size()));
+    writeText(dos, comment == null || comment.indexOf("#") < 0 ? comment
+        : comment.substring(0, comment.indexOf("#")));
+    writeText(dos, state);
+    writeText(dos, surfaceTitle);
+    dos.writeInt(flags);
+    dos.writeInt(bytes.size());
+    ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+    DeflaterOutputStream dfos = new DeflaterOutputStream(deflated);
+    bytes.writeTo(dfos);
+    dfos.close();
+    dos.writeInt(deflated.size());
+    deflated.writeTo(dos);
+    dos.flush();
+    return dos.size();
+  }
+
+  private static void writeText(DataOutputStream dos, String s)
+      throws IOException {
+    if (s == null) {
+      dos.writeInt(-1);
+      return;
+    }
+    byte[] b = s.getBytes("UTF-8");
+    dos.writeInt(b.length);
+    dos.write(b);
+  }
+
+  /**
+   * The levels of the characters of an encoded string, one byte each, or for
+   * two-character precision, as shorts. Line ends are skipped.
+   * 
+   * @param dos
+   * @param s          base/range-encoded fractions, as in the XML
+   * @param base
+   * @param range
+   * @param isPrecise  s is the high characters followed by the low ones
+   * @throws IOException
+   */
+  private static void writeLevels(DataOutputStream dos, String s, int base,
+                                  int range, boolean isPrecise)
+      throws IOException {
+    if (s == null) {
+      dos.writeInt(-1);
+      return;
+    }
+    int n = s.length();
+    while (n > 0 && (s.charAt(n - 1) == '\n' || s.charAt(n - 1) == '\r'))
+      n--;
+    if (isPrecise) {
+      n /= 2;
+      dos.writeInt(n * 2);
+      for (int i = 0; i < n; i++)
+        dos.writeShort(jvxlLevelsAsShort(s.charAt(i), s.charAt(i + n), base,
+            range));
+      return;
+    }
+    byte[] b = new byte[n];
+    n = 0;
+    for (int i = 0; i < b.length; i++) {
+      char ch = s.charAt(i);
+      if (ch != '\n' && ch != '\r')
+        b[n++] = (byte) jvxlLevelFromCharacter(ch, base);
+    }
+    dos.writeInt(n);
+    dos.write(b, 0, n);
+  }
+
+  /**
+   * the vertex numbers of the triangles, as in jvxlEncodeTriangleData, but as
+   * zigzag varint differences
+   * 
+   * @param out
+   * @param triangles
+   * @param nData
+   * @param vertexIdNew  filled in, as for jvxlEncodeTriangleData
+   * @return the number of triangles
+   */
+  private static int writeTriangles(ByteArrayOutputStream out,
+                                    int[][] triangles, int nData,
+                                    int[] vertexIdNew) {
+    int ilast = 1;
+    int inew = 0;
+    int nTri = 0;
+    for (int i = 0; i < nData; i++) {
+      if (triangles[i] == null)
+        continue;
+      for (int p = 0; p < 3; p++) {
+        int idata = triangles[i][p];
+        if (vertexIdNew[idata] > 0)
+          idata = vertexIdNew[idata];
+        else
+          idata = vertexIdNew[idata] = ++inew;
+        int diff = idata - ilast;
+        ilast = idata;
+        writeVarint(out, (diff << 1) ^ (diff >> 31));
+      }
+      nTri++;
+    }
+    return nTri;
+  }
+
+  /**
+   * @param dos
+   * @param s  jvxlnc data: pairs of triangle count and color
+   * @throws IOException
+   */
+  private static void writePolygonColors(DataOutputStream dos, String s)
+      throws IOException {
+    if (s == null) {
+      dos.writeInt(-1);
+      return;
+    }
+    int[] next = new int[1];
+    Vector runs = new Vector();
+    int n;
+    while ((n = Parser.parseInt(s, next)) != Integer.MIN_VALUE) {
+      int color = Parser.parseInt(s, next);
+      if (color == Integer.MIN_VALUE)
+        break;
+      runs.add(new int[] { n, color });
+    }
+    dos.writeInt(runs.size());
+    for (int i = 0; i < runs.size(); i++) {
+      int[] run = (int[]) runs.get(i);
+      dos.writeInt(run[0]);
+      dos.writeInt(run[1]);
+    }
+  }
+
+  /**
+   * @param dos
+   * @param fData  contour crossings, as from appendContourTriangleIntersection
+   * @throws IOException
+   */
+  private static void writeContourCrossings(DataOutputStream dos, String fData)
+      throws IOException {
+    ByteArrayOutputStream b = new ByteArrayOutputStream();
+    int nBuf = fData.length();
+    char c1 = ' ';
+    char c2 = ' ';
+    // as read by set3dContourVector
+    for (int pt = 0; pt < nBuf;) {
+      while (pt < nBuf && !Character.isDigit(c1 = fData.charAt(pt++))) {
+        // skip non-digit data
+      }
+      if (pt >= nBuf)
+        break;
+      int type = ((int) c1) - 48;
+      while (pt < nBuf && Character.isWhitespace(c1 = fData.charAt(pt++))) {
+        // skip whitespace
+      }
+      while (pt < nBuf && Character.isWhitespace(c2 = fData.charAt(pt++))) {
+        // skip whitespace
+      }
+      b.write(type);
+      b.write(jvxlLevelFromCharacter(c1, defaultEdgeFractionBase));
+      b.write(jvxlLevelFromCharacter(c2, defaultEdgeFractionBase));
+    }
+    dos.writeInt(b.size());
+    b.writeTo(dos);
+  }
+
+  private static void writeBitSet(DataOutputStream dos, BitSet bs)
+      throws IOException {
+    if (bs == null) {
+      dos.writeInt(-1);
+      return;
+    }
+    ByteArrayOutputStream runs = new ByteArrayOutputStream();
+    int len = bs.length();
+    boolean isset = false;
+    for (int i = 0; i < len; isset = !isset) {
+      int j = (isset ? bs.nextClearBit(i) : bs.nextSetBit(i));
+      writeVarint(runs, j - i);
+      i = j;
+    }
+    dos.writeInt(runs.size());
+    runs.writeTo(dos);
+  }
+
+  private static void writeVarint(ByteArrayOutputStream out, int n) {
+    for (;; n >>>= 7) {
+      if ((n & ~0x7F) == 0) {
+        out.write(n);
+        return;
+      }
+      out.write(0x80 | (n & 0x7F));
+    }
+  }
+
+  /**
+   * @param ch    a character of base/range-encoded data
+   * @param base
+   * @return its level: 0 for the lowest fraction, range for NaN
+   */
+  public static int jvxlLevelFromCharacter(int ch, int base) {
+    return (ch < base ? 92 : ch) - base; // ! --> \
+  }
+
+  /**
+   * @param level
+   * @param base
+   * @return the character of the XML encoding of this level
+   */
+  public static char jvxlLevelAsCharacter(int level, int base) {
+    int ch = base + level;
+    return (char) (ch == 92 ? 33 : ch); // \ --> !
+  }
+
+  private static int jvxlLevelsAsShort(char ch1, char ch2, int base, int range) {
+    return (ch1 == base + range ? 0xFFFF : jvxlLevelFromCharacter(ch1, base)
+        * range + jvxlLevelFromCharacter(ch2, base));
+  }
+
+  /**
+   * @param value
+   * @param min
+   * @param max
+   * @param base
+   * @param range
+   * @return the 16-bit fixed-point fraction of max - min, as the two
+   *         characters of jvxlAppendCharacter2 would encode it
+   */
+  private static int jvxlFractionAsShort(float value, float min, float max,
+                                         int base, int range) {
+    float fraction = (min == max ? value : (value - min) / (max - min));
+    char ch1 = jvxlFractionAsCharacter(fraction, base, range);
+    fraction -= jvxlFractionFromCharacter(ch1, base, range, 0);
+    return jvxlLevelsAsShort(ch1, jvxlFractionAsCharacter(fraction * range,
+        base, range), base, range);
+  }
+
+  /**
+   * @param s     a fixed-point fraction written by jvxlWriteFileBinary
+   * @param base
+   * @param range
+   * @return the fraction, exactly as jvxlFractionFromCharacter2 would give it
+   *         for the two characters of the XML encoding
+   */
+  public static float jvxlFractionFromShort(int s, int base, int range) {
+    return (s == 0xFFFF ? Float.NaN : jvxlFractionFromCharacter2(base + s
+        / range, base + s % range, base, range));
+  }
+
   public static String jvxlGetInfo(JvxlData jvxlData) {
     return jvxlGetInfo(jvxlData, jvxlData.vertexDataOnly, true);
   }
@@ -601,12 +1035,24 @@ public class JvxlCoder {
    */
   private static boolean appendXmlTriangleData(StringBuffer sb, int[][] triangles, int nData,
                                               int[] vertexIdNew, boolean escapeXml) {
+    int[] nTri = new int[1];
+    String data = jvxlEncodeTriangleData(triangles, nData, vertexIdNew, nTri);
+    if (data.length() == 0)
+      return false;
+    XmlUtil.appendTag(sb, "jvxlTriangleData", new String[] {
+        "count", "" + nTri[0],
+        "encoding", "jvxltdiff",
+        "data" , jvxlCompressString(data, escapeXml) }, null);
+    return true;
+  }
+
+  private static String jvxlEncodeTriangleData(int[][] triangles, int nData,
+                                               int[] vertexIdNew, int[] nTri) {
     StringBuffer list1 = new StringBuffer();
     int ilast = 1;
     int p = 0;
     int inew = 0;
     boolean addPlus = false;
-    int nTri = 0;
     for (int i = 0; i < nData;) {
       if (triangles[i] == null) {
         i++;
@@ -638,16 +1084,10 @@ public class JvxlCoder {
       if (++p % 3 == 0) {
         p = 0;
         i++;
-        nTri++;
+        nTri[0]++;
       }
     }
-    if (list1.length() == 0)
-      return false;
-    XmlUtil.appendTag(sb, "jvxlTriangleData", new String[] {
-        "count", "" + nTri,
-        "encoding", "jvxltdiff",
-        "data" , jvxlCompressString(list1.toString(), escapeXml) }, null);
-    return true;
+    return list1.toString();
   }
 
   /**
@@ -703,6 +1143,40 @@ public class JvxlCoder {
                                             String polygonColorData, 
                                             int polygonCount,
                                             boolean addColorData, boolean escapeXml) {
+    int[] vertexIdOld = getVertexIdOld(vertexIdNew, vertexCount);
+    XmlUtil.appendTag(sb, "jvxlVertexData", new String[] {
+        "count", "" + vertexCount,
+        "min", Escape.escape(jvxlData.boundingBox[0]),
+        "max", Escape.escape(jvxlData.boundingBox[1]),
+        "encoding", "base90xyz2",
+        "data", jvxlCompressString(jvxlEncodeVertexData(jvxlData,
+            vertexIdOld, vertices, vertexCount), escapeXml) }, null);
+    if (polygonColorData != null)
+      XmlUtil.appendTag(sb, "jvxlPolygonColorData", new String[] {
+          "encoding", "jvxlnc",
+          "count", "" + polygonCount}, "\n" + polygonColorData);
+    if (!addColorData)
+      return;
+
+    // now add the color data, again as a double-precision value.
+
+    appendXmlColorData(sb, "jvxlColorData", jvxlEncodeVertexValues(jvxlData,
+        vertexIdOld, vertexValues, vertexCount), true,
+        jvxlData.valueMappedToRed, jvxlData.valueMappedToBlue);
+  }
+
+  private static int[] getVertexIdOld(int[] vertexIdNew, int vertexCount) {
+    int[] vertexIdOld = new int[vertexCount];
+    for (int i = 0; i < vertexCount; i++)
+      if (vertexIdNew[i] > 0) // not all vertices may be in triangle -- that's OK
+        vertexIdOld[vertexIdNew[i] - 1] = i;
+    return vertexIdOld;
+  }
+
+  private static String jvxlEncodeVertexData(JvxlData jvxlData,
+                                             int[] vertexIdOld,
+                                             Point3f[] vertices,
+                                             int vertexCount) {
     int colorFractionBase = jvxlData.colorFractionBase;
     int colorFractionRange = jvxlData.colorFractionRange;
     Point3f p;
@@ -710,10 +1184,6 @@ public class JvxlCoder {
     Point3f max = jvxlData.boundingBox[1];
     StringBuffer list1 = new StringBuffer();
     StringBuffer list2 = new StringBuffer();
-    int[] vertexIdOld = new int[vertexCount];
-    for (int i = 0; i < vertexCount; i++)
-      if (vertexIdNew[i] > 0) // not all vertices may be in triangle -- that's OK
-        vertexIdOld[vertexIdNew[i] - 1] = i;
     for (int i = 0; i < vertexCount; i++) {
       p = vertices[vertexIdOld[i]];
       jvxlAppendCharacter2(p.x, min.x, max.x, colorFractionBase,
@@ -723,32 +1193,22 @@ public class JvxlCoder {
       jvxlAppendCharacter2(p.z, min.z, max.z, colorFractionBase,
           colorFractionRange, list1, list2);
     }
-    list1.append(list2);
-    XmlUtil.appendTag(sb, "jvxlVertexData", new String[] {
-        "count", "" + vertexCount,
-        "min", Escape.escape(min),
-        "max", Escape.escape(max),
-        "encoding", "base90xyz2",
-        "data", jvxlCompressString(list1.toString(), escapeXml) }, null);
-    if (polygonColorData != null)
-      XmlUtil.appendTag(sb, "jvxlPolygonColorData", new String[] {
-          "encoding", "jvxlnc",
-          "count", "" + polygonCount}, "\n" + polygonColorData);
-    if (!addColorData)
-      return;
-
-    // now add the color data, again as a double-precision value.
+    return list1.append(list2).toString();
+  }
 
-    list1 = new StringBuffer();
-    list2 = new StringBuffer();
+  private static String jvxlEncodeVertexValues(JvxlData jvxlData,
+                                               int[] vertexIdOld,
+                                               float[] vertexValues,
+                                               int vertexCount) {
+    StringBuffer list1 = new StringBuffer();
+    StringBuffer list2 = new StringBuffer();
     for (int i = 0; i < vertexCount; i++) {
       float value = vertexValues[vertexIdOld[i]];
       jvxlAppendCharacter2(value, jvxlData.mappedDataMin,
-          jvxlData.mappedDataMax, colorFractionBase, colorFractionRange, list1,
-          list2);
+          jvxlData.mappedDataMax, jvxlData.colorFractionBase,
+          jvxlData.colorFractionRange, list1, list2);
     }
-    appendXmlColorData(sb, "jvxlColorData", list1.append(list2).append("\n").toString(), true, 
-        jvxlData.valueMappedToRed, jvxlData.valueMappedToBlue);
+    return list1.append(list2).append("\n").toString();
   }
 
   ////////// character - fraction encoding and decoding
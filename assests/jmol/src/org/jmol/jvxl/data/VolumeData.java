@@ -315,6 +315,21 @@ public class VolumeData implements VolumeDataInterface {
     return v1 + (pt.z - zDown) * (v2 - v1);
   }
 
+  /**
+   * for streaming map data: lookupInterpolatedVoxelValue(point) needs
+   * only this X plane and possibly the one before it
+   * 
+   * @param point
+   * @return the higher of the two X planes
+   */
+  public int getInterpolationPlaneX(Point3f point) {
+    ptXyzTemp.sub(point, volumetricOrigin);
+    inverseMatrix.transform(ptXyzTemp);
+    int iMax = voxelCounts[0] - 1;
+    int xDown = indexDown(ptXyzTemp.x, iMax);
+    return xDown + (ptXyzTemp.x < 0 || xDown == iMax ? 0 : 1);
+  }
+
   public float getVoxelValue(int x, int y, int z) {
     if (voxelMap == null)
       return voxelData[x][y][z];
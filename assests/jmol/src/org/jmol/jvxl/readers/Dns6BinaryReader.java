@@ -47,7 +47,7 @@ class Dsn6BinaryReader extends MapFileReader {
     super(sg, null);
     binarydoc = new BinaryDocument();
     if (data == null)
-      binarydoc.setStream(sg.getAtomDataServer().getBufferedInputStream(fileName), true);
+      setStreamOrMapping(fileName);
     else 
       binarydoc.setStream(new DataInputStream(new ByteArrayInputStream(data.getBytes())));
     // data are HIGH on the inside and LOW on the outside
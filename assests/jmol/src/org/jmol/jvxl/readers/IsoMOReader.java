@@ -30,6 +30,7 @@ import org.jmol.util.Logger;
 import org.jmol.util.TextFormat;
 import org.jmol.api.Interface;
 import org.jmol.api.MOCalculationInterface;
+import org.jmol.viewer.Viewer;
 
 class IsoMOReader extends AtomDataReader {
 
@@ -81,6 +82,8 @@ class IsoMOReader extends AtomDataReader {
   protected void generateCube() {
     volumeData.voxelData = voxelData = new float[nPointsX][nPointsY][nPointsZ];
     MOCalculationInterface q = (MOCalculationInterface) Interface.getOptionInterface("quantum.MOCalculation");
+    q.setExecutor(atomDataServer == null ? null : atomDataServer.getExecutor(),
+        Viewer.nProcessors);
     Hashtable moData = params.moData;
     float[] coef = params.moCoefficients; 
     int[][] dfCoefMaps = params.dfCoefMaps;
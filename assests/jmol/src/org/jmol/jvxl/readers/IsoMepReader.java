@@ -25,6 +25,7 @@ package org.jmol.jvxl.readers;
 
 import org.jmol.api.Interface;
 import org.jmol.api.MepCalculationInterface;
+import org.jmol.viewer.Viewer;
 
 class IsoMepReader extends AtomDataReader {
 
@@ -48,6 +49,8 @@ class IsoMepReader extends AtomDataReader {
   protected void generateCube() {
     volumeData.voxelData = voxelData = new float[nPointsX][nPointsY][nPointsZ];
     MepCalculationInterface m = (MepCalculationInterface) Interface.getOptionInterface("quantum." + type + "Calculation");
+    m.setExecutor(atomDataServer == null ? null : atomDataServer.getExecutor(),
+        Viewer.nProcessors);
     m.calculate(volumeData, bsMySelected, atomData.atomXyz,
           params.theProperty, params.mep_calcType);
   }
@@ -28,8 +28,12 @@ import java.util.BitSet;
 import javax.vecmath.Point3f;
 import javax.vecmath.Point3i;
 import javax.vecmath.Point4f;
+import javax.vecmath.Vector3f;
 
+import org.jmol.util.ArrayUtil;
 import org.jmol.util.Logger;
+import org.jmol.util.ParallelTasks;
+import org.jmol.viewer.Viewer;
 
 import org.jmol.api.AtomIndexIterator;
 import org.jmol.jvxl.data.MeshData;
@@ -258,132 +262,284 @@ class IsoSolventReader extends AtomDataReader {
 
   final Point3f ptXyzTemp = new Point3f();
 
+  /*
+   * The solvent cube is done in two steps. First, on this thread, we 
+   * make lists of the atoms and the atom pairs (for troughs) that apply, 
+   * along with their grid limits. Then the grid is filled in by X-slab, 
+   * possibly on several threads. Each slab goes through the same lists 
+   * in the same order, so the result is the same either way.
+   * 
+   */
+
+  private int nSolventAtoms;
+  private int[] solventAtoms;
+  private int[] solventAtomLimits;
+  private int nTroughPairs;
+  private int[] troughAtoms;
+  private float[] troughData;
+  private int[] troughLimits;
+  
   void generateSolventCube(boolean isFirstPass) {
     float distance = params.distance;
-    float rA, rB;
+    float rA;
     Point3f ptA;
-    Point3f ptY0 = new Point3f(), ptZ0 = new Point3f();
     Point3i pt0 = new Point3i(), pt1 = new Point3i();
-    float value = Float.MAX_VALUE;
     if (Logger.debugging)
       Logger.startTimer();
-    for (int x = 0; x < nPointsX; ++x)
+    nSolventAtoms = nTroughPairs = 0;
+    boolean isNoMap = (dataType == Parameters.SURFACE_NOMAP);
+    boolean isWithin = (isFirstPass && distance != Float.MAX_VALUE && point != null);
+    boolean doTroughs = (doCalculateTroughs && !(isCavity && isFirstPass));
+    float r0 = (isFirstPass && isCavity ? cavityRadius : 0);
+    if (!isNoMap) {
+      int atomCount = myAtomCount;
+      float maxRadius = 0;
+      solventAtoms = new int[atomCount];
+      solventAtomLimits = new int[atomCount * 6];
+      for (int iAtom = 0; iAtom < atomCount; iAtom++) {
+        ptA = atomXyz[iAtom];
+        rA = atomRadius[iAtom];
+        if (rA > maxRadius)
+          maxRadius = rA;
+        if (isWithin && ptA.distance(point) > distance + rA + 0.5)
+          continue;
+        setGridLimitsForAtom(ptA, rA + r0, pt0, pt1);
+        setLimits(solventAtomLimits, nSolventAtoms, pt0, pt1);
+        solventAtoms[nSolventAtoms++] = iAtom;
+      }
+      if (doTroughs)
+        getTroughPairs(isWithin, distance, maxRadius);
+    }
+    fillSolventCube(isFirstPass, isNoMap, isWithin, doTroughs);
+    solventAtoms = solventAtomLimits = troughAtoms = troughLimits = null;
+    troughData = null;
+    if (Logger.debugging)
+      Logger.checkTimer("solvent surface time");
+  }
+
+  private void getTroughPairs(boolean isWithin, float distance, float maxRadius) {
+    Point3f ptA;
+    float rA, rB;
+    Point3i pt0 = new Point3i();
+    Point3i pt1 = new Point3i();
+    Point3i ptA0 = new Point3i();
+    Point3i ptB0 = new Point3i();
+    Point3i ptA1 = new Point3i();
+    Point3i ptB1 = new Point3i();
+    troughAtoms = new int[64];
+    troughData = new float[96];
+    troughLimits = new int[192];
+    AtomIndexIterator iter = atomDataServer.getSelectedAtomIterator(
+        bsMySelected, true, true);
+    for (int iAtom = 0; iAtom < firstNearbyAtom - 1; iAtom++)
+      if (atomNo[iAtom] > 0) {
+        ptA = atomXyz[iAtom];
+        rA = atomRadius[iAtom] + solventRadius;
+        int iatomA = atomIndex[iAtom];
+        if (isWithin && ptA.distance(point) > distance + rA + 0.5)
+          continue;
+        setGridLimitsForAtom(ptA, rA - solventRadius, ptA0, ptA1);
+        atomDataServer.setIteratorForAtom(iter, iatomA, rA + solventRadius + maxRadius);
+        //true ==> only atom index > this atom accepted
+        while (iter.hasNext()) {
+          int iatomB = iter.next();
+          Point3f ptB = atomXyz[myIndex[iatomB]];
+          rB = atomData.atomRadius[iatomB] + solventRadius;
+          if (isWithin && ptB.distance(point) > distance + rB + 0.5)
+            continue;
+          if (params.thePlane != null
+              && Math.abs(volumeData.distancePointToPlane(ptB)) > 2 * rB)
+            continue;
+
+          float dAB = ptA.distance(ptB);
+          if (dAB >= rA + rB)
+            continue;
+          //defining pt0 and pt1 very crudely -- this could be refined
+          setGridLimitsForAtom(ptB, rB - solventRadius, ptB0, ptB1);
+          pt0.x = Math.min(ptA0.x, ptB0.x);
+          pt0.y = Math.min(ptA0.y, ptB0.y);
+          pt0.z = Math.min(ptA0.z, ptB0.z);
+          pt1.x = Math.max(ptA1.x, ptB1.x);
+          pt1.y = Math.max(ptA1.y, ptB1.y);
+          pt1.z = Math.max(ptA1.z, ptB1.z);
+          if (nTroughPairs * 2 == troughAtoms.length) {
+            troughAtoms = ArrayUtil.setLength(troughAtoms, nTroughPairs * 4);
+            troughData = ArrayUtil.setLength(troughData, nTroughPairs * 6);
+            troughLimits = ArrayUtil.setLength(troughLimits, nTroughPairs * 12);
+          }
+          setLimits(troughLimits, nTroughPairs, pt0, pt1);
+          int pt = nTroughPairs * 3;
+          troughData[pt++] = rA;
+          troughData[pt++] = rB;
+          troughData[pt] = dAB;
+          troughAtoms[nTroughPairs * 2] = iAtom;
+          troughAtoms[nTroughPairs * 2 + 1] = myIndex[iatomB];
+          nTroughPairs++;
+        }
+      }
+    iter.release();
+  }
+
+  private static void setLimits(int[] limits, int i, Point3i pt0, Point3i pt1) {
+    i *= 6;
+    limits[i++] = pt0.x;
+    limits[i++] = pt0.y;
+    limits[i++] = pt0.z;
+    limits[i++] = pt1.x;
+    limits[i++] = pt1.y;
+    limits[i] = pt1.z;
+  }
+
+  // grids narrower than two of these are filled on the calling thread
+  private final static int MIN_SLAB_WIDTH = 4;
+
+  private void fillSolventCube(boolean isFirstPass, boolean isNoMap,
+                               boolean isWithin, boolean doTroughs) {
+    Object executor = (atomDataServer == null ? null : atomDataServer
+        .getExecutor());
+    int nSlabs = ParallelTasks.getTaskCount(executor, Viewer.nProcessors,
+        nPointsX, MIN_SLAB_WIDTH);
+    Runnable[] tasks = new Runnable[nSlabs];
+    for (int i = 0; i < nSlabs; i++)
+      tasks[i] = new SolventSlabTask(nPointsX * i / nSlabs, nPointsX * (i + 1)
+          / nSlabs, isFirstPass, isNoMap, isWithin, doTroughs);
+    ParallelTasks.run(executor, tasks, "IsoSolventReader");
+  }
+
+  private class SolventSlabTask implements Runnable {
+    private int x0, x1;
+    private boolean isFirstPass, isNoMap, isWithin, doTroughs;
+
+    SolventSlabTask(int x0, int x1, boolean isFirstPass, boolean isNoMap,
+        boolean isWithin, boolean doTroughs) {
+      this.x0 = x0;
+      this.x1 = x1;
+      this.isFirstPass = isFirstPass;
+      this.isNoMap = isNoMap;
+      this.isWithin = isWithin;
+      this.doTroughs = doTroughs;
+    }
+
+    public void run() {
+      fillSolventSlab(x0, x1, isFirstPass, isNoMap, isWithin, doTroughs);
+    }
+  }
+
+  /**
+   * fills voxelData[x0] through voxelData[x1 - 1]; thread-safe
+   * 
+   * @param x0
+   * @param x1
+   * @param isFirstPass
+   * @param isNoMap
+   * @param isWithin
+   * @param doTroughs
+   */
+  void fillSolventSlab(int x0, int x1, boolean isFirstPass, boolean isNoMap,
+                       boolean isWithin, boolean doTroughs) {
+    float distance = params.distance;
+    float rA, rB;
+    Point3f ptA, ptB;
+    Point3f ptXyz = new Point3f();
+    Point3f ptY0 = new Point3f(), ptZ0 = new Point3f();
+    Point3f ptS = new Point3f();
+    Vector3f v0 = volumetricVectors[0];
+    Vector3f v1 = volumetricVectors[1];
+    Vector3f v2 = volumetricVectors[2];
+    float value = Float.MAX_VALUE;
+    for (int x = x0; x < x1; ++x)
       for (int y = 0; y < nPointsY; ++y)
         for (int z = 0; z < nPointsZ; ++z)
           voxelData[x][y][z] = value;
-    if (dataType == Parameters.SURFACE_NOMAP)
+    if (isNoMap)
       return;
-    int atomCount = myAtomCount;
-    float maxRadius = 0;
-    float r0 = (isFirstPass && isCavity ? cavityRadius : 0);
-    boolean isWithin = (isFirstPass && distance != Float.MAX_VALUE && point != null);
-    AtomIndexIterator iter = (doCalculateTroughs ? 
-        atomDataServer.getSelectedAtomIterator(bsMySelected, true, true) : null);
-    for (int iAtom = 0; iAtom < atomCount; iAtom++) {
+    for (int n = 0; n < nSolventAtoms; n++) {
+      int iAtom = solventAtoms[n];
       ptA = atomXyz[iAtom];
       rA = atomRadius[iAtom];
-      if (rA > maxRadius)
-        maxRadius = rA;
-      if (isWithin && ptA.distance(point) > distance + rA + 0.5)
-        continue;
       boolean isNearby = (iAtom >= firstNearbyAtom);
-      setGridLimitsForAtom(ptA, rA + r0, pt0, pt1);
-      volumeData.voxelPtToXYZ(pt0.x, pt0.y, pt0.z, ptXyzTemp);
-      for (int i = pt0.x; i < pt1.x; i++) {
-        ptY0.set(ptXyzTemp);
-        for (int j = pt0.y; j < pt1.y; j++) {
-          ptZ0.set(ptXyzTemp);
-          for (int k = pt0.z; k < pt1.z; k++) {
-            float v = ptXyzTemp.distance(ptA) - rA;
-            if (v < voxelData[i][j][k]) {
-              voxelData[i][j][k] = (isNearby || isWithin
-                  && ptXyzTemp.distance(point) > distance ? Float.NaN : v);
+      int pt = n * 6;
+      int i0 = solventAtomLimits[pt++];
+      int j0 = solventAtomLimits[pt++];
+      int k0 = solventAtomLimits[pt++];
+      int i1 = Math.min(solventAtomLimits[pt++], x1);
+      int j1 = solventAtomLimits[pt++];
+      int k1 = solventAtomLimits[pt];
+      volumeData.voxelPtToXYZ(i0, j0, k0, ptXyz);
+      for (int i = i0; i < i1; i++) {
+        if (i >= x0) {
+          ptY0.set(ptXyz);
+          for (int j = j0; j < j1; j++) {
+            ptZ0.set(ptXyz);
+            for (int k = k0; k < k1; k++) {
+              float v = ptXyz.distance(ptA) - rA;
+              if (v < voxelData[i][j][k]) {
+                voxelData[i][j][k] = (isNearby || isWithin
+                    && ptXyz.distance(point) > distance ? Float.NaN : v);
+              }
+              ptXyz.add(v2);
             }
-            ptXyzTemp.add(volumetricVectors[2]);
+            ptXyz.set(ptZ0);
+            ptXyz.add(v1);
           }
-          ptXyzTemp.set(ptZ0);
-          ptXyzTemp.add(volumetricVectors[1]);
+          ptXyz.set(ptY0);
         }
-        ptXyzTemp.set(ptY0);
-        ptXyzTemp.add(volumetricVectors[0]);
+        ptXyz.add(v0);
       }
     }
     if (isCavity && isFirstPass)
       return;
-    if (doCalculateTroughs) {
-      Point3i ptA0 = new Point3i();
-      Point3i ptB0 = new Point3i();
-      Point3i ptA1 = new Point3i();
-      Point3i ptB1 = new Point3i();
-      for (int iAtom = 0; iAtom < firstNearbyAtom - 1; iAtom++)
-        if (atomNo[iAtom] > 0) {
-          ptA = atomXyz[iAtom];
-          rA = atomRadius[iAtom] + solventRadius;
-          int iatomA = atomIndex[iAtom];
-          if (isWithin && ptA.distance(point) > distance + rA + 0.5)
-            continue;
-          setGridLimitsForAtom(ptA, rA - solventRadius, ptA0, ptA1);
-          atomDataServer.setIteratorForAtom(iter, iatomA, rA + solventRadius + maxRadius);
-          //true ==> only atom index > this atom accepted
-          while (iter.hasNext()) {
-            int iatomB = iter.next();
-            Point3f ptB = atomXyz[myIndex[iatomB]];
-            rB = atomData.atomRadius[iatomB] + solventRadius;
-            if (isWithin && ptB.distance(point) > distance + rB + 0.5)
-              continue;
-            if (params.thePlane != null
-                && Math.abs(volumeData.distancePointToPlane(ptB)) > 2 * rB)
-              continue;
-
-            float dAB = ptA.distance(ptB);
-            if (dAB >= rA + rB)
-              continue;
-            //defining pt0 and pt1 very crudely -- this could be refined
-            setGridLimitsForAtom(ptB, rB - solventRadius, ptB0, ptB1);
-            pt0.x = Math.min(ptA0.x, ptB0.x);
-            pt0.y = Math.min(ptA0.y, ptB0.y);
-            pt0.z = Math.min(ptA0.z, ptB0.z);
-            pt1.x = Math.max(ptA1.x, ptB1.x);
-            pt1.y = Math.max(ptA1.y, ptB1.y);
-            pt1.z = Math.max(ptA1.z, ptB1.z);
-            volumeData.voxelPtToXYZ(pt0.x, pt0.y, pt0.z, ptXyzTemp);
-            for (int i = pt0.x; i < pt1.x; i++) {
-              ptY0.set(ptXyzTemp);
-              for (int j = pt0.y; j < pt1.y; j++) {
-                ptZ0.set(ptXyzTemp);
-                for (int k = pt0.z; k < pt1.z; k++) {
-                  float dVS = checkSpecialVoxel(ptA, rA, ptB, rB, dAB,
-                      ptXyzTemp);
-                  if (!Float.isNaN(dVS)) {
-                    float v = solventRadius - dVS;
-                    if (v < voxelData[i][j][k]) {
-                      voxelData[i][j][k] = (isWithin
-                          && ptXyzTemp.distance(point) > distance ? Float.NaN
-                          : v);
-                    }
+    if (doTroughs) {
+      for (int n = 0; n < nTroughPairs; n++) {
+        ptA = atomXyz[troughAtoms[n * 2]];
+        ptB = atomXyz[troughAtoms[n * 2 + 1]];
+        int pt = n * 3;
+        rA = troughData[pt++];
+        rB = troughData[pt++];
+        float dAB = troughData[pt];
+        pt = n * 6;
+        int i0 = troughLimits[pt++];
+        int j0 = troughLimits[pt++];
+        int k0 = troughLimits[pt++];
+        int i1 = Math.min(troughLimits[pt++], x1);
+        int j1 = troughLimits[pt++];
+        int k1 = troughLimits[pt];
+        volumeData.voxelPtToXYZ(i0, j0, k0, ptXyz);
+        for (int i = i0; i < i1; i++) {
+          if (i >= x0) {
+            ptY0.set(ptXyz);
+            for (int j = j0; j < j1; j++) {
+              ptZ0.set(ptXyz);
+              for (int k = k0; k < k1; k++) {
+                float dVS = checkSpecialVoxel(ptA, rA, ptB, rB, dAB, ptXyz,
+                    ptS);
+                if (!Float.isNaN(dVS)) {
+                  float v = solventRadius - dVS;
+                  if (v < voxelData[i][j][k]) {
+                    voxelData[i][j][k] = (isWithin
+                        && ptXyz.distance(point) > distance ? Float.NaN : v);
                   }
-                  ptXyzTemp.add(volumetricVectors[2]);
                 }
-                ptXyzTemp.set(ptZ0);
-                ptXyzTemp.add(volumetricVectors[1]);
+                ptXyz.add(v2);
               }
-              ptXyzTemp.set(ptY0);
-              ptXyzTemp.add(volumetricVectors[0]);
+              ptXyz.set(ptZ0);
+              ptXyz.add(v1);
             }
+            ptXyz.set(ptY0);
           }
+          ptXyz.add(v0);
         }
-      iter.release();
-      iter = null;
+      }
     }
     if (params.thePlane == null) {
-      for (int x = 0; x < nPointsX; ++x)
+      for (int x = x0; x < x1; ++x)
         for (int y = 0; y < nPointsY; ++y)
           for (int z = 0; z < nPointsZ; ++z)
             if (voxelData[x][y][z] == Float.MAX_VALUE)
               voxelData[x][y][z] = Float.NaN;
     } else { //solvent planes just focus on negative values
       value = 0.001f;
-      for (int x = 0; x < nPointsX; ++x)
+      for (int x = x0; x < x1; ++x)
         for (int y = 0; y < nPointsY; ++y)
           for (int z = 0; z < nPointsZ; ++z)
             if (voxelData[x][y][z] < value) {
@@ -392,8 +548,6 @@ class IsoSolventReader extends AtomDataReader {
               voxelData[x][y][z] = value;
             }
     }
-    if (Logger.debugging)
-      Logger.checkTimer("solvent surface time");
   }
 
   void setGridLimitsForAtom(Point3f ptA, float rA, Point3i pt0, Point3i pt1) {
@@ -420,10 +574,8 @@ class IsoSolventReader extends AtomDataReader {
       pt1.z = nPointsZ;
   }
 
-  final Point3f ptS = new Point3f();
-
   float checkSpecialVoxel(Point3f ptA, float rAS, Point3f ptB, float rBS,
-                          float dAB, Point3f ptV) {
+                          float dAB, Point3f ptV, Point3f ptS) {
     /*
      * Checking here for voxels that are in the situation:
      * 
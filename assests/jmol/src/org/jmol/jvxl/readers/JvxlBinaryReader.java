@@ -0,0 +1,381 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-18 07:13:41 -0500 (Mon, 18 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.jvxl.readers;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.util.BitSet;
+import java.util.Vector;
+import java.util.zip.InflaterInputStream;
+
+import javax.vecmath.Point3f;
+
+import org.jmol.g3d.Graphics3D;
+import org.jmol.jvxl.data.JvxlCoder;
+import org.jmol.shapesurface.IsosurfaceMesh;
+import org.jmol.util.BinaryDocument;
+import org.jmol.util.Logger;
+import org.jmol.util.SurfaceFileTyper;
+
+/**
+ * Reads the binary JVXL written by JvxlCoder.jvxlWriteFileBinary (see there
+ * for the format). The header and surface information are the XML of the XML
+ * form and are read by JvxlXmlReader; the rest is inflated and read at once,
+ * from a memory mapping when the file is local. Edge fractions, color values,
+ * vertices, and triangles are then decoded straight from those blocks as the
+ * surface is built. The character form of the edge and color data is made
+ * from the same blocks only because JvxlData keeps it for writing the
+ * surface out again.
+ *
+ */
+class JvxlBinaryReader extends JvxlXmlReader {
+
+  private byte[] edgeData;
+  private int edgePtr;
+  private byte[] colorData;
+  private BitSet[] excluded = new BitSet[4];
+  private Vector contours;
+
+  private int triangleCount;
+  private byte[] triangleData;
+  private int vertexCount;
+  private Point3f vertexMin;
+  private Point3f vertexMax;
+  private byte[] vertexData;
+  private int[] polygonColors;
+
+  /**
+   * @param sg
+   * @param fileName  read, through a memory mapping if possible, if data is
+   *                  null
+   * @param data      the bytes of the file, or null
+   */
+  JvxlBinaryReader(SurfaceGenerator sg, String fileName, byte[] data) {
+    super(sg, null);
+    binarydoc = new BinaryDocument();
+    if (data == null)
+      setStreamOrMapping(fileName);
+    else
+      binarydoc.setStream(new DataInputStream(new ByteArrayInputStream(data)));
+  }
+
+  protected void readParameters() throws Exception {
+    String magic = binarydoc.readString(4);
+    if (!magic.equals(SurfaceFileTyper.JVXL_BINARY_MAGIC_NUMBER))
+      throw new Exception("not a binary JVXL file");
+    int version = binarydoc.readInt();
+    if (version != JvxlCoder.JVXL_VERSION_BINARY)
+      throw new Exception("binary JVXL version " + version
+          + " cannot be read; expected version "
+          + JvxlCoder.JVXL_VERSION_BINARY);
+    String title = readText();
+    readText(); // Jmol version
+    readText(); // molecule XML
+    jvxlSetParameters(title == null ? "" : title, readText(), 1);
+  }
+
+  protected void gotoData(int n, int nPoints) throws Exception {
+    if (n > 0)
+      Logger.warn("binary JVXL files contain only one surface");
+    vertexDataOnly = jvxlData.vertexDataOnly = (nPoints == 0);
+    readText(); // surface type
+    jvxlSetSurfaceInfo(readText());
+    readText(); // isosurface command
+    readText(); // isosurface state
+    readText(); // surface title
+    int flags = binarydoc.readInt();
+    jvxlData.isJvxlPrecisionColor = ((flags & 1) != 0);
+    inflateData();
+    if ((flags & 2) != 0) {
+      triangleCount = binarydoc.readInt();
+      triangleData = readBlock();
+      vertexCount = binarydoc.readInt();
+      vertexMin = new Point3f(binarydoc.readFloat(), binarydoc.readFloat(),
+          binarydoc.readFloat());
+      vertexMax = new Point3f(binarydoc.readFloat(), binarydoc.readFloat(),
+          binarydoc.readFloat());
+      vertexData = readBlock();
+      int nRuns = binarydoc.readInt();
+      if (nRuns >= 0) {
+        polygonColors = new int[nRuns * 2];
+        for (int i = 0; i < polygonColors.length; i++)
+          polygonColors[i] = binarydoc.readInt();
+      }
+    } else {
+      bsVoxelBitSet = readBitSet();
+      edgeData = readBlock();
+    }
+    colorData = readBlock();
+    excluded[0] = readBitSet();
+    excluded[2] = readBitSet();
+    excluded[3] = readBitSet();
+    contours = new Vector();
+    for (int i = binarydoc.readInt(); --i >= 0;) {
+      Vector v = new Vector();
+      float value = binarydoc.readFloat();
+      short colix = Graphics3D.getColix(binarydoc.readInt());
+      BitSet bs = readBitSet();
+      IsosurfaceMesh.setContourVector(v, bs.length(), bs, value, colix,
+          Graphics3D.getArgb(colix), readContourCrossings());
+      contours.add(v);
+    }
+    if (bsVoxelBitSet == null)
+      bsVoxelBitSet = new BitSet();
+  }
+
+  /**
+   * reads the rest of the file from the inflated data instead
+   * 
+   * @throws Exception
+   */
+  private void inflateData() throws Exception {
+    byte[] data = new byte[binarydoc.readInt()];
+    DataInputStream dis = new DataInputStream(new InflaterInputStream(
+        new ByteArrayInputStream(readBlock())));
+    dis.readFully(data);
+    dis.close();
+    binarydoc.close();
+    binarydoc = new BinaryDocument();
+    binarydoc.setStream(new DataInputStream(new ByteArrayInputStream(data)));
+  }
+
+  protected boolean gotoAndReadVoxelData(boolean isMapData) {
+    initializeVolumetricData();
+    if (nPointsX < 0 || nPointsY < 0 || nPointsZ < 0)
+      return true;
+    try {
+      gotoData(params.fileIndex - 1, nPointsX * nPointsY * nPointsZ);
+      if (vertexDataOnly)
+        return true;
+      readSurfaceData(isMapData);
+      if (edgeDataCount > 0)
+        jvxlEdgeDataRead = getLevelsAsString(edgeData, edgeFractionBase);
+      params.bsExcluded = jvxlData.jvxlExcluded = new BitSet[4];
+      if (colorDataCount > 0)
+        jvxlColorDataRead = getColorDataAsString();
+      if (excludedVertexCount > 0) {
+        jvxlData.jvxlExcluded[0] = excluded[0];
+        jvxlData.jvxlExcluded[2] = excluded[2];
+      }
+      if (excludedTriangleCount > 0)
+        jvxlData.jvxlExcluded[3] = excluded[3];
+      if (haveContourData)
+        jvxlSetContourData(jvxlData, contours);
+    } catch (Exception e) {
+      Logger.error(e.toString());
+      return false;
+    }
+    return true;
+  }
+
+  protected void readSurfaceData(boolean isMapDataIgnored) throws Exception {
+    thisInside = !params.isContoured;
+    if (readSurfaceData())
+      return;
+    readVolumeFileSurfaceData();
+  }
+
+  protected void getEncodedVertexData() throws Exception {
+    decodeVertices();
+    decodeTriangles();
+    jvxlColorDataRead = getColorDataAsString();
+    jvxlDataIsColorMapped = (jvxlColorDataRead.length() > 0);
+    if (haveContourData)
+      jvxlSetContourData(jvxlData, contours);
+  }
+
+  protected float jvxlGetNextFraction(int base, int range, float fracOffset) {
+    int level = 0;
+    if (edgeData == null || edgePtr >= edgeData.length) {
+      if (!endOfData)
+        Logger.error("end of file reading edge fraction data");
+      endOfData = true;
+    } else {
+      level = edgeData[edgePtr++] & 0xFF;
+    }
+    return JvxlCoder.jvxlFractionFromCharacter(base + level, base, range,
+        fracOffset);
+  }
+
+  protected float jvxlGetColorFraction(int i, int n) {
+    if (jvxlData.isJvxlPrecisionColor)
+      return JvxlCoder.jvxlFractionFromShort(getShort(colorData, i),
+          colorFractionBase, colorFractionRange);
+    return JvxlCoder.jvxlFractionFromCharacter(colorFractionBase
+        + (colorData[i] & 0xFF), colorFractionBase, colorFractionRange, 0.5f);
+  }
+
+  /**
+   * as JvxlXmlReader.jvxlDecodeVertices, but from fixed-point fractions
+   */
+  private void decodeVertices() {
+    Logger.info("Reading " + vertexCount + " vertices");
+    Point3f range = new Point3f(vertexMax);
+    range.sub(vertexMin);
+    int base = jvxlData.colorFractionBase;
+    int r = jvxlData.colorFractionRange;
+    Point3f p = new Point3f();
+    for (int i = 0, pt = 0; i < vertexCount; i++) {
+      p.x = vertexMin.x
+          + JvxlCoder.jvxlFractionFromShort(getShort(vertexData, pt++), base, r)
+          * range.x;
+      p.y = vertexMin.y
+          + JvxlCoder.jvxlFractionFromShort(getShort(vertexData, pt++), base, r)
+          * range.y;
+      p.z = vertexMin.z
+          + JvxlCoder.jvxlFractionFromShort(getShort(vertexData, pt++), base, r)
+          * range.z;
+      addVertexCopy(p, 0, i);
+    }
+  }
+
+  /**
+   * as JvxlXmlReader.jvxlDecodeTriangles, but from varint differences
+   */
+  private void decodeTriangles() {
+    Logger.info("Reading " + triangleCount + " triangles");
+    int[] triangle = new int[3];
+    int nColors = (polygonColors == null ? -1 : 0);
+    int color = 0;
+    int ptColor = 0;
+    int ilast = 0;
+    for (int i = 0, pt = 0; i < triangleCount; i++) {
+      for (int p = 0; p < 3; p++) {
+        int n = 0;
+        for (int shift = 0;; shift += 7) {
+          int x = triangleData[pt++];
+          n |= (x & 0x7F) << shift;
+          if (x >= 0)
+            break;
+        }
+        triangle[p] = ilast += (n >>> 1) ^ -(n & 1);
+      }
+      if (nColors >= 0) {
+        if (nColors == 0) {
+          if (ptColor < polygonColors.length) {
+            nColors = polygonColors[ptColor++];
+            color = polygonColors[ptColor++];
+          } else {
+            color = nColors = 0;
+          }
+        }
+        nColors--;
+      }
+      addTriangleCheck(triangle[0], triangle[1], triangle[2], 7, 0, false,
+          color);
+    }
+  }
+
+  /**
+   * @return the color data as JvxlData keeps it: the characters of the XML
+   *         form, the high ones and then the low ones for precision color
+   */
+  private String getColorDataAsString() {
+    if (colorData == null)
+      return "";
+    if (!jvxlData.isJvxlPrecisionColor)
+      return getLevelsAsString(colorData, colorFractionBase);
+    int n = colorData.length / 2;
+    int range = colorFractionRange;
+    char nan = (char) (colorFractionBase + range);
+    char[] chars = new char[n * 2];
+    for (int i = 0; i < n; i++) {
+      int s = getShort(colorData, i);
+      if (s == 0xFFFF) {
+        chars[i] = chars[i + n] = nan;
+      } else {
+        chars[i] = JvxlCoder.jvxlLevelAsCharacter(s / range,
+            colorFractionBase);
+        chars[i + n] = JvxlCoder.jvxlLevelAsCharacter(s % range,
+            colorFractionBase);
+      }
+    }
+    return new String(chars);
+  }
+
+  private static String getLevelsAsString(byte[] levels, int base) {
+    if (levels == null)
+      return "";
+    char[] chars = new char[levels.length];
+    for (int i = levels.length; --i >= 0;)
+      chars[i] = JvxlCoder.jvxlLevelAsCharacter(levels[i] & 0xFF, base);
+    return new String(chars);
+  }
+
+  private static int getShort(byte[] b, int i) {
+    return ((b[i * 2] & 0xFF) << 8) | (b[i * 2 + 1] & 0xFF);
+  }
+
+  /**
+   * @return the crossings as appendContourTriangleIntersection gives them,
+   *         which is the form IsosurfaceMesh keeps
+   * @throws Exception
+   */
+  private StringBuffer readContourCrossings() throws Exception {
+    byte[] b = readBlock();
+    StringBuffer fData = new StringBuffer();
+    if (b == null)
+      return fData;
+    int base = JvxlCoder.defaultEdgeFractionBase;
+    for (int i = 0; i + 2 < b.length; i += 3)
+      fData.append(b[i])
+          .append(JvxlCoder.jvxlLevelAsCharacter(b[i + 1] & 0xFF, base))
+          .append(JvxlCoder.jvxlLevelAsCharacter(b[i + 2] & 0xFF, base));
+    return fData;
+  }
+
+  private byte[] readBlock() throws Exception {
+    int n = binarydoc.readInt();
+    if (n < 0)
+      return null;
+    byte[] b = new byte[n];
+    binarydoc.readByteArray(b);
+    return b;
+  }
+
+  private String readText() throws Exception {
+    byte[] b = readBlock();
+    return (b == null ? null : new String(b, "UTF-8"));
+  }
+
+  private BitSet readBitSet() throws Exception {
+    byte[] b = readBlock();
+    if (b == null)
+      return null;
+    BitSet bs = new BitSet();
+    boolean isset = false;
+    for (int i = 0, pt = 0; i < b.length; isset = !isset) {
+      int n = 0;
+      for (int shift = 0;; shift += 7) {
+        int x = b[i++];
+        n |= (x & 0x7F) << shift;
+        if (x >= 0)
+          break;
+      }
+      if (isset)
+        bs.set(pt, pt + n);
+      pt += n;
+    }
+    return bs;
+  }
+}
@@ -47,8 +47,8 @@ public class JvxlXmlReader extends VolumeFileReader {
   protected int surfaceDataCount;
   protected int edgeDataCount;
   protected int colorDataCount;
-  private int excludedTriangleCount;
-  private int excludedVertexCount;
+  protected int excludedTriangleCount;
+  protected int excludedVertexCount;
   protected boolean haveContourData;
 
   private XmlReader xr;
@@ -112,16 +112,28 @@ public class JvxlXmlReader extends VolumeFileReader {
   
   protected void readParameters() throws Exception {
     String s = xr.getXmlData("jvxlFileTitle", null, false, false);
-    jvxlFileHeaderBuffer = new StringBuffer(s);
     xr.toTag("jvxlVolumeData");
-    String data = tempDataXml = xr.getXmlData("jvxlVolumeData", null, true, false);
+    String data = xr.getXmlData("jvxlVolumeData", null, true, false);
+    line = xr.toTag("jvxlSurfaceSet");
+    jvxlSetParameters(s, data, parseInt(XmlReader.getXmlAttrib(line, "count")));
+  }
+
+  /**
+   * @param title     contents of jvxlFileTitle
+   * @param data      the jvxlVolumeData element
+   * @param nSurfaces
+   * @throws Exception
+   */
+  protected void jvxlSetParameters(String title, String data, int nSurfaces)
+      throws Exception {
+    jvxlFileHeaderBuffer = new StringBuffer(title);
+    tempDataXml = data;
     volumetricOrigin.set(xr.getXmlPoint(data, "origin"));
    isAngstroms = true;
    readVector(0);
    readVector(1);
    readVector(2);
-   line = xr.toTag("jvxlSurfaceSet");
-   nSurfaces = parseInt(XmlReader.getXmlAttrib(line, "count"));
+   this.nSurfaces = nSurfaces;
    Logger.info("jvxl file surfaces: " + nSurfaces);
    Logger.info("using default edge fraction base and range");
    Logger.info("using default color fraction base and range");
@@ -158,8 +170,15 @@ public class JvxlXmlReader extends VolumeFileReader {
   }
 
   protected void jvxlReadSurfaceInfo() throws Exception {
+    jvxlSetSurfaceInfo(xr.getXmlData("jvxlSurfaceInfo", null, true, true));
+  }
+
+  /**
+   * @param data  the jvxlSurfaceInfo element
+   * @throws Exception
+   */
+  protected void jvxlSetSurfaceInfo(String data) throws Exception {
     String s;
-    String data = xr.getXmlData("jvxlSurfaceInfo", null, true, true);
     isXLowToHigh = XmlReader.getXmlAttrib(data, "isXLowToHigh").equals("true");
     jvxlCutoff = parseFloat(XmlReader.getXmlAttrib(data, "cutoff"));
     if (!Float.isNaN(jvxlCutoff))
@@ -392,26 +411,34 @@ public class JvxlXmlReader extends VolumeFileReader {
     if (colorPtr >= valueCount)
       System.out.println("JvxlXmlREader test 1243 " + colorPtr + " " + valueCount);
     while (colorPtr < valueCount && Float.isNaN(fraction)) {
-      if (jvxlData.isJvxlPrecisionColor) {
-        // this COULD be an option for mapped surfaces; 
-        // necessary for planes; used for vertex/triangle 2.0 style
-        // precision is used for FULL-data range encoding, allowing full
-        // treatment of JVXL files as though they were CUBE files.
-        // the two parts of the "double-character-precision" value
-        // are in separate lines, separated by n characters.
-        fraction = JvxlCoder.jvxlFractionFromCharacter2(jvxlColorDataRead
-            .charAt(colorPtr), jvxlColorDataRead.charAt((colorPtr++)
-            + valueCount), colorFractionBase, colorFractionRange);
-      } else {
-        // my original encoding scheme
-        // low precision only allows for mapping relative to the defined color range
-        fraction = JvxlCoder.jvxlFractionFromCharacter(jvxlColorDataRead
-            .charAt(colorPtr++), colorFractionBase, colorFractionRange, 0.5f);
-      }
+      fraction = jvxlGetColorFraction(colorPtr++, valueCount);
       break;
     }
     return valueMin + fraction * valueRange;
   }
+
+  /**
+   * @param i  the value to read
+   * @param n  the number of values
+   * @return   its fraction of the color range
+   */
+  protected float jvxlGetColorFraction(int i, int n) {
+    if (jvxlData.isJvxlPrecisionColor) {
+      // this COULD be an option for mapped surfaces; 
+      // necessary for planes; used for vertex/triangle 2.0 style
+      // precision is used for FULL-data range encoding, allowing full
+      // treatment of JVXL files as though they were CUBE files.
+      // the two parts of the "double-character-precision" value
+      // are in separate lines, separated by n characters.
+      return JvxlCoder.jvxlFractionFromCharacter2(jvxlColorDataRead.charAt(i),
+          jvxlColorDataRead.charAt(i + n), colorFractionBase,
+          colorFractionRange);
+    }
+    // my original encoding scheme
+    // low precision only allows for mapping relative to the defined color range
+    return JvxlCoder.jvxlFractionFromCharacter(jvxlColorDataRead.charAt(i),
+        colorFractionBase, colorFractionRange, 0.5f);
+  }
   
   private void setValueMinMax() {
     valueCount = jvxlColorDataRead.length();
@@ -436,7 +463,7 @@ public class JvxlXmlReader extends VolumeFileReader {
   private int colorPtr;
   private String strFractionTemp = "";
 
-  private float jvxlGetNextFraction(int base, int range, float fracOffset) {
+  protected float jvxlGetNextFraction(int base, int range, float fracOffset) {
     if (fractionPtr >= strFractionTemp.length()) {
       if (!endOfData)
         Logger.error("end of file reading compressed fraction data");
@@ -571,8 +598,25 @@ public class JvxlXmlReader extends VolumeFileReader {
     int vertexCount = parseInt(XmlReader.getXmlAttrib(data, "count"));
     if (!asArray)
       Logger.info("Reading " + vertexCount + " vertices");
-    Point3f min = xr.getXmlPoint(data, "min");
-    Point3f range = xr.getXmlPoint(data, "max");
+    String s = JvxlCoder.jvxlUncompressString(XmlReader.getXmlAttrib(data, "data"));
+    if (s.length() == 0)
+      s = xr.getXmlData("jvxlVertexData", data, false, false); 
+    return jvxlDecodeVertices(vertexCount, xr.getXmlPoint(data, "min"), xr
+        .getXmlPoint(data, "max"), s, asArray);
+  }
+
+  /**
+   * @param vertexCount
+   * @param min
+   * @param max
+   * @param s        uncompressed base90xyz2 data
+   * @param asArray  or just addVertexCopy
+   * @return Point3f[] if desired
+   */
+  protected Point3f[] jvxlDecodeVertices(int vertexCount, Point3f min,
+                                         Point3f max, String s,
+                                         boolean asArray) {
+    Point3f range = new Point3f(max);
     range.sub(min);
     int colorFractionBase = jvxlData.colorFractionBase;
     int colorFractionRange = jvxlData.colorFractionRange;
@@ -580,9 +624,6 @@ public class JvxlXmlReader extends VolumeFileReader {
     Point3f[] vertices = (asArray ? new Point3f[vertexCount] : null);
     Point3f p = (asArray ? null : new Point3f());
     float fraction;
-    String s = JvxlCoder.jvxlUncompressString(XmlReader.getXmlAttrib(data, "data"));
-    if (s.length() == 0)
-      s = xr.getXmlData("jvxlVertexData", data, false, false); 
     for (int i = 0, pt = -1; i < vertexCount; i++) {
       if (asArray)
         p = vertices[i] = new Point3f();
@@ -613,15 +654,25 @@ public class JvxlXmlReader extends VolumeFileReader {
    */
   int[][] jvxlDecodeTriangleData(String data, String colorData)
       throws Exception {
+    int nData = parseInt(XmlReader.getXmlAttrib(data, "count"));
+    String s = JvxlCoder.jvxlUncompressString(XmlReader.getXmlAttrib(data, "data"));
+    if (s.length() == 0)
+      s = xr.getXmlData("jvxlTriangleData", data, false, false);
+    return jvxlDecodeTriangles(nData, s, colorData);
+  }
+
+  /**
+   * @param nData      number of triangles
+   * @param s          uncompressed jvxltdiff data
+   * @param colorData  jvxlnc polygon colors, or null
+   * @return int[][] if desired
+   */
+  protected int[][] jvxlDecodeTriangles(int nData, String s, String colorData) {
     int nColors = (colorData == null ? -1 : 0);
     int color = 0;
-    int nData = parseInt(XmlReader.getXmlAttrib(data, "count"));
     Logger.info("Reading " + nData + " triangles");
     int[][] triangles = null;
     int[] triangle = new int[3];
-    String s = JvxlCoder.jvxlUncompressString(XmlReader.getXmlAttrib(data, "data"));
-    if (s.length() == 0)
-      s = xr.getXmlData("jvxlTriangleData", data, false, false);
     int[] nextp = new int[1];
     int[] nextc = new int[1];
     int ilast = 0;
@@ -684,8 +735,6 @@ public class JvxlXmlReader extends VolumeFileReader {
   protected void jvxlDecodeContourData(JvxlData jvxlData, String data)
       throws Exception {
     Vector vs = new Vector();
-    StringBuffer values = new StringBuffer();
-    StringBuffer colors = new StringBuffer();
     int pt = -1;
     jvxlData.vContours = null;
     if (data == null)
@@ -694,11 +743,9 @@ public class JvxlXmlReader extends VolumeFileReader {
       Vector v = new Vector();
       String s = xr.getXmlData("jvxlContour", data.substring(pt), true, false);
       float value = parseFloat(XmlReader.getXmlAttrib(s, "value"));
-      values.append(" ").append(value);
       short colix = Graphics3D.getColix(Graphics3D.getArgbFromString(XmlReader
           .getXmlAttrib(s, "color")));
       int color = Graphics3D.getArgb(colix);
-      colors.append(" ").append(Escape.escapeColor(color));
       String fData = JvxlCoder.jvxlUncompressString(XmlReader.getXmlAttrib(s,
           "data"));
       BitSet bs = JvxlCoder.jvxlDecodeBitSet(xr.getXmlData("jvxlContour", s,
@@ -708,8 +755,18 @@ public class JvxlXmlReader extends VolumeFileReader {
           new StringBuffer(fData));
       vs.add(v);
     }
+    jvxlSetContourData(jvxlData, vs);
+  }
+
+  /**
+   * @param jvxlData
+   * @param vs  contour Vectors, as from IsosurfaceMesh.setContourVector
+   */
+  protected void jvxlSetContourData(JvxlData jvxlData, Vector vs) {
     int n = vs.size();
     if (n > 0) {
+      StringBuffer values = new StringBuffer();
+      StringBuffer colors = new StringBuffer();
       jvxlData.vContours = new Vector[n];
       // 3D contour values and colors
       jvxlData.contourColixes = params.contourColixes = new short[n];
@@ -719,6 +776,9 @@ public class JvxlXmlReader extends VolumeFileReader {
         jvxlData.contourValues[i] = ((Float) jvxlData.vContours[i].get(2))
             .floatValue();
         jvxlData.contourColixes[i] = ((short[]) jvxlData.vContours[i].get(3))[0];
+        values.append(" ").append(jvxlData.contourValues[i]);
+        colors.append(" ").append(
+            Escape.escapeColor(((int[]) jvxlData.vContours[i].get(4))[0]));
       }
       jvxlData.contourColors = Graphics3D.getHexCodes(jvxlData.contourColixes);
       Logger.info("JVXL read: " + n + " discrete contours");
@@ -45,7 +45,7 @@ class MrcBinaryReader extends MapFileReader {
     super(sg, null);
     binarydoc = new BinaryDocument();
     if (data == null)
-      binarydoc.setStream(sg.getAtomDataServer().getBufferedInputStream(fileName), true);
+      setStreamOrMapping(fileName);
     else 
       binarydoc.setStream(new DataInputStream(new ByteArrayInputStream(data.getBytes())));
     // data are HIGH on the inside and LOW on the outside
@@ -24,6 +24,7 @@
 package org.jmol.jvxl.readers;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 
@@ -48,6 +49,18 @@ abstract class SurfaceFileReader extends SurfaceReader {
       binarydoc.setOutputStream(os);
   }
   
+  /**
+   * binary files: local files are memory-mapped rather than streamed
+   * 
+   * @param fileName
+   */
+  protected void setStreamOrMapping(String fileName) {
+    File file = sg.getAtomDataServer().getLocalFile(fileName);
+    if (file == null || !binarydoc.setMappedFile(file, true))
+      binarydoc.setStream(sg.getAtomDataServer().getBufferedInputStream(
+          fileName), true);
+  }
+
   protected void closeReader() {
     if (br != null)
       try {
@@ -114,10 +114,12 @@ package org.jmol.jvxl.readers;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
 import java.util.BitSet;
 import java.util.Hashtable;
 import java.util.Vector;
@@ -1111,9 +1113,19 @@ public class SurfaceGenerator {
       return new VolumeDataReader(this);
     }
     String data = null;
+    byte[] bytes = null;
     if (value instanceof String) {
       data = (String) value;
       value = new BufferedReader(new StringReader((String) value));
+    } else if (value instanceof byte[]) {
+      // binary data, such as a binary JVXL file, passed through as is
+      bytes = (byte[]) value;
+      try {
+        value = new BufferedReader(new InputStreamReader(
+            new ByteArrayInputStream(bytes), "ISO-8859-1"));
+      } catch (UnsupportedEncodingException e) {
+        // ignore
+      }
     }
     BufferedReader br = (BufferedReader) value;
     if (fileType == null)
@@ -1147,6 +1159,23 @@ public class SurfaceGenerator {
       return new JvxlReader(this, br);
     if (fileType.equals("JvxlXML"))
       return new JvxlXmlReader(this, br);
+    if (fileType.equals("JvxlBinary")) {
+      try {
+        br.close();
+      } catch (IOException e) {
+        // ignore
+      }
+      br = null;
+      if (bytes == null && data != null) {
+        // one character for each byte, as Isosurface reads files
+        try {
+          bytes = data.getBytes("ISO-8859-1");
+        } catch (UnsupportedEncodingException e) {
+          // ignore
+        }
+      }
+      return new JvxlBinaryReader(this, params.fileName, bytes);
+    }
     if (fileType.equals("Apbs"))
       return new ApbsReader(this, br);
     if (fileType.equals("Cube"))
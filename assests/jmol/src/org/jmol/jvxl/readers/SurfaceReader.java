@@ -308,6 +308,7 @@ public abstract class SurfaceReader implements VertexDataServer {
   protected char cJvxlEdgeNaN;
 
   protected int contourVertexCount;
+  protected float[] mappedVertexValues; // from a streaming map reader
 
   void jvxlUpdateInfo() {
     jvxlData.jvxlUpdateInfo(params.title, nBytes);
@@ -427,6 +428,7 @@ public abstract class SurfaceReader implements VertexDataServer {
     if (!discardAll)
       return;
     voxelData = null;
+    mappedVertexValues = null;
     sg.setMarchingSquares(marchingSquares = null);
     marchingCubes = null;
   }
@@ -691,6 +693,8 @@ public abstract class SurfaceReader implements VertexDataServer {
         //else if (jvxlDataIs2dContour)
         //marchingSquares
           //    .getInterpolatedPixelValue(meshData.vertices[i]);
+        else if (mappedVertexValues != null && i < mappedVertexValues.length)
+          value = mappedVertexValues[i];
         else
           value = volumeData.lookupInterpolatedVoxelValue(meshData.vertices[i]);
         if (value < min)
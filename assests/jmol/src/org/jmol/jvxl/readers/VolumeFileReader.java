@@ -31,6 +31,7 @@ import javax.vecmath.Point3f;
 import javax.vecmath.Point4f;
 import javax.vecmath.Vector3f;
 
+import org.jmol.jvxl.data.MeshData;
 import org.jmol.util.Logger;
 import org.jmol.util.Parser;
 
@@ -242,6 +243,8 @@ abstract class VolumeFileReader extends SurfaceFileReader {
         if (nSkipZ != 0)
           skipVoxels(nSkipZ);
       }
+    } else if (isMapData && canMapProgressively()) {
+      readMapDataProgressively();
     } else {
       voxelData = new float[nPointsX][][];
       // Note downsampling not allowed for JVXL files
@@ -270,6 +273,70 @@ abstract class VolumeFileReader extends SurfaceFileReader {
     volumeData.setVoxelData(voxelData);
   }
 
+  /*
+   * Simple mapping of a file onto a surface only needs the value at each 
+   * vertex. Rather than reading the whole file into voxelData first, we 
+   * find the X planes each vertex needs, then read the file one plane at
+   * a time, keeping just two planes in voxelData, and calculate the vertex 
+   * values as soon as their planes are in. These are exactly the values 
+   * lookupInterpolatedVoxelValue() would have given with the full data set.
+   * 
+   */
+  
+  private boolean canMapProgressively() {
+    return (isProgressive && volumeData.sr == null && !vertexDataOnly
+        && !jvxlDataIs2dContour && !params.isContoured && !params.colorBySets
+        && !params.colorByPhase && !params.colorDensity && !params.isSquared 
+        && !params.isBicolorMap);
+  }
+
+  private void readMapDataProgressively() throws Exception {
+    Logger.info("VolumeFileReader mapping data progressively");
+    if (meshDataServer != null)
+      meshDataServer.fillMeshData(meshData, MeshData.MODE_GET_VERTICES, null);
+    int vertexCount = meshData.vertexCount;
+    Point3f[] vertices = meshData.vertices;
+    // vertices listed by the last X plane they need
+    int[] firstVertex = new int[nPointsX];
+    int[] nextVertex = new int[vertexCount];
+    for (int x = nPointsX; --x >= 0;)
+      firstVertex[x] = -1;
+    for (int i = vertexCount; --i >= 0;) {
+      int x = volumeData.getInterpolationPlaneX(vertices[i]);
+      nextVertex[i] = firstVertex[x];
+      firstVertex[x] = i;
+    }
+    mappedVertexValues = new float[vertexCount];
+    voxelData = new float[nPointsX][][];
+    volumeData.setVoxelData(voxelData);
+    for (int x = 0; x < nPointsX; ++x) {
+      float[][] plane;
+      if (x < 2) {
+        plane = new float[nPointsY][nPointsZ];
+      } else {
+        plane = voxelData[x - 2];
+        voxelData[x - 2] = null;
+      }
+      voxelData[x] = plane;
+      for (int y = 0; y < nPointsY; ++y) {
+        float[] strip = plane[y];
+        for (int z = 0; z < nPointsZ; ++z) {
+          strip[z] = recordData(getNextVoxelValue());
+          if (nSkipX != 0)
+            skipVoxels(nSkipX);
+        }
+        if (nSkipY != 0)
+          skipVoxels(nSkipY);
+      }
+      if (nSkipZ != 0)
+        skipVoxels(nSkipZ);
+      for (int i = firstVertex[x]; i >= 0; i = nextVertex[i])
+        mappedVertexValues[i] = volumeData.lookupInterpolatedVoxelValue(vertices[i]);
+    }
+    // no partial voxel data left for anyone else
+    voxelData = null;
+  }
+
   // For a progressive reader, we need to build two planes at a time
   // and keep them indexed. reading x low to high, we will first encounter
   // plane 0, then plane 1.
@@ -62,6 +62,7 @@ public class Minimizer implements MinimizerInterface {
   
   private int steps = 50;
   private double crit = 1e-3;
+  private double cutoff; // nonbonded cutoff; 0 for all pairs
 
   private static Vector atomTypes;
   private ForceField pFF;
@@ -94,6 +95,10 @@ public class Minimizer implements MinimizerInterface {
       addConstraint((Object[]) value);
       return;
     }
+    if (propertyName.equals("cutoff")) {
+      cutoff = ((Float) value).floatValue();
+      return;
+    }
     if (propertyName.equals("fixed")) {
       bsFixedDefault = (BitSet) value;
       return;
@@ -248,6 +253,7 @@ public class Minimizer implements MinimizerInterface {
       }
     }
 
+    pFF.setCutoff(cutoff);
     pFF.setConstraints(this);
 
     // minimize and store values
@@ -369,6 +375,7 @@ public class Minimizer implements MinimizerInterface {
     getTorsions();
 
     pFF.setModel(this);
+    pFF.setCutoff(cutoff);
 
     if (!pFF.setup()) {
       Logger.error(GT._("could not setup force field {0}", ff));
@@ -814,6 +821,7 @@ Token[keyword(0x880001) value=")"]
       atom.y = (float) minAtom.coord[1];
       atom.z = (float) minAtom.coord[2];
     }
+    viewer.getModelSet().setAtomCoordsChanged(bsTaint);
     viewer.refreshMeasures(false);
   }
 
@@ -50,6 +50,20 @@ abstract class Calculations {
 
   ForceField ff;
   Vector[] calculations = new Vector[CALC_MAX];
+
+  // Nonbonded terms (VDW, ES) are not kept in calculations[] but in
+  // packed pair lists. With a cutoff these are Verlet neighbor lists,
+  // holding all pairs within cutoff + skin; pairs beyond the cutoff
+  // are skipped, and the lists are rebuilt only after some atom has
+  // moved more than half the skin. With no cutoff they hold all pairs
+  // and are built just once.
+
+  final static double DEFAULT_SKIN = 2.0;
+
+  PairList[] pairLists = new PairList[CALC_MAX];
+  double cutoff;
+  double skin = DEFAULT_SKIN;
+  private double[] pairListCoords;
   public Hashtable ffParams;
   
   int atomCount;
@@ -103,6 +117,8 @@ abstract class Calculations {
 
   abstract boolean setupCalculations();
 
+  abstract void pairSearch();
+
   abstract String getAtomList(String title);
 
   abstract boolean setupElectrostatics();
@@ -151,9 +167,78 @@ abstract class Calculations {
     isPreliminary = TF;
   }
   
+  /**
+   * @param cutoff  nonbonded cutoff in Angstroms, or 0 for all pairs
+   */
+  void setCutoff(double cutoff) {
+    if (cutoff < 0)
+      cutoff = 0;
+    if (cutoff == this.cutoff)
+      return;
+    this.cutoff = cutoff;
+    pairListCoords = null;
+  }
+
+  /**
+   * to be called by pairSearch() once the lists are rebuilt
+   */
+  void savePairListCoordinates() {
+    if (pairListCoords == null)
+      pairListCoords = new double[atomCount * 3];
+    for (int i = 0, pt = 0; i < atomCount; i++) {
+      double[] c = atoms[i].coord;
+      pairListCoords[pt++] = c[0];
+      pairListCoords[pt++] = c[1];
+      pairListCoords[pt++] = c[2];
+    }
+  }
+
+  private boolean pairListsValid() {
+    if (pairListCoords == null)
+      return false;
+    if (cutoff == 0)
+      return true;
+    double d2Max = skin * skin / 4;
+    for (int i = 0, pt = 0; i < atomCount; i++, pt += 3) {
+      double[] c = atoms[i].coord;
+      double dx = c[0] - pairListCoords[pt];
+      double dy = c[1] - pairListCoords[pt + 1];
+      double dz = c[2] - pairListCoords[pt + 2];
+      if (dx * dx + dy * dy + dz * dz > d2Max)
+        return false;
+    }
+    return true;
+  }
+
+  private double calcPairs(int iType) {
+    if (!pairListsValid())
+      pairSearch();
+    PairList pairs = pairLists[iType];
+    int n = pairs.count;
+    if (n == 0)
+      return 0;
+    double energy = 0;
+    double cutoff2 = cutoff * cutoff;
+    int[] pairAtoms = pairs.atoms;
+    if (logging)
+      appendLogData(getDebugHeader(iType));
+    for (int ii = 0; ii < n; ii++) {
+      if (cutoff2 > 0
+          && Util.distance2(atoms[pairAtoms[ii * 2]].coord,
+              atoms[pairAtoms[ii * 2 + 1]].coord) > cutoff2)
+        continue;
+      energy += compute(iType, pairs.get(ii));
+    }
+    if (logging)
+      appendLogData(getDebugFooter(iType, energy));
+    return energy;
+  }
+
   private double calc(int iType, boolean gradients) {
     logging = loggingEnabled && !silent;
     this.gradients = gradients;
+    if (pairLists[iType] != null)
+      return calcPairs(iType);
     Vector calc = calculations[iType];
     int nCalc;
     double energy = 0;
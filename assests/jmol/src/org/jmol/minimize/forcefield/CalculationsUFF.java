@@ -24,11 +24,18 @@
 
 package org.jmol.minimize.forcefield;
 
+import java.util.BitSet;
 import java.util.Vector;
 
+import javax.vecmath.Point3f;
+
+import org.jmol.bspt.GridIterator;
+import org.jmol.bspt.SpatialGrid;
 import org.jmol.minimize.MinAtom;
 import org.jmol.minimize.MinBond;
 import org.jmol.minimize.Util;
+import org.jmol.util.BitSetUtil;
+import org.jmol.util.Logger;
 import org.jmol.util.TextFormat;
 
 /*
@@ -119,7 +126,8 @@ class CalculationsUFF extends Calculations {
         oopCalc.setData(calc, i, elemNo);
     }
 
-    pairSearch(calculations[CALC_VDW] = new Vector(), new VDWCalc());
+    pairLists[CALC_VDW] = new PairList(2);
+    pairSearch();
 
     return true;
   }
@@ -139,41 +147,91 @@ class CalculationsUFF extends Calculations {
     }
   }
 
-  private void pairSearch(Vector calc, PairCalc type) {
-    /*A:*/ for (int i = 0; i < atomCount - 1; i++) { // one atom...
-      MinAtom atomA = atoms[i];
-      int[] atomList1 = atomA.getBondedAtomIndexes();
-      B: for (int j = i + 1; j < atomCount; j++) { // another atom...
-        MinAtom atomB = atoms[j];
-        /*nbrA:*/ for (int k = atomList1.length; --k >= 0;) { // check bonded A-B
-          MinAtom nbrA = atoms[atomList1[k]];
-          if (nbrA == atomB)
-            continue B; // pick another B
-          if (nbrA.nBonds == 1)
-            continue;
-          int[] atomList2 = nbrA.getBondedAtomIndexes(); // check A-X-B
-          /*nbrAA:*/ for (int l = atomList2.length; --l >= 0;) {
-            MinAtom nbrAA = atoms[atomList2[l]];
-            if (nbrAA == atomB)
-              continue B; // pick another B
-            
-            //this next would exclude A-X-X-B, but Rappe does not do that, he says
-            
-/*            if (nbrAA.nBonds == 1)
-              continue;
-            int[] atomList3 = nbrAA.getBondedAtomIndexes(); // check A-X-X-B
-            nbrAAA: for (int m = atomList3.length; --m >= 0;) {
-              MinAtom nbrAAA = atoms[atomList3[m]];
-              if (nbrAAA == atomB)
-                continue B; // pick another B           
-            }
-*/            
-            
-          }
+  /*
+   * Fills the nonbonded pair lists. With no cutoff, this is every pair;
+   * with a cutoff, every pair within cutoff + skin, found using a
+   * SpatialGrid. Either way the pairs go in the order i < j, ascending,
+   * so that the energy sums are carried out in the same order.
+   */
+  void pairSearch() {
+    PairList vdwPairs = pairLists[CALC_VDW];
+    PairList esPairs = pairLists[CALC_ES];
+    if (vdwPairs != null)
+      vdwPairs.clear();
+    if (esPairs != null)
+      esPairs.clear();
+    if (cutoff == 0) {
+      for (int i = 0; i < atomCount - 1; i++) // one atom...
+        for (int j = i + 1; j < atomCount; j++) // another atom...
+          addPair(i, j, vdwPairs, esPairs);
+    } else {
+      float range = (float) (cutoff + skin);
+      double range2 = range * range;
+      Point3f[] points = new Point3f[atomCount];
+      for (int i = atomCount; --i >= 0;) {
+        double[] c = atoms[i].coord;
+        points[i] = new Point3f((float) c[0], (float) c[1], (float) c[2]);
+      }
+      GridIterator iter = new SpatialGrid(points, BitSetUtil
+          .setAll(atomCount), range).allocateIterator();
+      BitSet bsNear = new BitSet();
+      for (int i = 0; i < atomCount - 1; i++) {
+        bsNear.clear();
+        iter.initialize(points[i], range, false);
+        while (iter.hasMoreElements()) {
+          int j = iter.nextElement();
+          if (j > i
+              && Util.distance2(atoms[i].coord, atoms[j].coord) <= range2)
+            bsNear.set(j);
         }
-        type.setData(calc, i, j);
+        for (int j = bsNear.nextSetBit(0); j >= 0; j = bsNear.nextSetBit(j + 1))
+          addPair(i, j, vdwPairs, esPairs);
       }
+      if (Logger.debugging)
+        Logger.debug("minimize: " + (vdwPairs == null ? 0 : vdwPairs.count)
+          + " nonbonded pairs within " + range + " Angstroms");
     }
+    savePairListCoordinates();
+  }
+
+  private void addPair(int i, int j, PairList vdwPairs, PairList esPairs) {
+    if (isBondedOr13(atoms[i], atoms[j]))
+      return;
+    if (vdwPairs != null)
+      vdwCalc.setData(vdwPairs, i, j);
+    if (esPairs != null)
+      esCalc.setData(esPairs, i, j);
+  }
+
+  private boolean isBondedOr13(MinAtom atomA, MinAtom atomB) {
+    int[] atomList1 = atomA.getBondedAtomIndexes();
+    /*nbrA:*/ for (int k = atomList1.length; --k >= 0;) { // check bonded A-B
+      MinAtom nbrA = atoms[atomList1[k]];
+      if (nbrA == atomB)
+        return true;
+      if (nbrA.nBonds == 1)
+        continue;
+      int[] atomList2 = nbrA.getBondedAtomIndexes(); // check A-X-B
+      /*nbrAA:*/ for (int l = atomList2.length; --l >= 0;) {
+        MinAtom nbrAA = atoms[atomList2[l]];
+        if (nbrAA == atomB)
+          return true;
+        
+        //this next would exclude A-X-X-B, but Rappe does not do that, he says
+        
+/*        if (nbrAA.nBonds == 1)
+          continue;
+        int[] atomList3 = nbrAA.getBondedAtomIndexes(); // check A-X-X-B
+        nbrAAA: for (int m = atomList3.length; --m >= 0;) {
+          MinAtom nbrAAA = atoms[atomList3[m]];
+          if (nbrAAA == atomB)
+            return true;
+        }
+*/        
+        
+      }
+    }
+    return false;
   }
 
   boolean setupElectrostatics() {
@@ -185,7 +243,8 @@ class CalculationsUFF extends Calculations {
     if (partialCharges == null)
       return true;
 
-    pairSearch(calculations[CALC_ES] = new Vector(), new ESCalc());
+    pairLists[CALC_ES] = new PairList(1);
+    pairSearch();
     return true;
   }
 
@@ -811,13 +870,13 @@ class CalculationsUFF extends Calculations {
 
   abstract class PairCalc extends Calculation {
    
-    abstract void setData(Vector calc, int ia, int ib);
+    abstract void setData(PairList pairs, int ia, int ib);
 
   }
   
   class VDWCalc extends PairCalc {
     
-    void setData(Vector calc, int ia, int ib) {
+    void setData(PairList pairs, int ia, int ib) {
       a = atoms[ia];
       b = atoms[ib];
       
@@ -840,9 +899,7 @@ class CalculationsUFF extends Calculations {
 
       // Xab is xij in equation 20 -- the expected vdw distance
       double Xab = Math.sqrt(Xa * Xb);
-      calc.addElement(new Object[] {
-          new int[] { ia, ib },
-          new double[] { Xab, Dab } });
+      pairs.addPair(ia, ib, Xab, Dab);
     }
 
     double compute(Object[] dataIn) {
@@ -889,15 +946,13 @@ class CalculationsUFF extends Calculations {
   
   class ESCalc extends PairCalc {
 
-    void setData(Vector calc, int ia, int ib) {
+    void setData(PairList pairs, int ia, int ib) {
       a = atoms[ia];
       b = atoms[ib];
       double qq = KCAL332 * partialCharges[ia]
           * partialCharges[ib];
       if (qq != 0)
-        calc.addElement(new Object[] {
-            new int[] { ia, ib },
-            new double[] { qq } });
+        pairs.addPair(ia, ib, qq, 0);
     }
 
     double compute(Object[] dataIn) {
@@ -89,6 +89,13 @@ abstract public class ForceField {
     bondCount = bonds.length;
   }
   
+  /**
+   * @param cutoff  nonbonded cutoff in Angstroms, or 0 for all pairs
+   */
+  public void setCutoff(double cutoff) {
+    calc.setCutoff(cutoff);
+  }
+
   public void setConstraints(Minimizer m) {
     this.bsFixed = m.bsMinFixed;
     calc.setConstraints(m.constraints);
@@ -0,0 +1,85 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-04-17 18:24:30 -0500 (Sat, 17 Apr 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.minimize.forcefield;
+
+import org.jmol.util.ArrayUtil;
+
+/*
+ * Nonbonded pairs and their parameters, packed into two arrays
+ * rather than held as one Object[] per pair:
+ *
+ *   atoms[2i], atoms[2i+1]            the two atoms of pair i
+ *   data[nData*i] ... data[nData*i+nData-1]  its parameters
+ *
+ * get(i) unpacks a pair into the same { int[], double[] } form
+ * that Calculation.compute() takes, reusing the same arrays each time.
+ *
+ */
+
+class PairList {
+
+  int count;
+  int[] atoms;
+  double[] data;
+  private int nData;
+
+  private int[] iData = new int[2];
+  private double[] dData;
+  private Object[] dataOut;
+
+  PairList(int nData) {
+    this.nData = nData;
+    atoms = new int[32];
+    data = new double[16 * nData];
+    dData = new double[nData];
+    dataOut = new Object[] { iData, dData };
+  }
+
+  void clear() {
+    count = 0;
+  }
+
+  void addPair(int ia, int ib, double d0, double d1) {
+    if (count * 2 == atoms.length) {
+      atoms = ArrayUtil.setLength(atoms, count * 4);
+      data = (double[]) ArrayUtil.setLength(data, count * 2 * nData);
+    }
+    int pt = count * nData;
+    data[pt] = d0;
+    if (nData > 1)
+      data[pt + 1] = d1;
+    atoms[count * 2] = ia;
+    atoms[count * 2 + 1] = ib;
+    count++;
+  }
+
+  Object[] get(int i) {
+    iData[0] = atoms[i * 2];
+    iData[1] = atoms[i * 2 + 1];
+    for (int j = 0, pt = i * nData; j < nData; j++)
+      dData[j] = data[pt++];
+    return dataOut;
+  }
+
+}
@@ -51,10 +51,21 @@ final public class Atom extends Point3fi implements JmolNode {
   
   public static final int RADIUS_MAX = 16;
 
+  /*
+   * Every atom of every model has one of these, so fields that most
+   * atoms do not need (a user-defined radius, the symmetry operators
+   * that created the atom) are held by AtomCollection instead, in
+   * arrays that are only allocated when some atom has a value.
+   * 
+   * The colix, mad, and visibility and clickability flags are read for
+   * every atom in every frame, so they are held by AtomCollection as
+   * well, in arrays that the per-frame loops read directly. The methods
+   * here that get and set them go through those arrays.
+   * 
+   */
+  
   Group group;
-  private BitSet atomSymmetry;
   int atomSite;
-  private float userDefinedVanDerWaalRadius;
   
   private short atomicAndIsotopeNumber;
   private byte formalChargeAndFlags;
@@ -65,9 +76,6 @@ final public class Atom extends Point3fi implements JmolNode {
     return atomID;
   }
   
-  public short madAtom;
-
-  short colixAtom;
   byte paletteID = JmolConstants.PALETTE_CPK;
 
   Bond[] bonds;
@@ -80,23 +88,17 @@ final public class Atom extends Point3fi implements JmolNode {
     this.bonds = bonds;  // for Smiles equating
   }
   
-  int nBondsDisplayed = 0;
-  int nBackbonesDisplayed = 0;
+  byte nBackbonesDisplayed = 0;
   
   public int getNBackbonesDisplayed() {
     return nBackbonesDisplayed;
   }
   
-  int clickabilityFlags;
-  int shapeVisibilityFlags;
-
   public Atom(int modelIndex, int atomIndex,
-        float x, float y, float z, float radius,
-        BitSet atomSymmetry, int atomSite,
+        float x, float y, float z, int atomSite,
         short atomicAndIsotopeNumber, int formalCharge, 
         boolean isHetero, char alternateLocationID) {
     this.modelIndex = (short)modelIndex;
-    this.atomSymmetry = atomSymmetry;
     this.atomSite = atomSite;
     this.index = atomIndex;
     this.atomicAndIsotopeNumber = atomicAndIsotopeNumber;
@@ -104,19 +106,19 @@ final public class Atom extends Point3fi implements JmolNode {
       formalChargeAndFlags = IS_HETERO_FLAG;
     setFormalCharge(formalCharge);
     this.alternateLocationID = alternateLocationID;
-    userDefinedVanDerWaalRadius = radius;
     set(x, y, z);
   }
 
   public final void setShapeVisibilityFlags(int flag) {
-    shapeVisibilityFlags = flag;
+    group.chain.modelSet.atomVisibilityFlags[index] = flag;
   }
 
   public final void setShapeVisibility(int shapeVisibilityFlag, boolean isVisible) {
+    int[] shapeVisibilityFlags = group.chain.modelSet.atomVisibilityFlags;
     if(isVisible) {
-      shapeVisibilityFlags |= shapeVisibilityFlag;        
+      shapeVisibilityFlags[index] |= shapeVisibilityFlag;        
     } else {
-      shapeVisibilityFlags &=~shapeVisibilityFlag;
+      shapeVisibilityFlags[index] &=~shapeVisibilityFlag;
     }
   }
   
@@ -137,7 +139,6 @@ final public class Atom extends Point3fi implements JmolNode {
   }
 
   void addDisplayedBond(int stickVisibilityFlag, boolean isVisible){
-    nBondsDisplayed+=(isVisible ? 1 : -1);
     setShapeVisibility(stickVisibilityFlag, isVisible);
   } 
   
@@ -199,7 +200,11 @@ final public class Atom extends Point3fi implements JmolNode {
    */
 
   public void setMadAtom(Viewer viewer, RadiusData rd) {
-    madAtom = calculateMad(viewer, rd);
+    group.chain.modelSet.atomMads[index] = calculateMad(viewer, rd);
+  }
+
+  public short getMadAtom() {
+    return group.chain.modelSet.atomMads[index];
   }
   /* what about these?    
   if (Float.isNaN(fsize)) {
@@ -257,7 +262,7 @@ final public class Atom extends Point3fi implements JmolNode {
   }
 
   public int getRasMolRadius() {
-    return Math.abs(madAtom / 8); //  1000r = 1000d / 2; rr = (1000r / 4);
+    return Math.abs(getMadAtom() / 8); //  1000r = 1000d / 2; rr = (1000r / 4);
   }
 
   public int getCovalentBondCount() {
@@ -291,7 +296,7 @@ final public class Atom extends Point3fi implements JmolNode {
   }
   
   public void setColixAtom(short colixAtom) {
-    this.colixAtom = colixAtom;
+    group.chain.modelSet.atomColixes[index] = colixAtom;
   }
 
   public void setPaletteID(byte paletteID) {
@@ -299,11 +304,13 @@ final public class Atom extends Point3fi implements JmolNode {
   }
 
   public void setTranslucent(boolean isTranslucent, float translucentLevel) {
-    colixAtom = Graphics3D.getColixTranslucent(colixAtom, isTranslucent, translucentLevel);    
+    short[] atomColixes = group.chain.modelSet.atomColixes;
+    atomColixes[index] = Graphics3D.getColixTranslucent(atomColixes[index],
+        isTranslucent, translucentLevel);    
   }
 
   public boolean isTranslucent() {
-    return Graphics3D.isColixTranslucent(colixAtom);
+    return Graphics3D.isColixTranslucent(getColix());
   }
 
   public short getElementNumber() {
@@ -384,7 +391,13 @@ final public class Atom extends Point3fi implements JmolNode {
   }
 
   public boolean setRadius(float radius) {
-    return !Float.isNaN(userDefinedVanDerWaalRadius = (radius > 0 ? radius : Float.NaN));  
+    return group.chain.modelSet.setAtomRadius(index, radius);  
+  }
+
+  private float getUserDefinedRadius() {
+    float[] atomRadii = group.chain.modelSet.atomRadii;
+    return (atomRadii == null || atomRadii[index] == 0 ? Float.NaN
+        : atomRadii[index]);
   }
   
   public void delete(BitSet bsBonds) {
@@ -459,9 +472,10 @@ final public class Atom extends Point3fi implements JmolNode {
     // AtomCollection.findMaxRadii with VDW_AUTO
     // AtomCollection.getAtomPropertyState with VDW_AUTO
     // AtomCollection.getVdwRadius with passed on type
-    return (Float.isNaN(userDefinedVanDerWaalRadius) 
+    float r = getUserDefinedRadius();
+    return (Float.isNaN(r) 
         ? viewer.getVanderwaalsMar(atomicAndIsotopeNumber % 128, getVdwType(iType)) / 1000f
-        : userDefinedVanDerWaalRadius);
+        : r);
   }
 
   /**
@@ -496,7 +510,7 @@ final public class Atom extends Point3fi implements JmolNode {
   }
 
   float getVolume(Viewer viewer, int iType) {
-    float r1 = (iType < 0 ? userDefinedVanDerWaalRadius : Float.NaN);
+    float r1 = (iType < 0 ? getUserDefinedRadius() : Float.NaN);
     if (Float.isNaN(r1))
       r1 = viewer.getVanderwaalsMar(getElementNumber(), getVdwType(iType)) / 1000f;
     double volume = 0;
@@ -505,7 +519,7 @@ final public class Atom extends Point3fi implements JmolNode {
         if (!bonds[j].isCovalent())
           continue;
         Atom atom2 = bonds[j].getOtherAtom(this);
-        float r2 = (iType < 0 ? atom2.userDefinedVanDerWaalRadius : Float.NaN);
+        float r2 = (iType < 0 ? atom2.getUserDefinedRadius() : Float.NaN);
         if (Float.isNaN(r2))
           r2 = viewer.getVanderwaalsMar(atom2.getElementNumber(), atom2
               .getVdwType(iType)) / 1000f;
@@ -529,7 +543,7 @@ final public class Atom extends Point3fi implements JmolNode {
   }
 
   public short getColix() {
-    return colixAtom;
+    return group.chain.modelSet.atomColixes[index];
   }
 
   public byte getPaletteID() {
@@ -537,7 +551,7 @@ final public class Atom extends Point3fi implements JmolNode {
   }
 
   public float getRadius() {
-    return Math.abs(madAtom / (1000f * 2));
+    return Math.abs(getMadAtom() / (1000f * 2));
   }
 
   public int getIndex() {
@@ -549,7 +563,8 @@ final public class Atom extends Point3fi implements JmolNode {
   }
 
   public BitSet getAtomSymmetry() {
-    return atomSymmetry;
+    BitSet[] atomSymmetries = group.chain.modelSet.atomSymmetries;
+    return (atomSymmetries == null ? null : atomSymmetries[index]);
   }
 
    void setGroup(Group group) {
@@ -583,15 +598,15 @@ final public class Atom extends Point3fi implements JmolNode {
    }
 
    public boolean isInFrame() {
-     return ((shapeVisibilityFlags & JmolConstants.ATOM_IN_FRAME) != 0);
+     return ((getShapeVisibilityFlags() & JmolConstants.ATOM_IN_FRAME) != 0);
    }
 
    public int getShapeVisibilityFlags() {
-     return shapeVisibilityFlags;
+     return group.chain.modelSet.atomVisibilityFlags[index];
    }
    
    public boolean isShapeVisible(int shapeVisibilityFlag) {
-     return ((shapeVisibilityFlags & shapeVisibilityFlag) != 0);
+     return ((getShapeVisibilityFlags() & shapeVisibilityFlag) != 0);
    }
 
    public float getPartialCharge() {
@@ -639,6 +654,7 @@ final public class Atom extends Point3fi implements JmolNode {
     * @return cell number such as 565
     */
    public int getSymmetryTranslation(int symop, int[] cellRange, int nOps) {
+     BitSet atomSymmetry = getAtomSymmetry();
      int pt = symop;
      for (int i = 0; i < cellRange.length; i++)
        if (atomSymmetry.get(pt += nOps))
@@ -656,6 +672,7 @@ final public class Atom extends Point3fi implements JmolNode {
     * @return     matching cell number, if applicable
     */
    public int getCellTranslation(int cellNNN, int[] cellRange, int nOps) {
+     BitSet atomSymmetry = getAtomSymmetry();
      int pt = nOps;
      for (int i = 0; i < cellRange.length; i++)
        for (int j = 0; j < nOps;j++, pt++)
@@ -668,6 +685,7 @@ final public class Atom extends Point3fi implements JmolNode {
     String str = "";
     ModelSet f = group.chain.modelSet;
     int nOps = f.getModelSymmetryCount(modelIndex);
+    BitSet atomSymmetry = getAtomSymmetry();
     if (nOps == 0 || atomSymmetry == null)
       return "";
     int[] cellRange = f.getModelCellRange(modelIndex);
@@ -933,19 +951,20 @@ final public class Atom extends Point3fi implements JmolNode {
     // certainly if it is not visible, then it can't be clickable
     if (!isVisible(0))
       return false;
-    int flags = shapeVisibilityFlags | group.shapeVisibilityFlags;
-    return ((flags & clickabilityFlags) != 0);
+    int flags = getShapeVisibilityFlags() | group.shapeVisibilityFlags;
+    return ((flags & getClickabilityFlags()) != 0);
   }
 
   public int getClickabilityFlags() {
-    return clickabilityFlags;
+    return group.chain.modelSet.atomClickabilityFlags[index];
   }
   
   public void setClickable(int flag) {
+    int[] clickabilityFlags = group.chain.modelSet.atomClickabilityFlags;
     if (flag == 0)
-      clickabilityFlags = 0;
+      clickabilityFlags[index] = 0;
     else
-      clickabilityFlags |= flag;
+      clickabilityFlags[index] |= flag;
   }
   
   /**
@@ -960,7 +979,7 @@ final public class Atom extends Point3fi implements JmolNode {
     // Is any shape associated with this atom visible? 
     if (flags != 0)
       return (isShapeVisible(flags));  
-    flags = shapeVisibilityFlags;
+    flags = getShapeVisibilityFlags();
     // Is its PDB group visible in any way (cartoon, e.g.)?
     //  An atom is considered visible if its PDB group is visible, even
     //  if it does not show up itself as part of the structure
@@ -40,6 +40,7 @@ import javax.vecmath.Vector3f;
 import org.jmol.atomdata.AtomData;
 import org.jmol.atomdata.RadiusData;
 import org.jmol.bspt.Bspf;
+import org.jmol.bspt.SpatialGrid;
 import org.jmol.g3d.Graphics3D;
 import org.jmol.geodesic.EnvelopeCalculation;
 import org.jmol.util.ArrayUtil;
@@ -63,6 +64,9 @@ abstract public class AtomCollection {
     viewer = null;
     g3d = null;
     bspf = null;
+    spatialGrids = null;
+    screenGrid = null;
+    bsMovedAtoms = null;
     surfaceDistance100s = null;
     bsSurface = null;
     tainted = null;
@@ -75,7 +79,13 @@ abstract public class AtomCollection {
     bfactor100s = null;
     partialCharges = null;
     ionicRadii = null;
+    atomRadii = null;
+    atomSymmetries = null;
     ellipsoids = null;
+    atomColixes = null;
+    atomMads = null;
+    atomVisibilityFlags = null;
+    atomClickabilityFlags = null;
 
   }
 
@@ -89,7 +99,13 @@ abstract public class AtomCollection {
     bfactor100s = mergeModelSet.bfactor100s;
     ionicRadii = mergeModelSet.ionicRadii;
     partialCharges = mergeModelSet.partialCharges;
+    atomRadii = mergeModelSet.atomRadii;
+    atomSymmetries = mergeModelSet.atomSymmetries;
     ellipsoids = mergeModelSet.ellipsoids;
+    atomColixes = mergeModelSet.atomColixes;
+    atomMads = mergeModelSet.atomMads;
+    atomVisibilityFlags = mergeModelSet.atomVisibilityFlags;
+    atomClickabilityFlags = mergeModelSet.atomClickabilityFlags;
     setHaveStraightness(false);
     surfaceDistance100s = null;
   }
@@ -135,11 +151,38 @@ abstract public class AtomCollection {
   short[] bfactor100s;
   float[] partialCharges;
   float[] ionicRadii;
+  float[] atomRadii;         // user-defined van der Waals radii; 0 if none
+  BitSet[] atomSymmetries;   // see Atom.getSymmetryTranslation()
   protected Object[][] ellipsoids;
   protected int[] surfaceDistance100s;
 
+  ////////////////////////////////////////////////////////////////
+  // these are always allocated, with the same length as atoms[];
+  // every frame reads them for every atom, so the per-frame loops
+  // (Balls.setVisibilityFlags(), ShapeManager.transformAtoms(),
+  // BallsRenderer) work from these instead of from the Atom objects.
+  // The coordinates and screen positions stay in Atom, which is the
+  // point that shapes, renderers and exporters are handed.
+  //
+  short[] atomColixes;
+  short[] atomMads;
+  int[] atomVisibilityFlags;     // shape visibility flags
+  int[] atomClickabilityFlags;
+
   protected boolean haveStraightness;
 
+  public short[] getAtomColixes() {
+    return atomColixes;
+  }
+
+  public short[] getAtomMads() {
+    return atomMads;
+  }
+
+  public int[] getAtomVisibilityFlags() {
+    return atomVisibilityFlags;
+  }
+
   public boolean modelSetHasVibrationVectors(){
     return (vibrationVectors != null);
   }
@@ -162,6 +205,19 @@ abstract public class AtomCollection {
 
   private BitSet bsHidden = new BitSet();
 
+  private final BitSet bsInFrame = new BitSet();
+
+  /**
+   * Balls.setVisibilityFlags() keeps this in step with the 
+   * JmolConstants.ATOM_IN_FRAME flag, so that per-frame loops can skip 
+   * the atoms of models that are not displayed
+   * 
+   * @return the atoms in the displayed frame(s)
+   */
+  public BitSet getAtomsInFrame() {
+    return bsInFrame;
+  }
+
   public void setBsHidden(BitSet bs) { //from selection manager
     bsHidden = bs;
   }
@@ -605,7 +661,7 @@ abstract public class AtomCollection {
             fValue = 0;
           else if (fValue > Atom.RADIUS_MAX)
             fValue = Atom.RADIUS_MAX;
-          atom.madAtom = ((short) (fValue * 2000));
+          atomMads[i] = ((short) (fValue * 2000));
           break;
         case Token.selected:
           viewer.setSelectedAtom(atom.index, (fValue != 0));
@@ -742,6 +798,26 @@ abstract public class AtomCollection {
     return true;
   }
 
+  boolean setAtomRadius(int atomIndex, float radius) {
+    if (!(radius > 0)) {
+      if (atomRadii != null)
+        atomRadii[atomIndex] = 0;
+      return false;
+    }
+    if (atomRadii == null)
+      atomRadii = new float[atoms.length];
+    atomRadii[atomIndex] = radius;
+    return true;
+  }
+
+  protected void setAtomSymmetry(int atomIndex, BitSet atomSymmetry) {
+    if (atomSymmetry == null && atomSymmetries == null)
+      return;
+    if (atomSymmetries == null)
+      atomSymmetries = new BitSet[atoms.length];
+    atomSymmetries[atomIndex] = atomSymmetry;
+  }
+
   protected boolean setBFactor(int atomIndex, float bfactor) {
     if (Float.isNaN(bfactor))
       return false;
@@ -873,6 +949,14 @@ abstract public class AtomCollection {
   
   protected Bspf bspf;
 
+  // or, with useSpatialGrid, one cell list per model of its undeleted
+  // atoms; unlike the Bspf, these are not discarded when atoms move;
+  // tainting an atom's coordinates just records that it needs to be
+  // relocated, and the next search swaps in an updated copy
+
+  protected SpatialGrid[] spatialGrids;
+  protected BitSet bsMovedAtoms;
+
   // state tainting
   
   protected boolean preserveState = true;
@@ -939,14 +1023,49 @@ abstract public class AtomCollection {
     return tainted == null ? null : tainted[type];
   }
   
+  /**
+   * bumped when atom properties are set and when atoms or models are
+   * deleted, so that ScriptEvaluator can tell whether a cached atom
+   * expression still applies
+   */
+  protected int modificationCount;
+
+  public int getModificationCount() {
+    return modificationCount;
+  }
+
   public void taint(BitSet bsAtoms, byte type) {
+    modificationCount++;
+    if (type == TAINT_COORD)
+      setAtomCoordsChanged(bsAtoms);
     if (!preserveState)
       return;
     for (int i = bsAtoms.nextSetBit(0); i >= 0; i = bsAtoms.nextSetBit(i + 1))
       taint(i, type);
   }
 
+  /**
+   * For coordinates set without taint(), such as by the minimizer: the
+   * spatial grids hold copies of the coordinates, so they must be told
+   * which atoms have moved before their next search.
+   * 
+   * @param bsAtoms
+   */
+  public synchronized void setAtomCoordsChanged(BitSet bsAtoms) {
+    if (spatialGrids == null)
+      return;
+    if (bsMovedAtoms == null)
+      bsMovedAtoms = new BitSet();
+    bsMovedAtoms.or(bsAtoms);
+  }
+
   protected void taint(int atomIndex, byte type) {
+    modificationCount++;
+    if (type == TAINT_COORD && spatialGrids != null) {
+      if (bsMovedAtoms == null)
+        bsMovedAtoms = new BitSet();
+      bsMovedAtoms.set(atomIndex);
+    }
     if (!preserveState)
       return;
     if (tainted == null)
@@ -1102,6 +1221,32 @@ abstract public class AtomCollection {
   protected void findNearestAtomIndex(int x, int y, Atom[] closest, BitSet bsNot) {
     Atom champion = null;
     //int championIndex = -1;
+    ScreenGrid grid = getScreenGrid();
+    if (grid != null) {
+      // only the atoms near enough to the cursor, 
+      // still from the last atom to the first
+      int r = grid.maxRadius;
+      bsPicked.clear();
+      int n = grid.findAtoms(x - r, y - r, x + r, y + r, bsPicked);
+      if (pickedIndexes.length < n)
+        pickedIndexes = new int[n];
+      n = 0;
+      for (int i = bsPicked.nextSetBit(0); i >= 0 && i < atomCount; i = bsPicked
+          .nextSetBit(i + 1))
+        pickedIndexes[n++] = i;
+      while (--n >= 0) {
+        int i = pickedIndexes[n];
+        if (bsNot != null && bsNot.get(i))
+          continue;
+        Atom contender = atoms[i];
+        if (contender.isClickable()
+            && isCursorOnTopOf(contender, x, y, minimumPixelSelectionRadius,
+                champion))
+          champion = contender;
+      }
+      closest[0] = champion;
+      return;
+    }
     for (int i = atomCount; --i >= 0;) {
       if (bsNot != null && bsNot.get(i))
         continue;
@@ -1130,6 +1275,69 @@ abstract public class AtomCollection {
         && contender.isCursorOnTopOf(x, y, radius, champion);
   }
 
+  /**
+   * Used by BioShapeCollection to narrow its search to the monomers that
+   * could be under the cursor. Screen radii are taken at the nearest and 
+   * farthest screenZ, so that the result includes any atom whose 
+   * picking radius, for the given size, could reach the cursor.
+   * 
+   * @param x
+   * @param y
+   * @param milliAngstroms  the largest picking radius
+   * @param minRadius       in pixels
+   * @return  the atoms near (x, y), or null if there is no screen grid
+   */
+  public BitSet findAtomsNearScreenPoint(int x, int y, int milliAngstroms,
+                                         int minRadius) {
+    ScreenGrid grid = getScreenGrid();
+    if (grid == null)
+      return null;
+    // an atom's own screen radius counts as well -- see Atom.isCursorOnTopOf
+    int r = Math.max(Math.max(minRadius, grid.maxRadius), Math.max(viewer
+        .scaleToScreen(grid.minZ, milliAngstroms), viewer.scaleToScreen(
+        grid.maxZ, milliAngstroms)));
+    BitSet bs = new BitSet();
+    grid.findAtoms(x - r, y - r, x + r, y + r, bs);
+    return bs;
+  }
+
+  ////////// screen grid for picking //////////
+
+  private ScreenGrid screenGrid;
+  private final BitSet bsOnScreen = new BitSet();
+  private boolean haveScreenPositions;
+  private final BitSet bsPicked = new BitSet();
+  private int[] pickedIndexes = new int[16];
+
+  /**
+   * Called by ShapeManager.transformAtoms() after each transformation.
+   * The picking grid is discarded only if some atom has a new screen 
+   * position or diameter or the set of atoms on the screen has changed;
+   * it is rebuilt when next needed.
+   * 
+   * @param bsTransformed  the atoms just transformed
+   * @param isChanged      some screenX, screenY, screenZ, or screenDiameter
+   *                       is not what it was
+   */
+  public void setScreenPositions(BitSet bsTransformed, boolean isChanged) {
+    haveScreenPositions = true;
+    if (!isChanged && bsTransformed.equals(bsOnScreen))
+      return;
+    screenGrid = null;
+    bsOnScreen.clear();
+    bsOnScreen.or(bsTransformed);
+  }
+
+  private ScreenGrid getScreenGrid() {
+    // atoms deleted since the last transformation?
+    if (!haveScreenPositions || bsOnScreen.length() > atomCount)
+      return null;
+    if (screenGrid == null)
+      screenGrid = new ScreenGrid(atoms, bsOnScreen,
+          minimumPixelSelectionRadius);
+    return screenGrid;
+  }
+
   // jvm < 1.4 does not have a BitSet.clear();
   // so in order to clear you "and" with an empty bitset.
   private final BitSet bsEmpty = new BitSet();
@@ -1137,6 +1345,20 @@ abstract public class AtomCollection {
 
   public BitSet findAtomsInRectangle(Rectangle rect, BitSet bsModels) {
     bsFoundRectangle.and(bsEmpty);
+    ScreenGrid grid = getScreenGrid();
+    if (grid != null) {
+      bsPicked.clear();
+      grid.findAtoms(rect.x, rect.y, rect.x + rect.width, rect.y
+          + rect.height, bsPicked);
+      for (int i = bsPicked.nextSetBit(0); i >= 0 && i < atomCount; i = bsPicked
+          .nextSetBit(i + 1)) {
+        Atom atom = atoms[i];
+        if (bsModels.get(atom.modelIndex) && atom.isVisible(0)
+            && rect.contains(atom.screenX, atom.screenY))
+          bsFoundRectangle.set(i);
+      }
+      return bsFoundRectangle;
+    }
     for (int i = atomCount; --i >= 0;) {
       Atom atom = atoms[i];
       if (bsModels.get(atom.modelIndex) && atom.isVisible(0) 
@@ -2491,8 +2713,20 @@ abstract public class AtomCollection {
         firstAtomIndex, nAtoms);
     partialCharges = (float[]) ArrayUtil.deleteElements(partialCharges,
         firstAtomIndex, nAtoms);
+    atomRadii = (float[]) ArrayUtil.deleteElements(atomRadii,
+        firstAtomIndex, nAtoms);
+    atomSymmetries = (BitSet[]) ArrayUtil.deleteElements(atomSymmetries,
+        firstAtomIndex, nAtoms);
     ellipsoids = (Object[][]) ArrayUtil.deleteElements(ellipsoids,
         firstAtomIndex, nAtoms);
+    atomColixes = (short[]) ArrayUtil.deleteElements(atomColixes,
+        firstAtomIndex, nAtoms);
+    atomMads = (short[]) ArrayUtil.deleteElements(atomMads, firstAtomIndex,
+        nAtoms);
+    atomVisibilityFlags = (int[]) ArrayUtil.deleteElements(atomVisibilityFlags,
+        firstAtomIndex, nAtoms);
+    atomClickabilityFlags = (int[]) ArrayUtil.deleteElements(
+        atomClickabilityFlags, firstAtomIndex, nAtoms);
     vibrationVectors = (Vector3f[]) ArrayUtil.deleteElements(vibrationVectors,
         firstAtomIndex, nAtoms);
     nSurfaceAtoms = 0;
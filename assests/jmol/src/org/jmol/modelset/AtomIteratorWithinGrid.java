@@ -0,0 +1,147 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2007-05-18 08:19:45 -0500 (Fri, 18 May 2007) $
+ * $Revision: 7742 $
+
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.modelset;
+
+import java.util.BitSet;
+
+import javax.vecmath.Point3f;
+
+import org.jmol.api.AtomIndexIterator;
+import org.jmol.bspt.GridIterator;
+import org.jmol.bspt.SpatialGrid;
+
+/**
+ * The SpatialGrid counterpart of AtomIteratorWithinModel,
+ * used when ModelCollection.setUseSpatialGrid(true) has been set.
+ * Returns the same atoms, though not necessarily in the same order.
+ *
+ */
+public class AtomIteratorWithinGrid implements AtomIndexIterator {
+
+  private ModelCollection modelSet;
+  private SpatialGrid grid;
+  private GridIterator gridIter;
+  private boolean hemisphereOnly;
+  private boolean isZeroBased;
+
+  private int atomIndex = -1;
+  private int zeroBase;
+  private float distanceSquared;
+
+  private BitSet bsSelected;
+  private boolean isGreaterOnly;
+
+  /**
+   *
+   * ############## ITERATOR SHOULD BE RELEASED #################
+   *
+   * @param modelSet
+   * @param bsSelected
+   * @param isGreaterOnly
+   * @param isZeroBased
+   * @param hemisphereOnly
+   *
+   */
+  void initialize(ModelCollection modelSet, BitSet bsSelected,
+                  boolean isGreaterOnly, boolean isZeroBased,
+                  boolean hemisphereOnly) {
+    this.modelSet = modelSet;
+    this.bsSelected = bsSelected;
+    this.isGreaterOnly = isGreaterOnly;
+    this.isZeroBased = isZeroBased;
+    this.hemisphereOnly = hemisphereOnly;
+  }
+
+  public void set(int modelIndex, int firstModelAtom, int atomIndex,
+                  Point3f center, float distance) {
+    SpatialGrid grid = modelSet.getSpatialGrid(modelIndex);
+    if (grid != this.grid) {
+      this.grid = grid;
+      gridIter = (grid == null ? null : grid.allocateIterator());
+    }
+    zeroBase = (isZeroBased ? firstModelAtom : 0);
+    if (distance == Integer.MIN_VALUE) // distance and center will be added later
+      return;
+    this.atomIndex = atomIndex;
+    set(center, distance);
+  }
+
+  public void set(Point3f center, float distance) {
+    if (gridIter == null)
+      return;
+    gridIter.initialize(center, distance, hemisphereOnly);
+    distanceSquared = distance * distance;
+  }
+
+  private int iNext;
+
+  public boolean hasNext() {
+    if (gridIter == null)
+      return false;
+    if (atomIndex >= 0)
+      while (gridIter.hasMoreElements()) {
+        if ((iNext = gridIter.nextElement()) != atomIndex
+            && iNext > (isGreaterOnly ? atomIndex : -1)
+            && (bsSelected == null || bsSelected.get(iNext))) {
+          return true;
+        }
+      }
+    else if (gridIter.hasMoreElements()) {
+      iNext = gridIter.nextElement();
+      return true;
+    }
+    iNext = -1;
+    return false;
+  }
+
+  public int next() {
+    return iNext - zeroBase;
+  }
+
+  public float foundDistance2() {
+    return (gridIter == null ? -1 : gridIter.foundDistance2());
+  }
+
+  /**
+   * turns this into a SPHERICAL iterator
+   * for "within Distance" measures
+   *
+   * @param bsResult
+   *
+   */
+  public void addAtoms(BitSet bsResult) {
+    int iAtom;
+    while (hasNext())
+      if ((iAtom = next()) >= 0 && foundDistance2() <= distanceSquared)
+        bsResult.set(iAtom);
+  }
+
+  public void release() {
+    if (gridIter != null)
+      gridIter.release();
+  }
+
+}
@@ -216,11 +216,11 @@ public class Bond implements JmolEdge {
   }
 
   short getColix1() {
-    return Graphics3D.getColixInherited(colix, atom1.colixAtom);
+    return Graphics3D.getColixInherited(colix, atom1.getColix());
   }
 
   short getColix2() {
-    return Graphics3D.getColixInherited(colix, atom2.colixAtom);
+    return Graphics3D.getColixInherited(colix, atom2.getColix());
   }
 
   public Atom getOtherAtom(Atom thisAtom) {
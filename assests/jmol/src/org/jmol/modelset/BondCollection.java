@@ -28,6 +28,7 @@ package org.jmol.modelset;
 import java.util.BitSet;
 import java.util.Vector;
 
+import org.jmol.modelsetbio.AminoHBondSearch;
 import org.jmol.util.ArrayUtil;
 import org.jmol.util.BitSetUtil;
 import org.jmol.util.Logger;
@@ -238,16 +239,21 @@ abstract public class BondCollection extends AtomCollection {
       vHBonds = new Vector();
     if (nMax < 0)
       nMax = Integer.MAX_VALUE;
+    // amino chains are searched all at once, through a grid
+    Vector[] vAmino = (nucleicOnly ? null : new AminoHBondSearch(
+        m.bioPolymers, m.bioPolymerCount, bsB).getRasmolHydrogenBonds(bsA,
+        nMax, viewer.getExecutor()));
     for (int i = m.bioPolymerCount; --i >= 0;) {
       bp = m.bioPolymers[i];
       int type = bp.getType();
       if ((nucleicOnly || type != Polymer.TYPE_AMINO)
           && type != Polymer.TYPE_NUCLEIC)
         continue;
+      if (type == Polymer.TYPE_AMINO) {
+        vHBonds.addAll(vAmino[i]);
+        continue;
+      }
       boolean isRNA = bp.isRna();
-      boolean isAmino = (type == Polymer.TYPE_AMINO);
-      if (isAmino)
-        bp.calcRasmolHydrogenBonds(null, bsA, bsB, vHBonds, nMax);
       for (int j = m.bioPolymerCount; --j >= 0;)
         if ((bp1 = m.bioPolymers[j]) != null && (isRNA || i != j)
             && type == bp1.getType())
@@ -27,6 +27,7 @@ import java.util.BitSet;
 import java.util.Hashtable;
 import java.util.Properties;
 
+import org.jmol.modelsetbio.AminoHBondSearch;
 import org.jmol.util.BitSetUtil;
 import org.jmol.util.Escape;
 
@@ -213,12 +214,16 @@ public final class Model {
   boolean isJmolDataFrame;
   
   
-  void calculateStructures() {
+  void calculateStructures(boolean asDSSP) {
     structureTainted = modelSet.proteinStructureTainted = true;
     for (int i = bioPolymerCount; --i >= 0; ) {
       bioPolymers[i].clearStructures();
-      bioPolymers[i].calculateStructures();
+      if (!asDSSP || bioPolymers[i].getType() != Polymer.TYPE_AMINO)
+        bioPolymers[i].calculateStructures();
     }
+    if (asDSSP)
+      new AminoHBondSearch(bioPolymers, bioPolymerCount, null)
+          .calculateStructures(modelSet.viewer.getExecutor());
   }
 
   public boolean isStructureTainted() {
@@ -45,6 +45,7 @@ import org.jmol.api.JmolEdge;
 import org.jmol.api.JmolMolecule;
 import org.jmol.api.SymmetryInterface;
 import org.jmol.bspt.Bspf;
+import org.jmol.bspt.SpatialGrid;
 import org.jmol.util.ArrayUtil;
 import org.jmol.util.BitSetUtil;
 import org.jmol.util.Escape;
@@ -56,6 +57,7 @@ import org.jmol.util.OutputStringBuffer;
 import org.jmol.util.Point3fi;
 import org.jmol.util.Quaternion;
 import org.jmol.util.TextFormat;
+import org.jmol.util.TrajectorySteps;
 import org.jmol.util.TriangleData;
 import org.jmol.util.XmlUtil;
 import org.jmol.viewer.JmolConstants;
@@ -632,14 +634,17 @@ abstract public class ModelCollection extends BondCollection {
    * also accessed by ModelManager from Eval
    * 
    * @param alreadyDefined    set to skip calculation
+   * @param asDSSP            from backbone hydrogen bonds rather than phi/psi
    * @param addFileData       in the case of loading, we add the PDB data
    *  
    */
-  protected void calculateStructuresAllExcept(BitSet alreadyDefined, boolean addFileData) {
+  protected void calculateStructuresAllExcept(BitSet alreadyDefined, 
+                                              boolean asDSSP,
+                                              boolean addFileData) {
     freezeModels();
     for (int i = modelCount; --i >= 0;)
       if (models[i].isPDB && !alreadyDefined.get(i))
-        models[i].calculateStructures();
+        models[i].calculateStructures(asDSSP);
     setStructureIds();
      if (addFileData)
       propagateSecondaryStructure();
@@ -785,7 +790,7 @@ abstract public class ModelCollection extends BondCollection {
   }
 */
 
-  protected Vector trajectorySteps;
+  protected TrajectorySteps trajectorySteps;
 
   protected int getTrajectoryCount() {
     return (trajectorySteps == null ? 0 : trajectorySteps.size());
@@ -1936,9 +1941,87 @@ abstract public class ModelCollection extends BondCollection {
     bspf.initialize(modelIndex, atoms, viewer.getModelUndeletedAtomsBitSet(modelIndex));
   }
  
+  ////////// spatial grid (cell list) alternative to the Bspf /////////
+  
+  private boolean useSpatialGrid;
+
+  /**
+   * Selects the cell-list SpatialGrid rather than the Bspf for
+   * all neighbor searches in this model set.
+   * 
+   * @param TF
+   */
+  public void setUseSpatialGrid(boolean TF) {
+    if (TF == useSpatialGrid)
+      return;
+    useSpatialGrid = TF;
+    spatialGrids = null;
+    bsMovedAtoms = null;
+  }
+
+  public boolean getUseSpatialGrid() {
+    return useSpatialGrid;
+  }
+
+  SpatialGrid getSpatialGrid(int modelIndex) {
+    SpatialGrid[] grids = spatialGrids;
+    return (grids == null || modelIndex >= grids.length ? null
+        : grids[modelIndex]);
+  }
+
+  /**
+   * Grids are never changed once built, and neither is the array holding
+   * them: a new array is put in its place, so that an iterator still
+   * reading the old grid is not disturbed.
+   * 
+   * @param modelIndex
+   */
+  protected synchronized void initializeSpatialGrid(int modelIndex) {
+    SpatialGrid[] grids = new SpatialGrid[Math.max(modelCount,
+        spatialGrids == null ? 0 : spatialGrids.length)];
+    if (spatialGrids != null)
+      System.arraycopy(spatialGrids, 0, grids, 0, spatialGrids.length);
+    if (bsMovedAtoms != null) {
+      for (int i = grids.length; --i >= 0;)
+        if (grids[i] != null)
+          grids[i] = grids[i].update(atoms, bsMovedAtoms);
+      bsMovedAtoms = null;
+    }
+    if (grids[modelIndex] == null) {
+      if (showRebondTimes && Logger.debugging)
+        Logger.startTimer();
+      // not viewer.getModelUndeletedAtomsBitSet(), which during loading
+      // still refers to the previous model set
+      BitSet bs = getModelAtomBitSetIncludingDeleted(modelIndex, true);
+      bs.andNot(models[modelIndex].bsDeleted);
+      grids[modelIndex] = new SpatialGrid(atoms, bs,
+          SpatialGrid.DEFAULT_CELL_SIZE);
+      if (showRebondTimes && Logger.debugging) {
+        Logger.checkTimer("Time to build spatial grid");
+        grids[modelIndex].stats();
+      }
+    }
+    spatialGrids = grids;
+  }
+
+  protected synchronized void clearSpatialGrid(int modelIndex) {
+    if (spatialGrids == null || modelIndex >= spatialGrids.length)
+      return;
+    SpatialGrid[] grids = (SpatialGrid[]) spatialGrids.clone();
+    grids[modelIndex] = null;
+    spatialGrids = grids;
+  }
+
+  private void initializeSpatialIndex(int modelIndex) {
+    if (useSpatialGrid)
+      initializeSpatialGrid(modelIndex);
+    else
+      initializeBspt(modelIndex);
+  }
+
   public void setIteratorForPoint(AtomIndexIterator iterator, int modelIndex,
                                   Point3f pt, float distance) {
-    initializeBspt(modelIndex);
+    initializeSpatialIndex(modelIndex);
     iterator.set(modelIndex, models[modelIndex].firstAtomIndex, Integer.MAX_VALUE, pt, distance);    
   }
 
@@ -1947,22 +2030,36 @@ abstract public class ModelCollection extends BondCollection {
     if (modelIndex < 0)
       modelIndex = atoms[atomIndex].modelIndex;
     modelIndex = models[modelIndex].trajectoryBaseIndex;    
-    initializeBspt(modelIndex);
+    initializeSpatialIndex(modelIndex);
     iterator.set(modelIndex, models[modelIndex].firstAtomIndex, atomIndex, atoms[atomIndex], distance);    
   }
 
   public AtomIndexIterator getSelectedAtomIterator(BitSet bsSelected,
                                                     boolean isGreaterOnly,
                                                     boolean modelZeroBased, boolean hemisphereOnly) {
+    return getSelectedAtomIterator(bsSelected, isGreaterOnly, modelZeroBased,
+        hemisphereOnly, viewer.isParallel());
+  }
+
+  public AtomIndexIterator getSelectedAtomIterator(BitSet bsSelected,
+                                                   boolean isGreaterOnly,
+                                                   boolean modelZeroBased,
+                                                   boolean hemisphereOnly,
+                                                   boolean threadSafe) {
     //EnvelopeCalculation, IsoSolventReader
     // This iterator returns only atoms OTHER than the atom specified
     // and with the specified restrictions. 
     // Model zero-based means the index returned is within the model, 
     // not the full atom set. broken in 12.0.RC6; repaired in 12.0.RC15
     
+    if (useSpatialGrid) {
+      AtomIteratorWithinGrid iter = new AtomIteratorWithinGrid();
+      iter.initialize(this, bsSelected, isGreaterOnly, modelZeroBased, hemisphereOnly);
+      return iter;
+    }
     initializeBspf();
     AtomIteratorWithinModel iter = new AtomIteratorWithinModel();
-    iter.initialize(bspf, bsSelected, isGreaterOnly, modelZeroBased, hemisphereOnly, viewer.isParallel()); 
+    iter.initialize(bspf, bsSelected, isGreaterOnly, modelZeroBased, hemisphereOnly, threadSafe); 
     return iter;
   }
   
@@ -2523,6 +2620,14 @@ abstract public class ModelCollection extends BondCollection {
       }
       i0 = bsCheck.nextSetBit(0);
     }
+    // when all atoms are being bonded, each bonding radius is looked up 
+    // once, not once for every pair that it is part of
+    float[] bondingRadii = null;
+    if (isAll) {
+      bondingRadii = new float[atomCount];
+      for (int i = atomCount; --i >= 0;)
+        bondingRadii[i] = atoms[i].getBondingRadiusFloat();
+    }
     AtomIndexIterator iter = getSelectedAtomIterator(null, false, false, true);
     for (int i = i0; i >= 0 && i < atomCount; i = (isAll ? i + 1 : bsCheck.nextSetBit(i + 1))) {
       boolean isAtomInSetA = (isAll || bsA.get(i));
@@ -2540,7 +2645,8 @@ abstract public class ModelCollection extends BondCollection {
         }
       }
       // Covalent bonds
-      float myBondingRadius = atom.getBondingRadiusFloat();
+      float myBondingRadius = (isAll ? bondingRadii[i] : atom
+          .getBondingRadiusFloat());
       if (myBondingRadius == 0)
         continue;
       boolean isFirstExcluded = (bsExclude != null && bsExclude.get(i));
@@ -2558,9 +2664,10 @@ abstract public class ModelCollection extends BondCollection {
             || !(isAtomInSetA && isNearInSetB || isAtomInSetB && isNearInSetA)
             || isFirstExcluded && bsExclude.get(atomIndexNear))
           continue;
-        short order = getBondOrder(atom, myBondingRadius, atomNear, atomNear
-            .getBondingRadiusFloat(), iter.foundDistance2(), minBondDistance2,
-            bondTolerance);
+        short order = getBondOrder(atom, myBondingRadius, atomNear,
+            (isAll ? bondingRadii[atomIndexNear] : atomNear
+                .getBondingRadiusFloat()), iter.foundDistance2(),
+            minBondDistance2, bondTolerance);
         if (order > 0) {
           if (checkValencesAndBond(atom, atomNear, order, mad, bsBonds))
             nNew++;
@@ -3189,13 +3296,13 @@ abstract public class ModelCollection extends BondCollection {
     info.put("radius", new Float((atom.getRasMolRadius() / 120.0)));
     info.put("model", atom.getModelNumberForLabel());
     info.put("visible", Boolean.valueOf(atoms[i].isVisible(0)));
-    info.put("clickabilityFlags", new Integer(atom.clickabilityFlags));
-    info.put("visibilityFlags", new Integer(atom.shapeVisibilityFlags));
+    info.put("clickabilityFlags", new Integer(atomClickabilityFlags[i]));
+    info.put("visibilityFlags", new Integer(atomVisibilityFlags[i]));
     info.put("spacefill", new Float(atom.getRadius()));
-    String strColor = Escape.escapeColor(viewer.getColorArgbOrGray(atom.colixAtom));
+    String strColor = Escape.escapeColor(viewer.getColorArgbOrGray(atomColixes[i]));
     if (strColor != null)
       info.put("color", strColor);
-    info.put("colix", new Integer(atom.colixAtom));
+    info.put("colix", new Integer(atomColixes[i]));
     boolean isTranslucent = atom.isTranslucent();
     if (isTranslucent)
       info.put("translucent", Boolean.valueOf(isTranslucent));
@@ -3533,6 +3640,7 @@ abstract public class ModelCollection extends BondCollection {
     if (modelIndex < 0) {
       //final deletions
       bspf = null;
+      spatialGrids = null;
       bsAll = null;
       molecules = null;
       moleculeCount = 0;
@@ -3719,6 +3827,7 @@ abstract public class ModelCollection extends BondCollection {
   public void deleteAtoms(BitSet bs) {
     if (bs == null)
       return;
+    modificationCount++;
     BitSet bsBonds = new BitSet();
     for (int i = bs.nextSetBit(0); i >= 0 && i < atomCount ; i = bs.nextSetBit(i + 1))
       atoms[i].delete(bsBonds);
@@ -3728,6 +3837,8 @@ abstract public class ModelCollection extends BondCollection {
       bsTemp.and(models[i].bsAtoms);
       models[i].bsDeleted.or(bsTemp);
     }
+    bspf = null;
+    spatialGrids = null;
     deleteBonds(bsBonds, false);
   }
 
@@ -3826,6 +3937,7 @@ abstract public class ModelCollection extends BondCollection {
   // atom addition //
   
   protected void growAtomArrays(int newLength) {
+    spatialGrids = null;
     atoms = (Atom[]) ArrayUtil.setLength(atoms, newLength);
     if (vibrationVectors != null)
       vibrationVectors = (Vector3f[]) ArrayUtil.setLength(vibrationVectors,
@@ -3836,6 +3948,15 @@ abstract public class ModelCollection extends BondCollection {
       bfactor100s = ArrayUtil.setLength(bfactor100s, newLength);
     if (partialCharges != null)
       partialCharges = ArrayUtil.setLength(partialCharges, newLength);
+    if (atomRadii != null)
+      atomRadii = ArrayUtil.setLength(atomRadii, newLength);
+    if (atomSymmetries != null)
+      atomSymmetries = (BitSet[]) ArrayUtil.setLength(atomSymmetries, newLength);
+    atomColixes = ArrayUtil.setLength(atomColixes, newLength);
+    atomMads = ArrayUtil.setLength(atomMads, newLength);
+    atomVisibilityFlags = ArrayUtil.setLength(atomVisibilityFlags, newLength);
+    atomClickabilityFlags = ArrayUtil.setLength(atomClickabilityFlags,
+        newLength);
     if (ellipsoids != null)
       ellipsoids = (Object[][]) ArrayUtil.setLength(ellipsoids, newLength);
     if (atomNames != null)
@@ -3860,9 +3981,8 @@ abstract public class ModelCollection extends BondCollection {
                          int occupancy, float bfactor, Object[] ellipsoid,
                          boolean isHetero, char alternateLocationID,
                          byte specialAtomID, BitSet atomSymmetry) {
-    Atom atom = new Atom(modelIndex, atomCount, x, y, z, radius, atomSymmetry,
-        atomSite, atomicAndIsotopeNumber, formalCharge, isHetero,
-        alternateLocationID);
+    Atom atom = new Atom(modelIndex, atomCount, x, y, z, atomSite,
+        atomicAndIsotopeNumber, formalCharge, isHetero, alternateLocationID);
     models[modelIndex].atomCount++;
     models[modelIndex].bsAtoms.set(atomCount);
     if (atomicAndIsotopeNumber % 128 == 1)
@@ -3871,10 +3991,12 @@ abstract public class ModelCollection extends BondCollection {
     setBFactor(atomCount, bfactor);
     setOccupancy(atomCount, occupancy);
     setPartialCharge(atomCount, partialCharge);
+    setAtomRadius(atomCount, radius);
+    setAtomSymmetry(atomCount, atomSymmetry);
     if (ellipsoid != null)
       setEllipsoid(atomCount, ellipsoid);
     atom.group = group;
-    atom.colixAtom = viewer
+    atomColixes[atomCount] = viewer
         .getColixAtomPalette(atom, JmolConstants.PALETTE_CPK);
     if (atomName != null) {
       int i;
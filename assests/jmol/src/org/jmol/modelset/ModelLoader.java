@@ -31,6 +31,7 @@ import org.jmol.util.ArrayUtil;
 import org.jmol.util.Elements;
 import org.jmol.util.Logger;
 import org.jmol.util.Quaternion;
+import org.jmol.util.TrajectorySteps;
 import org.jmol.viewer.JmolConstants;
 import org.jmol.script.Token;
 import org.jmol.viewer.Viewer;
@@ -82,6 +83,7 @@ public final class ModelLoader extends ModelSet {
     this.viewer = viewer;
     viewer.resetShapes();
     preserveState = viewer.getPreserveState();
+    setUseSpatialGrid(viewer.getUseSpatialGrid());
     initializeInfo(name, null);
     createModelSet(null, null, null);
     modelSetName = name;
@@ -99,6 +101,7 @@ public final class ModelLoader extends ModelSet {
     if (!merging)
       viewer.resetShapes();
     preserveState = viewer.getPreserveState();
+    setUseSpatialGrid(viewer.getUseSpatialGrid());
 
     Hashtable info = adapter
         .getAtomSetCollectionAuxiliaryInfo(atomSetCollection);
@@ -142,7 +145,7 @@ public final class ModelLoader extends ModelSet {
     isPDB = getModelSetAuxiliaryInfoBoolean("isPDB");
     jmolData = (String) getModelSetAuxiliaryInfo("jmolData");
     fileHeader = (String) getModelSetAuxiliaryInfo("fileHeader");
-    trajectorySteps = (Vector) getModelSetAuxiliaryInfo("trajectorySteps");
+    trajectorySteps = (TrajectorySteps) getModelSetAuxiliaryInfo("trajectorySteps");
     isTrajectory = (trajectorySteps != null);
     noAutoBond = getModelSetAuxiliaryInfoBoolean("noAutoBond");
     is2D = getModelSetAuxiliaryInfoBoolean("is2D");
@@ -160,6 +163,7 @@ public final class ModelLoader extends ModelSet {
   }
 
   private final Hashtable htAtomMap = new Hashtable();
+  private final Hashtable htAtomSymmetry = new Hashtable();
 
   private final static int defaultGroupCount = 32;
   private Chain[] chainOf;
@@ -199,6 +203,7 @@ public final class ModelLoader extends ModelSet {
     appendNew = (!merging || adapter == null || adapterModelCount > 1
         || isTrajectory || viewer.getAppendNew());
     htAtomMap.clear();
+    htAtomSymmetry.clear();
     chainOf = new Chain[defaultGroupCount];
     group3Of = new String[defaultGroupCount];
     seqcodes = new int[defaultGroupCount];
@@ -213,11 +218,8 @@ public final class ModelLoader extends ModelSet {
       baseModelCount = mergeModelSet.modelCount;
       baseTrajectoryCount = mergeModelSet.getTrajectoryCount();
       if (baseTrajectoryCount > 0) {
-        if (isTrajectory) {
-          for (int i = 0; i < trajectorySteps.size(); i++)
-            mergeModelSet.trajectorySteps.addElement(trajectorySteps
-                .elementAt(i));
-        }
+        if (isTrajectory)
+          mergeModelSet.trajectorySteps.addSteps(trajectorySteps);
         trajectorySteps = mergeModelSet.trajectorySteps;
       }
     }
@@ -353,6 +355,10 @@ public final class ModelLoader extends ModelSet {
       atomCount = 0;
       bondCount = 0;
       atoms = new Atom[nAtoms];
+      atomColixes = new short[nAtoms];
+      atomMads = new short[nAtoms];
+      atomVisibilityFlags = new int[nAtoms];
+      atomClickabilityFlags = new int[nAtoms];
       bonds = new Bond[250 + nAtoms]; // was "2 *" -- WAY overkill.
     }
     if (trajectoryCount > 1)
@@ -666,6 +672,15 @@ public final class ModelLoader extends ModelSet {
                        float vectorX, float vectorY, float vectorZ,
                        char alternateLocationID, float radius) {
     checkNewGroup(chainID, group3, groupSequenceNumber, groupInsertionCode);
+    if (atomSymmetry != null) {
+      // a lattice of cells gives every atom its own bitset, 
+      // but most of them are the same; only one of each is kept
+      BitSet bs = (BitSet) htAtomSymmetry.get(atomSymmetry);
+      if (bs == null)
+        htAtomSymmetry.put(atomSymmetry, atomSymmetry);
+      else
+        atomSymmetry = bs;
+    }
     byte specialAtomID = 0;
     if (atomName != null) {
       if (isPDB && atomName.indexOf('*') >= 0)
@@ -1090,6 +1105,7 @@ public final class ModelLoader extends ModelSet {
 
   private void freeze() {
     htAtomMap.clear();
+    htAtomSymmetry.clear();
     // resize arrays
     if (atomCount < atoms.length)
       growAtomArrays(atomCount);
@@ -1113,7 +1129,7 @@ public final class ModelLoader extends ModelSet {
 
     // finalize all group business
     if (isPDB)
-      calculateStructuresAllExcept(structuresDefinedInFile, true);
+      calculateStructuresAllExcept(structuresDefinedInFile, false, true);
 
     molecules = null;
     moleculeCount = 0;
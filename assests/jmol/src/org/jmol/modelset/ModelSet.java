@@ -156,6 +156,9 @@ abstract public class ModelSet extends ModelCollection {
         setTrajectory(i);
   }
 
+  private float[] trajectoryCoords;
+  private final Point3f ptTrajectory = new Point3f();
+
   public void setTrajectory(int modelIndex) {
     if (modelIndex < 0 || !models[modelIndex].isTrajectory)
       return;
@@ -168,11 +171,13 @@ abstract public class ModelSet extends ModelCollection {
       return;
     int baseModel = models[modelIndex].trajectoryBaseIndex;
     models[baseModel].selectedTrajectory = modelIndex;
-    Point3f[] trajectory = (Point3f[]) trajectorySteps.get(modelIndex);
+    trajectoryCoords = trajectorySteps.getStep(modelIndex, trajectoryCoords);
+    int n = trajectorySteps.getAtomCount(modelIndex);
     BitSet bs = new BitSet();
     int iMax = iFirst + getAtomCountInModel(baseModel);
-    for (int pt = 0, i = iFirst; i < iMax && pt < trajectory.length && trajectory[pt]!= null; i++) {
-      atoms[i].setFractionalCoord(trajectory[pt++], true);
+    for (int j = 0, pt = 0, i = iFirst; i < iMax && j < n; i++, j++) {
+      ptTrajectory.set(trajectoryCoords[pt++], trajectoryCoords[pt++], trajectoryCoords[pt++]);
+      atoms[i].setFractionalCoord(ptTrajectory, true);
       atoms[i].modelIndex = (short) modelIndex;
       bs.set(i);
     }
@@ -180,6 +185,7 @@ abstract public class ModelSet extends ModelCollection {
     // isosurface, and dots will work properly
     initializeBspf();
     bspf.clearBspt(baseModel);
+    clearSpatialGrid(baseModel);
     // Recalculate critical points for cartoons and such
     // note that models[baseModel] and models[modelIndex]
     // point to the same model. So there is only one copy of 
@@ -316,7 +322,7 @@ abstract public class ModelSet extends ModelCollection {
   ///////// atom and shape selecting /////////
   
   
-  public void calculateStructures(BitSet bsAtoms) {
+  public void calculateStructures(BitSet bsAtoms, boolean asDSSP) {
     BitSet bsAllAtoms = new BitSet();
     BitSet bsDefined = BitSetUtil.copyInvert(modelsOf(bsAtoms, bsAllAtoms),
         modelCount);
@@ -324,7 +330,7 @@ abstract public class ModelSet extends ModelCollection {
       if (!bsDefined.get(i))
         addBioPolymerToModel(null, models[i]);
     calculatePolymers(0, bsDefined);
-    calculateStructuresAllExcept(bsDefined, false);
+    calculateStructuresAllExcept(bsDefined, asDSSP, false);
     viewer.resetBioshapes(bsAllAtoms);
     setStructureIds();
   }
@@ -612,6 +618,7 @@ abstract public class ModelSet extends ModelCollection {
   public BitSet deleteModels(BitSet bsAtoms) {
     // full models are deleted for any model containing the specified atoms
     moleculeCount = 0;
+    modificationCount++;
     BitSet bsModels = getModelBitSet(bsAtoms, false);
     includeAllRelatedFrames(bsModels);
     int nAtomsDeleted = 0;
@@ -635,6 +642,7 @@ abstract public class ModelSet extends ModelCollection {
     // zero out reproducible arrays
 
     bspf = null;
+    spatialGrids = null;
 
     // create a new models array,
     // and pre-calculate Model.bsAtoms and Model.atomCount
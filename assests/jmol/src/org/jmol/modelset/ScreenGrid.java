@@ -0,0 +1,181 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-04-17 18:24:30 -0500 (Sat, 17 Apr 2010) $
+ *
+ * Copyright (C) 2010  Jmol Development, www.jmol.org
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.modelset;
+
+import java.util.BitSet;
+
+/**
+ *<p>
+ *  Atoms bucketed by their screenX and screenY, for picking.
+ *</p>
+ *<p>
+ *  The screen is divided into square cells, and the atoms are sorted by
+ *  cell into flat arrays, as in org.jmol.bspt.SpatialGrid: cellStart[c] is
+ *  the first slot of cell c, and cellStart[c + 1] is one past its last slot.
+ *  Cells are numbered iy * nx + ix.
+ *</p>
+ *<p>
+ *  The grid is a snapshot of the screen positions from the last
+ *  transformation; AtomCollection discards it when any of those change.
+ *</p>
+ */
+
+final class ScreenGrid {
+
+  private final static int MIN_CELL_SIZE = 16;
+
+  // no more than this many cells per atom
+  private final static int MAX_CELLS_PER_ATOM = 2;
+
+  private int cellSize;
+  private int x0, y0;
+  private int nx, ny;
+  private int[] cellStart;
+  private int[] indexes;
+  private int[] xs, ys;
+
+  /**
+   * the largest picking radius in the grid, in pixels
+   */
+  int maxRadius;
+
+  /**
+   * the smallest and largest screenZ of the atoms in the grid in front of
+   * the camera
+   */
+  int minZ, maxZ;
+
+  /**
+   *
+   * @param atoms
+   * @param bs         the atoms to include -- those just transformed
+   * @param minRadius  the minimum picking radius
+   */
+  ScreenGrid(Atom[] atoms, BitSet bs, int minRadius) {
+    int count = bs.cardinality();
+    int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE;
+    int xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
+    minZ = Integer.MAX_VALUE;
+    maxZ = 0;
+    maxRadius = minRadius;
+    for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+      Atom atom = atoms[i];
+      int x = atom.screenX;
+      int y = atom.screenY;
+      if (x < xMin)
+        xMin = x;
+      if (x > xMax)
+        xMax = x;
+      if (y < yMin)
+        yMin = y;
+      if (y > yMax)
+        yMax = y;
+      int z = atom.screenZ;
+      if (z > 1) {
+        if (z < minZ)
+          minZ = z;
+        if (z > maxZ)
+          maxZ = z;
+      }
+      int r = atom.screenDiameter / 2;
+      if (r > maxRadius)
+        maxRadius = r;
+    }
+    if (count == 0)
+      xMin = yMin = xMax = yMax = 0;
+    if (minZ > maxZ)
+      minZ = maxZ = 0;
+    x0 = xMin;
+    y0 = yMin;
+    cellSize = MIN_CELL_SIZE;
+    while (true) {
+      nx = (int) (((long) xMax - x0) / cellSize) + 1;
+      ny = (int) (((long) yMax - y0) / cellSize) + 1;
+      if ((long) nx * ny <= (long) MAX_CELLS_PER_ATOM * count + 64)
+        break;
+      cellSize *= 2;
+    }
+    int nCells = nx * ny;
+    cellStart = new int[nCells + 1];
+    indexes = new int[count];
+    xs = new int[count];
+    ys = new int[count];
+
+    // counting sort by cell; going through the atoms in order
+    // leaves each cell sorted by atom index
+
+    int[] cells = new int[count];
+    int n = 0;
+    for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+      int c = cells[n++] = getCell(atoms[i].screenX, atoms[i].screenY);
+      cellStart[c + 1]++;
+    }
+    for (int c = 0; c < nCells; c++)
+      cellStart[c + 1] += cellStart[c];
+    int[] next = new int[nCells];
+    System.arraycopy(cellStart, 0, next, 0, nCells);
+    n = 0;
+    for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+      int s = next[cells[n++]]++;
+      indexes[s] = i;
+      xs[s] = atoms[i].screenX;
+      ys[s] = atoms[i].screenY;
+    }
+  }
+
+  private int getCell(int x, int y) {
+    return (int) (((long) y - y0) / cellSize) * nx
+        + (int) (((long) x - x0) / cellSize);
+  }
+
+  /**
+   * finds the atoms that were placed within a screen rectangle
+   *
+   * @param xMin
+   * @param yMin
+   * @param xMax
+   * @param yMax
+   * @param bs    set for each atom found
+   * @return      the number of atoms found
+   */
+  int findAtoms(int xMin, int yMin, int xMax, int yMax, BitSet bs) {
+    long ix0 = Math.max(0, ((long) xMin - x0) / cellSize);
+    long iy0 = Math.max(0, ((long) yMin - y0) / cellSize);
+    long ix1 = Math.min(nx - 1, ((long) xMax - x0) / cellSize);
+    long iy1 = Math.min(ny - 1, ((long) yMax - y0) / cellSize);
+    if (xMax < x0 || yMax < y0)
+      return 0;
+    int n = 0;
+    for (int iy = (int) iy0; iy <= iy1; iy++)
+      for (int c = iy * nx + (int) ix0, c1 = iy * nx + (int) ix1; c <= c1; c++)
+        for (int s = cellStart[c], s1 = cellStart[c + 1]; s < s1; s++) {
+          int x = xs[s];
+          int y = ys[s];
+          if (x >= xMin && x <= xMax && y >= yMin && y <= yMax) {
+            bs.set(indexes[s]);
+            n++;
+          }
+        }
+    return n;
+  }
+}
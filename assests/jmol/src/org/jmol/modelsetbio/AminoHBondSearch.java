@@ -0,0 +1,610 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.modelsetbio;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import javax.vecmath.Point3f;
+import javax.vecmath.Vector3f;
+
+import org.jmol.bspt.GridIterator;
+import org.jmol.bspt.SpatialGrid;
+import org.jmol.modelset.Atom;
+import org.jmol.modelset.HBond;
+import org.jmol.modelset.Polymer;
+import org.jmol.util.ArrayUtil;
+import org.jmol.util.ParallelTasks;
+import org.jmol.viewer.JmolConstants;
+import org.jmol.viewer.Viewer;
+
+/**
+ *<p>
+ * Backbone hydrogen bonds among all the amino polymers of a model, found
+ * through a SpatialGrid of alpha carbons rather than by checking every
+ * residue of every chain for each N-H.
+ *</p>
+ *<p>
+ * The residues of the amino polymers are numbered in order, polymer by
+ * polymer, so that a residue and the one after it in the same polymer
+ * have consecutive numbers. Only residues with a carbonyl oxygen -- and,
+ * for getRasmolHydrogenBonds, one in bsB -- are put in the grid.
+ *</p>
+ *<p>
+ * Donor chains are searched in parallel when there is an executor
+ * (multiProcessor), each task taking whole polymers.
+ *</p>
+ *<p>
+ * getRasmolHydrogenBonds finds exactly what AminoPolymer.calcRasmolHydrogenBonds
+ * finds for each pair of chains. calculateStructures is the DSSP alternative
+ * to AminoPolymer.calculateStructures:
+ *</p>
+ *<p>
+ * W. Kabsch and C. Sander, "Dictionary of protein secondary structure:
+ * pattern recognition of hydrogen-bonded and geometrical features,"
+ * Biopolymers 22 (1983) 2577-2637
+ *</p>
+ */
+public final class AminoHBondSearch {
+
+  // smaller structures are searched on the calling thread
+  private final static int MIN_RESIDUES_PER_THREAD = 500;
+
+  // alpha carbons farther apart than this are not checked
+  private final static float maxHbondAlphaDistance = 9;
+  private final static float maxHbondAlphaDistance2 =
+    maxHbondAlphaDistance * maxHbondAlphaDistance;
+
+  // DSSP: a hydrogen bond is better than -0.5 kcal/mol, counted as -9.9
+  // at best, or when any two atoms are closer than 0.5 Angstroms
+  private final static int maxDsspEnergy = -500;
+  private final static int minDsspEnergy = -9900;
+  private final static float minimumDsspDistance2 = 0.25f;
+
+  private int bioPolymerCount;
+  private AminoPolymer[] polymers;
+  private int[] firstResidues;
+  private int residueCount;
+  private AminoMonomer[] residues;
+  private int[] polymerIndexes;
+  private Point3f[] alphas;
+  private SpatialGrid grid;
+
+  /**
+   * @param bioPolymers
+   * @param bioPolymerCount
+   * @param bsB  the carbonyl oxygen atoms that may accept, or null for all
+   */
+  public AminoHBondSearch(Polymer[] bioPolymers, int bioPolymerCount, BitSet bsB) {
+    this.bioPolymerCount = bioPolymerCount;
+    polymers = new AminoPolymer[bioPolymerCount];
+    firstResidues = new int[bioPolymerCount];
+    for (int i = 0; i < bioPolymerCount; i++) {
+      firstResidues[i] = residueCount;
+      if (bioPolymers[i] instanceof AminoPolymer)
+        residueCount += (polymers[i] = (AminoPolymer) bioPolymers[i]).monomerCount;
+    }
+    residues = new AminoMonomer[residueCount];
+    polymerIndexes = new int[residueCount];
+    alphas = new Point3f[residueCount];
+    BitSet bsAcceptors = new BitSet();
+    for (int i = 0; i < bioPolymerCount; i++) {
+      AminoPolymer p = polymers[i];
+      if (p == null)
+        continue;
+      for (int k = 0, r = firstResidues[i]; k < p.monomerCount; k++, r++) {
+        AminoMonomer m = residues[r] = (AminoMonomer) p.monomers[k];
+        polymerIndexes[r] = i;
+        alphas[r] = m.getLeadAtom();
+        if (m.hasOAtom()
+            && (bsB == null || bsB.get(m.getCarbonylOxygenAtom().index)))
+          bsAcceptors.set(r);
+      }
+    }
+    grid = new SpatialGrid(alphas, bsAcceptors, maxHbondAlphaDistance / 2);
+  }
+
+  /**
+   * @param r
+   * @param n
+   * @return the residue n after r in the same polymer, or -1
+   */
+  private int getResidue(int r, int n) {
+    int r1 = r + n;
+    return (r < 0 || r1 < 0 || r1 >= residueCount
+        || polymerIndexes[r1] != polymerIndexes[r] ? -1 : r1);
+  }
+
+  ////////////// RasMol hydrogen bonds //////////////
+
+  private BitSet bsA;
+  private int nMaxPerResidue;
+  private Vector[] vHBonds;
+
+  /**
+   * For each amino polymer, the bonds AminoPolymer.calcRasmolHydrogenBonds
+   * would find with it as the donor chain, in the order of
+   * BondCollection.getRasmolHydrogenBonds: those within the chain, and then
+   * those to each of the others, from the last to the first.
+   *
+   * @param bsA       the amide nitrogen atoms that may donate
+   * @param nMaxPerResidue
+   * @param executor  the viewer's, or null
+   * @return a Vector of HBond for each polymer; null if not amino
+   */
+  public Vector[] getRasmolHydrogenBonds(BitSet bsA, int nMaxPerResidue,
+                                         Object executor) {
+    this.bsA = bsA;
+    this.nMaxPerResidue = nMaxPerResidue;
+    vHBonds = new Vector[bioPolymerCount];
+    search(false, executor);
+    return vHBonds;
+  }
+
+  ////////////// DSSP //////////////
+
+  private int[] acceptors1, acceptors2;
+  private int[] energies1, energies2;
+
+  /**
+   * Replaces AminoPolymer.calculateStructures for each amino polymer that
+   * has its carbonyl oxygens, using the DSSP hydrogen bonds of the backbone:
+   * n-turns, alpha (H), 3-10 (G), and pi (I) helices, and bridges (B) and
+   * ladders of them (E), allowing for bulges, in the DSSP order of
+   * priority. Bridges and ladders may be between chains.
+   *
+   * @param executor  the viewer's, or null
+   */
+  public void calculateStructures(Object executor) {
+    acceptors1 = new int[residueCount];
+    acceptors2 = new int[residueCount];
+    energies1 = new int[residueCount];
+    energies2 = new int[residueCount];
+    for (int r = residueCount; --r >= 0;) {
+      acceptors1[r] = acceptors2[r] = -1;
+      energies1[r] = energies2[r] = maxDsspEnergy;
+    }
+    search(true, executor);
+    char[] codes = new char[residueCount];
+    for (int r = residueCount; --r >= 0;)
+      codes[r] = ' ';
+    setHelices(codes, 4, 'H');
+    setLadders(codes);
+    setHelices(codes, 3, 'G');
+    setHelices(codes, 5, 'I');
+    setTurns(codes);
+    for (int i = 0; i < bioPolymerCount; i++) {
+      AminoPolymer p = polymers[i];
+      if (p == null)
+        continue;
+      if (p.hasWingPoints())
+        p.setDsspStructures(codes, firstResidues[i]);
+      else
+        p.calculateStructures();
+    }
+  }
+
+  /**
+   * @param a  acceptor residue
+   * @param d  donor residue
+   * @return true if the C=O of a is one of the two best for the N-H of d
+   */
+  private boolean isBond(int a, int d) {
+    return (a >= 0 && d >= 0 && (acceptors1[d] == a || acceptors2[d] == a));
+  }
+
+  private boolean isTurn(int r, int n) {
+    return isBond(r, getResidue(r, n));
+  }
+
+  /**
+   * a minimal helix of n-turns at r - 1 and r makes r through r + n - 1
+   * helical; 3-10 and pi helices only where nothing else is
+   *
+   * @param codes
+   * @param n
+   * @param code
+   */
+  private void setHelices(char[] codes, int n, char code) {
+    for (int r = 0; r < residueCount; r++)
+      if (isTurn(r, n) && isTurn(getResidue(r, -1), n)
+          && (code == 'H' || isFree(codes, r, n, code)))
+        for (int k = 0; k < n; k++)
+          codes[r + k] = code;
+  }
+
+  private static boolean isFree(char[] codes, int r, int n, char code) {
+    for (int k = 0; k < n; k++)
+      if (codes[r + k] != ' ' && codes[r + k] != code)
+        return false;
+    return true;
+  }
+
+  private void setTurns(char[] codes) {
+    for (int n = 3; n <= 5; n++)
+      for (int r = 0; r < residueCount; r++)
+        if (isTurn(r, n))
+          for (int k = 1; k < n; k++)
+            if (codes[r + k] == ' ')
+              codes[r + k] = 'T';
+  }
+
+  private final static int BRIDGE_PARALLEL = 1;
+  private final static int BRIDGE_ANTIPARALLEL = 2;
+
+  /**
+   * @param i
+   * @param j
+   * @return the type of bridge between residues i and j, or 0
+   */
+  private int getBridgeType(int i, int j) {
+    if (polymerIndexes[i] == polymerIndexes[j] && Math.abs(i - j) < 3)
+      return 0;
+    int a = getResidue(i, -1);
+    int b = getResidue(i, 1);
+    int c = getResidue(j, -1);
+    int d = getResidue(j, 1);
+    if (a < 0 || b < 0 || c < 0 || d < 0)
+      return 0;
+    if (isBond(a, j) && isBond(j, b) || isBond(c, i) && isBond(i, d))
+      return BRIDGE_PARALLEL;
+    if (isBond(i, j) && isBond(j, i) || isBond(a, d) && isBond(c, b))
+      return BRIDGE_ANTIPARALLEL;
+    return 0;
+  }
+
+  private class Ladder {
+    int type;
+    int iFirst, iLast;
+    int jFirst, jLast;
+    int jMin, jMax;
+    boolean isStrand;
+
+    Ladder(int type, int i, int j) {
+      this.type = type;
+      iFirst = iLast = i;
+      jFirst = jLast = jMin = jMax = j;
+    }
+
+    void add(int i, int j) {
+      iLast = i;
+      jLast = j;
+      if (j < jMin)
+        jMin = j;
+      if (j > jMax)
+        jMax = j;
+      isStrand = true;
+    }
+
+    /**
+     * @return the key of the bridge that would continue this ladder
+     */
+    Long getNextKey() {
+      int i = getResidue(iLast, 1);
+      int j = getResidue(jLast, type == BRIDGE_PARALLEL ? 1 : -1);
+      return (i < 0 || j < 0 ? null : new Long(getKey(i, j)));
+    }
+
+    void setCodes(char[] codes, int iMin, int iMax, int jMin, int jMax,
+                  char code) {
+      for (int r = iMin; r <= iMax; r++)
+        if (codes[r] == ' ' || codes[r] == 'B')
+          codes[r] = code;
+      for (int r = jMin; r <= jMax; r++)
+        if (codes[r] == ' ' || codes[r] == 'B')
+          codes[r] = code;
+    }
+  }
+
+  private static long getKey(int i, int j) {
+    return ((long) i << 32) | j;
+  }
+
+  /**
+   * bridges, from the hydrogen bonds that could make them, then ladders of
+   * consecutive bridges of one type, and then ladders linked by a bulge
+   *
+   * @param codes
+   */
+  private void setLadders(char[] codes) {
+    long[] keys = new long[16];
+    int n = 0;
+    for (int d = 0; d < residueCount; d++)
+      for (int k = 0; k < 2; k++) {
+        int a = (k == 0 ? acceptors1[d] : acceptors2[d]);
+        if (a < 0)
+          continue;
+        int a1 = getResidue(a, 1);
+        int[] pairs = new int[] { a, d, a1, d, a1, getResidue(d, -1) };
+        for (int p = 0; p < 6; p += 2) {
+          int i = pairs[p];
+          int j = pairs[p + 1];
+          if (i < 0 || j < 0 || i == j)
+            continue;
+          if (n + 1 >= keys.length) {
+            long[] k2 = new long[keys.length * 2];
+            System.arraycopy(keys, 0, k2, 0, n);
+            keys = k2;
+          }
+          keys[n++] = (i < j ? getKey(i, j) : getKey(j, i));
+        }
+      }
+    Arrays.sort(keys, 0, n);
+    Vector ladders = new Vector();
+    Hashtable htNext = new Hashtable();
+    for (int p = 0; p < n; p++) {
+      if (p > 0 && keys[p] == keys[p - 1])
+        continue;
+      int i = (int) (keys[p] >> 32);
+      int j = (int) keys[p];
+      int type = getBridgeType(i, j);
+      if (type == 0)
+        continue;
+      Long key = new Long(keys[p]);
+      Ladder ladder = (Ladder) htNext.remove(key);
+      if (ladder != null && ladder.type == type) {
+        ladder.add(i, j);
+      } else {
+        ladder = new Ladder(type, i, j);
+        ladders.add(ladder);
+      }
+      if ((key = ladder.getNextKey()) != null)
+        htNext.put(key, ladder);
+    }
+    int nLadders = ladders.size();
+    for (int p = 0; p < nLadders; p++) {
+      Ladder l1 = (Ladder) ladders.get(p);
+      for (int q = p + 1; q < nLadders; q++) {
+        Ladder l2 = (Ladder) ladders.get(q);
+        int iGap = l2.iFirst - l1.iLast;
+        if (iGap >= 6)
+          break;
+        if (iGap <= 0 || l1.type != l2.type
+            || polymerIndexes[l1.iLast] != polymerIndexes[l2.iFirst]
+            || polymerIndexes[l1.jMin] != polymerIndexes[l2.jMin])
+          continue;
+        int jGap = (l1.type == BRIDGE_PARALLEL ? l2.jMin - l1.jMax : l1.jMin
+            - l2.jMax);
+        if (jGap <= 0 || !(jGap < 6 && iGap < 3 || jGap < 3))
+          continue;
+        l1.isStrand = l2.isStrand = true;
+        l1.setCodes(codes, l1.iFirst, l2.iLast, Math.min(l1.jMin, l2.jMin),
+            Math.max(l1.jMax, l2.jMax), 'E');
+      }
+    }
+    for (int p = 0; p < nLadders; p++) {
+      Ladder l = (Ladder) ladders.get(p);
+      l.setCodes(codes, l.iFirst, l.iLast, l.jMin, l.jMax, l.isStrand ? 'E'
+          : 'B');
+    }
+  }
+
+  ////////////// the search //////////////
+
+  private void search(boolean isDssp, Object executor) {
+    int nThreads = ParallelTasks.getTaskCount(executor, Viewer.nProcessors,
+        residueCount, MIN_RESIDUES_PER_THREAD);
+    if (nThreads < 2) {
+      new Search(0, bioPolymerCount, isDssp).search();
+      return;
+    }
+    // whole polymers, about the same number of residues for each task
+    Vector tasks = new Vector();
+    for (int i0 = 0, i = 0; i < bioPolymerCount; i++) {
+      int r1 = (i + 1 == bioPolymerCount ? residueCount : firstResidues[i + 1]);
+      if ((long) r1 * nThreads >= (long) residueCount * (tasks.size() + 1)) {
+        tasks.add(new Search(i0, i + 1, isDssp));
+        i0 = i + 1;
+      }
+    }
+    Runnable[] a = new Runnable[tasks.size()];
+    tasks.copyInto(a);
+    ParallelTasks.run(executor, a, "AminoHBondSearch");
+  }
+
+  /**
+   * the donors of a range of polymers, with a grid iterator of their own
+   */
+  private class Search implements Runnable {
+
+    private int i0, i1;
+    private boolean isDssp;
+    private GridIterator iter = grid.allocateIterator();
+    private Point3f pt = new Point3f();
+    private Vector3f vNH = new Vector3f();
+    private int[] found = new int[32];
+
+    Search(int i0, int i1, boolean isDssp) {
+      this.i0 = i0;
+      this.i1 = i1;
+      this.isDssp = isDssp;
+    }
+
+    public void run() {
+      search();
+    }
+
+    void search() {
+      for (int i = i0; i < i1; i++)
+        if (polymers[i] != null) {
+          if (isDssp)
+            getDsspBonds(i);
+          else
+            vHBonds[i] = getRasmolHydrogenBonds(i);
+        }
+    }
+
+    /**
+     * @param r
+     * @return the number of acceptor residues with an alpha carbon within
+     *         9 Angstroms of that of r, in found[], in order
+     */
+    private int findAcceptors(int r) {
+      Point3f alpha = alphas[r];
+      int n = 0;
+      iter.initialize(alpha, maxHbondAlphaDistance + 0.01f, false);
+      while (iter.hasMoreElements()) {
+        int r1 = iter.nextElement();
+        if (alpha.distanceSquared(alphas[r1]) > maxHbondAlphaDistance2)
+          continue;
+        if (n == found.length)
+          found = ArrayUtil.doubleLength(found);
+        found[n++] = r1;
+      }
+      iter.release();
+      Arrays.sort(found, 0, n);
+      return n;
+    }
+
+    /**
+     * AminoPolymer.checkRasmolHydrogenBond for each donor of this polymer,
+     * but only for the acceptors found in the grid. Those of each target
+     * chain are checked from last to first, as there, so that ties are
+     * broken the same way.
+     *
+     * @param iDonor
+     * @return the bonds, ordered as described for getRasmolHydrogenBonds
+     */
+    private Vector getRasmolHydrogenBonds(int iDonor) {
+      AminoPolymer p = polymers[iDonor];
+      int r0 = firstResidues[iDonor];
+      Vector[] vTargets = new Vector[bioPolymerCount];
+      for (int i = 1; i < p.monomerCount; ++i) { //not first N
+        AminoMonomer source = residues[r0 + i];
+        if (!source.getNHPoint(pt, vNH))
+          continue;
+        Atom nitrogen = source.getNitrogenAtom();
+        if (!bsA.get(nitrogen.index))
+          continue;
+        for (int j = findAcceptors(r0 + i); --j >= 0;) {
+          int t = polymerIndexes[found[j]];
+          int j0 = j;
+          while (j0 > 0 && polymerIndexes[found[j0 - 1]] == t)
+            j0--;
+          int indexDonor = (t == iDonor ? i : -100);
+          int energyMin1 = 0;
+          int energyMin2 = 0;
+          int indexMin1 = -1;
+          int indexMin2 = -1;
+          for (int k = j; k >= j0; k--) {
+            int m = found[k] - firstResidues[t];
+            if (m == indexDonor || m + 1 == indexDonor || m - 1 == indexDonor)
+              continue;
+            int energy = AminoPolymer.calcHbondEnergy(nitrogen, nitrogen, pt,
+                residues[found[k]]);
+            if (energy < energyMin1) {
+              energyMin2 = energyMin1;
+              indexMin2 = indexMin1;
+              energyMin1 = energy;
+              indexMin1 = m;
+            } else if (energy < energyMin2) {
+              energyMin2 = energy;
+              indexMin2 = m;
+            }
+          }
+          if (indexMin1 >= 0) {
+            Vector v = vTargets[t];
+            if (v == null)
+              v = vTargets[t] = new Vector();
+            AminoPolymer target = polymers[t];
+            AminoPolymer.addResidueHydrogenBond(nitrogen,
+                ((AminoMonomer) target.monomers[indexMin1])
+                    .getCarbonylOxygenAtom(), indexDonor, indexMin1,
+                energyMin1 / 1000f, v);
+            if (indexMin2 >= 0 && nMaxPerResidue > 1)
+              AminoPolymer.addResidueHydrogenBond(nitrogen,
+                  ((AminoMonomer) target.monomers[indexMin2])
+                      .getCarbonylOxygenAtom(), indexDonor, indexMin2,
+                  energyMin2 / 1000f, v);
+          }
+          j = j0;
+        }
+      }
+      Vector v = new Vector();
+      if (vTargets[iDonor] != null)
+        v.addAll(vTargets[iDonor]);
+      for (int t = bioPolymerCount; --t >= 0;)
+        if (t != iDonor && vTargets[t] != null)
+          v.addAll(vTargets[t]);
+      return v;
+    }
+
+    /**
+     * the two best acceptors for each N-H of this polymer, with the
+     * hydrogen placed as DSSP places it, 1 Angstrom from N opposite the
+     * C=O of the residue before
+     *
+     * @param iDonor
+     */
+    private void getDsspBonds(int iDonor) {
+      AminoPolymer p = polymers[iDonor];
+      int r0 = firstResidues[iDonor];
+      for (int i = 1; i < p.monomerCount; ++i) {
+        int r = r0 + i;
+        AminoMonomer source = residues[r];
+        AminoMonomer prev = residues[r - 1];
+        if (source.getGroupID() == JmolConstants.GROUPID_PROLINE
+            || !prev.hasOAtom())
+          continue;
+        Atom nitrogen = source.getNitrogenAtom();
+        vNH.sub(prev.getCarbonylCarbonAtom(), prev.getCarbonylOxygenAtom());
+        vNH.normalize();
+        pt.add(nitrogen, vNH);
+        for (int j = findAcceptors(r), k = 0; k < j; k++) {
+          int a = found[k];
+          if (a == r || a == r - 1)
+            continue;
+          int energy = getDsspEnergy(nitrogen, pt, residues[a]);
+          if (energy < energies1[r]) {
+            energies2[r] = energies1[r];
+            acceptors2[r] = acceptors1[r];
+            energies1[r] = energy;
+            acceptors1[r] = a;
+          } else if (energy < energies2[r]) {
+            energies2[r] = energy;
+            acceptors2[r] = a;
+          }
+        }
+      }
+    }
+  }
+
+  private static int getDsspEnergy(Point3f nitrogenPoint, Point3f hydrogenPoint,
+                                   AminoMonomer target) {
+    Point3f oxygenPoint = target.getCarbonylOxygenAtom();
+    Point3f carbonPoint = target.getCarbonylCarbonAtom();
+    float distON2 = oxygenPoint.distanceSquared(nitrogenPoint);
+    float distOH2 = oxygenPoint.distanceSquared(hydrogenPoint);
+    float distCH2 = carbonPoint.distanceSquared(hydrogenPoint);
+    float distCN2 = carbonPoint.distanceSquared(nitrogenPoint);
+    if (distON2 < minimumDsspDistance2 || distOH2 < minimumDsspDistance2
+        || distCH2 < minimumDsspDistance2 || distCN2 < minimumDsspDistance2)
+      return minDsspEnergy;
+    int energy = HBond.getEnergy(Math.sqrt(distOH2), Math.sqrt(distCH2), Math
+        .sqrt(distCN2), Math.sqrt(distON2));
+    return (energy < minDsspEnergy ? minDsspEnergy : energy);
+  }
+}
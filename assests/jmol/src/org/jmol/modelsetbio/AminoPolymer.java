@@ -123,7 +123,7 @@ public class AminoPolymer extends AlphaPolymer {
   }
 
   //private int hPtr = 0;
-  private int calcHbondEnergy(Atom nitrogen, Point3f nitrogenPoint,
+  static int calcHbondEnergy(Atom nitrogen, Point3f nitrogenPoint,
                       Point3f hydrogenPoint, AminoMonomer target) {
     Point3f targetOxygenPoint = target.getCarbonylOxygenAtom();
 
@@ -173,7 +173,7 @@ public class AminoPolymer extends AlphaPolymer {
     return (!isHbond ? 0 : energy < -9900 ? -9900 : energy);
   }
 
-  private void addResidueHydrogenBond(Atom nitrogen, Atom oxygen, int indexAminoGroup,
+  static void addResidueHydrogenBond(Atom nitrogen, Atom oxygen, int indexAminoGroup,
                                       int indexCarbonylGroup, float energy,
                                       Vector vHBonds) {
     int order;
@@ -309,6 +309,42 @@ public class AminoPolymer extends AlphaPolymer {
     }
   }
 
+  /**
+   * The DSSP alternative to calculateStructures(), from the codes that
+   * AminoHBondSearch.calculateStructures found for the residues of all the
+   * chains of the model: H, G, and I are helices, E is a sheet, and T is a
+   * turn. An isolated bridge (B) is not a structure here.
+   * 
+   * @param codes
+   * @param offset  where the codes of this polymer start
+   */
+  void setDsspStructures(char[] codes, int offset) {
+    for (int start = 0; start < monomerCount; ++start) {
+      char code = codes[offset + start];
+      int end;
+      for (end = start + 1; end < monomerCount && codes[offset + end] == code; ++end) {
+      }
+      end--;
+      switch (code) {
+      case 'H':
+      case 'G':
+      case 'I':
+        addSecondaryStructure(JmolConstants.PROTEIN_STRUCTURE_HELIX, null, 0, 0, start,
+            end);
+        break;
+      case 'E':
+        addSecondaryStructure(JmolConstants.PROTEIN_STRUCTURE_SHEET, null, 0, 0, start,
+            end);
+        break;
+      case 'T':
+        addSecondaryStructure(JmolConstants.PROTEIN_STRUCTURE_TURN, null, 0, 0, start,
+            end);
+        break;
+      }
+      start = end;
+    }
+  }
+
   protected void resetHydrogenPoints() {
     ProteinStructure ps;
     ProteinStructure psLast = null;
@@ -348,9 +348,21 @@ public abstract class BioPolymer extends Polymer {
 
   private final Vector3f unitVectorX = new Vector3f(1, 0, 0);
 
+  /**
+   * @param xMouse
+   * @param yMouse
+   * @param closest
+   * @param mads
+   * @param myVisibilityFlag
+   * @param bsNot
+   * @param bsMonomers  the monomers to check, or null for all
+   */
   public void findNearestAtomIndex(int xMouse, int yMouse, Atom[] closest,
-                                   short[] mads, int myVisibilityFlag, BitSet bsNot) {
-    for (int i = monomerCount; --i >= 0;) {
+                                   short[] mads, int myVisibilityFlag,
+                                   BitSet bsNot, BitSet bsMonomers) {
+    for (int i = (bsMonomers == null ? monomerCount : bsMonomers.length()); --i >= 0;) {
+      if (bsMonomers != null && !bsMonomers.get(i))
+        continue;
       if ((monomers[i].shapeVisibilityFlags & myVisibilityFlag) == 0)
         continue;
       Atom a = monomers[i].getLeadAtom();
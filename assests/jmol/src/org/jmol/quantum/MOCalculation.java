@@ -92,6 +92,11 @@ public class MOCalculation extends QuantumCalculation implements
     MOCalculationInterface {
 
   private final static double CUT = -50;
+
+  // a primitive a exp(-alpha r^2) is skipped wherever 
+  // alpha r^2 > ln|a| + GAUSSIAN_CUT, that is, where it is
+  // less than about 1e-13 (times its polynomial factor)
+  private final static double GAUSSIAN_CUT = 30;
   
   private final static int MAX_GRID = Parameters.MO_MAX_GRID;
   // slater coefficients in Bohr
@@ -160,13 +165,42 @@ public class MOCalculation extends QuantumCalculation implements
         bsSelected, atomCoordAngstroms);
     atomIndex = firstAtomOffset - 1;
     doDebug = (Logger.debugging);
+    if (slaters == null) {
+      if (!checkCalculationType())
+        return;
+      check5D();
+    }
+    if (!calculateSlabs(volumeData.getOriginFloat(), volumeData
+        .getVolumetricVectorLengths(), bsSelected, atomCoordAngstroms))
+      calculateSlab();
+    if (doDebug || testing || isElectronDensity)
+      calculateElectronDensity(nuclearCharges);
+  }  
+
+  protected QuantumCalculation getSlab() {
+    // also sharing voxelDataTemp
+    MOCalculation slab = new MOCalculation();
+    slab.calculationType = calculationType;
+    slab.firstAtomOffset = firstAtomOffset;
+    slab.shells = shells;
+    slab.gaussians = gaussians;
+    slab.dfCoefMaps = dfCoefMaps;
+    slab.slaters = slaters;
+    slab.moCoefficients = moCoefficients;
+    slab.isElectronDensity = isElectronDensity;
+    slab.doNormalize = doNormalize;
+    slab.as5D = as5D;
+    slab.voxelDataTemp = voxelDataTemp;
+    slab.atomIndex = firstAtomOffset - 1;
+    return slab;
+  }
+
+  protected void calculateSlab() {
     if (slaters == null)
       createGaussianCube();
     else
       createSlaterCube();
-    if (doDebug || testing || isElectronDensity)
-      calculateElectronDensity(nuclearCharges);
-  }  
+  }
 
   public void calculateElectronDensity(float[] nuclearCharges) {
     //TODO
@@ -193,9 +227,6 @@ public class MOCalculation extends QuantumCalculation implements
   }
 
   private void createGaussianCube() {
-    if (!checkCalculationType())
-      return;
-    check5D();
     int nShells = shells.size();
     // each STO shell is the combination of one or more gaussians
     moCoeff = 0;
@@ -312,7 +343,20 @@ public class MOCalculation extends QuantumCalculation implements
     }
   }
   
+  /**
+   * Limits the grid for this primitive to where it
+   * is not negligible.
+   * 
+   * @param alpha
+   * @param aMax  the sum of the absolute values of its coefficients
+   */
+  private void setRange(float alpha, float aMax) {
+    double x = GAUSSIAN_CUT + Math.log(aMax);
+    thisAtom.setRange(x <= 0 ? 0 : (float) Math.sqrt(x / alpha));
+  }
+
   private void setTemp() {
+    thisAtom.setRange(rangeBohrOrAngstroms);
     for (int ix = xMax; --ix >= xMin;) {
       for (int iy = yMax; --iy >= yMin;) {
         for (int iz = zMax; --iz >= zMin;) {
@@ -340,6 +384,7 @@ public class MOCalculation extends QuantumCalculation implements
       float a = m1 * c1;
       if (doNormalize)
         a *= (float) Math.pow(alpha, 0.75) * 0.712705470f;
+      setRange(alpha, Math.abs(a));
       // the coefficients are all included with the X factor here
 
       for (int i = xMax; --i >= xMin;) {
@@ -513,6 +558,7 @@ public class MOCalculation extends QuantumCalculation implements
   }
 
   private void calcSP(float alpha, float as, float ax, float ay, float az) {
+    setRange(alpha, Math.abs(as) + Math.abs(ax) + Math.abs(ay) + Math.abs(az));
     setCE(CX, EX, alpha, as, ax, ay, az);
     for (int ix = xMax; --ix >= xMin;) {
       float eX = EX[ix];
@@ -558,6 +604,8 @@ public class MOCalculation extends QuantumCalculation implements
       float axy = a * mxy;
       float axz = a * mxz;
       float ayz = a * myz;
+      setRange(alpha, Math.abs(axx) + Math.abs(ayy) + Math.abs(azz)
+          + Math.abs(axy) + Math.abs(axz) + Math.abs(ayz));
       setCE(CX, EX, alpha, 0, axx, ayy, azz);
 
       for (int i = xMax; --i >= xMin;) {
@@ -645,6 +693,9 @@ public class MOCalculation extends QuantumCalculation implements
       ad2p = a * m2p;
       ad2n = a * m2n;
 
+      setRange(alpha, norm1
+          * (Math.abs(ad0) + Math.abs(ad1p) + Math.abs(ad1n) + Math.abs(ad2p) + Math
+              .abs(ad2n)));
       setE(EX, alpha);
 
       for (int ix = xMax; --ix >= xMin;) {
@@ -725,7 +776,6 @@ public class MOCalculation extends QuantumCalculation implements
     for (int ig = 0; ig < nGaussians; ig++) {
       alpha = gaussians[gaussianPtr + ig][0];
       c1 = gaussians[gaussianPtr + ig][1];
-      setE(EX, alpha);
 
       // common factor of contraction coefficient and alpha normalization 
       // factor; only call pow once per primitive
@@ -744,6 +794,11 @@ public class MOCalculation extends QuantumCalculation implements
       ayyz = a * norm2 * myyz;
       axyz = a * norm1 * mxyz;
 
+      setRange(alpha, Math.abs(axxx) + Math.abs(ayyy) + Math.abs(azzz)
+          + Math.abs(axyy) + Math.abs(axxy) + Math.abs(axxz) + Math.abs(axzz)
+          + Math.abs(ayzz) + Math.abs(ayyz) + Math.abs(axyz));
+      setE(EX, alpha);
+
       for (int ix = xMax; --ix >= xMin;) {
         x = X[ix];
         xx = x * x;
@@ -854,6 +909,9 @@ public class MOCalculation extends QuantumCalculation implements
       af3p = a * m3p;
       af3n = a * m3n;
 
+      setRange(alpha, 2 * norm1
+          * (Math.abs(af0) + Math.abs(af1p) + Math.abs(af1n) + Math.abs(af2p)
+              + Math.abs(af2n) + Math.abs(af3p) + Math.abs(af3n)));
       setE(EX, alpha);
 
       for (int ix = xMax; --ix >= xMin;) {
@@ -937,6 +995,8 @@ public class MOCalculation extends QuantumCalculation implements
     }
     if (atomIndex != lastAtom)
       thisAtom.setXYZ(true);
+    // the same screening as the CUT test below, applied to the whole grid
+    thisAtom.setRange((float) (CUT / minuszeta));
     int a = slater.x;
     int b = slater.y;
     int c = slater.z;
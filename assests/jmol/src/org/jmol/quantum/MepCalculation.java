@@ -133,6 +133,18 @@ public class MepCalculation extends QuantumCalculation implements MepCalculation
     initialize(countsXYZ[0], countsXYZ[1], countsXYZ[2]);
     setupCoordinates(volumeData.getOriginFloat(), volumeData
         .getVolumetricVectorLengths(), bsSelected, atomCoordAngstroms);
+    if (!calculateSlabs(volumeData.getOriginFloat(), volumeData
+        .getVolumetricVectorLengths(), bsSelected, atomCoordAngstroms))
+      processMep();
+  }
+
+  protected QuantumCalculation getSlab() {
+    MepCalculation slab = new MepCalculation();
+    slab.setup(distanceMode, potentials, atomCoordAngstroms, bsSelected);
+    return slab;
+  }
+
+  protected void calculateSlab() {
     processMep();
   }
 
@@ -26,6 +26,7 @@ package org.jmol.quantum;
 import javax.vecmath.Point3f;
 
 import org.jmol.util.Logger;
+import org.jmol.util.ParallelTasks;
 
 import java.util.BitSet;
 
@@ -38,6 +39,14 @@ abstract class QuantumCalculation {
   protected float[][][] voxelData;
   protected int xMin, xMax, yMin, yMax, zMin, zMax;
 
+  // the full range for the current atom; xMin...zMax may be narrowed
+  // from this for a single primitive using QMAtom.setRange()
+  private int xMinAtom, xMaxAtom, yMinAtom, yMaxAtom, zMinAtom, zMaxAtom;
+
+  // the calculation may be limited to a slab of X values, so that
+  // different slabs can be calculated on different threads
+  protected int xMinSlab, xMaxSlab;
+
   protected QMAtom[] qmAtoms;
   protected int atomIndex;
   protected QMAtom thisAtom;
@@ -65,6 +74,8 @@ abstract class QuantumCalculation {
     this.nX = nX;
     this.nY = nY;
     this.nZ = nZ;
+    xMinSlab = 0;
+    xMaxSlab = nX;
     
     // absolute grid coordinates in Bohr
     xBohr = new float[nX];
@@ -116,6 +127,89 @@ abstract class QuantumCalculation {
           + nX + " " + nY + " " + nZ);
   }
 
+  /////////// parallel calculation by X-slab ////////////
+
+  /*
+   * Each slab is calculated by its own QuantumCalculation, with its own
+   * coordinate arrays, limited to a range of X values. All slabs write to
+   * the same voxelData array, but to different voxelData[ix], so no
+   * locking is needed, and each voxel sees the atoms in the same order as
+   * it would in a single calculation.
+   * 
+   */
+
+  // the smallest X-slab worth handing to another thread
+  private final static int MIN_SLAB_WIDTH = 4;
+
+  protected Object executor;
+  protected int nThreads = 1;
+
+  /**
+   * @param executor  a java.util.concurrent.Executor, or null to calculate
+   *                  on the calling thread only
+   * @param nThreads  the most slabs to calculate at once
+   */
+  public void setExecutor(Object executor, int nThreads) {
+    this.executor = executor;
+    this.nThreads = nThreads;
+  }
+
+  /**
+   * a new calculation of the same type and with the same settings
+   * 
+   * @return the calculation for one slab
+   */
+  protected abstract QuantumCalculation getSlab();
+
+  /**
+   * the calculation proper, within xMinSlab and xMaxSlab
+   */
+  protected abstract void calculateSlab();
+
+  /**
+   * @param originXYZ
+   * @param stepsXYZ
+   * @param bsSelected
+   * @param atomCoordAngstroms
+   * @return false if there is no executor or the grid is too small to
+   *         split, in which case the caller just does the calculation
+   */
+  protected boolean calculateSlabs(float[] originXYZ, float[] stepsXYZ,
+                                   BitSet bsSelected,
+                                   Point3f[] atomCoordAngstroms) {
+    int nSlabs = ParallelTasks.getTaskCount(executor, nThreads, nX,
+        MIN_SLAB_WIDTH);
+    if (nSlabs < 2)
+      return false;
+    if (doDebug)
+      Logger.debug("QuantumCalculation using " + nSlabs + " slabs");
+    Runnable[] tasks = new Runnable[nSlabs];
+    for (int i = 0; i < nSlabs; i++) {
+      QuantumCalculation slab = getSlab();
+      slab.initialize(nX, nY, nZ);
+      slab.xMinSlab = nX * i / nSlabs;
+      slab.xMaxSlab = nX * (i + 1) / nSlabs;
+      slab.voxelData = voxelData;
+      slab.setupCoordinates(originXYZ, stepsXYZ, bsSelected,
+          atomCoordAngstroms);
+      tasks[i] = new SlabTask(slab);
+    }
+    ParallelTasks.run(executor, tasks, "QuantumCalculation");
+    return true;
+  }
+
+  private static class SlabTask implements Runnable {
+    private final QuantumCalculation slab;
+
+    SlabTask(QuantumCalculation slab) {
+      this.slab = slab;
+    }
+
+    public void run() {
+      slab.calculateSlab();
+    }
+  }
+
   private void setXYZBohr(float[] bohr, int i, int n) {
     bohr[0] = originBohr[i];
     float inc = stepBohr[i];
@@ -150,9 +244,9 @@ abstract class QuantumCalculation {
       try {
       if (setMinMax) {
         i = (int) Math.floor((x - xBohr[0] - rangeBohrOrAngstroms) / stepBohr[0]);
-        xMin = (i < 0 ? 0 : i);
+        xMin = (i < xMinSlab ? xMinSlab : i);
         i = (int) Math.floor(1 + (x - xBohr[0] + rangeBohrOrAngstroms) / stepBohr[0]);
-        xMax = (i >= nX ? nX : i + 1);
+        xMax = (i >= xMaxSlab ? xMaxSlab : i + 1);
         i = (int) Math.floor((y - yBohr[0] - rangeBohrOrAngstroms) / stepBohr[1]);
         yMin = (i < 0 ? 0 : i);
         i = (int) Math.floor(1 + (y - yBohr[0] + rangeBohrOrAngstroms) / stepBohr[1]);
@@ -161,6 +255,12 @@ abstract class QuantumCalculation {
         zMin = (i < 0 ? 0 : i);
         i = (int) Math.floor(1 + (z - zBohr[0] + rangeBohrOrAngstroms) / stepBohr[2]);
         zMax = (i >= nZ ? nZ : i + 1);
+        xMinAtom = xMin;
+        xMaxAtom = xMax;
+        yMinAtom = yMin;
+        yMaxAtom = yMax;
+        zMinAtom = zMin;
+        zMaxAtom = zMax;
       }
       for (i = xMax; --i >= xMin;) {
         myX2[i] = myX[i] = xBohr[i] - x;
@@ -179,5 +279,37 @@ abstract class QuantumCalculation {
         Logger.error("Error in QuantumCalculation setting bounds");
       }
     }
+
+    /**
+     * Narrows xMin...zMax to a cube of the given half-width about this
+     * atom, for a function known to be negligible beyond that distance.
+     * Ranges at or beyond rangeBohrOrAngstroms restore the full range set
+     * by setXYZ(true).
+     * 
+     * @param range
+     */
+    protected void setRange(float range) {
+      if (range >= rangeBohrOrAngstroms) {
+        xMin = xMinAtom;
+        xMax = xMaxAtom;
+        yMin = yMinAtom;
+        yMax = yMaxAtom;
+        zMin = zMinAtom;
+        zMax = zMaxAtom;
+        return;
+      }
+      int i = (int) Math.floor((x - xBohr[0] - range) / stepBohr[0]);
+      xMin = (i < xMinAtom ? xMinAtom : i);
+      i = (int) Math.floor(1 + (x - xBohr[0] + range) / stepBohr[0]);
+      xMax = (i >= xMaxAtom ? xMaxAtom : i + 1);
+      i = (int) Math.floor((y - yBohr[0] - range) / stepBohr[1]);
+      yMin = (i < yMinAtom ? yMinAtom : i);
+      i = (int) Math.floor(1 + (y - yBohr[0] + range) / stepBohr[1]);
+      yMax = (i >= yMaxAtom ? yMaxAtom : i + 1);
+      i = (int) Math.floor((z - zBohr[0] - range) / stepBohr[2]);
+      zMin = (i < zMinAtom ? zMinAtom : i);
+      i = (int) Math.floor(1 + (z - zBohr[0] + range) / stepBohr[2]);
+      zMax = (i >= zMaxAtom ? zMaxAtom : i + 1);
+    }
   }
 }
@@ -0,0 +1,299 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.script;
+
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jmol.util.BitSetUtil;
+
+/**
+ * What the script engine of one viewer keeps from one script to the next:
+ *
+ *  -- compiled programs, by script text, for the short scripts that are
+ *     sent over and over through the script queue; and
+ *
+ *  -- the atoms matched by an atom expression, by its tokens, for
+ *     expressions that depend only on what identifies an atom -- its
+ *     name, number, element, residue, chain, and model.
+ *
+ * Both are least-recently-used caches of limited size.
+ *
+ * Programs with flow control or local variables are not kept, because
+ * the evaluator records its state in their tokens, and all programs are
+ * dropped when the compiler redefines a token.
+ *
+ * Expression results are kept along with the model set, its atom count,
+ * and its modification count, which changes when atom properties are set
+ * or atoms are deleted. They are held before the subset and deleted atoms
+ * are removed, so the evaluator still does that each time.
+ *
+ */
+class ScriptCache {
+
+  private final static int MAX_PROGRAMS = 100;
+  private final static int MAX_SCRIPT_LENGTH = 10000;
+  private final static int MAX_EXPRESSIONS = 200;
+
+  private Map programs = new Lru(MAX_PROGRAMS);
+  private int tokenMapChangeCount = Token.getTokenMapChangeCount();
+  private int programHits, programMisses;
+
+  private Map expressions = new Lru(MAX_EXPRESSIONS);
+  private WeakReference modelSet;
+  private int expressionHits, expressionMisses;
+
+  private static class Lru extends LinkedHashMap {
+    private int max;
+
+    Lru(int max) {
+      super(16, 0.75f, true);
+      this.max = max;
+    }
+
+    protected boolean removeEldestEntry(Map.Entry eldest) {
+      return size() > max;
+    }
+  }
+
+  private static class Expression {
+    int atomCount;
+    int modificationCount;
+    boolean isChainCaseSensitive;
+    BitSet bs;
+  }
+
+  ////////////// programs //////////////
+
+  /**
+   * @param script
+   * @return a context sharing the compiled tokens, or null if not cached
+   */
+  synchronized ScriptContext getProgram(String script) {
+    if (tokenMapChangeCount != Token.getTokenMapChangeCount()) {
+      programs.clear();
+      tokenMapChangeCount = Token.getTokenMapChangeCount();
+    }
+    ScriptContext sc = (ScriptContext) programs.get(script);
+    if (sc == null) {
+      if (script.length() <= MAX_SCRIPT_LENGTH)
+        programMisses++;
+      return null;
+    }
+    programHits++;
+    return getCopy(sc);
+  }
+
+  synchronized void putProgram(String script, ScriptContext sc) {
+    if (script.length() > MAX_SCRIPT_LENGTH || sc.errorType != null
+        || sc.contextVariables != null || sc.aatoken == null
+        || tokenMapChangeCount != Token.getTokenMapChangeCount())
+      return;
+    Token[][] aatoken = sc.aatoken;
+    for (int i = aatoken.length; --i >= 0;)
+      if (aatoken[i] != null && aatoken[i].length > 0
+          && Token.tokAttr(aatoken[i][0].tok, Token.flowCommand))
+        return;
+    programs.put(script, getCopy(sc));
+  }
+
+  private static ScriptContext getCopy(ScriptContext sc) {
+    ScriptContext c = new ScriptContext();
+    c.script = sc.script;
+    c.scriptExtensions = sc.scriptExtensions;
+    c.aatoken = sc.aatoken;
+    c.lineIndices = sc.lineIndices;
+    c.lineNumbers = sc.lineNumbers;
+    return c;
+  }
+
+  ////////////// atom expressions //////////////
+
+  /**
+   * @param code
+   * @param pc    the expressionBegin token
+   * @return the matching expressionEnd, or -1 if the result could depend
+   *         on more than the atoms themselves
+   */
+  static int getExpressionEnd(Token[] code, int pc) {
+    if (code[pc] == null || code[pc].tok != Token.expressionBegin)
+      return -1;
+    int nExpress = 0;
+    for (; pc < code.length && code[pc] != null; pc++) {
+      Token token = code[pc];
+      switch (token.tok) {
+      case Token.expressionBegin:
+        nExpress++;
+        break;
+      case Token.expressionEnd:
+        if (--nExpress == 0)
+          return pc;
+        break;
+      case Token.all:
+      case Token.none:
+      case Token.leftparen:
+      case Token.rightparen:
+      case Token.opAnd:
+      case Token.opOr:
+      case Token.opXor:
+      case Token.opToggle:
+      case Token.opNot:
+      case Token.integer:
+      case Token.carbohydrate:
+      case Token.dna:
+      case Token.hetero:
+      case Token.nucleic:
+      case Token.protein:
+      case Token.purine:
+      case Token.pyrimidine:
+      case Token.rna:
+      case Token.spec_atom:
+      case Token.spec_name_pattern:
+      case Token.spec_alternate:
+      case Token.spec_model:
+      case Token.spec_model2:
+      case Token.spec_resid:
+      case Token.spec_chain:
+      case Token.spec_seqcode:
+      case Token.spec_seqcode_range:
+        break;
+      case Token.opLT:
+      case Token.opLE:
+      case Token.opGE:
+      case Token.opGT:
+      case Token.opEQ:
+      case Token.opNE:
+        if (!isIdentifying(token.intValue) || ++pc == code.length
+            || code[pc] == null)
+          return -1;
+        switch (code[pc].tok) {
+        case Token.integer:
+        case Token.decimal:
+        case Token.string:
+          break;
+        default:
+          // a variable, perhaps
+          return -1;
+        }
+        break;
+      default:
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isIdentifying(int tokWhat) {
+    switch (tokWhat) {
+    case Token.atomno:
+    case Token.atomindex:
+    case Token.atomname:
+    case Token.atomtype:
+    case Token.element:
+    case Token.elemno:
+    case Token.altloc:
+    case Token.chain:
+    case Token.group:
+    case Token.group1:
+    case Token.groupindex:
+    case Token.insertion:
+    case Token.resno:
+    case Token.file:
+    case Token.model:
+    case Token.modelindex:
+      return true;
+    }
+    return false;
+  }
+
+  static String getExpressionKey(Token[] code, int pc0, int pc1) {
+    StringBuffer sb = new StringBuffer();
+    for (int pc = pc0; pc <= pc1; pc++) {
+      Token token = code[pc];
+      sb.append(token.tok).append(',').append(token.intValue).append(',')
+          .append(token.value).append(';');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @param key
+   * @param modelSet
+   * @param atomCount
+   * @param modificationCount
+   * @param isChainCaseSensitive
+   * @return a copy of the atoms found before, or null
+   */
+  synchronized BitSet getAtoms(String key, Object modelSet, int atomCount,
+                               int modificationCount,
+                               boolean isChainCaseSensitive) {
+    if (this.modelSet == null || this.modelSet.get() != modelSet) {
+      expressions.clear();
+      this.modelSet = new WeakReference(modelSet);
+    }
+    Expression e = (Expression) expressions.get(key);
+    if (e == null || e.atomCount != atomCount
+        || e.modificationCount != modificationCount
+        || e.isChainCaseSensitive != isChainCaseSensitive) {
+      expressionMisses++;
+      return null;
+    }
+    expressionHits++;
+    return BitSetUtil.copy(e.bs);
+  }
+
+  synchronized void putAtoms(String key, Object modelSet, int atomCount,
+                             int modificationCount,
+                             boolean isChainCaseSensitive, BitSet bs) {
+    if (this.modelSet == null || this.modelSet.get() != modelSet)
+      return;
+    Expression e = new Expression();
+    e.atomCount = atomCount;
+    e.modificationCount = modificationCount;
+    e.isChainCaseSensitive = isChainCaseSensitive;
+    e.bs = BitSetUtil.copy(bs);
+    expressions.put(key, e);
+  }
+
+  synchronized Hashtable getInfo() {
+    Hashtable info = new Hashtable();
+    info.put("scriptHits", new Integer(programHits));
+    info.put("scriptMisses", new Integer(programMisses));
+    info.put("scriptHitRate", new Float(getRate(programHits, programMisses)));
+    info.put("scriptCount", new Integer(programs.size()));
+    info.put("expressionHits", new Integer(expressionHits));
+    info.put("expressionMisses", new Integer(expressionMisses));
+    info.put("expressionHitRate", new Float(getRate(expressionHits,
+        expressionMisses)));
+    info.put("expressionCount", new Integer(expressions.size()));
+    return info;
+  }
+
+  private static float getRate(int hits, int misses) {
+    return (hits + misses == 0 ? 0 : hits / (float) (hits + misses));
+  }
+}
@@ -61,13 +61,16 @@ public class ScriptCompiler extends ScriptCompilationTokenParser {
   
   public ScriptCompiler(Viewer viewer) {
     this.viewer = viewer;
+    cache = new ScriptCache();
   }
   
   public ScriptCompiler(ScriptCompiler compiler) {
     this.viewer = compiler.viewer;
+    cache = compiler.cache;
   }
 
   private Viewer viewer;
+  ScriptCache cache;
   private String filename;
   private boolean isSilent;
 
@@ -130,13 +133,31 @@ public class ScriptCompiler extends ScriptCompilationTokenParser {
 
   ScriptContext compile(String filename, String script, boolean isPredefining,
                   boolean isSilent, boolean debugScript, boolean isCheckOnly) {
+    boolean isCacheable = (filename == null && !isPredefining && !debugScript
+        && !isCheckOnly);
+    if (isCacheable) {
+      ScriptContext sc = cache.getProgram(script);
+      if (sc != null)
+        return sc;
+    }
     this.isCheckOnly = isCheckOnly;
     this.filename = filename;
     this.isSilent = isSilent;
     this.script = script;
     logMessages = (!isSilent && !isPredefining && debugScript);
     preDefining = (filename == "#predefine");
-    return parseScript(true);
+    ScriptContext sc = parseScript(true);
+    if (isCacheable)
+      cache.putProgram(script, sc);
+    return sc;
+  }
+
+  /**
+   * @return hits, misses, and sizes of the compiled-script and atom
+   *         expression caches
+   */
+  public Hashtable getCacheInfo() {
+    return cache.getInfo();
   }
 
   private void addContextVariable(String ident) {
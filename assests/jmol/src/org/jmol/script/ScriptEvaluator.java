@@ -3154,6 +3154,29 @@ public class ScriptEvaluator {
     if (ignoreSubset)
       pcStart = -pcStart;
     ignoreSubset |= isSyntaxCheck;
+    String cacheKey = null;
+    ModelSet modelSet = viewer.getModelSet();
+    int modificationCount = modelSet.getModificationCount();
+    boolean isChainCaseSensitive = viewer.getChainCaseSensitive();
+    if (!ignoreSubset && pcStop == 0 && pcStart > 0 && pcStart < code.length) {
+      // the same atoms as last time for, say, "select protein and *.CA"
+      int pcEnd = ScriptCache.getExpressionEnd(code, pcStart);
+      if (pcEnd > 0) {
+        cacheKey = ScriptCache.getExpressionKey(code, pcStart, pcEnd);
+        BitSet bs = compiler.cache.getAtoms(cacheKey, modelSet, atomCount,
+            modificationCount, isChainCaseSensitive);
+        if (bs != null) {
+          iToken = pcEnd;
+          expressionResult = bs;
+          viewer.excludeAtoms(bs, false);
+          if (tempStatement != null) {
+            statement = tempStatement;
+            tempStatement = null;
+          }
+          return bs;
+        }
+      }
+    }
     if (pcStop == 0 && code.length > pcStart)
       pcStop = pcStart + 1;
     // if (logMessages)
@@ -3552,6 +3575,9 @@ public class ScriptEvaluator {
     BitSet bs = (expressionResult instanceof BitSet ? (BitSet) expressionResult
         : new BitSet());
     isBondSet = (expressionResult instanceof BondSet);
+    if (cacheKey != null && !isBondSet)
+      compiler.cache.putAtoms(cacheKey, modelSet, atomCount,
+          modificationCount, isChainCaseSensitive, bs);
     if (!isBondSet) {
       viewer.excludeAtoms(bs, ignoreSubset);
     }
@@ -8316,6 +8342,8 @@ public class ScriptEvaluator {
     // but there could state problems here because then we don't have the
     // option to save load options with that... Hmm.
     if (errMsg != null && !isCmdLine_c_or_C_Option) {
+      if (interruptExecution && errMsg.equals("#CANCELED#"))
+        return; // set loadAsync; halted during the load
       if (statementLength == 2) {
         if (errMsg.indexOf("NOTE: file recognized as a script file:") == 0) {
           filename = errMsg.substring(errMsg.indexOf("file:") + 5).trim(); 
@@ -9729,6 +9757,7 @@ public class ScriptEvaluator {
     float crit = 0;
     boolean addHydrogen = false;
     boolean isSilent = false;
+    float cutoff = 0;
     BitSet bsFixed = null;
     MinimizerInterface minimizer = viewer.getMinimizer(false);
     // may be null
@@ -9775,6 +9804,9 @@ public class ScriptEvaluator {
       case Token.criterion:
         crit = floatParameter(++i);
         continue;
+      case Token.cutoff:
+        cutoff = floatParameter(++i);
+        continue;
       case Token.energy:
         steps = 0;
         continue;
@@ -9805,9 +9837,11 @@ public class ScriptEvaluator {
         error(ERROR_invalidArgument);
         break;
       }
-    if (!isSyntaxCheck)
-      viewer.minimize(steps, crit, bsSelected, bsFixed, 0, addHydrogen,
-          isSilent, false);
+    if (isSyntaxCheck)
+      return;
+    viewer.getMinimizer(true).setProperty("cutoff", new Float(cutoff));
+    viewer.minimize(steps, crit, bsSelected, bsFixed, 0, addHydrogen,
+        isSilent, false);
   }
 
   private void select(int i) throws ScriptException {
@@ -10945,10 +10979,14 @@ public class ScriptEvaluator {
         }
         return;
       case Token.structure:
-        bs = (statementLength == 2 ? null : atomExpression(2));
+        // calculate structure [DSSP] [atom expression]
+        boolean asDSSP = (tokAt(2) == Token.identifier && parameterAsString(2)
+            .equalsIgnoreCase("DSSP"));
+        int pt = (asDSSP ? 3 : 2);
+        bs = (statementLength == pt ? null : atomExpression(pt));
         if (isSyntaxCheck)
           return;
-        viewer.calculateStructures(bs);
+        viewer.calculateStructures(bs, asDSSP);
         viewer.addStateScript(thisCommand, false, true);
         return;
       }
@@ -13149,12 +13187,12 @@ public class ScriptEvaluator {
           && !Parser
               .isOneOf(
                   type,
-                  "ZIP;ZIPALL;SPT;HIS;MO;ISO;ISOX;MESH;PMESH;VAR;FILE;CML;XYZ;MENU;MOL;PDB;PGRP;QUAT;RAMA;FUNCS;"))
+                  "ZIP;ZIPALL;SPT;HIS;MO;ISO;ISOX;JVXB;MESH;PMESH;VAR;FILE;CML;XYZ;MENU;MOL;PDB;PGRP;QUAT;RAMA;FUNCS;"))
         error(
             ERROR_writeWhat,
             "COORDS|FILE|FUNCTIONS|HISTORY|IMAGE|ISOSURFACE|JMOL|MENU|MO|POINTGROUP|QUATERNION [w,x,y,z] [derivative]"
                 + "|RAMACHANDRAN|SPT|STATE|VAR x|ZIP|ZIPALL  CLIPBOARD",
-            "CML|GIF|JPG|JPG64|JVXL|MESH|MOL|PDB|PMESH|PNG|PPM|SPT|XJVXL|XYZ|ZIP"
+            "CML|GIF|JPG|JPG64|JVXB|JVXL|MESH|MOL|PDB|PMESH|PNG|PPM|SPT|XJVXL|XYZ|ZIP"
                 + driverList.toUpperCase().replace(';', '|'));
       if (isSyntaxCheck)
         return "";
@@ -13251,6 +13289,15 @@ public class ScriptEvaluator {
         if ((data = getIsosurfaceJvxl(true, JmolConstants.SHAPE_PMESH)) == null)
           error(ERROR_noData);
         type = "XJVXL";
+      } else if (data == "JVXB" || data == "ISO" && fileName != null
+          && fileName.toLowerCase().endsWith(".jvxb")) {
+        // write isosurface t.jvxb -- binary, straight to the file
+        if (isShow || fileName == null)
+          error(ERROR_invalidArgument);
+        if (getShapeProperty(JmolConstants.SHAPE_ISOSURFACE, "jvxlFileInfo") == null)
+          error(ERROR_noData);
+        type = "JVXB";
+        doDefer = true;
       } else if (data == "ISO" || data == "ISOX" || data == "MESH") {
         if ((data = getIsosurfaceJvxl(data == "MESH",
             JmolConstants.SHAPE_ISOSURFACE)) == null)
@@ -13731,6 +13778,9 @@ public class ScriptEvaluator {
             : parameterAsString(2));
         if (!isSyntaxCheck)
           msg = viewer.getBindingInfo(qualifiers);
+      } else if (str.equalsIgnoreCase("renderProfile")) {
+        if (!isSyntaxCheck)
+          msg = viewer.getRenderProfile();
       }
       break;
     }
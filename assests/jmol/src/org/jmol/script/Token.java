@@ -874,6 +874,9 @@ public class Token {
   public final static int strandcountforstrands          = intparam | 54;
   public final static int strutspacing                   = intparam | 56;
   public final static int zshadepower                    = intparam | 58;
+  public final static int rendertiles                    = intparam | 60;
+  public final static int frametimetargetms              = intparam | 62;
+  public final static int renderprofileframes            = intparam | 64;
 
   public final static int allowembeddedscripts           = booleanparam | 2;
   public final static int allowgestures                  = booleanparam | 4;
@@ -997,6 +1000,10 @@ public class Token {
   public final static int usenumberlocalization          = booleanparam | 196;
   public final static int waitformoveto                  = booleanparam | 197;
   public final static int windowcentered                 = booleanparam | 198;
+  public final static int usespatialgrid                 = booleanparam | 210;
+  public final static int trajectorycompressed           = booleanparam | 212;
+  public final static int trajectorypaged                = booleanparam | 214;
+  public final static int loadasync                      = booleanparam | 216;
   public final static int wireframerotation              = booleanparam | 200;
   public final static int zerobasedxyzrasmol             = booleanparam | 202;
   public final static int zoomenabled                    = booleanparam | 204;
@@ -1241,8 +1248,19 @@ public class Token {
   final static Token tokenSwitch          = new Token(switchcmd, "switch");
     
   private static Hashtable tokenMap = new Hashtable();
+  private static int tokenMapChangeCount;
+
   public static void addToken(String ident, Token token) {
     tokenMap.put(ident, token);
+    tokenMapChangeCount++;
+  }
+
+  /**
+   * @return a count that changes whenever a token is redefined, so that
+   *         compiled scripts can be checked against the current map
+   */
+  static int getTokenMapChangeCount() {
+    return tokenMapChangeCount;
   }
   
   public static Token getTokenFromName(String name) {
@@ -2098,6 +2116,7 @@ public class Token {
       "dotDensity",                               new Token(dotdensity),
       "dotScale",                                 new Token(dotscale),
       "ellipsoidDotCount",                        new Token(ellipsoiddotcount),
+      "frameTimeTargetMs",                        new Token(frametimetargetms),
       "helixStep",                                new Token(helixstep),
       "hermiteLevel",                             new Token(hermitelevel),
       "historyLevel",                             new Token(historylevel),
@@ -2112,6 +2131,8 @@ public class Token {
       "propertyDataColumnCount",                  new Token(propertydatacolumncount),
       "propertyDataField",                        new Token(propertydatafield),
       "repaintWaitMs",                            new Token(repaintwaitms),
+      "renderTiles",                              new Token(rendertiles),
+      "renderProfileFrames",                      new Token(renderprofileframes),
       "ribbonAspectRatio",                        new Token(ribbonaspectratio),
       "scriptReportingLevel",                     new Token(scriptreportinglevel),
       "showScript",                               new Token(showscript),
@@ -2193,6 +2214,7 @@ public class Token {
       "isosurfacePropertySmoothing",              new Token(isosurfacepropertysmoothing),
       "justifyMeasurements",                      new Token(justifymeasurements),
       "languageTranslation",                      new Token(languagetranslation),
+      "loadAsync",                                new Token(loadasync),
       "logCommands",                              new Token(logcommands),
       "logGestures",                              new Token(loggestures),
       "measureAllModels",                         new Token(measureallmodels),
@@ -2252,9 +2274,12 @@ public class Token {
       "testFlag3",                                new Token(testflag3),
       "testFlag4",                                new Token(testflag4),
       "traceAlpha",                               new Token(tracealpha),
+      "trajectoryCompressed",                     new Token(trajectorycompressed),
+      "trajectoryPaged",                          new Token(trajectorypaged),
       "useArcBall",                               new Token(usearcball),
       "useMinimizationThread",                    new Token(useminimizationthread),
       "useNumberLocalization",                    new Token(usenumberlocalization),
+      "useSpatialGrid",                           new Token(usespatialgrid),
       "waitForMoveTo",                            new Token(waitformoveto),
       "windowCentered",                           new Token(windowcentered),
       "wireframeRotation",                        new Token(wireframerotation),
@@ -121,20 +121,23 @@ public class Balls extends AtomShape {
  public void setVisibilityFlags(BitSet bs) {
     boolean showHydrogens = viewer.getShowHydrogens();
     BitSet bsDeleted = viewer.getDeletedAtoms();
+    BitSet bsInFrame = modelSet.getAtomsInFrame();
+    bsInFrame.clear();
+    int[] flags = modelSet.getAtomVisibilityFlags();
+    short[] mads = modelSet.getAtomMads();
+    int mask = ~JmolConstants.ATOM_IN_FRAME & ~myVisibilityFlag;
     for (int i = atomCount; --i >= 0; ) {
       Atom atom = atoms[i];
-      int flag = atom.getShapeVisibilityFlags();
-      flag &= (~JmolConstants.ATOM_IN_FRAME & ~myVisibilityFlag);
-      atom.setShapeVisibilityFlags(flag);
-      if (bsDeleted != null && bsDeleted.get(i) 
-          || !showHydrogens && atom.getElementNumber() == 1)
-        continue;
-      int modelIndex = atom.getModelIndex();
-      if (bs.get(modelIndex)) { 
-        atom.setShapeVisibility(JmolConstants.ATOM_IN_FRAME, true);
-        if (atom.madAtom != 0 &&  !modelSet.isAtomHidden(i))
-          atom.setShapeVisibility(myVisibilityFlag, true);
+      int flag = flags[i] & mask;
+      if ((bsDeleted == null || !bsDeleted.get(i))
+          && (showHydrogens || atom.getElementNumber() != 1)
+          && bs.get(atom.modelIndex)) { 
+        flag |= JmolConstants.ATOM_IN_FRAME;
+        bsInFrame.set(i);
+        if (mads[i] != 0 &&  !modelSet.isAtomHidden(i))
+          flag |= myVisibilityFlag;
       }
+      flags[i] = flag;
     }
   }
 
@@ -143,7 +146,7 @@ public class Balls extends AtomShape {
     float r = 0;
     for (int i = 0; i < atomCount; i++) {
       if (bsSizeSet != null && bsSizeSet.get(i)) {
-        if ((r = atoms[i].madAtom) < 0)
+        if ((r = atoms[i].getMadAtom()) < 0)
           setStateInfo(temp, i, "Spacefill on");
         else
           setStateInfo(temp, i, "Spacefill " + (r / 2000f));
@@ -30,6 +30,7 @@ import java.util.BitSet;
 import org.jmol.api.JmolMolecule;
 import org.jmol.g3d.*;
 import org.jmol.modelset.Atom;
+import org.jmol.viewer.JmolConstants;
 
 import javax.vecmath.*;
 public class BallsRenderer extends ShapeRenderer {
@@ -51,6 +52,8 @@ public class BallsRenderer extends ShapeRenderer {
         && exportType == Graphics3D.EXPORT_NOT && firstPass);
     boolean renderBalls = !viewer.getWireframeRotation()
         || !viewer.getInMotion();
+    boolean renderDisks = (exportType == Graphics3D.EXPORT_NOT && viewer
+        .getMotionQuality() >= JmolConstants.MOTION_QUALITY_DISKS);
 
     if (slabbing) {
       minZ = g3d.getSlab();
@@ -64,6 +67,8 @@ public class BallsRenderer extends ShapeRenderer {
     }
 
     Atom[] atoms = modelSet.atoms;
+    int[] flags = modelSet.getAtomVisibilityFlags();
+    short[] colixes = modelSet.getAtomColixes();
     BitSet bsOK = viewer.transformAtoms(firstPass);
     if (firstPass && slabByMolecule && slabbing) {
       JmolMolecule[] molecules = modelSet.getMolecules();
@@ -106,8 +111,8 @@ public class BallsRenderer extends ShapeRenderer {
       // note: above transform is required for all other renderings
 
       if (renderBalls && atom.screenDiameter > 0
-          && (atom.getShapeVisibilityFlags() & myVisibilityFlag) != 0
-          && g3d.setColix(atom.getColix())) {
+          && (flags[i] & myVisibilityFlag) != 0
+          && g3d.setColix(colixes[i])) {
         if (renderCrosshairs) {
           if (atom.screenX < minX)
             minX = atom.screenX;
@@ -118,7 +123,11 @@ public class BallsRenderer extends ShapeRenderer {
           if (atom.screenY > maxY)
             maxY = atom.screenY;
         }
-        g3d.drawAtom(atom);
+        if (renderDisks)
+          g3d.drawFilledCircle((short) 0, colixes[i],
+              atom.screenDiameter, atom.screenX, atom.screenY, atom.screenZ);
+        else
+          g3d.drawAtom(atom);
       }
     }
 
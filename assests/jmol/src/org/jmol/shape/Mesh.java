@@ -30,6 +30,7 @@ import java.util.Vector;
 import org.jmol.util.Escape;
 import org.jmol.util.Measure;
 import org.jmol.util.MeshSurface;
+import org.jmol.util.PackedMesh;
 import org.jmol.viewer.JmolConstants;
 import org.jmol.api.JmolRendererInterface;
 import org.jmol.g3d.*;
@@ -115,6 +116,7 @@ public class Mesh extends MeshSurface {
     frontOnly = false;
     title = null;
     normixes = null;
+    packedMesh = null;
     bitsets = null;    
     vertices = null;
     offsetVertices = null;
@@ -130,6 +132,7 @@ public class Mesh extends MeshSurface {
   public void initialize(int lighting, Point3f[] vertices, Point4f plane) {
     if (vertices == null)
       vertices = this.vertices;
+    packedMesh = null;
     Vector3f[] normals = getNormals(vertices, plane);
     normixes = new short[normixCount];
     isTwoSided = (lighting == JmolConstants.FULLYLIT);
@@ -144,6 +147,26 @@ public class Mesh extends MeshSurface {
     if (insideOut)
       invertNormixes();
     setLighting(lighting);
+    getLevelOfDetail(vertices);
+  }
+
+  /**
+   * The decimated mesh drawn in place of this one while the model is in
+   * motion. It is made when the mesh is initialized and again whenever the
+   * vertices or polygons have changed since.
+   * 
+   * @param vertices  as rendered, possibly offset
+   * @return null if this mesh is small enough to draw in full
+   */
+  public PackedMesh getLevelOfDetail(Point3f[] vertices) {
+    if (polygonCount < PackedMesh.MIN_POLYGON_COUNT || haveQuads
+        || isPolygonSet || normixes == null || vertices == null)
+      return null;
+    if (packedMesh == null
+        || !packedMesh.isValidFor(vertices, vertexCount, polygonCount))
+      packedMesh = PackedMesh.getLevelOfDetail(vertices, vertexCount,
+          polygonIndexes, polygonCount, normixes);
+    return packedMesh;
   }
 
   public Vector3f[] getNormals(Point3f[] vertices, Point4f plane) {
@@ -169,6 +192,8 @@ public class Mesh extends MeshSurface {
       return;
     flipLighting(this.lighting);
     flipLighting(this.lighting = lighting);
+    if (packedMesh != null)
+      packedMesh.setNormixes(normixes);
   }
   
   private void flipLighting(int lighting) {
@@ -32,6 +32,7 @@ import javax.vecmath.Point3i;
 
 import org.jmol.api.SymmetryInterface;
 import org.jmol.g3d.Graphics3D;
+import org.jmol.util.PackedMesh;
 
 public abstract class MeshRenderer extends ShapeRenderer {
 
@@ -50,6 +51,7 @@ public abstract class MeshRenderer extends ShapeRenderer {
   protected boolean isTranslucent;
   protected Point4f thePlane;
   protected Point3f latticeOffset = new Point3f();
+  protected PackedMesh packedMesh; // the level of detail, while in motion
 
   protected final Point3f pt1f = new Point3f();
   protected final Point3f pt2f = new Point3f();
@@ -73,9 +75,16 @@ public abstract class MeshRenderer extends ShapeRenderer {
     if (!g3d.setColix(colix) && !mesh.showContourLines)
       return mesh.title != null;
     latticeOffset.set(0, 0, 0);
-    for (int i = vertexCount; --i >= 0;)
-      viewer.transformPoint(vertices[i], screens[i]);
-    render2(exportType != Graphics3D.EXPORT_NOT);
+    if (packedMesh == null) {
+      for (int i = vertexCount; --i >= 0;)
+        viewer.transformPoint(vertices[i], screens[i]);
+    } else {
+      float[] xyz = packedMesh.xyz;
+      for (int i = packedMesh.vertexCount; --i >= 0;) {
+        pt1f.set(xyz[i * 3], xyz[i * 3 + 1], xyz[i * 3 + 2]);
+        viewer.transformPoint(pt1f, screens[i]);
+      }
+    }
     if (mesh.lattice == null || mesh.modelIndex < 0) {
       render2(exportType != Graphics3D.EXPORT_NOT);
     } else {
@@ -107,6 +116,7 @@ public abstract class MeshRenderer extends ShapeRenderer {
   }
 
   private boolean setVariables() {
+    packedMesh = null;
     vertices = (mesh.ptOffset == null && mesh.scale3d == 0 
         ? mesh.vertices : mesh.getOffsetVertices(thePlane)); 
     
@@ -124,7 +134,11 @@ public abstract class MeshRenderer extends ShapeRenderer {
       // during a surface calculation
 
       frontOnly = !viewer.getSlabEnabled() && mesh.frontOnly && !mesh.isTwoSided;
-      screens = viewer.allocTempScreens(vertexCount);
+      packedMesh = (viewer.getInMotion() && exportType == Graphics3D.EXPORT_NOT
+          && mesh.lattice == null && canUseLevelOfDetail() ? mesh
+          .getLevelOfDetail(vertices) : null);
+      screens = viewer.allocTempScreens(packedMesh == null ? vertexCount
+          : packedMesh.vertexCount);
       transformedVectors = g3d.getTransformedVertexVectors();
     }
     isTranslucent = Graphics3D.isColixTranslucent(mesh.colix);
@@ -135,6 +149,14 @@ public abstract class MeshRenderer extends ShapeRenderer {
   // DO NOT change parameters without first checking for the
   // same method in a subclass.
   
+  /**
+   * @return true if this mesh, as it is to be drawn, may be drawn from its
+   *         decimated packedMesh while the model is in motion
+   */
+  protected boolean canUseLevelOfDetail() {
+    return false;
+  }
+
   protected boolean isPolygonDisplayable(int i) {
     return true;
   }
@@ -178,9 +178,10 @@ class BioShape {
     return (short)(Math.sqrt(bFactor100/eightPiSquared100) * 1000);
   }
 
-  void findNearestAtomIndex(int xMouse, int yMouse, Atom[] closest, BitSet bsNot) {
+  void findNearestAtomIndex(int xMouse, int yMouse, Atom[] closest,
+                            BitSet bsNot, BitSet bsMonomers) {
     bioPolymer.findNearestAtomIndex(xMouse, yMouse, closest, mads,
-        shape.myVisibilityFlag, bsNot);
+        shape.myVisibilityFlag, bsNot, bsMonomers);
   }
   
   void setMad(short mad, BitSet bsSelected, float[] values) {
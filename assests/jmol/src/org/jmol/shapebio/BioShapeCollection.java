@@ -166,8 +166,42 @@ public abstract class BioShapeCollection extends Shape {
   }
 
   public void findNearestAtomIndex(int xMouse, int yMouse, Atom[] closest, BitSet bsNot) {
-    for (int i = bioShapes.length; --i >= 0; )
-      bioShapes[i].findNearestAtomIndex(xMouse, yMouse, closest, bsNot);
+    // the largest radius any monomer could be picked at: 
+    // see AminoMonomer, NucleicMonomer, and CarbohydrateMonomer
+    int mar = 1900;
+    for (int i = bioShapes.length; --i >= 0;) {
+      short[] mads = bioShapes[i].mads;
+      if (mads != null)
+        for (int j = mads.length; --j >= 0;)
+          if (mads[j] / 2 > mar)
+            mar = mads[j] / 2;
+    }
+    BitSet bsNear = modelSet.findAtomsNearScreenPoint(xMouse, yMouse, mar, 4);
+    if (bsNear == null) {
+      for (int i = bioShapes.length; --i >= 0; )
+        bioShapes[i].findNearestAtomIndex(xMouse, yMouse, closest, bsNot, null);
+      return;
+    }
+    // only the monomers with an atom near the cursor, by polymer
+    Hashtable htMonomers = new Hashtable();
+    Atom[] atoms = modelSet.atoms;
+    for (int i = bsNear.nextSetBit(0); i >= 0; i = bsNear.nextSetBit(i + 1)) {
+      Group g = atoms[i].getGroup();
+      if (!(g instanceof Monomer))
+        continue;
+      BioPolymer bp = ((Monomer) g).getBioPolymer();
+      if (bp == null)
+        continue;
+      BitSet bs = (BitSet) htMonomers.get(bp);
+      if (bs == null)
+        htMonomers.put(bp, bs = new BitSet());
+      bs.set(g.getMonomerIndex());
+    }
+    for (int i = bioShapes.length; --i >= 0; ) {
+      BitSet bs = (BitSet) htMonomers.get(bioShapes[i].bioPolymer);
+      if (bs != null)
+        bioShapes[i].findNearestAtomIndex(xMouse, yMouse, closest, bsNot, bs);
+    }
   }
 
   public void setVisibilityFlags(BitSet bs) {
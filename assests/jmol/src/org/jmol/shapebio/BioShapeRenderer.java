@@ -85,7 +85,9 @@ abstract class BioShapeRenderer extends MeshRenderer {
       return;
     
     invalidateMesh = false;
-    boolean TF = exportType != Graphics3D.EXPORT_NOT || viewer.getHighResolution();
+    boolean isReduced = (exportType == Graphics3D.EXPORT_NOT 
+        && viewer.getMotionQuality() >= JmolConstants.MOTION_QUALITY_NO_HERMITE);
+    boolean TF = exportType != Graphics3D.EXPORT_NOT || viewer.getHighResolution() && !isReduced;
     if (TF != isHighRes)
       invalidateMesh = true;
     isHighRes = TF;
@@ -99,7 +101,7 @@ abstract class BioShapeRenderer extends MeshRenderer {
     val = viewer.getHermiteLevel();
     if (val == 0 && exportType == Graphics3D.EXPORT_CARTESIAN)
       val = 5; // forces hermite for 3D exporters
-    val = (val <= 0 ? -val : viewer.getInMotion() ? 0 : val);
+    val = (isReduced ? 0 : val <= 0 ? -val : viewer.getInMotion() ? 0 : val);
     if (val != hermiteLevel && val != 0)
       invalidateMesh = true;
     hermiteLevel = Math.min(val, 8);
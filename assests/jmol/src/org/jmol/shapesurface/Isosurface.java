@@ -113,8 +113,10 @@ import org.jmol.viewer.StateManager.Orientation;
 import org.jmol.jvxl.readers.Parameters;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.BitSet;
 import java.util.Hashtable;
@@ -506,6 +508,21 @@ public class Isosurface extends MeshCollection implements MeshDataServer {
   }
 
   public boolean getProperty(String property, Object[] data) {
+    if (property == "jvxlDataBinary") {
+      // data[0] OutputStream; data[1] returns the number of bytes written
+      if (thisMesh == null)
+        return false;
+      try {
+        data[1] = new Integer(JvxlCoder.jvxlWriteFileBinary(jvxlData,
+            getJvxlMeshData(false), title, thisMesh.getState(myType),
+            (thisMesh.scriptCommand == null ? "" : thisMesh.scriptCommand),
+            (OutputStream) data[0]));
+      } catch (IOException e) {
+        Logger.error("Isosurface: could not write binary JVXL: " + e);
+        return false;
+      }
+      return true;
+    }
     if (property == "intersectPlane") {
       IsosurfaceMesh mesh = (IsosurfaceMesh) getMesh((String) data[0]);
       if (mesh == null)
@@ -564,20 +581,24 @@ public class Isosurface extends MeshCollection implements MeshDataServer {
     if (property == "plane")
       return jvxlData.jvxlPlane;
     if (property == "jvxlDataXml" || property == "jvxlMeshXml") {
-      MeshData meshData = null;
-      if (property == "jvxlMeshXml" || jvxlData.vertexDataOnly) {
-        meshData = new MeshData();
-        fillMeshData(meshData, MeshData.MODE_GET_VERTICES, null);
-        meshData.polygonColorData = getPolygonColorData(meshData.polygonCount, meshData.polygonColixes);
-      }
-      return JvxlCoder.jvxlGetFile(jvxlData, meshData, title, "", true, 1, thisMesh
-              .getState(myType), (thisMesh.scriptCommand == null ? "" : thisMesh.scriptCommand));
+      return JvxlCoder.jvxlGetFile(jvxlData, getJvxlMeshData(property == "jvxlMeshXml"),
+          title, "", true, 1, thisMesh.getState(myType),
+          (thisMesh.scriptCommand == null ? "" : thisMesh.scriptCommand));
     }
     if (property == "jvxlFileInfo")
       return JvxlCoder.jvxlGetInfo(jvxlData);
     return null;
   }
 
+  private MeshData getJvxlMeshData(boolean asMesh) {
+    if (!asMesh && !jvxlData.vertexDataOnly)
+      return null;
+    MeshData meshData = new MeshData();
+    fillMeshData(meshData, MeshData.MODE_GET_VERTICES, null);
+    meshData.polygonColorData = getPolygonColorData(meshData.polygonCount, meshData.polygonColixes);
+    return meshData;
+  }
+
   public static String getPolygonColorData(int ccount, short[] colixes) {
     if (colixes == null)
       return null;
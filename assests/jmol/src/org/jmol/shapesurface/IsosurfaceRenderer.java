@@ -80,7 +80,10 @@ public class IsosurfaceRenderer extends MeshRenderer {
       return;
     }
     isBicolorMap = imesh.jvxlData.isBicolorMap;
-    super.render2(isExport);
+    if (packedMesh != null)
+      renderPackedTriangles();
+    else
+      super.render2(isExport);
     if (!g3d.setColix(Graphics3D.BLACK)) // must be 1st pass
       return;
     if (imesh.showContourLines)
@@ -192,6 +195,62 @@ public class IsosurfaceRenderer extends MeshRenderer {
     }
   }
 
+  protected boolean canUseLevelOfDetail() {
+    return (imesh.fillTriangles && !imesh.drawTriangles && !imesh.showPoints
+        && !imesh.showTriangles && !imesh.jvxlData.colorDensity && !iShowNormals);
+  }
+
+  /**
+   * the filled triangles of the level of detail, colored as renderTriangles
+   * would color the polygons and vertices they were taken from
+   */
+  private void renderPackedTriangles() {
+    int[] triangles = packedMesh.triangles;
+    int[] vertexMap = packedMesh.vertexMap;
+    int[] polygonMap = packedMesh.polygonMap;
+    short[] normixes = packedMesh.normixes;
+    short[] vertexColixes = imesh.vertexColixes;
+    colix = imesh.colix;
+    if (!g3d.setColix(colix))
+      return;
+    boolean colorSolid = (vertexColixes == null || imesh.isColorSolid);
+    boolean colorArrayed = (colorSolid && imesh.polygonColixes != null);
+    short colix = this.colix;
+    for (int i = packedMesh.triangleCount; --i >= 0;) {
+      int iA = triangles[i * 3];
+      int iB = triangles[i * 3 + 1];
+      int iC = triangles[i * 3 + 2];
+      if (imesh.thisSet >= 0
+          && imesh.vertexSets[vertexMap[iA]] != imesh.thisSet)
+        continue;
+      short nA = normixes[iA];
+      short nB = normixes[iB];
+      short nC = normixes[iC];
+      if (frontOnly && transformedVectors[nA].z < 0
+          && transformedVectors[nB].z < 0 && transformedVectors[nC].z < 0)
+        continue;
+      short colixA, colixB, colixC;
+      if (colorSolid) {
+        int p = polygonMap[i];
+        if (colorArrayed && p < imesh.polygonColixes.length) {
+          short c = imesh.polygonColixes[p];
+          if (c == 0)
+            continue;
+          colix = c;
+        }
+        colixA = colixB = colixC = colix;
+      } else {
+        colixA = vertexColixes[vertexMap[iA]];
+        colixB = vertexColixes[vertexMap[iB]];
+        colixC = vertexColixes[vertexMap[iC]];
+        if (isBicolorMap && (colixA != colixB || colixB != colixC))
+          continue;
+      }
+      g3d.fillTriangle(screens[iA], colixA, nA, screens[iB], colixB, nB,
+          screens[iC], colixC, nC);
+    }
+  }
+
   protected void renderTriangles(boolean fill, boolean iShowTriangles,
                                  boolean isExport) {
     int[][] polygonIndexes = imesh.polygonIndexes;
@@ -0,0 +1,145 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.smiles;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Vector;
+
+import org.jmol.api.JmolEdge;
+import org.jmol.api.JmolNode;
+
+/**
+ * What SmilesMatcher keeps from one search of a set of model atoms
+ * to the next:
+ *
+ *  -- the atoms of each element, so that a search need not try
+ *     every selected atom as the first atom of its pattern; and
+ *
+ *  -- the rings of each size found by SmilesSearch.setRingData,
+ *     along with what those ring searches added to its ringSets.
+ *
+ * Both depend only on the elements, formal charges, and bonds of
+ * the selected atoms, so the index holds a snapshot of those, and
+ * SmilesMatcher starts a new index when that changes. Aromaticity
+ * is not kept, because it depends on the coordinates as well.
+ *
+ */
+final class SmilesAtomIndex {
+
+  private int[] topology;
+  private BitSet[] bsElements = new BitSet[128];
+  private Vector[] rings = new Vector[0];
+  private String[] ringSets = new String[0];
+
+  /**
+   * @param topology  from getTopology()
+   * @param atoms
+   * @param bsSelected
+   */
+  SmilesAtomIndex(int[] topology, JmolNode[] atoms, BitSet bsSelected) {
+    this.topology = topology;
+    for (int i = bsSelected.nextSetBit(0); i >= 0; i = bsSelected
+        .nextSetBit(i + 1)) {
+      int e = atoms[i].getElementNumber() & 127;
+      if (bsElements[e] == null)
+        bsElements[e] = new BitSet();
+      bsElements[e].set(i);
+    }
+  }
+
+  /**
+   * index, element, charge, and bonds of each selected atom, in order
+   *
+   * @param atoms
+   * @param bsSelected
+   * @return the snapshot used to check that an index is still current
+   */
+  static int[] getTopology(JmolNode[] atoms, BitSet bsSelected) {
+    int n = 0;
+    for (int i = bsSelected.nextSetBit(0); i >= 0; i = bsSelected
+        .nextSetBit(i + 1)) {
+      JmolEdge[] edges = atoms[i].getEdges();
+      n += 4 + (edges == null ? 0 : edges.length);
+    }
+    int[] topology = new int[n];
+    n = 0;
+    for (int i = bsSelected.nextSetBit(0); i >= 0; i = bsSelected
+        .nextSetBit(i + 1)) {
+      JmolNode atom = atoms[i];
+      JmolEdge[] edges = atom.getEdges();
+      int nEdges = (edges == null ? 0 : edges.length);
+      topology[n++] = i;
+      topology[n++] = atom.getElementNumber();
+      topology[n++] = atom.getFormalCharge();
+      topology[n++] = nEdges;
+      for (int k = 0; k < nEdges; k++)
+        topology[n++] = (atom.getBondedAtomIndex(k) << 1)
+            | (edges[k].isCovalent() ? 1 : 0);
+    }
+    return topology;
+  }
+
+  boolean isCurrent(int[] topology) {
+    return Arrays.equals(this.topology, topology);
+  }
+
+  int getSize() {
+    return topology.length;
+  }
+
+  /**
+   * @param elementNumber
+   * @return the selected atoms of this element; not to be modified
+   */
+  BitSet getElementAtoms(int elementNumber) {
+    BitSet bs = bsElements[elementNumber & 127];
+    return (bs == null ? new BitSet() : bs);
+  }
+
+  /**
+   * @param ringSize
+   * @return the rings of this size, as BitSets, or null if not known yet
+   */
+  synchronized Vector getRings(int ringSize) {
+    return (ringSize < rings.length ? rings[ringSize] : null);
+  }
+
+  synchronized String getRingSets(int ringSize) {
+    return ringSets[ringSize];
+  }
+
+  synchronized void setRings(int ringSize, Vector v, String s) {
+    if (ringSize >= rings.length) {
+      Vector[] r = new Vector[ringSize + 1];
+      System.arraycopy(rings, 0, r, 0, rings.length);
+      rings = r;
+      String[] rs = new String[ringSize + 1];
+      System.arraycopy(ringSets, 0, rs, 0, ringSets.length);
+      ringSets = rs;
+    }
+    rings[ringSize] = v;
+    ringSets[ringSize] = s;
+  }
+}
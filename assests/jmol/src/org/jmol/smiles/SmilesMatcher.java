@@ -25,10 +25,12 @@
 package org.jmol.smiles;
 
 import java.util.BitSet;
+import java.util.Hashtable;
 import java.util.Vector;
 
 import org.jmol.api.JmolNode;
 import org.jmol.api.SmilesMatcherInterface;
+import org.jmol.util.ParallelTasks;
 
 /**
  * Originating author: Nicholas Vervelle
@@ -65,6 +67,8 @@ import org.jmol.api.SmilesMatcherInterface;
  *                  Jmol BIOSMILES string with comment header.
  * 
  * BitSet getSubstructureSet  -- returns a single BitSet with all found atoms included
+ * 
+ * void setExecutor  -- allows searches of several models to be run in parallel
  *   
  *   
  *   in Jmol script:
@@ -91,6 +95,16 @@ public class SmilesMatcher implements SmilesMatcherInterface {
   private final static int MODE_ARRAY = 2;
   private final static int MODE_MAP = 3;
 
+  private Object executor;
+
+  /**
+   * @param executor  a java.util.concurrent.Executor, or null to search
+   *                  on the calling thread only
+   */
+  public void setExecutor(Object executor) {
+    this.executor = executor;
+  }
+
   public String getLastException() {
     return InvalidSmilesException.getLastError();
   }
@@ -259,25 +273,24 @@ public class SmilesMatcher implements SmilesMatcherInterface {
       if (atomCount < 0)
         search.isSmilesFind = true;
       search.setSelected(bsSelected);
-      search.bsRequired = null;//(bsRequired != null && bsRequired.cardinality() > 0 ? bsRequired : null);
-      search.setRingData(bsAromatic);
+      Vector vModels = (executor == null || atomCount <= 0 || firstMatchOnly
+          || matchAllAtoms ? null : getModelAtoms(pattern, search, mode));
+      Object ret = (vModels == null ? search(search, bsAromatic,
+          firstMatchOnly, matchAllAtoms, mode) : new ModelSearches(pattern,
+          isSmarts, atoms, atomCount, bsAromatic, search.bsSelected
+              .cardinality(), vModels, mode).search());
       Vector vSubstructures;
-      search.firstMatchOnly = firstMatchOnly;
-      search.matchAllAtoms = matchAllAtoms;
       switch (mode) {
       case MODE_BITSET:
-        search.asVector = false;
-        return (BitSet) search.search(false);
+        return (BitSet) ret;
       case MODE_ARRAY:
-        search.asVector = true;
-        vSubstructures = (Vector) search.search(false);
+        vSubstructures = (Vector) ret;
         BitSet[] bitsets = new BitSet[vSubstructures.size()];
         for (int i = 0; i < bitsets.length; i++)
           bitsets[i] = (BitSet) vSubstructures.get(i);
         return bitsets;
       case MODE_MAP:
-        search.getMaps = true;
-        vSubstructures = (Vector) search.search(false);
+        vSubstructures = (Vector) ret;
         int[][] maps = new int[vSubstructures.size()][];
         for (int i = 0; i < maps.length; i++)
           maps[i] = (int[]) vSubstructures.get(i);
@@ -291,4 +304,198 @@ public class SmilesMatcher implements SmilesMatcherInterface {
     return null;
   }
 
+  /**
+   * 
+   * @param search
+   * @param bsAromatic
+   * @param firstMatchOnly
+   * @param matchAllAtoms
+   * @param mode
+   * @return a BitSet for MODE_BITSET; otherwise a Vector
+   * @throws InvalidSmilesException
+   */
+  private Object search(SmilesSearch search, BitSet bsAromatic,
+                        boolean firstMatchOnly, boolean matchAllAtoms,
+                        int mode) throws InvalidSmilesException {
+    search.bsRequired = null;//(bsRequired != null && bsRequired.cardinality() > 0 ? bsRequired : null);
+    if (!search.isSmilesFind)
+      search.atomIndex = getAtomIndex(search.jmolAtoms, search.bsSelected);
+    search.setRingData(bsAromatic);
+    search.firstMatchOnly = firstMatchOnly;
+    search.matchAllAtoms = matchAllAtoms;
+    switch (mode) {
+    case MODE_BITSET:
+      search.asVector = false;
+      break;
+    case MODE_ARRAY:
+      search.asVector = true;
+      break;
+    case MODE_MAP:
+      search.getMaps = true;
+      break;
+    }
+    return search.search(false);
+  }
+
+  ////////////// atom indexes //////////////
+  
+  private JmolNode[] indexedAtoms;
+  private Hashtable htAtomIndexes = new Hashtable();
+  private int indexSize;
+
+  /**
+   * One SmilesAtomIndex is kept for each set of selected atoms searched --
+   * all atoms, or the atoms of each model -- as long as the elements and
+   * bonds of those atoms stay the same. 
+   * 
+   * @param atoms
+   * @param bsSelected
+   * @return the index for these atoms
+   */
+  private SmilesAtomIndex getAtomIndex(JmolNode[] atoms, BitSet bsSelected) {
+    int[] topology = SmilesAtomIndex.getTopology(atoms, bsSelected);
+    synchronized (htAtomIndexes) {
+      if (atoms != indexedAtoms) {
+        htAtomIndexes.clear();
+        indexedAtoms = atoms;
+        indexSize = 0;
+      }
+      SmilesAtomIndex index = (SmilesAtomIndex) htAtomIndexes.get(bsSelected);
+      if (index != null && index.isCurrent(topology))
+        return index;
+      if (index != null)
+        indexSize -= index.getSize();
+      // not more than a few selections' worth for the whole model set
+      if (indexSize + topology.length > 32 * atoms.length) {
+        htAtomIndexes.clear();
+        indexSize = 0;
+      }
+      index = new SmilesAtomIndex(topology, atoms, bsSelected);
+      htAtomIndexes.put(bsSelected.clone(), index);
+      indexSize += topology.length;
+      return index;
+    }
+  }
+
+  ////////////// searching models in parallel //////////////
+  
+  /**
+   * A connected pattern can only match atoms within one model, so the
+   * selected atoms of each model can be searched separately. The Vector
+   * or BitSet of results is the same as for all the atoms at once as long
+   * as the models' atoms are in order, not interleaved; the matches of
+   * each model are then in the order they would have been found anyway.
+   * Disconnected (".") and bioSMILES ("~") patterns are searched all at
+   * once, as are "||" patterns, whose matches are in order by subpattern,
+   * unless all that is wanted is the BitSet.
+   * 
+   * @param pattern
+   * @param search
+   * @param mode
+   * @return Vector of BitSets of the selected atoms by model, or null
+   */
+  private static Vector getModelAtoms(String pattern, SmilesSearch search,
+                                      int mode) {
+    if (pattern.indexOf('.') >= 0 || pattern.indexOf('~') >= 0
+        || mode != MODE_BITSET && search.subSearches != null)
+      return null;
+    Vector vModels = new Vector();
+    BitSet bsModels = new BitSet();
+    BitSet bsSelected = search.bsSelected;
+    JmolNode[] atoms = search.jmolAtoms;
+    BitSet bs = null;
+    int lastModel = -1;
+    for (int i = bsSelected.nextSetBit(0); i >= 0; i = bsSelected
+        .nextSetBit(i + 1)) {
+      int modelIndex = atoms[i].getModelIndex();
+      if (modelIndex != lastModel) {
+        if (bsModels.get(modelIndex))
+          return null;
+        bsModels.set(modelIndex);
+        vModels.addElement(bs = new BitSet());
+        lastModel = modelIndex;
+      }
+      bs.set(i);
+    }
+    return (vModels.size() < 2 ? null : vModels);
+  }
+
+  private class ModelSearches implements Runnable {
+    private String pattern;
+    private boolean isSmarts;
+    private JmolNode[] atoms;
+    private int atomCount;
+    private BitSet bsAromatic;
+    private int selectedAtomCount;
+    private Vector vModels;
+    private int mode;
+
+    private Object[] results;
+    private int next;
+    private Exception error;
+
+    ModelSearches(String pattern, boolean isSmarts, JmolNode[] atoms,
+        int atomCount, BitSet bsAromatic, int selectedAtomCount,
+        Vector vModels, int mode) {
+      this.pattern = pattern;
+      this.isSmarts = isSmarts;
+      this.atoms = atoms;
+      this.atomCount = atomCount;
+      this.bsAromatic = bsAromatic;
+      this.selectedAtomCount = selectedAtomCount;
+      this.vModels = vModels;
+      this.mode = mode;
+      results = new Object[vModels.size()];
+    }
+
+    /**
+     * @return the results of all models, in order
+     * @throws Exception
+     */
+    Object search() throws Exception {
+      // each thread takes the next model until there are none left
+      Runnable[] tasks = new Runnable[ParallelTasks.getTaskCount(executor,
+          Runtime.getRuntime().availableProcessors(), results.length, 1)];
+      for (int i = tasks.length; --i >= 0;)
+        tasks[i] = this;
+      ParallelTasks.run(executor, tasks, "SmilesMatcher");
+      if (error != null)
+        throw error;
+      BitSet bs = new BitSet();
+      Vector v = new Vector();
+      for (int i = 0; i < results.length; i++) {
+        if (mode == MODE_BITSET)
+          bs.or((BitSet) results[i]);
+        else
+          v.addAll((Vector) results[i]);
+      }
+      return (mode == MODE_BITSET ? (Object) bs : v);
+    }
+
+    public void run() {
+      try {
+        while (true) {
+          int i;
+          synchronized (this) {
+            if (next == results.length || error != null)
+              break;
+            i = next++;
+          }
+          SmilesSearch search = SmilesParser.getMolecule(pattern, isSmarts);
+          search.jmolAtoms = atoms;
+          search.jmolAtomCount = atomCount;
+          search.setSelected((BitSet) vModels.get(i));
+          // stop early only when the search of all models would
+          search.selectedAtomCount = selectedAtomCount;
+          results[i] = SmilesMatcher.this.search(search, bsAromatic, false,
+              false, mode);
+        }
+      } catch (Exception e) {
+        synchronized (this) {
+          if (error == null)
+            error = e;
+        }
+      }
+    }
+  }
 }
@@ -61,7 +61,7 @@ public class SmilesSearch extends JmolMolecule {
   String pattern;
   JmolNode[] jmolAtoms;
   int jmolAtomCount;
-  private BitSet bsSelected;
+  BitSet bsSelected;
   void setSelected(BitSet bs) {
     if (bs == null) {
       bs = new BitSet(jmolAtomCount);
@@ -87,6 +87,7 @@ public class SmilesSearch extends JmolMolecule {
   boolean ignoreStereochemistry;
   StringBuffer ringSets;
   BitSet bsAromatic = new BitSet();
+  SmilesAtomIndex atomIndex;
   SmilesAtom lastChainAtom;
 
   boolean asVector;
@@ -97,16 +98,19 @@ public class SmilesSearch extends JmolMolecule {
   
   private boolean isSilent;
   private boolean isRingCheck;
-  private int selectedAtomCount;
+  int selectedAtomCount; // may be preset for one model of a search of several
   private BitSet[] ringData;
   private int[] ringCounts;
   private int[] ringConnections;
   private BitSet bsFound = new BitSet(); 
+  private BitSet[] bsSeeds;
+  private BitSet bsRingAtoms;
   private Hashtable htNested;
   private int nNested;
   private SmilesBond nestedBond;
 
   private Vector vReturn;
+  private Hashtable htReturn; // the BitSets in vReturn, for asVector
   private BitSet bsReturn = new BitSet();
     
 
@@ -182,9 +186,19 @@ public class SmilesSearch extends JmolMolecule {
     for (int i = 3; i <= ringDataMax; i++) {
       if (i > jmolAtomCount)
         continue;
-      String smarts = "*1" + s.substring(0, i - 2) + "*1";
-      SmilesSearch search = SmilesParser.getMolecule(smarts, true);
-      Vector v = (Vector) getBitSets(search, false, true);
+      // ring perception is the same from one search to the next
+      // as long as the bonds are
+      Vector v = (atomIndex == null ? null : atomIndex.getRings(i));
+      if (v == null) {
+        int pt = ringSets.length();
+        String smarts = "*1" + s.substring(0, i - 2) + "*1";
+        SmilesSearch search = SmilesParser.getMolecule(smarts, true);
+        v = (Vector) getBitSets(search, false, true);
+        if (atomIndex != null)
+          atomIndex.setRings(i, v, ringSets.substring(pt));
+      } else {
+        ringSets.append(atomIndex.getRingSets(i));
+      }
       if (needAromatic)
         for (int r = v.size(); --r >= 0;) {
           BitSet bs = (BitSet) v.get(r);
@@ -204,6 +218,10 @@ public class SmilesSearch extends JmolMolecule {
       }
     }
     if (needRingData) {
+      bsRingAtoms = new BitSet();
+      for (int i = 3; i <= ringDataMax; i++)
+        if (ringData[i] != null)
+          bsRingAtoms.or(ringData[i]);
       for (int i = bsSelected.nextSetBit(0); i >= 0; i = bsSelected.nextSetBit(i + 1)) {
         JmolNode atom = jmolAtoms[i];
         JmolEdge[] bonds = atom.getEdges();
@@ -215,6 +233,67 @@ public class SmilesSearch extends JmolMolecule {
     }
   }
 
+  /**
+   * The selected atoms that might match a pattern atom that starts the
+   * search or a new component, going by element, aromaticity, and ring
+   * membership. These are only the checks of checkPrimitiveAtom() that
+   * are certain to fail for the others, so the search finds exactly
+   * what it would running through all of bsSelected.
+   * 
+   * @param atomNum
+   * @return bsSelected or a subset of it
+   */
+  private BitSet getSeeds(int atomNum) {
+    if (atomIndex == null)
+      return bsSelected;
+    if (bsSeeds == null)
+      bsSeeds = new BitSet[atomCount];
+    if (bsSeeds[atomNum] == null) {
+      SmilesAtom patternAtom = patternAtoms[atomNum];
+      BitSet bs = (BitSet) bsSelected.clone();
+      if (patternAtom.atomsOr == null) {
+        if (patternAtom.primitives == null)
+          setSeeds(patternAtom, bs);
+        else
+          for (int i = 0; i < patternAtom.nPrimitives; i++)
+            setSeeds(patternAtom.primitives[i], bs);
+      }
+      bsSeeds[atomNum] = bs;
+    }
+    return bsSeeds[atomNum];
+  }
+
+  private void setSeeds(SmilesAtom patternAtom, BitSet bs) {
+    if (patternAtom.not || patternAtom.iNested > 0 || patternAtom.isBioAtom)
+      return;
+    if (patternAtom.elementNumber >= 0)
+      bs.and(atomIndex.getElementAtoms(patternAtom.elementNumber));
+    if (!noAromatic && patternAtom.elementNumber != -2) {
+      if (patternAtom.isAromatic())
+        bs.and(bsAromatic);
+      else
+        bs.andNot(bsAromatic);
+    }
+    if (ringData == null)
+      return;
+    int n = patternAtom.ringSize;
+    if (n > 0) {
+      if (n >= ringData.length || ringData[n] == null)
+        bs.clear();
+      else
+        bs.and(ringData[n]);
+    } else if (n == 0) {
+      bs.andNot(bsRingAtoms);
+    } else if (n == -1) {
+      bs.and(bsRingAtoms);
+    }
+    n = patternAtom.ringMembership;
+    if (n == 0)
+      bs.andNot(bsRingAtoms);
+    else if (n == -1 || n > 0)
+      bs.and(bsRingAtoms);
+  }
+
   private Object getBitSets(SmilesSearch search, 
                             boolean firstAtomOnly, 
                             boolean isRingCheck) throws InvalidSmilesException {
@@ -227,6 +306,8 @@ public class SmilesSearch extends JmolMolecule {
     search.isSmarts = true;
     //search.measures = measures;
     search.bsAromatic = bsAromatic;
+    search.atomIndex = atomIndex;
+    search.bsRingAtoms = bsRingAtoms;
     search.ringData = ringData;
     search.ringCounts = ringCounts;
     search.ringConnections = ringConnections;
@@ -244,12 +325,14 @@ public class SmilesSearch extends JmolMolecule {
     } else {
       // processing || 
       search.haveSelected = haveSelected;
+      search.selectedAtomCount = selectedAtomCount;
       search.bsRequired = bsRequired;
       search.firstMatchOnly = firstMatchOnly;
       search.matchAllAtoms = matchAllAtoms;
       search.getMaps = getMaps;
       search.asVector = asVector;
       search.vReturn = vReturn;
+      search.htReturn = htReturn;
       search.bsReturn = bsReturn;
     }
     return search.search(firstAtomOnly);
@@ -300,11 +383,14 @@ public class SmilesSearch extends JmolMolecule {
 
     if (vReturn == null && (asVector || getMaps))
       vReturn = new Vector();
+    if (htReturn == null && asVector)
+      htReturn = new Hashtable();
     if (bsSelected == null) {
       bsSelected = new BitSet(jmolAtomCount);
       bsSelected.set(0, jmolAtomCount);
     }
-    selectedAtomCount = bsSelected.cardinality();
+    if (selectedAtomCount == 0)
+      selectedAtomCount = bsSelected.cardinality();
     if (subSearches != null) {
       for (int i = 0; i < subSearches.length; i++) {
         if (subSearches[i] == null)
@@ -485,7 +571,8 @@ public class SmilesSearch extends JmolMolecule {
           }
         }
         boolean skipGroup = (iAtom >= 0 && newPatternAtom.isBioAtom && (newPatternAtom.atomName == null || newPatternAtom.residueChar != null));
-        for (int j = bsSelected.nextSetBit(0); j >= 0; j = bsSelected
+        BitSet bsSeeds = getSeeds(atomNum);
+        for (int j = bsSeeds.nextSetBit(0); j >= 0; j = bsSeeds
             .nextSetBit(j + 1)) {
           if (!bs.get(j)
               && !checkMatch(newPatternAtom, atomNum, j, firstAtomOnly))
@@ -615,11 +702,10 @@ public class SmilesSearch extends JmolMolecule {
     }
 
     if (asVector) {
-      boolean isOK = true;
-      for (int j = vReturn.size(); --j >= 0 && isOK;)
-        isOK = !(((BitSet) vReturn.get(j)).equals(bs));
-      if (!isOK)
+      // a hashed lookup, not a scan of vReturn, for thousands of matches
+      if (htReturn.containsKey(bs))
         return true;
+      htReturn.put(bs, Boolean.TRUE);
       vReturn.add(bs);
     }
 
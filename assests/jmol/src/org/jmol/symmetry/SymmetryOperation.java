@@ -98,12 +98,13 @@ class SymmetryOperation extends Matrix4f {
     return (normalized || xyzOriginal == null ? xyz : xyzOriginal);
   }
 
-  private Point3f temp3 = new Point3f();
   void newPoint(Point3f atom1, Point3f atom2,
                        int transX, int transY, int transZ) {
-    temp3.set(atom1);
-    transform(temp3, temp3);
-    atom2.set(temp3.x + transX, temp3.y + transY, temp3.z + transZ);
+    // no temporary point -- this may be called from more than one thread
+    transform(atom1, atom2);
+    atom2.x += transX;
+    atom2.y += transY;
+    atom2.z += transZ;
   }
 
   String dumpInfo() {
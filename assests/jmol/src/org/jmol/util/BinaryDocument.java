@@ -26,8 +26,13 @@ package org.jmol.util;
 
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 
 
 //import java.io.RandomAccessFile;
@@ -42,6 +47,10 @@ import java.io.OutputStream;
  * Note that YOU are responsible for determining whether a file
  * is bigEndian or littleEndian; the default is bigEndian.
  * 
+ * Applications can read a local file through a memory mapping instead
+ * of a stream; see setMappedFile(). Values are then read directly from 
+ * the mapped buffer in the file's own byte order.
+ * 
  */
 
 public class BinaryDocument {
@@ -52,10 +61,12 @@ public class BinaryDocument {
 //  RandomAccessFile file;
   
   protected DataInputStream stream;
+  protected ByteBuffer buffer; // for a memory-mapped file
   protected boolean isRandom = false;
   protected boolean isBigEndian = true;
 
   public void close() {
+    buffer = null;
     try {
       stream.close();
     } catch (Exception e) {
@@ -80,6 +91,81 @@ public class BinaryDocument {
   
   public void setIsBigEndian(boolean TF) {
     this.isBigEndian = TF;
+    if (buffer != null)
+      buffer.order(TF ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+  }
+
+  ////////// memory mapping -- application only //////////
+  
+  /*
+   * The last file mapped stays mapped, so that reading the same file 
+   * again -- for a new cutoff, for instance -- does not read it again
+   * (as long as it has not changed). Each document gets its own view 
+   * of the mapping, with its own position and byte order.
+   * 
+   */
+  
+  private static File mappedFile;
+  private static long mappedFileTime;
+  private static long mappedFileLength;
+  private static ByteBuffer mappedBuffer;
+
+  /**
+   * Read a local file through a memory mapping rather than a stream.
+   * 
+   * @param file
+   * @param isBigEndian
+   * @return false if the file cannot be mapped (too large, gzipped, not
+   *         allowed); the caller should use setStream() instead
+   */
+  public boolean setMappedFile(File file, boolean isBigEndian) {
+    try {
+      ByteBuffer b = getMapping(file);
+      if (b == null)
+        return false;
+      buffer = b.duplicate();
+      nBytes = 0;
+      setIsBigEndian(isBigEndian);
+      Logger.info("BinaryDocument reading mapped file " + file);
+      return true;
+    } catch (Throwable e) {
+      Logger.error("BinaryDocument could not map " + file + ": " + e);
+      return false;
+    }
+  }
+
+  private static synchronized ByteBuffer getMapping(File file)
+      throws IOException {
+    file = file.getCanonicalFile();
+    long time = file.lastModified();
+    long length = file.length();
+    if (mappedBuffer != null && file.equals(mappedFile)
+        && time == mappedFileTime && length == mappedFileLength)
+      return mappedBuffer;
+    mappedBuffer = null;
+    mappedFile = null;
+    if (length < 2 || length > Integer.MAX_VALUE)
+      return null;
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    ByteBuffer b;
+    try {
+      // the mapping remains valid after the file is closed
+      b = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+    } finally {
+      raf.close();
+    }
+    if ((b.get(0) & 0xFF) == 0x1F && (b.get(1) & 0xFF) == 0x8B)
+      return null; // gzipped; must be streamed
+    mappedFile = file;
+    mappedFileTime = time;
+    mappedFileLength = length;
+    return mappedBuffer = b;
+  }
+
+  private void writeMapped(int pt0) throws IOException {
+    // copying a mapped file: the bytes just read, as they were in the file
+    for (int pt1 = buffer.position(); pt0 < pt1; pt0++)
+      os.write(buffer.get(pt0));
   }
   
   public void setStream(DataInputStream stream) {
@@ -97,6 +183,12 @@ public class BinaryDocument {
   }
 
   private byte ioReadByte() throws Exception {
+    if (buffer != null) {
+      byte b = buffer.get();
+      if (os != null)
+        os.write(b);
+      return b;
+    }
     byte b = stream.readByte();
     if (os != null)
       os.write(b);
@@ -127,7 +219,15 @@ public class BinaryDocument {
   }
 
   private int ioRead(byte[] b, int off, int len) throws Exception {
-    int n = stream.read(b, off, len);
+    int n;
+    if (buffer != null) {
+      n = Math.min(len, buffer.remaining());
+      if (n <= 0)
+        return -1;
+      buffer.get(b, off, n);
+    } else {
+      n = stream.read(b, off, len);
+    }
     if (n > 0 && os != null)
       os.write(b, off, n);
     return n;
@@ -144,12 +244,19 @@ public class BinaryDocument {
   
   public short readShort() throws Exception {
     nBytes += 2;
-    return (isBigEndian ? ioReadShort()
+    return (isBigEndian || buffer != null ? ioReadShort()
         : (short) ((((int) ioReadByte()) & 0xff) 
                  | (((int) ioReadByte()) & 0xff) << 8));
   }
 
   private short ioReadShort() throws Exception {
+    if (buffer != null) {
+      int pt = buffer.position();
+      short b = buffer.getShort();
+      if (os != null)
+        writeMapped(pt);
+      return b;
+    }
     short b = stream.readShort();
     if (os != null)
       os.write(b);
@@ -159,10 +266,17 @@ public class BinaryDocument {
 
   public int readInt() throws Exception {
     nBytes += 4;
-    return (isBigEndian ? ioReadInt() : readLEInt());
+    return (isBigEndian || buffer != null ? ioReadInt() : readLEInt());
   }
   
   private int ioReadInt() throws Exception {
+    if (buffer != null) {
+      int pt = buffer.position();
+      int i = buffer.getInt();
+      if (os != null)
+        writeMapped(pt);
+      return i;
+    }
     int i = stream.readInt();
     if (os != null)
       writeInt(i);
@@ -198,7 +312,7 @@ public class BinaryDocument {
   
   public long readLong() throws Exception {
     nBytes += 8;
-    return (isBigEndian ? ioReadLong()
+    return (isBigEndian || buffer != null ? ioReadLong()
        : ((((long) ioReadByte()) & 0xff)
         | (((long) ioReadByte()) & 0xff) << 8
         | (((long) ioReadByte()) & 0xff) << 16
@@ -210,6 +324,13 @@ public class BinaryDocument {
   }
 
   private long ioReadLong() throws Exception {
+    if (buffer != null) {
+      int pt = buffer.position();
+      long b = buffer.getLong();
+      if (os != null)
+        writeMapped(pt);
+      return b;
+    }
     long b = stream.readLong();
     if (os != null)
       writeLong(b);
@@ -223,11 +344,18 @@ public class BinaryDocument {
 
   public float readFloat() throws Exception {
     nBytes += 4;
-    return (isBigEndian ? ioReadFloat() 
+    return (isBigEndian || buffer != null ? ioReadFloat() 
         : Float.intBitsToFloat(readLEInt()));
   }
   
   private float ioReadFloat() throws Exception {
+    if (buffer != null) {
+      int pt = buffer.position();
+      float f = buffer.getFloat();
+      if (os != null)
+        writeMapped(pt);
+      return f;
+    }
     float f = stream.readFloat();
     if (os != null)
       os.write(Float.floatToIntBits(f));
@@ -236,10 +364,17 @@ public class BinaryDocument {
 
   public double readDouble() throws Exception {
     nBytes += 8;
-    return (isBigEndian ? ioReadDouble() : Double.longBitsToDouble(readLELong()));  
+    return (isBigEndian || buffer != null ? ioReadDouble() : Double.longBitsToDouble(readLELong()));  
   }
     
   private double ioReadDouble() throws Exception {
+    if (buffer != null) {
+      int pt = buffer.position();
+      double d = buffer.getDouble();
+      if (os != null)
+        writeMapped(pt);
+      return d;
+    }
     double d = stream.readDouble();
     if (os != null)
       writeLong(Double.doubleToRawLongBits(d));
@@ -269,6 +404,11 @@ public class BinaryDocument {
     try {
       if (offset == nBytes)
         return;
+      if (buffer != null) {
+        buffer.position((int) offset);
+        nBytes = offset;
+        return;
+      }
       if (offset < nBytes) {
         stream.reset();
         nBytes = 0;
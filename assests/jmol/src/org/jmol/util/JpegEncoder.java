@@ -24,6 +24,8 @@
  * 2) methods not used by Jmol were commented out
  * 3) method and variable signatures were modified to provide 
  *    more appropriate method privacy. 
+ * 4) JpegEncoder is no longer a Frame, which cannot be created
+ *    headless; its MediaTracker uses a Canvas instead.
  * 
  * Original files are maintained in the Jmol.src.com.obrador package, but
  * these original files are not distributed with Jmol.
@@ -45,7 +47,7 @@ import java.io.*;
  * 
  */
 
-public class JpegEncoder extends Frame
+public class JpegEncoder
 {
   //Thread runner;
   private BufferedOutputStream outStream;
@@ -58,7 +60,7 @@ public class JpegEncoder extends Frame
 
   public JpegEncoder(Image image, int quality, OutputStream out, String comment)
   {
-    MediaTracker tracker = new MediaTracker(this);
+    MediaTracker tracker = new MediaTracker(new Canvas());
     tracker.addImage(image, 0);
     try {
       tracker.waitForID(0);
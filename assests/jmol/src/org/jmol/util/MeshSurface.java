@@ -27,6 +27,7 @@ public class MeshSurface {
   public BitSet bsFaces;
   public Point3f ptOffset;
   public float scale3d;
+  protected PackedMesh packedMesh; // level of detail, from Mesh
 
   public MeshSurface() {
   }
@@ -125,6 +126,7 @@ public class MeshSurface {
   }
   
   public void invalidatePolygons() {
+    packedMesh = null;
     for (int i = polygonCount; --i >= 0;)
       if (!setABC(i))
         polygonIndexes[i] = null;
@@ -141,6 +143,7 @@ public class MeshSurface {
   }
 
   public void slabPolygons(Object slabbingObject, boolean andCap) {
+    packedMesh = null;
     if (slabbingObject instanceof Point4f) {
       getIntersection((Point4f) slabbingObject, null, andCap);
       return;
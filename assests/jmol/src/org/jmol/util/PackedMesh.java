@@ -0,0 +1,285 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-12 07:13:41 -0500 (Tue, 12 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.util;
+
+import javax.vecmath.Point3f;
+
+/**
+ *<p>
+ * A triangle mesh in flat arrays -- x, y, z for each vertex, three vertex
+ * indexes for each triangle, and a normix for each vertex -- holding a
+ * decimated level of detail of a large MeshSurface. The renderers draw it in
+ * place of the full mesh while the model is in motion.
+ *</p>
+ *<p>
+ * Decimation is by vertex clustering. The vertices are binned in cubic cells
+ * about two average edge lengths on a side, and each cell becomes one vertex
+ * at the mean position of its members. A triangle is kept only if its three
+ * vertices land in three different cells, and only once for any three cells.
+ * For a molecular surface that leaves about one triangle in five.
+ *</p>
+ *<p>
+ * Each packed vertex and triangle remembers the mesh vertex or polygon it was
+ * taken from, so that colors and lighting can still come from the full mesh.
+ *</p>
+ */
+public class PackedMesh {
+
+  /**
+   * meshes with fewer polygons are always drawn in full
+   */
+  public final static int MIN_POLYGON_COUNT = 20000;
+
+  private final static float CELL_EDGE_RATIO = 2;
+  private final static int EDGE_SAMPLE_COUNT = 1000;
+
+  public int vertexCount;
+  public float[] xyz;
+  public short[] normixes;
+  public int[] vertexMap;
+  public int triangleCount;
+  public int[] triangles;
+  public int[] polygonMap;
+
+  private Point3f[] sourceVertices;
+  private int sourceVertexCount;
+  private int sourcePolygonCount;
+
+  private PackedMesh() {
+  }
+
+  /**
+   * @param vertices
+   * @param vertexCount
+   * @param polygonCount
+   * @return true if this was made from this same mesh
+   */
+  public boolean isValidFor(Point3f[] vertices, int vertexCount,
+                            int polygonCount) {
+    return (vertices == sourceVertices && vertexCount == sourceVertexCount
+        && polygonCount == sourcePolygonCount);
+  }
+
+  /**
+   * picks up the normixes of the full mesh again, after a change of lighting
+   *
+   * @param meshNormixes
+   */
+  public void setNormixes(short[] meshNormixes) {
+    for (int i = vertexCount; --i >= 0;)
+      normixes[i] = meshNormixes[vertexMap[i]];
+  }
+
+  /**
+   *
+   * @param vertices
+   * @param vertexCount
+   * @param polygonIndexes  triangles; null entries and lines are skipped
+   * @param polygonCount
+   * @param normixes        one per vertex
+   * @return the decimated mesh, or null if there is nothing to decimate
+   */
+  public static PackedMesh getLevelOfDetail(Point3f[] vertices,
+                                            int vertexCount,
+                                            int[][] polygonIndexes,
+                                            int polygonCount, short[] normixes) {
+    float cellSize = getMeanEdgeLength(vertices, polygonIndexes, polygonCount)
+        * CELL_EDGE_RATIO;
+    if (!(cellSize > 0))
+      return null;
+
+    // the box of the vertices that are used
+
+    Point3f min = new Point3f(Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE);
+    Point3f max = new Point3f(-Float.MAX_VALUE, -Float.MAX_VALUE,
+        -Float.MAX_VALUE);
+    for (int i = polygonCount; --i >= 0;) {
+      int[] p = polygonIndexes[i];
+      if (!isTriangle(p, vertices))
+        continue;
+      for (int j = 3; --j >= 0;) {
+        Point3f v = vertices[p[j]];
+        min.x = Math.min(min.x, v.x);
+        min.y = Math.min(min.y, v.y);
+        min.z = Math.min(min.z, v.z);
+        max.x = Math.max(max.x, v.x);
+        max.y = Math.max(max.y, v.y);
+        max.z = Math.max(max.z, v.z);
+      }
+    }
+    if (min.x > max.x)
+      return null;
+    int nx, ny, nz;
+    while (true) {
+      nx = (int) ((max.x - min.x) / cellSize) + 1;
+      ny = (int) ((max.y - min.y) / cellSize) + 1;
+      nz = (int) ((max.z - min.z) / cellSize) + 1;
+      if ((long) nx * ny * nz < Integer.MAX_VALUE)
+        break;
+      cellSize *= 2;
+    }
+
+    // one cluster for each occupied cell
+
+    PackedMesh pm = new PackedMesh();
+    pm.sourceVertices = vertices;
+    pm.sourceVertexCount = vertexCount;
+    pm.sourcePolygonCount = polygonCount;
+    int[] clusters = new int[vertexCount];
+    for (int i = vertexCount; --i >= 0;)
+      clusters[i] = -1;
+    Int2IntHash htCells = new Int2IntHash(1024);
+    int n = 0;
+    float[] xyz = new float[3 * 256];
+    int[] counts = new int[256];
+    int[] vertexMap = new int[256];
+    for (int i = 0; i < polygonCount; i++) {
+      int[] p = polygonIndexes[i];
+      if (!isTriangle(p, vertices))
+        continue;
+      for (int j = 0; j < 3; j++) {
+        int iv = p[j];
+        if (clusters[iv] >= 0)
+          continue;
+        Point3f v = vertices[iv];
+        int cell = ((int) ((v.x - min.x) / cellSize) * ny
+            + (int) ((v.y - min.y) / cellSize))
+            * nz + (int) ((v.z - min.z) / cellSize);
+        int c = htCells.get(cell);
+        if (c == Integer.MIN_VALUE) {
+          htCells.put(cell, c = n++);
+          if (n == counts.length) {
+            xyz = ArrayUtil.doubleLength(xyz);
+            counts = ArrayUtil.doubleLength(counts);
+            vertexMap = ArrayUtil.doubleLength(vertexMap);
+          }
+          vertexMap[c] = iv;
+        }
+        clusters[iv] = c;
+        counts[c]++;
+        xyz[c * 3] += v.x;
+        xyz[c * 3 + 1] += v.y;
+        xyz[c * 3 + 2] += v.z;
+      }
+    }
+    pm.vertexCount = n;
+    pm.xyz = new float[n * 3];
+    pm.vertexMap = new int[n];
+    pm.normixes = new short[n];
+    for (int c = 0; c < n; c++) {
+      for (int k = 0; k < 3; k++)
+        pm.xyz[c * 3 + k] = xyz[c * 3 + k] / counts[c];
+      pm.vertexMap[c] = vertexMap[c];
+    }
+    pm.setNormixes(normixes);
+
+    // the triangles left, each set of three clusters once
+
+    boolean isUnique = (n < (1 << 21));
+    long[] keys = (isUnique ? new long[Integer.highestOneBit(polygonCount) * 4]
+        : null);
+    int[] triangles = new int[3 * 256];
+    int[] polygonMap = new int[256];
+    int nt = 0;
+    for (int i = 0; i < polygonCount; i++) {
+      int[] p = polygonIndexes[i];
+      if (!isTriangle(p, vertices))
+        continue;
+      int a = clusters[p[0]];
+      int b = clusters[p[1]];
+      int c = clusters[p[2]];
+      if (a == b || b == c || a == c)
+        continue;
+      if (isUnique) {
+        // rotated so that the lowest comes first; winding is kept
+        long key = (a < b && a < c ? getKey(a, b, c) : b < c ? getKey(b, c, a)
+            : getKey(c, a, b));
+        if (!addKey(keys, key))
+          continue;
+      }
+      if (nt == polygonMap.length) {
+        triangles = ArrayUtil.doubleLength(triangles);
+        polygonMap = ArrayUtil.doubleLength(polygonMap);
+      }
+      triangles[nt * 3] = a;
+      triangles[nt * 3 + 1] = b;
+      triangles[nt * 3 + 2] = c;
+      polygonMap[nt++] = i;
+    }
+    pm.triangleCount = nt;
+    pm.triangles = ArrayUtil.setLength(triangles, nt * 3);
+    pm.polygonMap = ArrayUtil.setLength(polygonMap, nt);
+    Logger.info("PackedMesh: " + polygonCount + " polygons reduced to " + nt
+        + " triangles, " + n + " vertices");
+    return pm;
+  }
+
+  private static boolean isTriangle(int[] p, Point3f[] vertices) {
+    return (p != null && p[1] != p[2] && vertices[p[0]] != null
+        && vertices[p[1]] != null && vertices[p[2]] != null
+        && !Float.isNaN(vertices[p[0]].x) && !Float.isNaN(vertices[p[1]].x)
+        && !Float.isNaN(vertices[p[2]].x));
+  }
+
+  private static float getMeanEdgeLength(Point3f[] vertices,
+                                         int[][] polygonIndexes,
+                                         int polygonCount) {
+    int step = Math.max(1, polygonCount / EDGE_SAMPLE_COUNT);
+    double sum = 0;
+    int n = 0;
+    for (int i = 0; i < polygonCount; i += step) {
+      int[] p = polygonIndexes[i];
+      if (!isTriangle(p, vertices))
+        continue;
+      sum += vertices[p[0]].distance(vertices[p[1]]);
+      n++;
+    }
+    return (n == 0 ? 0 : (float) (sum / n));
+  }
+
+  private static long getKey(int a, int b, int c) {
+    return ((long) a << 42) | ((long) b << 21) | c;
+  }
+
+  /**
+   * open addressing, with 0 for empty, so keys are stored plus one
+   *
+   * @param keys  length a power of 2, at least twice the number of keys
+   * @param key
+   * @return false if already there
+   */
+  private static boolean addKey(long[] keys, long key) {
+    key++;
+    int mask = keys.length - 1;
+    int h = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+    for (int i = h & mask;; i = (i + 1) & mask) {
+      if (keys[i] == 0) {
+        keys[i] = key;
+        return true;
+      }
+      if (keys[i] == key)
+        return false;
+    }
+  }
+
+}
@@ -0,0 +1,126 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-18 07:13:41 -0500 (Mon, 18 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.util;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs a set of tasks on the viewer's executor and waits for all of them.
+ * The last task is run on the calling thread itself, which would otherwise
+ * just be waiting. The first error thrown by any task is rethrown on the
+ * calling thread once all of the tasks have finished.
+ *
+ * The executor is passed as an Object, as elsewhere in Jmol, so that
+ * classes using this one still load without java.util.concurrent.
+ *
+ */
+public final class ParallelTasks {
+
+  private int pending;
+  private Throwable error;
+
+  private ParallelTasks(int n) {
+    pending = n;
+  }
+
+  /**
+   * @param executor  a java.util.concurrent.Executor, or null
+   * @param nThreads  the most threads to use
+   * @param n         the number of items to be divided among the tasks
+   * @param nMin      the fewest items worth handing to another thread
+   * @return the number of tasks to divide the items into; 1 if there is no
+   *         executor or too few items
+   */
+  public static int getTaskCount(Object executor, int nThreads, int n,
+                                 int nMin) {
+    return (executor == null ? 1 : Math.max(1, Math.min(nThreads, n / nMin)));
+  }
+
+  /**
+   * Runs tasks[0] through tasks[n - 2] on the executor and tasks[n - 1] on
+   * the calling thread, then waits for all of them. With no executor, all
+   * are run on the calling thread, in order.
+   *
+   * @param executor  a java.util.concurrent.Executor, or null
+   * @param tasks
+   * @param name      for the error log
+   */
+  public static void run(Object executor, Runnable[] tasks, String name) {
+    int n = tasks.length;
+    if (executor == null || n < 2) {
+      for (int i = 0; i < n; i++)
+        tasks[i].run();
+      return;
+    }
+    ParallelTasks batch = new ParallelTasks(n);
+    Executor ex = (Executor) executor;
+    for (int i = 0; i < n - 1; i++)
+      ex.execute(batch.new Task(tasks[i]));
+    batch.new Task(tasks[n - 1]).run();
+    batch.waitForAll(name);
+  }
+
+  private synchronized void waitForAll(String name) {
+    while (pending > 0) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        // ignore
+      }
+    }
+    if (error == null)
+      return;
+    Logger.error(name + " error: " + error);
+    if (error instanceof Error)
+      throw (Error) error;
+    if (error instanceof RuntimeException)
+      throw (RuntimeException) error;
+    throw new RuntimeException(error.toString());
+  }
+
+  private synchronized void done(Throwable e) {
+    if (e != null && error == null)
+      error = e;
+    --pending;
+    notifyAll();
+  }
+
+  private class Task implements Runnable {
+    private final Runnable task;
+
+    Task(Runnable task) {
+      this.task = task;
+    }
+
+    public void run() {
+      Throwable e = null;
+      try {
+        task.run();
+      } catch (Throwable t) {
+        e = t;
+      } finally {
+        done(e);
+      }
+    }
+  }
+}
@@ -37,6 +37,7 @@ public class SurfaceFileTyper {
    */
   
   public final static String PMESH_BINARY_MAGIC_NUMBER = "PM" + '\1' + '\0';
+  public final static String JVXL_BINARY_MAGIC_NUMBER = "JX" + '\1' + '\0';
   
   public static String determineSurfaceFileType(InputStream is) {
     BufferedReader br;
@@ -66,6 +67,8 @@ public class SurfaceFileTyper {
     System.out.println("");
     if (line.indexOf("Here is your gzipped map") >= 0)
       return "UPPSALA" + line;
+    if (line.indexOf(JVXL_BINARY_MAGIC_NUMBER) == 0)
+      return "JvxlBinary";
     if (line.indexOf("<jvxl") >= 0 && line.indexOf("<?xml") >= 0)
       return "JvxlXML";
     if (line.indexOf("#JVXL+") >= 0)
@@ -0,0 +1,282 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-09-16 06:40:57 -0500 (Thu, 16 Sep 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Vector;
+
+/**
+ * The coordinates of the steps of a trajectory, from MdCrdReader or from
+ * LOAD TRAJECTORY, one entry per step. Each step is a single packed
+ * x y z x y z ... array rather than a Point3f per atom:
+ *
+ *   float[]   by default
+ *
+ *   short[]   with isCompressed -- 16-bit fixed point within the bounding
+ *             box of that step; 1/65535 of the box edge, or 0.002 Angstroms
+ *             for a 130-Angstrom box
+ *
+ *   a file    with isPaged -- the same float or short data, written to a
+ *             temporary file as the steps are read and mapped back in
+ *             afterward, so that it is the operating system and not the
+ *             Java heap that holds the steps that are not being displayed
+ *
+ * Steps can have different atom counts.
+ *
+ */
+public class TrajectorySteps {
+
+  private final static int MAX_MAP = 1 << 30;
+
+  private boolean isCompressed;
+  private boolean isPaged;
+  private Vector steps = new Vector();
+
+  private RandomAccessFile raf;
+  private long fileLength;
+  private Vector unmappedSteps;
+
+  private static class Step {
+    int atomCount;
+    float[] xyz;
+    short[] sxyz;
+    float[] box; // x0 y0 z0 dx dy dz, where x = x0 + (sx + 32768) * dx
+    ByteBuffer buf;
+    long offset;
+    boolean isShort;
+  }
+
+  public TrajectorySteps(boolean isCompressed, boolean isPaged) {
+    this.isCompressed = isCompressed;
+    this.isPaged = isPaged;
+  }
+
+  public boolean isCompressed() {
+    return isCompressed;
+  }
+
+  public boolean isPaged() {
+    return isPaged;
+  }
+
+  public int size() {
+    return steps.size();
+  }
+
+  public int getAtomCount(int i) {
+    return ((Step) steps.get(i)).atomCount;
+  }
+
+  /**
+   * @param xyz        packed coordinates; kept, not copied, if stored as float[]
+   * @param atomCount
+   */
+  public void addStep(float[] xyz, int atomCount) {
+    Step step = new Step();
+    step.atomCount = atomCount;
+    int n = atomCount * 3;
+    if (isCompressed)
+      compress(step, xyz, n);
+    if (isPaged && writeStep(step, xyz, n))
+      return;
+    if (!step.isShort)
+      step.xyz = xyz;
+    steps.addElement(step);
+  }
+
+  public void addSteps(TrajectorySteps trajectorySteps) {
+    trajectorySteps.mapSteps();
+    for (int i = 0; i < trajectorySteps.steps.size(); i++)
+      steps.addElement(trajectorySteps.steps.get(i));
+  }
+
+  /**
+   * @param i
+   * @param xyz  to be filled, or null or too short for a new array
+   * @return     the packed coordinates of step i
+   */
+  public float[] getStep(int i, float[] xyz) {
+    Step step = (Step) steps.get(i);
+    int n = step.atomCount * 3;
+    if (xyz == null || xyz.length < n)
+      xyz = new float[n];
+    if (step.xyz != null) {
+      System.arraycopy(step.xyz, 0, xyz, 0, n);
+      return xyz;
+    }
+    if (step.sxyz != null) {
+      expand(step.box, step.sxyz, null, 0, xyz, n);
+      return xyz;
+    }
+    if (step.buf == null && !mapSteps())
+      return xyz;
+    ByteBuffer buf = step.buf;
+    int pt = (int) step.offset;
+    if (step.isShort) {
+      float[] box = new float[6];
+      for (int j = 0; j < 6; j++, pt += 4)
+        box[j] = buf.getFloat(pt);
+      expand(box, null, buf, pt, xyz, n);
+    } else {
+      for (int j = 0; j < n; j++, pt += 4)
+        xyz[j] = buf.getFloat(pt);
+    }
+    return xyz;
+  }
+
+  private static void compress(Step step, float[] xyz, int n) {
+    float[] box = new float[] { Float.MAX_VALUE, Float.MAX_VALUE,
+        Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+    for (int i = 0; i < n; i++) {
+      float x = xyz[i];
+      if (Float.isNaN(x))
+        return; // stays float
+      int j = i % 3;
+      if (x < box[j])
+        box[j] = x;
+      if (x > box[j + 3])
+        box[j + 3] = x;
+    }
+    for (int j = 0; j < 3; j++)
+      box[j + 3] = (n == 0 ? 0 : (box[j + 3] - box[j]) / 65535);
+    short[] sxyz = new short[n];
+    for (int i = 0; i < n; i++) {
+      int j = i % 3;
+      sxyz[i] = (short) (box[j + 3] == 0 ? -32768 : Math
+          .round((xyz[i] - box[j]) / box[j + 3]) - 32768);
+    }
+    step.box = box;
+    step.sxyz = sxyz;
+    step.isShort = true;
+  }
+
+  private static void expand(float[] box, short[] sxyz, ByteBuffer buf,
+                             int pt, float[] xyz, int n) {
+    for (int i = 0; i < n; i++, pt += 2) {
+      int j = i % 3;
+      int s = (sxyz == null ? buf.getShort(pt) : sxyz[i]);
+      xyz[i] = box[j] + (s + 32768) * box[j + 3];
+    }
+  }
+
+  ////////////// paging //////////////
+
+  /**
+   * appends the step to the temporary file
+   *
+   * @param step
+   * @param xyz
+   * @param n
+   * @return false if it could not be written and must be held in memory
+   */
+  private boolean writeStep(Step step, float[] xyz, int n) {
+    try {
+      if (raf == null) {
+        File file = File.createTempFile("jmol", ".trajectory");
+        raf = new RandomAccessFile(file, "rw");
+        // the open file and its mapping remain after the name is gone
+        if (!file.delete())
+          file.deleteOnExit();
+        fileLength = 0;
+        unmappedSteps = new Vector();
+      }
+      ByteBuffer b = ByteBuffer.allocate(step.isShort ? 24 + n * 2 : n * 4);
+      b.order(ByteOrder.nativeOrder());
+      if (step.isShort) {
+        for (int j = 0; j < 6; j++)
+          b.putFloat(step.box[j]);
+        for (int i = 0; i < n; i++)
+          b.putShort(step.sxyz[i]);
+      } else {
+        for (int i = 0; i < n; i++)
+          b.putFloat(xyz[i]);
+      }
+      b.flip();
+      FileChannel channel = raf.getChannel();
+      while (b.hasRemaining())
+        channel.write(b, fileLength + b.position());
+    } catch (Exception e) {
+      // no temporary files for an applet, for example
+      Logger.error("TrajectorySteps: " + e + "; keeping steps in memory");
+      isPaged = false;
+      return false;
+    }
+    step.offset = fileLength;
+    fileLength += (step.isShort ? 24 + n * 2 : n * 4);
+    step.box = null;
+    step.sxyz = null;
+    steps.addElement(step);
+    unmappedSteps.addElement(step);
+    return true;
+  }
+
+  /**
+   * maps the temporary file in sections of up to 1 GB, whole steps per
+   * section, and closes it. Steps added after this start a new file.
+   *
+   * @return false if mapping failed
+   */
+  private boolean mapSteps() {
+    if (raf == null)
+      return false;
+    try {
+      FileChannel channel = raf.getChannel();
+      int n = unmappedSteps.size();
+      for (int i0 = 0; i0 < n;) {
+        long start = getOffset(i0);
+        int i1 = i0 + 1;
+        while (i1 < n && getOffset(i1 + 1) - start <= MAX_MAP)
+          i1++;
+        long end = getOffset(i1);
+        ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start,
+            end - start);
+        buf.order(ByteOrder.nativeOrder());
+        for (int i = i0; i < i1; i++) {
+          Step step = (Step) unmappedSteps.get(i);
+          step.buf = buf;
+          step.offset -= start;
+        }
+        i0 = i1;
+      }
+      raf.close();
+    } catch (IOException e) {
+      Logger.error("TrajectorySteps: " + e);
+      return false;
+    } finally {
+      raf = null;
+      unmappedSteps = null;
+    }
+    return true;
+  }
+
+  private long getOffset(int i) {
+    return (i < unmappedSteps.size() ? ((Step) unmappedSteps.get(i)).offset
+        : fileLength);
+  }
+
+}
@@ -26,6 +26,7 @@ package org.jmol.viewer;
 import org.jmol.util.ArrayUtil;
 import org.jmol.util.BinaryDocument;
 import org.jmol.util.CompoundDocument;
+import org.jmol.util.Escape;
 import org.jmol.util.Logger;
 import org.jmol.util.Parser;
 import org.jmol.util.TextFormat;
@@ -33,6 +34,7 @@ import org.jmol.util.ZipUtil;
 
 
 import org.jmol.api.JmolFileReaderInterface;
+import org.jmol.api.JmolLoadMonitor;
 import org.jmol.api.JmolViewer;
 
 import java.net.URL;
@@ -60,10 +62,15 @@ import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Date;
+import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
 
+import javax.vecmath.Point3f;
+
 public class FileManager {
 
   protected Viewer viewer;
@@ -228,6 +235,10 @@ public class FileManager {
       viewer.scriptStatus("Requesting " + fullPathName);
     FileReader fileReader = new FileReader(fileName, fullPathName, nameAsGiven,
         fileType, null, htParams, isAppend);
+    ModelLoadMonitor loadMonitor = (ModelLoadMonitor) htParams
+        .get("loadMonitor");
+    if (loadMonitor != null)
+      return fileReader.runAsynchronously(loadMonitor);
     fileReader.run();
     return fileReader.atomSetCollection;
   }
@@ -365,6 +376,94 @@ public class FileManager {
         : null);
   }
 
+  /**
+   * @param fullPathName
+   * @return the file if this is a plain local file that we can read
+   *         directly (not in an applet, not a URL, not in a zip file);
+   *         otherwise null
+   */
+  File getLocalFile(String fullPathName) {
+    if (appletDocumentBase != null || fullPathName == null
+        || fullPathName.indexOf("|") >= 0 || urlTypeIndex(fullPathName) >= 0)
+      return null;
+    try {
+      File file = new File(fullPathName);
+      return (file.isFile() ? file : null);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  /////////////////////// model cache ////////////////////////
+
+  private String fileCacheDirectory = "";
+
+  void setFileCacheDirectory(String dir) {
+    fileCacheDirectory = (dir == null ? "" : dir);
+  }
+
+  /**
+   * A model read from a local file can be kept in binary form in the
+   * fileCacheDirectory, one file per model file. The key records the 
+   * file's length and date and the load parameters; if any of 
+   * those change, the file is read again and the cache replaced.
+   * 
+   * @param fullPathName
+   * @param fileType
+   * @param htParams
+   * @return {cacheFileName, key}, or null if this load is not to be cached
+   */
+  private String[] getModelCacheFileAndKey(String fullPathName,
+                                           String fileType, Hashtable htParams) {
+    if (fileCacheDirectory.length() == 0)
+      return null;
+    File file = getLocalFile(fullPathName);
+    if (file == null)
+      return null;
+    String path = file.getAbsolutePath();
+    StringBuffer key = new StringBuffer();
+    key.append(JmolConstants.version).append('\n').append(path).append('\n')
+        .append(file.length()).append('\n').append(file.lastModified())
+        .append('\n').append(fileType).append('\n');
+    Object[] keys = htParams.keySet().toArray();
+    Arrays.sort(keys);
+    for (int i = 0; i < keys.length; i++) {
+      String name = (String) keys[i];
+      if (name.equals("viewer") || name.equals("executor")
+          || name.equals("loadMonitor") || name.equals("loadScript")
+          || name.equals("loadState") || name.equals("fullPathName"))
+        continue;
+      Object value = htParams.get(name);
+      if (!(value instanceof String || value instanceof Number
+          || value instanceof Boolean || value instanceof BitSet
+          || value instanceof Point3f || value instanceof int[] 
+          || value instanceof float[]))
+        return null;
+      key.append(name).append('=').append(Escape.escape(value)).append('\n');
+    }
+    String cacheFileName = new File(fileCacheDirectory, file.getName() + "."
+        + Integer.toHexString(path.hashCode()) + ".jmolcache").getPath();
+    return new String[] { cacheFileName, key.toString() };
+  }
+
+  /**
+   * @param htParams0
+   * @param htParams
+   * @return the entries of htParams that are new or changed
+   */
+  private static Hashtable getParametersSet(Hashtable htParams0,
+                                            Hashtable htParams) {
+    Hashtable htSet = new Hashtable();
+    Enumeration e = htParams.keys();
+    while (e.hasMoreElements()) {
+      Object name = e.nextElement();
+      Object value = htParams.get(name);
+      if (!value.equals(htParams0.get(name)))
+        htSet.put(name, value);
+    }
+    return htSet;
+  }
+
   Object getInputStreamOrErrorMessageFromName(String name, boolean showMsg,
                                               boolean checkOnly) {
     return getInputStreamOrPost(name, showMsg, null, checkOnly, appletDocumentBase, appletProxy);
@@ -1195,6 +1294,7 @@ public class FileManager {
     private BufferedReader reader;
     private Hashtable htParams;
     private boolean isAppend;
+    private JmolLoadMonitor loadMonitor;
 
     FileReader(String fileName, String fullPathName, String nameAsGiven, String type,
         BufferedReader reader, Hashtable htParams, boolean isAppend) {
@@ -1208,13 +1308,69 @@ public class FileManager {
     }
 
     void run() {
+      if (!isAppend && viewer.displayLoadErrors)
+        viewer.zap(false, true, false);
+      read();
+      setFileInfo();
+    }
 
+    /**
+     * reads the file on a thread of its own while this one shows the
+     * models read so far; the viewer is only touched from this thread
+     * 
+     * @param loadMonitor
+     * @return the atomSetCollection, an error message, or "#CANCELED#"
+     */
+    Object runAsynchronously(ModelLoadMonitor loadMonitor) {
+      this.loadMonitor = loadMonitor;
       if (!isAppend && viewer.displayLoadErrors)
         viewer.zap(false, true, false);
+      boolean isDone = loadMonitor.run(new Runnable() {
+        public void run() {
+          read();
+        }
+      }, fullPathNameIn, fileNameIn);
+      // the final model set replaces any preview just as it would a zapped one 
+      if (loadMonitor.havePreview())
+        viewer.zap(false, true, false);
+      htParams.remove("loadMonitor");
+      if (!isDone)
+        return "#CANCELED#";
+      setFileInfo();
+      return atomSetCollection;
+    }
+
+    private void setFileInfo() {
+      if (atomSetCollection instanceof String)
+        return;
+
+      if (!isAppend && !viewer.displayLoadErrors)
+        viewer.zap(false, true, false);
 
+      fullPathName = fullPathNameIn;
+      nameAsGiven = nameAsGivenIn;
+      fileName = fileNameIn;
+    }
+
+    private void read() {
       String errorMessage = null;
       Object t = null;
+      String[] cacheFileAndKey = null;
+      Hashtable htParams0 = null;
       if (reader == null) {
+        cacheFileAndKey = getModelCacheFileAndKey(fullPathNameIn, fileTypeIn,
+            htParams);
+        if (cacheFileAndKey != null) {
+          atomSetCollection = viewer.getModelAdapter()
+              .getAtomSetCollectionFromCache(cacheFileAndKey[0],
+                  cacheFileAndKey[1], htParams);
+          if (atomSetCollection == null)
+            htParams0 = (Hashtable) htParams.clone();
+          else
+            cacheFileAndKey = null;
+        }
+      }
+      if (reader == null && atomSetCollection == null) {
         t = getUnzippedBufferedReaderOrErrorMessageFromName(fullPathNameIn,
             true, false, false, true);
         if (t == null || t instanceof String) {
@@ -1258,6 +1414,12 @@ public class FileManager {
         if (!(atomSetCollection instanceof String))
           atomSetCollection = viewer.getModelAdapter().getAtomSetCollection(
               atomSetCollection);
+        if (loadMonitor != null && loadMonitor.isCanceled())
+          atomSetCollection = "#CANCELED#";
+        if (htParams0 != null && !(atomSetCollection instanceof String))
+          viewer.getModelAdapter().cacheAtomSetCollection(atomSetCollection,
+              cacheFileAndKey[0], cacheFileAndKey[1],
+              getParametersSet(htParams0, htParams));
       }
 
       if (reader != null)
@@ -1266,17 +1428,6 @@ public class FileManager {
         } catch (IOException e) {
           // ignore
         }
-
-      if (atomSetCollection instanceof String)
-        return;
-
-      if (!isAppend && !viewer.displayLoadErrors)
-        viewer.zap(false, true, false);
-
-      fullPathName = fullPathNameIn;
-      nameAsGiven = nameAsGivenIn;
-      fileName = fileNameIn;
-
     }
   }
 
@@ -2556,6 +2556,18 @@ cpk on; select atomno>100; label %i; color chain; select selected & hetero; cpk
   static String getStereoModeName(int mode) {
     return stereoModes[mode];
   }
+
+  ////////////////////////////////////////////////////////////////
+  // adaptive quality while the model is dragged or spun
+  // (set frameTimeTargetMs); each level includes the ones before it
+  ////////////////////////////////////////////////////////////////
+
+  public final static int MOTION_QUALITY_FULL           = 0;
+  public final static int MOTION_QUALITY_NO_ANTIALIAS   = 1;
+  public final static int MOTION_QUALITY_NO_TRANSLUCENT = 2;
+  public final static int MOTION_QUALITY_NO_HERMITE     = 3;
+  public final static int MOTION_QUALITY_DISKS          = 4;
+  public final static int MOTION_QUALITY_MIN            = 4;
   
   // all of these things are compile-time constants
   // if they are false then the compiler should take them away
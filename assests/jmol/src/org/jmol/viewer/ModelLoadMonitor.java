@@ -0,0 +1,152 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-05 08:47:46 -0500 (Tue, 05 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jmol.viewer;
+
+import org.jmol.api.JmolLoadMonitor;
+import org.jmol.util.Logger;
+
+/**
+ * For LOAD with "set loadAsync": the file is read on a thread of its own,
+ * while the script thread waits here, showing the models read so far and
+ * reporting progress through the StatusManager. The load is canceled if
+ * the script is halted, as by "exit" or "quit" sent through the script
+ * queue; the reader then stops as though at the end of the file.
+ * 
+ * Previews are made as the number of models read doubles -- after 1, 2,
+ * 4, 8, ... models -- so that all of them together cost no more than the
+ * final model set. Each is a model set in its own right, and the final
+ * one replaces the last, just as a synchronous load replaces a zapped
+ * model set. Each model is thus shown as soon as it is read, or at
+ * least by the time twice as many have been read.
+ * 
+ */
+class ModelLoadMonitor implements JmolLoadMonitor {
+
+  private final static int WAIT_MS = 100;
+
+  private Viewer viewer;
+  private boolean allowPreview;
+  private volatile boolean isCanceled;
+  private boolean isDone;
+  private boolean havePreview;
+  private int modelCount;
+  private int nextPreviewCount = 1;
+  private Object modelsRead;
+
+  /**
+   * @param viewer
+   * @param allowPreview  false for LOAD APPEND
+   */
+  ModelLoadMonitor(Viewer viewer, boolean allowPreview) {
+    this.viewer = viewer;
+    this.allowPreview = allowPreview;
+  }
+
+  /// called on the reading thread ///
+  
+  public synchronized boolean modelRead(int modelCount) {
+    this.modelCount = modelCount;
+    if (!allowPreview || modelCount < nextPreviewCount || modelsRead != null)
+      return false;
+    nextPreviewCount = modelCount * 2;
+    return true;
+  }
+
+  public synchronized void setModelsRead(Object atomSetCollection) {
+    modelsRead = atomSetCollection;
+    notifyAll();
+  }
+
+  public boolean isCanceled() {
+    return isCanceled;
+  }
+
+  /// called on the script thread ///
+  
+  boolean havePreview() {
+    return havePreview;
+  }
+
+  /**
+   * starts the reader and waits for it, showing previews in the meantime
+   * 
+   * @param reader
+   * @param fullPathName
+   * @param fileName
+   * @return true if the reader finished; false if the load was canceled
+   */
+  boolean run(final Runnable reader, String fullPathName, String fileName) {
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          reader.run();
+        } finally {
+          setDone();
+        }
+      }
+    });
+    thread.setName("ModelLoadThread");
+    thread.setDaemon(true);
+    thread.start();
+    int nReported = 0;
+    while (true) {
+      Object models;
+      int n;
+      boolean done;
+      // as in ScriptEvaluator.delay(), let the preview be repainted 
+      if (havePreview)
+        viewer.popHoldRepaint("loadModel");
+      synchronized (this) {
+        if (!isDone && modelsRead == null)
+          try {
+            wait(WAIT_MS);
+          } catch (InterruptedException e) {
+            // check again
+          }
+        done = isDone;
+        models = modelsRead;
+        modelsRead = null;
+        n = modelCount;
+      }
+      if (havePreview)
+        viewer.pushHoldRepaint("loadModel");
+      if (!viewer.isScriptExecuting()) {
+        isCanceled = true;
+        Logger.info("load canceled after " + n + " models: " + fullPathName);
+        return false;
+      }
+      if (done)
+        return true;
+      if (models != null && viewer.setLoadPreview(models, fullPathName, fileName))
+        havePreview = true;
+      if (n != nReported || models != null)
+        viewer.setLoadProgress(fullPathName, fileName, nReported = n);
+    }
+  }
+
+  private synchronized void setDone() {
+    isDone = true;
+    notifyAll();
+  }
+}
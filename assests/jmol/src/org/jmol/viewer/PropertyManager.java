@@ -89,6 +89,8 @@ public class PropertyManager {
     "FileInfo"         , "<type>", "",
     "errorMessage", "", "",
     "mouseInfo", "", "",
+    "scriptCacheInfo", "", "",
+    "renderProfileInfo", "", "",
   };
 
   private final static int PROP_APPLET_INFO = 0;
@@ -131,7 +133,9 @@ public class PropertyManager {
   private final static int PROP_FILE_INFO = 32;
   private final static int PROP_ERROR_MESSAGE = 33;
   private final static int PROP_MOUSE_INFO = 34;
-  private final static int PROP_COUNT = 35;
+  private final static int PROP_SCRIPT_CACHE_INFO = 35;
+  private final static int PROP_RENDER_PROFILE_INFO = 36;
+  private final static int PROP_COUNT = 37;
 
   //// static methods used by Eval and Viewer ////
   
@@ -401,6 +405,10 @@ public class PropertyManager {
       return viewer.getData(myParam.toString());
     case PROP_MOUSE_INFO:
       return viewer.getMouseInfo();
+    case PROP_SCRIPT_CACHE_INFO:
+      return viewer.getScriptCacheInfo();
+    case PROP_RENDER_PROFILE_INFO:
+      return viewer.getRenderProfileInfo();
     case PROP_EVALUATE:
       return ScriptEvaluator.evaluateExpression(viewer, myParam.toString());
     case PROP_IMAGE:
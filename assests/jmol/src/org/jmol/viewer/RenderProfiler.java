@@ -0,0 +1,225 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-18 07:13:41 -0500 (Mon, 18 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.viewer;
+
+import java.util.Hashtable;
+
+import org.jmol.g3d.Graphics3D;
+import org.jmol.util.TextFormat;
+
+/**
+ *<p>
+ * Where the frame time goes: for each of the last n frames (set
+ * renderProfileFrames n), the time and the primitive counts (spheres,
+ * cylinders, triangles, text) of each shape, and the time and the primitive
+ * and pixel counts of the opaque and the translucent passes.
+ *</p>
+ *<p>
+ * RepaintManager makes one only while renderProfileFrames is set, and
+ * Graphics3D counts only while there is one, so there is no cost otherwise.
+ * With renderTiles, recorded primitives are rasterized at the end of each
+ * shape, so that the time goes to the shape that drew them.
+ *</p>
+ *<p>
+ * getProperty("renderProfileInfo") gives the averages and maxima over the
+ * frames; "show renderProfile" gives them as a table.
+ *</p>
+ */
+class RenderProfiler {
+
+  private final static int COUNT_MAX = Graphics3D.COUNT_MAX;
+  private final static int COUNT_PRIMITIVES = Graphics3D.COUNT_PIXELS;
+  private final static String[] countNames = { "spheres", "cylinders",
+      "triangles", "text", "pixels" };
+  private final static String[] columnNames = { "ms", "spheres", "cylinders",
+      "triangles", "text", "pixels" };
+
+  final int frameMax;
+  private int frameCount;
+  private int frame; // index into the arrays below
+
+  private final long[] frameTimes;
+  private final long[][] passTimes;
+  private final int[][] passCounts;
+  private final long[][] shapeTimes;
+  private final int[][] shapeCounts;
+
+  private int pass;
+  private long timePass;
+  private long timeShape;
+  private int[] countsShape = new int[COUNT_MAX];
+
+  RenderProfiler(int frameMax) {
+    this.frameMax = frameMax;
+    frameTimes = new long[frameMax];
+    passTimes = new long[frameMax][2];
+    passCounts = new int[frameMax][2 * COUNT_MAX];
+    shapeTimes = new long[frameMax][JmolConstants.SHAPE_MAX];
+    shapeCounts = new int[frameMax][JmolConstants.SHAPE_MAX * COUNT_PRIMITIVES];
+  }
+
+  synchronized void startPass(Graphics3D g3d) {
+    pass = (g3d.isPass2() ? 1 : 0);
+    if (pass == 0) {
+      frame = frameCount++ % frameMax;
+      frameTimes[frame] = 0;
+      for (int i = 2; --i >= 0;)
+        passTimes[frame][i] = 0;
+      for (int i = 2 * COUNT_MAX; --i >= 0;)
+        passCounts[frame][i] = 0;
+      for (int i = JmolConstants.SHAPE_MAX; --i >= 0;)
+        shapeTimes[frame][i] = 0;
+      for (int i = JmolConstants.SHAPE_MAX * COUNT_PRIMITIVES; --i >= 0;)
+        shapeCounts[frame][i] = 0;
+    }
+    int[] counts = g3d.getCounts();
+    for (int i = COUNT_MAX; --i >= 0;)
+      counts[i] = 0;
+    timePass = System.nanoTime();
+  }
+
+  void startShape(Graphics3D g3d) {
+    System.arraycopy(g3d.getCounts(), 0, countsShape, 0, COUNT_MAX);
+    timeShape = System.nanoTime();
+  }
+
+  synchronized void endShape(Graphics3D g3d, int shapeID) {
+    int[] counts = g3d.getCounts();
+    shapeTimes[frame][shapeID] += System.nanoTime() - timeShape;
+    for (int i = COUNT_PRIMITIVES, pt = shapeID * COUNT_PRIMITIVES; --i >= 0;)
+      shapeCounts[frame][pt + i] += counts[i] - countsShape[i];
+  }
+
+  synchronized void endPass(Graphics3D g3d) {
+    int[] counts = g3d.getCounts();
+    long t = System.nanoTime() - timePass;
+    passTimes[frame][pass] = t;
+    frameTimes[frame] += t;
+    System.arraycopy(counts, 0, passCounts[frame], pass * COUNT_MAX, COUNT_MAX);
+  }
+
+  /**
+   * @return frame time, pass times and counts, and shape times and counts,
+   *         averaged over the frames recorded (times in ms), with the maximum
+   *         frame time and the last frame time
+   */
+  synchronized Hashtable getInfo() {
+    Hashtable info = new Hashtable();
+    int n = Math.min(frameCount, frameMax);
+    info.put("frames", new Integer(n));
+    info.put("frameCount", new Integer(frameCount));
+    if (n == 0)
+      return info;
+    long max = 0;
+    for (int i = n; --i >= 0;)
+      max = Math.max(max, frameTimes[i]);
+    info.put("frameTime", new Float(getMean(frameTimes, n)));
+    info.put("frameTimeMax", new Float(max / 1e6f));
+    info.put("frameTimeLast", new Float(frameTimes[frame] / 1e6f));
+    for (int pass = 0; pass < 2; pass++) {
+      Hashtable passInfo = new Hashtable();
+      long t = 0;
+      for (int i = n; --i >= 0;)
+        t += passTimes[i][pass];
+      passInfo.put("time", new Float(t / 1e6f / n));
+      for (int k = 0; k < COUNT_MAX; k++)
+        passInfo.put(countNames[k], new Float(getMean(passCounts, n, pass
+            * COUNT_MAX + k)));
+      info.put(pass == 0 ? "opaque" : "translucent", passInfo);
+    }
+    Hashtable shapes = new Hashtable();
+    for (int iShape = 0; iShape < JmolConstants.SHAPE_MAX; iShape++) {
+      long t = 0;
+      for (int i = n; --i >= 0;)
+        t += shapeTimes[i][iShape];
+      if (t == 0)
+        continue;
+      Hashtable shapeInfo = new Hashtable();
+      shapeInfo.put("time", new Float(t / 1e6f / n));
+      for (int k = 0; k < COUNT_PRIMITIVES; k++)
+        shapeInfo.put(countNames[k], new Float(getMean(shapeCounts, n, iShape
+            * COUNT_PRIMITIVES + k)));
+      shapes.put(JmolConstants.getShapeClassName(~iShape), shapeInfo);
+    }
+    info.put("shapes", shapes);
+    return info;
+  }
+
+  /**
+   * @return the averages of getInfo() as a table, one line per shape and one
+   *         per pass
+   */
+  synchronized String getText() {
+    int n = Math.min(frameCount, frameMax);
+    if (n == 0)
+      return "render profile: no frames";
+    StringBuffer sb = new StringBuffer();
+    sb.append("render profile: ").append(n).append(" frames, mean ").append(
+        TextFormat.formatDecimal(getMean(frameTimes, n), 2)).append(" ms\n");
+    sb.append(TextFormat.format("", 24, 0, true, false));
+    for (int k = 0; k <= COUNT_MAX; k++)
+      sb.append(TextFormat.format(columnNames[k], 12, 0, false, false));
+    sb.append('\n');
+    for (int iShape = 0; iShape < JmolConstants.SHAPE_MAX; iShape++) {
+      long t = 0;
+      for (int i = n; --i >= 0;)
+        t += shapeTimes[i][iShape];
+      if (t == 0)
+        continue;
+      appendLine(sb, JmolConstants.getShapeClassName(~iShape), t / 1e6f / n,
+          shapeCounts, n, iShape * COUNT_PRIMITIVES, COUNT_PRIMITIVES);
+    }
+    for (int pass = 0; pass < 2; pass++) {
+      long t = 0;
+      for (int i = n; --i >= 0;)
+        t += passTimes[i][pass];
+      appendLine(sb, pass == 0 ? "(opaque pass)" : "(translucent pass)", t
+          / 1e6f / n, passCounts, n, pass * COUNT_MAX, COUNT_MAX);
+    }
+    return sb.toString();
+  }
+
+  private static void appendLine(StringBuffer sb, String name, float t,
+                                 int[][] counts, int n, int pt, int nCounts) {
+    sb.append(TextFormat.format(name, 24, 0, true, false));
+    sb.append(TextFormat.format(t, 12, 2, false, false));
+    for (int k = 0; k < nCounts; k++)
+      sb.append(TextFormat.format(getMean(counts, n, pt + k), 12, 0, false,
+          false));
+    sb.append('\n');
+  }
+
+  private static float getMean(long[] times, int n) {
+    long t = 0;
+    for (int i = n; --i >= 0;)
+      t += times[i];
+    return t / 1e6f / n;
+  }
+
+  private static float getMean(int[][] counts, int n, int pt) {
+    long sum = 0;
+    for (int i = n; --i >= 0;)
+      sum += counts[i][pt];
+    return (float) sum / n;
+  }
+}
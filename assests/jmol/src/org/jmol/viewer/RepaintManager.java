@@ -32,6 +32,7 @@ import org.jmol.util.Logger;
 
 import java.awt.Rectangle;
 import java.util.BitSet;
+import java.util.Hashtable;
 
 import javax.vecmath.Point3f;
 
@@ -110,12 +111,50 @@ class RepaintManager {
       return;
     //System.out.println("render " + (test++));
     //System.out.println("repaintManager render thread=" + Thread.currentThread().getName());
+    long t = System.currentTimeMillis();
     render1(g3d, modelSet); // , rectClip
+    frameTime += System.currentTimeMillis() - t;
     Rectangle band = viewer.getRubberBandSelection();
     if (band != null && g3d.setColix(viewer.getColixRubberband()))
       g3d.drawRect(band.x, band.y, 0, 0, band.width, band.height);
   }
 
+  /*
+   * Adaptive quality. With frameTimeTargetMs set, the rendering time of each
+   * screen frame (both passes) is checked before the next one is drawn. While
+   * the model is being dragged or spun, every frame over the target takes the
+   * quality one level lower -- no antialiasing, no translucent pass, no
+   * hermite meshes, spheres as disks (JmolConstants.MOTION_QUALITY_xxx) --
+   * and full quality comes back with the first frame after the motion stops.
+   * 
+   */
+
+  private long frameTime;
+  private int motionQuality = JmolConstants.MOTION_QUALITY_FULL;
+
+  int getMotionQuality() {
+    return motionQuality;
+  }
+
+  /**
+   * 
+   * @param frameTimeTarget  ms; 0 for none
+   * @param inMotion
+   */
+  void checkFrameTime(int frameTimeTarget, boolean inMotion) {
+    long t = frameTime;
+    frameTime = 0;
+    int quality = motionQuality;
+    if (frameTimeTarget <= 0 || !inMotion)
+      motionQuality = JmolConstants.MOTION_QUALITY_FULL;
+    else if (t > frameTimeTarget
+        && motionQuality < JmolConstants.MOTION_QUALITY_MIN)
+      motionQuality++;
+    if (motionQuality != quality && Logger.debugging)
+      Logger.debug("frame time " + t + " ms; motion quality level "
+          + motionQuality);
+  }
+
   private boolean logTime;
   
   private void render1(Graphics3D g3d, ModelSet modelSet) { // , Rectangle
@@ -132,6 +171,11 @@ class RepaintManager {
     try {
       if (bsAtoms != null)
         translateSelected();
+      if (!g3d.isPass2())
+        checkProfiler(g3d);
+      RenderProfiler profiler = this.profiler;
+      if (profiler != null)
+        profiler.startPass(g3d);
       g3d.renderBackground();
       if (renderers == null)
         renderers = new ShapeRenderer[JmolConstants.SHAPE_MAX];
@@ -139,10 +183,16 @@ class RepaintManager {
         Shape shape = shapeManager.getShape(i);
         if (shape == null)
           continue;
+        if (profiler != null)
+          profiler.startShape(g3d);
         getRenderer(i, g3d).render(g3d, modelSet, shape);
+        if (profiler != null)
+          profiler.endShape(g3d, i);
         if (logTime)
           Logger.checkTimer("render time " + JmolConstants.getShapeClassName(i));
       }
+      if (profiler != null)
+        profiler.endPass(g3d);
     } catch (Exception e) {
       e.printStackTrace();
       Logger.error("rendering error? ");
@@ -151,6 +201,38 @@ class RepaintManager {
       Logger.checkTimer("render time");
   }
 
+  private RenderProfiler profiler;
+
+  /**
+   * starts, restarts, or stops the profiler as renderProfileFrames has been
+   * set; called at the start of each frame
+   * 
+   * @param g3d
+   */
+  private void checkProfiler(Graphics3D g3d) {
+    int n = viewer.getRenderProfileFrames();
+    if (n <= 0) {
+      if (profiler == null)
+        return;
+      profiler = null;
+      g3d.setCounting(false);
+    } else if (profiler == null || profiler.frameMax != n) {
+      profiler = new RenderProfiler(n);
+      g3d.setCounting(true);
+    }
+  }
+
+  Hashtable getRenderProfileInfo() {
+    RenderProfiler profiler = this.profiler;
+    return (profiler == null ? new Hashtable() : profiler.getInfo());
+  }
+
+  String getRenderProfile() {
+    RenderProfiler profiler = this.profiler;
+    return (profiler == null ? "render profile: off (set renderProfileFrames)"
+        : profiler.getText());
+  }
+
   private ShapeRenderer[] renderers;
   
   void clear(int iShape) {
@@ -378,10 +378,16 @@ public class ShapeManager {
     bsOK.clear();
     Atom[] atoms = modelSet.atoms;
     Vector3f[] vibrationVectors = modelSet.vibrationVectors;
-    for (int i = modelSet.getAtomCount(); --i >= 0;) {
-      Atom atom = atoms[i];
-      if ((atom.getShapeVisibilityFlags() & JmolConstants.ATOM_IN_FRAME) == 0)
+    int[] flags = modelSet.getAtomVisibilityFlags();
+    short[] mads = modelSet.getAtomMads();
+    BitSet bsInFrame = modelSet.getAtomsInFrame();
+    int atomCount = modelSet.getAtomCount();
+    boolean isChanged = false;
+    for (int i = bsInFrame.nextSetBit(0); i >= 0 && i < atomCount; i = bsInFrame
+        .nextSetBit(i + 1)) {
+      if ((flags[i] & JmolConstants.ATOM_IN_FRAME) == 0)
         continue;
+      Atom atom = atoms[i];
       bsOK.set(i);
       Point3i screen;
       if (vibrationVectors != null && atom.hasVibration())
@@ -390,13 +396,18 @@ public class ShapeManager {
         screen = viewer.transformPoint(atom);
       // ultimately I would like to dissociate the rendering 
       // from the modelSet completely. 
+      short d = viewer.scaleToScreen(screen.z, Math.abs(mads[i]));
+      if (atom.screenX != screen.x || atom.screenY != screen.y
+          || atom.screenZ != screen.z || atom.screenDiameter != d)
+        isChanged = true;
       atom.screenX = screen.x;
       atom.screenY = screen.y;
       atom.screenZ = screen.z;
-      atom.screenDiameter = viewer.scaleToScreen(screen.z, Math
-          .abs(atom.madAtom));
-//      System.out.println("shapeman " + atom + " scaleToScreen(" + screen.z + "," + atom.madAtom + ")=" + atom.screenDiameter);
+      atom.screenDiameter = d;
+//      System.out.println("shapeman " + atom + " scaleToScreen(" + screen.z + "," + mads[i] + ")=" + atom.screenDiameter);
     }
+    // for the picking grid
+    modelSet.setScreenPositions(bsOK, isChanged);
     return bsOK;
   }
 }
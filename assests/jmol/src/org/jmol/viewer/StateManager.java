@@ -218,6 +218,15 @@ public class StateManager {
   void deleteSaved(String name) {
     saved.remove(name);
   }
+
+  /**
+   * for Viewer.reinitialize: all saved states, orientations, selections,
+   * etc., and all but the static functions
+   */
+  void clearSaved() {
+    saved.clear();
+    localFunctions.clear();
+  }
   
   void saveSelection(String saveName, BitSet bsSelected) {
     if (saveName.equalsIgnoreCase("DELETE")) {
@@ -581,7 +590,7 @@ public class StateManager {
         + ";debug;debugscript;defaultlatttice;defaults;diffusepercent;exportdrivers"
         + ";_filecaching;_filecache;fontcaching;fontscaling;language;loglevel;measureStyleChime"
         + ";loadformat;smilesurlformat;edsurlformat;edsurlcutoff;multiprocessor;navigationmode;"
-        + ";perspectivedepth;phongexponent;perspectivemodel;preservestate;refreshing;repaintwaitms;rotationradius"
+        + ";perspectivedepth;phongexponent;perspectivemodel;preservestate;refreshing;repaintwaitms;frametimetargetms;renderprofileframes;rotationradius"
         + ";showaxes;showaxis1;showaxis2;showaxis3;showboundbox;showfrank;showunitcell"
         + ";slabenabled;zshade;zshadepower;specular;specularexponent;specularpercent;specularpower;stateversion"
         + ";statusreporting;stereo;stereostate;vibrationperiod"
@@ -855,6 +864,7 @@ public class StateManager {
       setParameterValue("fontCaching", fontCaching);
       setParameterValue("forceAutoBond", forceAutoBond);
       setParameterValue("fractionalRelative", fractionalRelative);
+      setParameterValue("frameTimeTargetMs", frameTimeTargetMs);
       setParameterValue("greyscaleRendering", greyscaleRendering);
       setParameterValue("hbondsAngleMinimum", hbondsAngleMinimum);
       setParameterValue("hbondsDistanceMaximum", hbondsDistanceMaximum);
@@ -872,6 +882,7 @@ public class StateManager {
       setParameterValue("isosurfacePropertySmoothing",
           isosurfacePropertySmoothing);
       setParameterValue("justifyMeasurements", justifyMeasurements);
+      setParameterValue("loadAsync", loadAsync);
       setParameterValue("loadAtomDataTolerance", loadAtomDataTolerance);
       setParameterValue("loadFormat", loadFormat);
       setParameterValue("logCommands", logCommands);
@@ -907,6 +918,8 @@ public class StateManager {
       setParameterValue("propertyColorScheme", propertyColorScheme);
       setParameterValue("quaternionFrame", quaternionFrame);
       setParameterValue("rangeSelected", rangeSelected);
+      setParameterValue("renderTiles", renderTiles);
+      setParameterValue("renderProfileFrames", renderProfileFrames);
       setParameterValue("repaintWaitMs", repaintWaitMs);
       setParameterValue("ribbonAspectRatio", ribbonAspectRatio);
       setParameterValue("ribbonBorder", ribbonBorder);
@@ -949,8 +962,11 @@ public class StateManager {
       setParameterValue("testFlag3", testFlag3);
       setParameterValue("testFlag4", testFlag4);
       setParameterValue("traceAlpha", traceAlpha);
+      setParameterValue("trajectoryCompressed", trajectoryCompressed);
+      setParameterValue("trajectoryPaged", trajectoryPaged);
       setParameterValue("useArcBall", useArcBall);
       setParameterValue("useMinimizationThread", useMinimizationThread);
+      setParameterValue("useSpatialGrid", useSpatialGrid);
       setParameterValue("useNumberLocalization", useNumberLocalization);
       setParameterValue("vectorScale", vectorScale);
       setParameterValue("vibrationPeriod", vibrationPeriod);
@@ -1011,6 +1027,8 @@ public class StateManager {
     int percentVdwAtom = JmolConstants.DEFAULT_PERCENT_VDW_ATOM;
     int smallMoleculeMaxAtoms = 40000;
     boolean smartAromatic = true;
+    boolean trajectoryCompressed = false; // 16-bit trajectory coordinates
+    boolean trajectoryPaged = false; // trajectory steps in a mapped temporary file
     boolean zeroBasedXyzRasmol = false;
 
     /**
@@ -1068,6 +1086,10 @@ public class StateManager {
       appendCmd(str, "set percentVdwAtom " + percentVdwAtom);
       appendCmd(str, "set smallMoleculeMaxAtoms " + smallMoleculeMaxAtoms);
       appendCmd(str, "set smartAromatic " + smartAromatic);
+      if (trajectoryCompressed)
+        appendCmd(str, "set trajectoryCompressed true");
+      if (trajectoryPaged)
+        appendCmd(str, "set trajectoryPaged true");
       if (zeroBasedXyzRasmol)
         appendCmd(str, "set zeroBasedXyzRasmol true");
       return str.toString();
@@ -1121,6 +1143,8 @@ public class StateManager {
     boolean greyscaleRendering = false;
     boolean isosurfacePropertySmoothing = true;
     int repaintWaitMs = 1000;
+    int frameTimeTargetMs = 0; // adaptive quality during motion when > 0
+    int renderProfileFrames = 0; // render profiler window when > 0
     boolean showHiddenSelectionHalos = false;
     boolean showKeyStrokes = true;
     boolean showMeasurements = true;
@@ -1187,6 +1211,7 @@ public class StateManager {
     int helixStep = 1;
     boolean hideNameInPopup = false;
     int hoverDelayMs = 500;
+    boolean loadAsync = false; // read files for LOAD on a thread of their own
     float loadAtomDataTolerance = 0.01f;
     boolean logCommands = false;
     boolean logGestures = false;
@@ -1194,6 +1219,7 @@ public class StateManager {
     boolean messageStyleChime = false;
     boolean monitorEnergy = false;
     boolean multiProcessor = true;
+    int renderTiles = 0;
     int pickingSpinRate = 10;
     String pickLabel = "";
     float pointGroupDistanceTolerance = 0.2f;
@@ -1214,6 +1240,7 @@ public class StateManager {
     boolean strutsMultiple = false; //on a single position    
     boolean useArcBall = false;
     boolean useMinimizationThread = true;
+    boolean useSpatialGrid = false;
     boolean useNumberLocalization = true;
     boolean useScriptQueue = true;
     boolean waitForMoveTo = true; // Jmol 11.9.24
@@ -2180,6 +2180,8 @@ abstract class TransformManager {
         spinThread.interrupt();
         spinThread = null;
       }
+      if (viewer.getMotionQuality() != JmolConstants.MOTION_QUALITY_FULL)
+        viewer.refresh(3, "setSpinOn false");
     }
   }
 
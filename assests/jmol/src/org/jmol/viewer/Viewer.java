@@ -197,6 +197,8 @@ public class Viewer extends JmolViewer implements AtomDataServer {
       smilesMatcher = (SmilesMatcherInterface) Interface
           .getOptionInterface("smiles.SmilesMatcher");
     }
+    // models are searched in parallel with set multiProcessor
+    smilesMatcher.setExecutor(getExecutor());
     return smilesMatcher;
   }
 
@@ -556,7 +558,8 @@ public class Viewer extends JmolViewer implements AtomDataServer {
     global.setParameterValue("_useCommandThread", useCommandThread);
     global.setParameterValue("_width", dimScreen.width);
     global.setParameterValue("_height", dimScreen.height);
-    if (haveDisplay) {
+    if (actionManager != null) {
+      // not for JmolData, which has no display
       global.setParameterValue("_multiTouchClient", actionManager.isMTClient());
       global.setParameterValue("_multiTouchServer", actionManager.isMTServer());
     }
@@ -587,6 +590,22 @@ public class Viewer extends JmolViewer implements AtomDataServer {
 
   }
 
+  /**
+   * Returns this viewer to where it was just after it was allocated --
+   * no models, default settings, no variables, saved states, or local
+   * functions -- but keeps what it has built up along the way: its
+   * compiled scripts, its rendering buffers, and the shade, sphere, and
+   * font caches of Graphics3D. Unlike the "zap" command, it does not call
+   * the garbage collector. For a server that runs one job after another
+   * in the same viewer (JmolRenderService).
+   * 
+   */
+  public void reinitialize() {
+    zap(false, true, false, false);
+    stateManager.clearSaved();
+    initialize();
+  }
+
   public String listSavedStates() {
     return stateManager.listSavedStates();
   }
@@ -1686,6 +1705,11 @@ public class Viewer extends JmolViewer implements AtomDataServer {
     return fileManager.getBufferedInputStream(fullPathName);
   }
 
+  public File getLocalFile(String fullPathName) {
+    // used by the binary map readers for memory mapping
+    return fileManager.getLocalFile(fullPathName);
+  }
+
   public Object getBufferedReaderOrErrorMessageFromName(
                                                         String name,
                                                         String[] fullPathNameReturn,
@@ -1704,6 +1728,9 @@ public class Viewer extends JmolViewer implements AtomDataServer {
     if (htParams == null)
       htParams = new Hashtable();
     htParams.put("viewer", this);
+    Object executor = getExecutor();
+    if (executor != null)
+      htParams.put("executor", executor);
     if (global.atomTypes.length() > 0)
       htParams.put("atomTypes", global.atomTypes);
     if (!htParams.containsKey("lattice"))
@@ -1714,6 +1741,10 @@ public class Viewer extends JmolViewer implements AtomDataServer {
       htParams.put("getHeader", Boolean.TRUE);
     if (global.pdbSequential)
       htParams.put("isSequential", Boolean.TRUE);
+    if (global.trajectoryCompressed)
+      htParams.put("trajectoryCompressed", Boolean.TRUE);
+    if (global.trajectoryPaged)
+      htParams.put("trajectoryPaged", Boolean.TRUE);
     if (!htParams.containsKey("filter")) {
       String filter = getDefaultLoadFilter();
       if (filter.length() > 0)
@@ -1727,6 +1758,7 @@ public class Viewer extends JmolViewer implements AtomDataServer {
 
   private final static int FILE_STATUS_NOT_LOADED = -1;
   private final static int FILE_STATUS_ZAPPED = 0;
+  private final static int FILE_STATUS_MODELS_LOADING = 1;
   private final static int FILE_STATUS_CREATING_MODELSET = 2;
   private final static int FILE_STATUS_MODELSET_CREATED = 3;
   private final static int FILE_STATUS_MODELS_DELETED = 5;
@@ -1748,7 +1780,7 @@ public class Viewer extends JmolViewer implements AtomDataServer {
       fileName = "file://" + (fileName.startsWith("/") ? "" : "/") + fileName;
 
     String cmd = null;
-    if (fileName.endsWith("jvxl"))
+    if (fileName.endsWith("jvxl") || fileName.endsWith(".jvxb"))
       cmd = "isosurface ";
     else if (!fileName.endsWith(".spt")) {
       String type = fileManager.getFileTypeName(fileName);
@@ -1982,6 +2014,9 @@ public class Viewer extends JmolViewer implements AtomDataServer {
       // if the filename has a "?" at the beginning, we don't zap, 
       // because the user might cancel the operation.
       
+      if (global.loadAsync && !htParams.containsKey("atomDataOnly")
+          && isScriptExecuting())
+        htParams.put("loadMonitor", new ModelLoadMonitor(this, !isAppend));
       atomSetCollection = fileManager.createAtomSetCollectionFromFile(fileName,
           htParams, loadScript, isAppend);
     }
@@ -2237,6 +2272,44 @@ public class Viewer extends JmolViewer implements AtomDataServer {
     return errMsg;
   }
 
+  /**
+   * the models of a file read so far by ModelLoadMonitor, shown while the
+   * rest of the file is read
+   * 
+   * @param atomSetCollection
+   * @param fullPathName
+   * @param fileName
+   * @return true if the preview model set was created
+   */
+  boolean setLoadPreview(Object atomSetCollection, String fullPathName,
+                         String fileName) {
+    pushHoldRepaint("loadPreview");
+    boolean isOK = true;
+    try {
+      modelSet = modelManager.createModelSet(fullPathName, fileName,
+          new StringBuffer(), atomSetCollection, new BitSet(), false);
+      initializeModel();
+    } catch (Error er) {
+      handleError(er, true);
+      isOK = false;
+    }
+    popHoldRepaint("loadPreview");
+    return isOK;
+  }
+
+  /**
+   * a loadStructCallback with status FILE_STATUS_MODELS_LOADING (1) and, in
+   * place of the model name, the number of models read so far
+   * 
+   * @param fullPathName
+   * @param fileName
+   * @param modelCount
+   */
+  void setLoadProgress(String fullPathName, String fileName, int modelCount) {
+    setFileLoadStatus(FILE_STATUS_MODELS_LOADING, fullPathName, fileName, ""
+        + modelCount, null);
+  }
+
   /**
    * 
    * or just apply the data to the current model set
@@ -2396,11 +2469,11 @@ public class Viewer extends JmolViewer implements AtomDataServer {
     return modelSet.calculateSurface(bsSelected, envelopeRadius);
   }
 
-  public void calculateStructures(BitSet bsAtoms) {
+  public void calculateStructures(BitSet bsAtoms, boolean asDSSP) {
     // Eval
     if (bsAtoms == null)
       bsAtoms = getSelectionSet(false);
-    modelSet.calculateStructures(bsAtoms);
+    modelSet.calculateStructures(bsAtoms, asDSSP);
   }
 
   public AtomIndexIterator getSelectedAtomIterator(BitSet bsSelected,
@@ -2410,6 +2483,14 @@ public class Viewer extends JmolViewer implements AtomDataServer {
         modelZeroBased, false);
   }
 
+  public AtomIndexIterator getSelectedAtomIterator(BitSet bsSelected,
+                                                   boolean isGreaterOnly,
+                                                   boolean modelZeroBased,
+                                                   boolean threadSafe) {
+    return modelSet.getSelectedAtomIterator(bsSelected, isGreaterOnly,
+        modelZeroBased, false, threadSafe);
+  }
+
   public void setIteratorForAtom(AtomIndexIterator iterator, int atomIndex,
                                  float distance) {
     modelSet.setIteratorForAtom(iterator, -1, atomIndex, distance);
@@ -2449,6 +2530,11 @@ public class Viewer extends JmolViewer implements AtomDataServer {
   }
 
   public void zap(boolean notify, boolean resetUndo, boolean zapModelKit) {
+    zap(notify, resetUndo, zapModelKit, true);
+  }
+
+  private void zap(boolean notify, boolean resetUndo, boolean zapModelKit,
+                   boolean collectGarbage) {
     stopAnimationThreads("zap");
     if (modelSet != null) {
       setBooleanProperty("appendNew", true);
@@ -2481,7 +2567,8 @@ public class Viewer extends JmolViewer implements AtomDataServer {
         actionStatesRedo.clear();
         lastUndoRedo = 0;
       }
-      System.gc();
+      if (collectGarbage)
+        System.gc();
     } else {
       modelSet = modelManager.zap();
     }
@@ -3549,6 +3636,16 @@ public class Viewer extends JmolViewer implements AtomDataServer {
     return animationManager.inMotion;
   }
 
+  /**
+   * @return the quality level set by frameTimeTargetMs while the model is in
+   *         motion; always full for images being created
+   */
+  public int getMotionQuality() {
+    // balls, bioshapes
+    return (creatingImage ? JmolConstants.MOTION_QUALITY_FULL : repaintManager
+        .getMotionQuality());
+  }
+
   public void pushHoldRepaint() {
     pushHoldRepaint(null);
   }
@@ -3704,7 +3801,8 @@ public class Viewer extends JmolViewer implements AtomDataServer {
 
     if (isReset) {
       imageFontScaling = 1;
-      antialiasDisplay = global.antialiasDisplay;
+      antialiasDisplay = global.antialiasDisplay
+          && getMotionQuality() < JmolConstants.MOTION_QUALITY_NO_ANTIALIAS;
     } else if (isImageWrite && !isExport) {
       antialiasDisplay = global.antialiasImages;
     }
@@ -3774,6 +3872,11 @@ public class Viewer extends JmolViewer implements AtomDataServer {
     // System.out.println(Thread.currentThread() + "render Screen Image " +
     // creatingImage);
     if (!creatingImage) {
+      repaintManager.checkFrameTime(global.frameTimeTargetMs, getInMotion()
+          || getSpinOn());
+      if (global.antialiasDisplay
+          && antialiasDisplay == (getMotionQuality() >= JmolConstants.MOTION_QUALITY_NO_ANTIALIAS))
+        resizeImage(0, 0, false, false, true);
       if (isTainted || getSlabEnabled())
         setModelVisibility();
       isTainted = false;
@@ -3828,7 +3931,8 @@ public class Viewer extends JmolViewer implements AtomDataServer {
   private void render() {
     boolean antialias2 = antialiasDisplay && global.antialiasTranslucent;
     repaintManager.render(g3d, modelSet);
-    if (g3d.setPass2(antialias2)) {
+    if (getMotionQuality() < JmolConstants.MOTION_QUALITY_NO_TRANSLUCENT
+        && g3d.setPass2(antialias2)) {
       transformManager.setAntialias(antialias2);
       repaintManager.render(g3d, modelSet);
       transformManager.setAntialias(antialiasDisplay);
@@ -4926,7 +5030,8 @@ public class Viewer extends JmolViewer implements AtomDataServer {
     setErrorMessage(strError);
     global.setParameterValue("_loadPoint", ptLoad);
     boolean doCallback = (ptLoad == FILE_STATUS_MODELSET_CREATED
-        || ptLoad == FILE_STATUS_ZAPPED || ptLoad == FILE_STATUS_NOT_LOADED);
+        || ptLoad == FILE_STATUS_ZAPPED || ptLoad == FILE_STATUS_NOT_LOADED
+        || ptLoad == FILE_STATUS_MODELS_LOADING);
     statusManager.setFileLoadStatus(fullPathName, fileName, modelName,
         strError, ptLoad, doCallback);
   }
@@ -5275,8 +5380,9 @@ public class Viewer extends JmolViewer implements AtomDataServer {
       break;
     case Token.filecachedirectory:
       // 11.9.21
-      // not implemented -- application only -- CANNOT BE SET BY STATE
-      // global.fileCacheDirectory = value;
+      // application only -- CANNOT BE SET BY STATE
+      // binary copies of models read from local files are kept here
+      fileManager.setFileCacheDirectory(value);
       break;
     case Token.atomtypes:
       // 11.7.7
@@ -5620,6 +5726,12 @@ public class Viewer extends JmolViewer implements AtomDataServer {
     case Token.propertydatafield: // 11.1.31
       // just save in the hashtable, not in global
       break;
+    case Token.rendertiles:
+      // 12.0.17
+      global.renderTiles = value;
+      g3d.setTiledRendering(global.multiProcessor ? getExecutor() : null,
+          value);
+      break;
     case Token.strutspacing:
       // 11.9.21
       global.strutSpacing = value;
@@ -5721,6 +5833,13 @@ public class Viewer extends JmolViewer implements AtomDataServer {
     case Token.hermitelevel:
       global.hermiteLevel = value;
       break;
+    case Token.frametimetargetms:
+      global.frameTimeTargetMs = value;
+      break;
+    case Token.renderprofileframes:
+      global.renderProfileFrames = value;
+      refresh(3, "renderProfileFrames");
+      break;
     default:
       if ((value != 0 && value != 1)
           || !setBooleanProperty(key, tok, value == 1, false)) {
@@ -5766,6 +5885,8 @@ public class Viewer extends JmolViewer implements AtomDataServer {
     case Token.multiprocessor:
       // 12.0.RC6
       global.multiProcessor = value && (nProcessors > 1);
+      g3d.setTiledRendering(global.multiProcessor ? getExecutor() : null,
+          global.renderTiles);
       break;
     case Token.monitorenergy:
       // 12.0.RC6
@@ -5839,6 +5960,23 @@ public class Viewer extends JmolViewer implements AtomDataServer {
       // 11.7.40
       global.useMinimizationThread = value;
       break;
+    case Token.usespatialgrid:
+      // 12.0.17
+      global.useSpatialGrid = value;
+      modelSet.setUseSpatialGrid(value);
+      break;
+    case Token.trajectorycompressed:
+      // 12.0.17
+      global.trajectoryCompressed = value;
+      break;
+    case Token.trajectorypaged:
+      // 12.0.17
+      global.trajectoryPaged = value;
+      break;
+    case Token.loadasync:
+      // 12.0.17
+      global.loadAsync = value;
+      break;
     // case Token.autoloadorientation:
     // // 11.7.30; removed in 12.0.RC10 -- use FILTER "NoOrient"
     // global.autoLoadOrientation = value;
@@ -6709,6 +6847,10 @@ public class Viewer extends JmolViewer implements AtomDataServer {
     return global.autoBond;
   }
 
+  public boolean getUseSpatialGrid() {
+    return global.useSpatialGrid;
+  }
+
   public int[] makeConnections(float minDistance, float maxDistance, int order,
                                int connectOperation, BitSet bsA, BitSet bsB,
                                BitSet bsBonds, boolean isBonds, float energy) {
@@ -8516,6 +8658,22 @@ public class Viewer extends JmolViewer implements AtomDataServer {
     return (haveDisplay ? actionManager.getMouseInfo() : null);
   }
 
+  public Hashtable getScriptCacheInfo() {
+    return compiler.getCacheInfo();
+  }
+
+  int getRenderProfileFrames() {
+    return global.renderProfileFrames;
+  }
+
+  public Hashtable getRenderProfileInfo() {
+    return repaintManager.getRenderProfileInfo();
+  }
+
+  public String getRenderProfile() {
+    return repaintManager.getRenderProfile();
+  }
+
   public void clearTimeout(String name) {
     setTimeout(name, 0, null);
   }
@@ -8838,6 +8996,12 @@ public class Viewer extends JmolViewer implements AtomDataServer {
     } else if (type.equals("PLOT")) {
       sb = new OutputStringBuffer(new BufferedOutputStream(os));
       msg = modelSet.getPdbData(modelIndex, type2, getSelectionSet(false), parameters, sb);
+    } else if (type.equals("JVXB")) {
+      os = new BufferedOutputStream(os);
+      Object[] data = new Object[] { os, null };
+      if (getShapeProperty(JmolConstants.SHAPE_ISOSURFACE, "jvxlDataBinary",
+          data))
+        msg = "JVXB " + data[1];
     }
     if (msg != null)
       msg = "OK " + msg + " " + fullPath[0];
@@ -8870,6 +9034,8 @@ public class Viewer extends JmolViewer implements AtomDataServer {
 
   public Object getExecutor() {
     // a Java 1.5 function
+    if (!global.multiProcessor)
+      return null;
     if (executor != null || nProcessors < 2)
       return executor; // note -- a Java 1.5 function
     try {
@@ -0,0 +1,307 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-04-17 18:24:30 -0500 (Sat, 17 Apr 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.jmol.app;
+
+import java.awt.Canvas;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import org.jmol.adapter.smarter.SmarterJmolAdapter;
+import org.jmol.api.JmolViewer;
+import org.jmol.util.Escape;
+import org.jmol.util.Logger;
+import org.jmol.util.Parser;
+
+public class JmolRenderService {
+
+  /*
+   * A long-running image server: a pool of warm, headless viewers that
+   * load a model, run a script, and return the image as PNG or JPEG
+   * bytes, one job after another, without starting a new JVM each time.
+   *
+   *   java -Xmx512m -XX:+DisableExplicitGC -cp Jmol.jar
+   *       org.openscience.jmol.app.JmolRenderService
+   *       [-port n] [-viewers n] [-size width height]
+   *
+   * (Jmol.jar, not JmolData.jar, which has no shapes or image writers;
+   * the viewers start as JmolData's do, with no display, but are given
+   * an undisplayed Canvas so that Graphics3D can render off screen.
+   * DisableExplicitGC skips the garbage collection after each load.)
+   *
+   * With -port the service listens on that port of localhost only, and
+   * each connection may send any number of jobs; up to -viewers jobs,
+   * by default one per processor, render at once. Without -port, jobs
+   * are read from stdin and answered on stdout, one at a time, and
+   * logging goes to stderr.
+   *
+   * A job is a set of lines, all but the last optional:
+   *
+   *   size 300 200       image width and height
+   *   format png         png, or jpg [quality]
+   *   load 1crn.pdb      a file name or URL
+   *   script spacefill off; wireframe 0.15
+   *   script rotate y 30 (script lines accumulate)
+   *   render
+   *
+   * and the reply to "render" is either
+   *
+   *   OK [number of bytes]
+   *   [the image bytes]
+   *
+   * or a single line, "ERROR [message]". "quit" ends the session.
+   *
+   * Between jobs, each viewer is reinitialized -- no models, default
+   * settings, no variables -- but it keeps its compiled scripts and
+   * buffers, and the JVM keeps its classes and the shade, sphere, and
+   * font caches of Graphics3D.
+   *
+   */
+
+  private final static int MAX_SIZE = 4096;
+
+  // rendered by each viewer at startup, to load and initialize what
+  // the first job would otherwise wait for
+  private final static String WARMUP_MODEL = "3\nwater\nO 0 0 0\n"
+      + "H 0.757 0.586 0\nH -0.757 0.586 0\n";
+
+  private ArrayBlockingQueue viewers;
+  private int defaultWidth;
+  private int defaultHeight;
+
+  public JmolRenderService(int viewerCount, int width, int height) {
+    defaultWidth = width;
+    defaultHeight = height;
+    viewers = new ArrayBlockingQueue(viewerCount);
+    for (int i = 0; i < viewerCount; i++) {
+      JmolViewer viewer = JmolViewer.allocateViewer(new Canvas(),
+          new SmarterJmolAdapter(), null, null, null, "-n -i", null);
+      viewer.loadInline(WARMUP_MODEL);
+      viewer.getImageAs("PNG", -1, width, height, null, null);
+      viewer.getImageAs("JPG", -1, width, height, null, null);
+      viewer.reinitialize();
+      viewers.add(viewer);
+    }
+  }
+
+  /**
+   * Renders one image with the next free viewer, waiting for one if
+   * necessary.
+   * 
+   * @param fileName  the model to load, or null
+   * @param script    or null
+   * @param width
+   * @param height
+   * @param type      "PNG" or "JPG"
+   * @param quality   or -1 for the default
+   * @return the image bytes
+   * @throws Exception with the script or image error message
+   */
+  public byte[] render(String fileName, String script, int width,
+                       int height, String type, int quality)
+      throws Exception {
+    JmolViewer viewer = (JmolViewer) viewers.take();
+    try {
+      viewer.reinitialize();
+      String s = (fileName == null ? "" : "load " + Escape.escape(fileName)
+          + ";\n")
+          + (script == null ? "" : script);
+      if (s.length() > 0) {
+        viewer.scriptWait(s);
+        String errMsg = viewer.getErrorMessageUntranslated();
+        if (errMsg != null)
+          throw new Exception(errMsg);
+      }
+      Object bytes = viewer.getImageAs(type, quality, width, height, null,
+          null);
+      if (!(bytes instanceof byte[]))
+        throw new Exception(bytes == null ? "no image" : bytes.toString());
+      return (byte[]) bytes;
+    } finally {
+      viewers.add(viewer);
+    }
+  }
+
+  /**
+   * Reads jobs and writes their replies until "quit" or the end of the
+   * input.
+   * 
+   * @param in
+   * @param out
+   * @throws IOException
+   */
+  public void serve(InputStream in, OutputStream out) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in,
+        "UTF-8"));
+    out = new BufferedOutputStream(out);
+    String fileName = null;
+    StringBuffer script = new StringBuffer();
+    int width = defaultWidth;
+    int height = defaultHeight;
+    String type = "PNG";
+    int quality = -1;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      line = line.trim();
+      if (line.length() == 0)
+        continue;
+      int pt = line.indexOf(' ');
+      String key = (pt < 0 ? line : line.substring(0, pt)).toLowerCase();
+      String value = (pt < 0 ? "" : line.substring(pt + 1).trim());
+      if (key.equals("quit"))
+        break;
+      if (key.equals("load")) {
+        fileName = (value.length() == 0 ? null : value);
+      } else if (key.equals("script")) {
+        script.append(value).append('\n');
+      } else if (key.equals("size")) {
+        int[] next = new int[1];
+        width = Parser.parseInt(value, next);
+        height = Parser.parseInt(value, next);
+      } else if (key.equals("format")) {
+        int[] next = new int[1];
+        type = Parser.parseToken(value, next);
+        quality = Parser.parseInt(value, next);
+        if (quality == Integer.MIN_VALUE)
+          quality = -1;
+      } else if (key.equals("render")) {
+        String errMsg = null;
+        byte[] bytes = null;
+        if (width <= 0 || height <= 0 || width > MAX_SIZE
+            || height > MAX_SIZE) {
+          errMsg = "image size must be from 1 to " + MAX_SIZE;
+        } else if (type == null
+            || !Parser.isOneOf(type.toUpperCase(), "PNG;JPG;JPEG")) {
+          errMsg = "format must be png or jpg";
+        } else {
+          try {
+            bytes = render(fileName, script.toString(), width, height, type
+                .toUpperCase(), quality);
+          } catch (Exception e) {
+            errMsg = (e.getMessage() == null ? e.toString() : e.getMessage());
+          }
+        }
+        if (bytes == null) {
+          writeLine(out, "ERROR " + errMsg.replace('\n', ' ').trim());
+        } else {
+          writeLine(out, "OK " + bytes.length);
+          out.write(bytes);
+        }
+        out.flush();
+        fileName = null;
+        script = new StringBuffer();
+        width = defaultWidth;
+        height = defaultHeight;
+        type = "PNG";
+        quality = -1;
+      } else {
+        writeLine(out, "ERROR unknown command: " + key);
+        out.flush();
+      }
+    }
+    out.flush();
+  }
+
+  private static void writeLine(OutputStream out, String s)
+      throws IOException {
+    out.write((s + "\n").getBytes("UTF-8"));
+  }
+
+  private class Connection implements Runnable {
+
+    private Socket socket;
+
+    Connection(Socket socket) {
+      this.socket = socket;
+    }
+
+    public void run() {
+      try {
+        serve(socket.getInputStream(), socket.getOutputStream());
+      } catch (IOException e) {
+        Logger.error("JmolRenderService connection: " + e);
+      } finally {
+        try {
+          socket.close();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  public static void main(String[] args) {
+    if (System.getProperty("java.awt.headless") == null)
+      System.setProperty("java.awt.headless", "true");
+    int port = -1;
+    int viewerCount = Runtime.getRuntime().availableProcessors();
+    int width = 300;
+    int height = 300;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-port") && i + 1 < args.length) {
+        port = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-viewers") && i + 1 < args.length) {
+        viewerCount = Math.max(1, Integer.parseInt(args[++i]));
+      } else if (args[i].equals("-size") && i + 2 < args.length) {
+        width = Integer.parseInt(args[++i]);
+        height = Integer.parseInt(args[++i]);
+      } else {
+        System.err.println("JmolRenderService: unrecognized option "
+            + args[i]);
+        System.exit(1);
+      }
+    }
+    PrintStream stdout = System.out;
+    if (port < 0) {
+      // stdout is for images only
+      System.setOut(System.err);
+      viewerCount = 1;
+    }
+    JmolRenderService service = new JmolRenderService(viewerCount, width,
+        height);
+    try {
+      if (port < 0) {
+        service.serve(System.in, stdout);
+      } else {
+        ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress
+            .getByName(null));
+        System.err.println("JmolRenderService: " + viewerCount
+            + " viewers listening on localhost:" + port);
+        while (true)
+          new Thread(service.new Connection(serverSocket.accept())).start();
+      }
+    } catch (IOException e) {
+      System.err.println("JmolRenderService: " + e);
+      System.exit(1);
+    }
+    System.exit(0);
+  }
+}
@@ -0,0 +1,40 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-18 07:13:41 -0500 (Mon, 18 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * All of the tests, as run by "ant test".
+ *
+ */
+public class AllTests {
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite("Test for org.jmol");
+    suite.addTestSuite(org.jmol.jvxl.TestJvxlBinary.class);
+    suite.addTestSuite(org.jmol.modelset.TestSpatialGrid.class);
+    return suite;
+  }
+}
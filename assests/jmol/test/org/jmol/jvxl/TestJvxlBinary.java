@@ -0,0 +1,119 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-18 07:13:41 -0500 (Mon, 18 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.jvxl;
+
+import java.awt.Canvas;
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.jmol.adapter.smarter.SmarterJmolAdapter;
+import org.jmol.viewer.JmolConstants;
+import org.jmol.viewer.Viewer;
+
+/**
+ * Round trips of binary JVXL against the XML form: a surface is written both
+ * ways and reloaded from each file, and the JVXL written after each reload
+ * must be the same, apart from the isosurface command, which names the file.
+ *
+ */
+public class TestJvxlBinary extends TestCase {
+
+  private Viewer viewer;
+  private File xmlFile;
+  private File binaryFile;
+
+  public TestJvxlBinary(String name) {
+    super(name);
+  }
+
+  protected void setUp() throws IOException {
+    viewer = (Viewer) Viewer.allocateViewer(new Canvas(),
+        new SmarterJmolAdapter(), null, null, null, "-i", null);
+    viewer.scriptWait("load \"pdb/6adh.pdb\"");
+    assertTrue("could not load pdb/6adh.pdb", viewer.getAtomCount() > 0);
+    xmlFile = File.createTempFile("jmol", ".jvxl");
+    binaryFile = File.createTempFile("jmol", ".jvxb");
+  }
+
+  protected void tearDown() {
+    xmlFile.delete();
+    binaryFile.delete();
+  }
+
+  public void testSurface() {
+    checkRoundTrip("isosurface s1 select {resno < 40} sasurface 0", null);
+  }
+
+  public void testMappedSurface() {
+    checkRoundTrip("isosurface s1 select {resno < 40} sasurface 0"
+        + " map property temperature", "<jvxlColorData");
+  }
+
+  public void testContouredPlane() {
+    checkRoundTrip("isosurface s1 select {resno < 40} plane {0 0 1 -5}"
+        + " contour 5 map property temperature", "<jvxlColorData");
+  }
+
+  /**
+   * @param command  creates the surface
+   * @param element  an element the JVXL must have, or null
+   */
+  private void checkRoundTrip(String command, String element) {
+    String xml = getPath(xmlFile);
+    String binary = getPath(binaryFile);
+    viewer.scriptWait(command + "; write isosurface \"" + xml
+        + "\"; write isosurface \"" + binary + "\"");
+    assertTrue("no binary JVXL file", binaryFile.length() > 0);
+    viewer.scriptWait("isosurface s2 \"" + xml + "\"");
+    String fromXml = getSurfaceData();
+    viewer.scriptWait("isosurface s2 \"" + binary + "\"");
+    String fromBinary = getSurfaceData();
+    if (element != null)
+      assertTrue("no " + element, fromXml.indexOf(element) >= 0);
+    assertEquals(fromXml, fromBinary);
+  }
+
+  private static String getPath(File file) {
+    return file.getAbsolutePath().replace('\\', '/');
+  }
+
+  /**
+   * @return the JVXL of the current surface from the surface set on, without
+   *         the isosurface command
+   */
+  private String getSurfaceData() {
+    String jvxl = (String) viewer.getShapeProperty(
+        JmolConstants.SHAPE_ISOSURFACE, "jvxlDataXml");
+    assertNotNull("no surface", jvxl);
+    int i = jvxl.indexOf("<jvxlSurfaceSet");
+    int j = jvxl.indexOf("<jvxlIsosurfaceCommand>");
+    int k = jvxl.indexOf("</jvxlIsosurfaceCommand>");
+    assertTrue("no surface data", i >= 0 && j > i && k > j);
+    assertTrue("no edge or vertex data", jvxl.indexOf("<jvxlEdgeData") >= 0
+        || jvxl.indexOf("<jvxlVertexData") >= 0
+        || jvxl.indexOf("<jvxlColorData") >= 0);
+    return jvxl.substring(i, j) + jvxl.substring(k);
+  }
+}
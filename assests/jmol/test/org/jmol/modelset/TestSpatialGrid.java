@@ -0,0 +1,88 @@
+/* $RCSfile$
+ * $Author: hansonr $
+ * $Date: 2010-10-18 07:13:41 -0500 (Mon, 18 Oct 2010) $
+ *
+ * Copyright (C) 2010  The Jmol Development Team
+ *
+ * Contact: jmol-developers@lists.sf.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jmol.modelset;
+
+import java.awt.Canvas;
+
+import junit.framework.TestCase;
+
+import org.jmol.adapter.smarter.SmarterJmolAdapter;
+import org.jmol.viewer.Viewer;
+
+/**
+ * The spatial grid holds its own copies of the atom coordinates, so every
+ * change of coordinates must reach it. After each change here, within()
+ * must find the same atoms with the grid as with the Bspt.
+ *
+ */
+public class TestSpatialGrid extends TestCase {
+
+  private final static String[] expressions = {
+      "within(1.2, atomno=1)", "within(1.2, atomno=2)",
+      "within(2.6, atomno=2)", "within(3.0, atomno=5)" };
+
+  private Viewer viewer;
+
+  public TestSpatialGrid(String name) {
+    super(name);
+  }
+
+  protected void setUp() {
+    viewer = (Viewer) Viewer.allocateViewer(new Canvas(),
+        new SmarterJmolAdapter(), null, null, null, "-i", null);
+    viewer.scriptWait("load \"octane.pdb\"");
+    assertTrue("could not load octane.pdb", viewer.getAtomCount() > 0);
+  }
+
+  public void testTranslate() {
+    checkAfter("{atomno=1}.x = 3.5");
+  }
+
+  public void testMinimize() {
+    checkAfter("{atomno=1}.x = 3.5; set useMinimizationThread false;"
+        + " minimize steps 300");
+  }
+
+  /**
+   * @param script  moves atoms after the grid has been built
+   */
+  private void checkAfter(String script) {
+    viewer.scriptWait("set useSpatialGrid true");
+    getWithin(); // builds the grid
+    viewer.scriptWait(script);
+    String[] grid = getWithin();
+    viewer.scriptWait("set useSpatialGrid false");
+    String[] bspt = getWithin();
+    for (int i = 0; i < expressions.length; i++) {
+      assertTrue(expressions[i], bspt[i].startsWith("({"));
+      assertEquals(expressions[i], bspt[i], grid[i]);
+    }
+  }
+
+  private String[] getWithin() {
+    String[] results = new String[expressions.length];
+    for (int i = 0; i < expressions.length; i++)
+      results[i] = "" + viewer.evaluateExpression("{" + expressions[i] + "}");
+    return results;
+  }
+}